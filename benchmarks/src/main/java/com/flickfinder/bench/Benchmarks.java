@@ -0,0 +1,71 @@
+package com.flickfinder.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+
+import com.flickfinder.util.Database;
+import com.flickfinder.util.IndexDatabase;
+import com.flickfinder.util.SyntheticSeeder;
+
+/**
+ * Shared set up for the benchmarks.
+ */
+final class Benchmarks {
+
+	/**
+	 * The number of movies in the synthetic database, unless bench.movies is
+	 * set.
+	 */
+	static final int DEFAULT_MOVIES = 200000;
+
+	private Benchmarks() {
+	}
+
+	/**
+	 * Opens the benchmark database: the file named by flickfinder.bench.db if
+	 * it is set, or else a synthetic database with bench.movies movies, kept
+	 * in target so it is only built once. Like Main, the queries go to an
+	 * indexed copy of it unless flickfinder.indexDb is false.
+	 *
+	 * @return the database
+	 */
+	static Database database() {
+		try {
+			String path = System.getProperty("flickfinder.bench.db");
+			if (path == null) {
+				path = synthetic(new File("target"), Integer.getInteger("bench.movies", DEFAULT_MOVIES)).getPath();
+			}
+			String url = "jdbc:sqlite:" + path;
+			if (!"false".equalsIgnoreCase(System.getProperty("flickfinder.indexDb"))) {
+				url = IndexDatabase.prepare(new File(path), new File(path.replaceFirst("\\.db$", "") + "-index.db"));
+			}
+			return Database.getInstance(url);
+		} catch (SQLException | IOException e) {
+			throw new IllegalStateException("Could not open the benchmark database", e);
+		}
+	}
+
+	/**
+	 * Returns the file of a synthetic database with the given number of movies,
+	 * building it with {@link SyntheticSeeder} the first time. It is built
+	 * under a temporary name, so an interrupted build is never reused.
+	 */
+	private static File synthetic(File directory, int movies) throws IOException {
+		File file = new File(directory, "synthetic-" + movies + ".db");
+		if (file.isFile()) {
+			return file;
+		}
+		directory.mkdirs();
+		File temporary = new File(directory, file.getName() + ".tmp");
+		Files.deleteIfExists(temporary.toPath());
+		long start = System.nanoTime();
+		new SyntheticSeeder("jdbc:sqlite:" + temporary.getPath(), SyntheticSeeder.Scale.of(movies)).closeConnection();
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		System.out.println("Built " + file + " in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+		return file;
+	}
+
+}
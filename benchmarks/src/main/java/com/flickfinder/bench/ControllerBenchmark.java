@@ -0,0 +1,136 @@
+package com.flickfinder.bench;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.controller.MovieController;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.index.RatingIndex;
+import com.flickfinder.index.Snapshot;
+import com.flickfinder.util.Database;
+
+import io.javalin.http.Context;
+import io.javalin.json.JavalinJackson;
+import io.javalin.json.JsonMapper;
+
+/**
+ * MovieController.getRatingsByYear called directly with a mock Context, set up
+ * as in MovieControllerTest: the parameter checks, the lookup on the database
+ * threads and the JSON response, without Jetty or the caches in front of it.
+ * The mock answers json() with the mapper Javalin uses, so serialisation is
+ * part of the time; so is a little Mockito dispatch on each call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ControllerBenchmark {
+
+	/**
+	 * Whether the DAO uses the rating index.
+	 */
+	@Param({ "plain", "indexed" })
+	public String mode;
+
+	/**
+	 * The query string of the request.
+	 */
+	@Param({ "", "limit=10", "votes=1000&limit=10" })
+	public String query;
+
+	private MovieController controller;
+
+	private static final JsonMapper JSON_MAPPER = new JavalinJackson();
+
+	// one context per sampled year, reused across calls
+	private Context[] contexts;
+	private int next;
+
+	// what the last call sent, so the work is not optimised away
+	private String result;
+
+	@Setup
+	public void setUp() throws SQLException {
+		Database database = Benchmarks.database();
+		MovieDAO movieDao = new MovieDAO();
+		if (mode.equals("indexed")) {
+			movieDao.setRatingIndex(RatingIndex.load(database));
+		}
+		controller = new MovieController(movieDao);
+
+		Map<String, String> queryParams = new HashMap<>();
+		for (String pair : query.split("&")) {
+			if (!pair.isEmpty()) {
+				String[] parts = pair.split("=", 2);
+				queryParams.put(parts[0], parts[1]);
+			}
+		}
+		Snapshot snapshot = Snapshot.load(database);
+		Random random = new Random(42);
+		contexts = new Context[1024];
+		for (int i = 0; i < contexts.length; i++) {
+			int year = snapshot.year(random.nextInt(snapshot.getMovieCount()));
+			contexts[i] = context(String.valueOf(year), queryParams);
+		}
+	}
+
+	/**
+	 * Makes a mock context for one request. It keeps no record of its calls,
+	 * as it is called millions of times.
+	 */
+	private Context context(String year, Map<String, String> queryParams) {
+		Context ctx = mock(Context.class, withSettings().stubOnly());
+		when(ctx.pathParam("year")).thenReturn(year);
+		queryParams.forEach((key, value) -> when(ctx.queryParam(key)).thenReturn(value));
+		// futures handed to the context are waited for, as Javalin would
+		doAnswer(invocation -> {
+			Supplier<CompletableFuture<?>> future = invocation.getArgument(0);
+			future.get().join();
+			return null;
+		}).when(ctx).future(any());
+		doAnswer(invocation -> {
+			Object value = invocation.getArgument(0);
+			result = JSON_MAPPER.toJsonString(value, value.getClass());
+			return ctx;
+		}).when(ctx).json(any());
+		doAnswer(invocation -> {
+			result = invocation.getArgument(0);
+			return ctx;
+		}).when(ctx).result(any(String.class));
+		return ctx;
+	}
+
+	@Benchmark
+	public String getRatingsByYear() {
+		next = (next + 1) & 1023;
+		result = null;
+		controller.getRatingsByYear(contexts[next]);
+		return result;
+	}
+
+}
@@ -0,0 +1,226 @@
+package com.flickfinder.bench;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.index.CsrIndex;
+import com.flickfinder.index.RatingIndex;
+import com.flickfinder.index.Snapshot;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieDetail;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+
+/**
+ * Every lookup of the movie and people DAOs against SQLite.
+ *
+ * With "plain" every lookup runs its SQL; with "indexed" the DAOs get the
+ * star, director and rating indexes, as AppConfig sets them up. The entity
+ * caches are left out in both, so each call reaches the database. The lookups
+ * use ids, years and people sampled from the database, so they hit real rows.
+ *
+ * The exports read whole tables and are much slower than the rest, so they
+ * are best run on their own with a smaller bench.movies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DaoBenchmark {
+
+	/**
+	 * Whether the DAOs use the in-memory indexes.
+	 */
+	@Param({ "plain", "indexed" })
+	public String mode;
+
+	/**
+	 * The number of ids in each batch lookup.
+	 */
+	private static final int BATCH = 32;
+
+	private MovieDAO movieDao;
+	private PersonDAO personDao;
+
+	// samples from the database, so every lookup hits a real row
+	private int[] movieIds;
+	private int[] personIds;
+	private int[] years;
+	private int[][] movieBatches;
+	private int[][] personBatches;
+	private int next;
+
+	@Setup
+	public void setUp() throws SQLException {
+		Database database = Benchmarks.database();
+		movieDao = new MovieDAO();
+		personDao = new PersonDAO();
+		if (mode.equals("indexed")) {
+			CsrIndex stars = CsrIndex.load(database, "stars");
+			movieDao.setStarIndex(stars);
+			personDao.setStarIndex(stars);
+			movieDao.setDirectorIndex(CsrIndex.load(database, "directors"));
+			movieDao.setRatingIndex(RatingIndex.load(database));
+		}
+
+		Snapshot snapshot = Snapshot.load(database);
+		Random random = new Random(42);
+		movieIds = new int[1024];
+		personIds = new int[1024];
+		years = new int[1024];
+		movieBatches = new int[1024][BATCH];
+		personBatches = new int[1024][BATCH];
+		for (int i = 0; i < 1024; i++) {
+			int movie = random.nextInt(snapshot.getMovieCount());
+			movieIds[i] = snapshot.movieId(movie);
+			years[i] = snapshot.year(movie);
+			personIds[i] = snapshot.personId(random.nextInt(snapshot.getPersonCount()));
+			for (int j = 0; j < BATCH; j++) {
+				movieBatches[i][j] = snapshot.movieId(random.nextInt(snapshot.getMovieCount()));
+				personBatches[i][j] = snapshot.personId(random.nextInt(snapshot.getPersonCount()));
+			}
+		}
+	}
+
+	private int next() {
+		next = (next + 1) & 1023;
+		return next;
+	}
+
+	@Benchmark
+	public List<Movie> getAllMovies() throws SQLException {
+		return movieDao.getAllMovies();
+	}
+
+	@Benchmark
+	public List<Movie> getAllMoviesByLimit() throws SQLException {
+		return movieDao.getAllMoviesByLimit(1000);
+	}
+
+	@Benchmark
+	public List<Movie> getMoviesAfter() throws SQLException {
+		return movieDao.getMoviesAfter(movieIds[next()], 100);
+	}
+
+	@Benchmark
+	public Movie getMovieById() throws SQLException {
+		return movieDao.getMovieById(movieIds[next()]);
+	}
+
+	@Benchmark
+	public List<Movie> getMoviesByIds() throws SQLException {
+		return movieDao.getMoviesByIds(movieBatches[next()]);
+	}
+
+	@Benchmark
+	public List<Person> getStarsByMovieId() throws SQLException {
+		return movieDao.getStarsByMovieId(movieIds[next()]);
+	}
+
+	@Benchmark
+	public List<Person> getDirectorsByMovieId() throws SQLException {
+		return movieDao.getDirectorsByMovieId(movieIds[next()]);
+	}
+
+	@Benchmark
+	public MovieRating getRatingByMovieId() throws SQLException {
+		return movieDao.getRatingByMovieId(movieIds[next()]);
+	}
+
+	@Benchmark
+	public MovieDetail getMovieDetail() throws SQLException {
+		return movieDao.getMovieDetail(movieIds[next()]);
+	}
+
+	@Benchmark
+	public MovieDetail getMovieDetailAsync() {
+		return movieDao.getMovieDetailAsync(movieIds[next()]).join();
+	}
+
+	@Benchmark
+	public List<MovieRating> getMovieRatingsByYear() throws SQLException {
+		return movieDao.getMovieRatingsByYear(years[next()]);
+	}
+
+	@Benchmark
+	public List<MovieRating> getMovieRatingsByYearAndLimit() throws SQLException {
+		return movieDao.getMovieRatingsByYearAndLimit(years[next()], 10);
+	}
+
+	@Benchmark
+	public List<MovieRating> getMovieRatingsByYearAndVoteLimit() throws SQLException {
+		return movieDao.getMovieRatingsByYearAndVoteLimit(years[next()], 10000);
+	}
+
+	@Benchmark
+	public List<MovieRating> getMovieRatingsByYearLimitVoteLimit() throws SQLException {
+		return movieDao.getMovieRatingsByYearLimitVoteLimit(years[next()], 10, 10000);
+	}
+
+	@Benchmark
+	public void exportMovies(Blackhole blackhole) throws SQLException, IOException {
+		movieDao.exportMovies(blackhole::consume);
+	}
+
+	@Benchmark
+	public void exportStars(Blackhole blackhole) throws SQLException, IOException {
+		movieDao.exportStars(blackhole::consume);
+	}
+
+	@Benchmark
+	public List<Person> getAllPeople() throws SQLException {
+		return personDao.getAllPeople();
+	}
+
+	@Benchmark
+	public List<Person> getAllPeopleByLimit() throws SQLException {
+		return personDao.getAllPeopleByLimit(1000);
+	}
+
+	@Benchmark
+	public List<Person> getPeopleAfter() throws SQLException {
+		return personDao.getPeopleAfter(personIds[next()], 100);
+	}
+
+	@Benchmark
+	public Person getPersonById() throws SQLException {
+		return personDao.getPersonById(personIds[next()]);
+	}
+
+	@Benchmark
+	public List<Person> getPeopleByIds() throws SQLException {
+		return personDao.getPeopleByIds(personBatches[next()]);
+	}
+
+	@Benchmark
+	public List<Movie> getMoviesByPersonId() throws SQLException {
+		return personDao.getMoviesByPersonId(personIds[next()]);
+	}
+
+	@Benchmark
+	public void exportPeople(Blackhole blackhole) throws SQLException, IOException {
+		personDao.exportPeople(blackhole::consume);
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.flickfinder.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.flickfinder.AppConfig;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.Movie;
+
+import io.javalin.Javalin;
+
+/**
+ * A load test of /movies/{id} with the handlers on platform threads and then
+ * on virtual threads.
+ *
+ * For each mode the server is started in this JVM, and a fixed number of
+ * connections (1000 by default) each send one request after another for a
+ * random movie. The throughput and latency percentiles of each mode are
+ * printed at the end. The entity and response caches are turned off unless
+ * set explicitly, so every request blocks on SQLite.
+ *
+ * Virtual threads need JDK 21; on older JDKs both runs use platform threads.
+ *
+ * <pre>
+ * java [-Dbench.connections=1000] [-Dbench.seconds=20] [-Dbench.warmup=5]
+ *     -cp target/benchmarks.jar com.flickfinder.bench.ExecutionModeBenchmark
+ * </pre>
+ */
+public class ExecutionModeBenchmark {
+
+	private static final int PORT = 8100;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args not used
+	 * @throws Exception if the server or the client fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int connections = Integer.getInteger("bench.connections", 1000);
+		int seconds = Integer.getInteger("bench.seconds", 20);
+		int warmup = Integer.getInteger("bench.warmup", 5);
+		if (System.getProperty("flickfinder.cache.size") == null) {
+			System.setProperty("flickfinder.cache.size", "0");
+		}
+		if (System.getProperty("flickfinder.responseCache.bytes") == null) {
+			System.setProperty("flickfinder.responseCache.bytes", "0");
+		}
+
+		Benchmarks.database();
+		List<Movie> movies = new MovieDAO().getAllMoviesByLimit(10000);
+		int[] ids = movies.stream().mapToInt(Movie::getId).toArray();
+
+		String[] modes = { "platform", "virtual" };
+		String[] results = new String[modes.length];
+		for (int m = 0; m < modes.length; m++) {
+			System.setProperty("flickfinder.threads", modes[m]);
+			Javalin app = AppConfig.startServer(PORT + m);
+			try {
+				run(PORT + m, ids, connections, warmup);
+				results[m] = modes[m] + ": " + run(PORT + m, ids, connections, seconds);
+			} finally {
+				app.stop();
+			}
+		}
+
+		System.out.println();
+		System.out.println("GET /movies/{id}, " + connections + " connections, " + seconds + "s, JDK "
+				+ Runtime.version().feature());
+		for (String result : results) {
+			System.out.println(result);
+		}
+	}
+
+	/**
+	 * Keeps the given number of requests in flight for a number of seconds,
+	 * with one client thread per connection.
+	 *
+	 * @return a summary of the throughput and latencies
+	 */
+	private static String run(int port, int[] ids, int connections, int seconds) throws InterruptedException {
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(10)).build();
+		Recorder[] recorders = new Recorder[connections];
+		Thread[] threads = new Thread[connections];
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicInteger errors = new AtomicInteger();
+
+		for (int i = 0; i < connections; i++) {
+			Recorder recorder = new Recorder();
+			recorders[i] = recorder;
+			threads[i] = new Thread(() -> {
+				while (running.get()) {
+					int id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+					HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/movies/" + id))
+							.timeout(Duration.ofSeconds(30)).build();
+					long start = System.nanoTime();
+					try {
+						HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+						if (response.statusCode() == 200) {
+							recorder.record(System.nanoTime() - start);
+						} else {
+							errors.incrementAndGet();
+						}
+					} catch (Exception e) {
+						errors.incrementAndGet();
+					}
+				}
+			}, "bench-client-" + i);
+			threads[i].start();
+		}
+		Thread.sleep(seconds * 1000L);
+		running.set(false);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		long[] latencies = new long[0];
+		for (Recorder recorder : recorders) {
+			int from = latencies.length;
+			latencies = Arrays.copyOf(latencies, from + recorder.count);
+			System.arraycopy(recorder.latencies, 0, latencies, from, recorder.count);
+		}
+		Arrays.sort(latencies);
+		return String.format("%,d requests, %,.0f req/s, p50 %s, p99 %s, p99.9 %s, max %s, errors %d",
+				latencies.length, latencies.length / (double) seconds, millis(latencies, 0.50), millis(latencies, 0.99),
+				millis(latencies, 0.999), millis(latencies, 1.0), errors.get());
+	}
+
+	/**
+	 * Formats a percentile of the sorted latencies in milliseconds.
+	 */
+	private static String millis(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return "-";
+		}
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+		return String.format("%.2fms", sorted[Math.max(0, index)] / 1_000_000.0);
+	}
+
+	/**
+	 * The latencies seen by one client thread.
+	 */
+	private static class Recorder {
+
+		private long[] latencies = new long[1024];
+		private int count;
+
+		void record(long nanos) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = nanos;
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.flickfinder.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks ids for the load generator, either uniformly or with a Zipf
+ * distribution, where the k-th most popular id comes up in proportion to
+ * 1 / k^s. The popularity order is a seeded shuffle of the ids, so the popular
+ * ones are spread over the table rather than being the lowest ids.
+ */
+final class IdSampler {
+
+	private final int[] ids;
+
+	/**
+	 * The cumulative probability of each rank, or null for uniform.
+	 */
+	private final double[] cdf;
+
+	private IdSampler(int[] ids, double[] cdf) {
+		this.ids = ids;
+		this.cdf = cdf;
+	}
+
+	/**
+	 * Makes a sampler that picks every id equally often.
+	 *
+	 * @param ids the ids
+	 * @return the sampler
+	 */
+	static IdSampler uniform(int[] ids) {
+		return new IdSampler(ids, null);
+	}
+
+	/**
+	 * Makes a sampler with a Zipf distribution over the ids.
+	 *
+	 * @param ids      the ids
+	 * @param exponent s, 1 for classic Zipf; higher is more skewed
+	 * @param seed     the seed of the shuffle that sets the popularity order
+	 * @return the sampler
+	 */
+	static IdSampler zipf(int[] ids, double exponent, long seed) {
+		int[] ranked = ids.clone();
+		Random random = new Random(seed);
+		for (int i = ranked.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int id = ranked[i];
+			ranked[i] = ranked[j];
+			ranked[j] = id;
+		}
+		double[] cdf = new double[ranked.length];
+		double total = 0;
+		for (int k = 0; k < ranked.length; k++) {
+			total += 1 / Math.pow(k + 1, exponent);
+			cdf[k] = total;
+		}
+		for (int k = 0; k < cdf.length; k++) {
+			cdf[k] /= total;
+		}
+		return new IdSampler(ranked, cdf);
+	}
+
+	/**
+	 * Picks an id.
+	 *
+	 * @param random the source of randomness
+	 * @return the id
+	 */
+	int next(Random random) {
+		if (cdf == null) {
+			return ids[random.nextInt(ids.length)];
+		}
+		int rank = Arrays.binarySearch(cdf, random.nextDouble());
+		if (rank < 0) {
+			rank = -rank - 1;
+		}
+		return ids[Math.min(rank, ids.length - 1)];
+	}
+
+}
@@ -0,0 +1,348 @@
+package com.flickfinder.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.flickfinder.AppConfig;
+import com.flickfinder.index.Snapshot;
+
+import io.javalin.Javalin;
+
+/**
+ * An open-model load test of the API.
+ *
+ * Requests are sent at a fixed arrival rate, whether or not earlier ones have
+ * been answered, the way independent users arrive. Each request has an
+ * intended start time on that schedule, and its latency is measured from
+ * there rather than from when it was actually sent. So when the server, or
+ * the generator itself, falls behind, the requests that waited are charged
+ * for it, and the percentiles are corrected for coordinated omission. The
+ * service time, from the actual send, is reported next to it.
+ *
+ * Each request picks a route from the mix by weight, and its ids from the
+ * database, uniformly or with a Zipf distribution. The server is started in
+ * this JVM against the benchmark database unless load.url points at one that
+ * is already running, which should have the same data.
+ *
+ * <pre>
+ * java [-Dload.rate=2000] [-Dload.seconds=30] [-Dload.warmup=5]
+ *     [-Dload.mix=/movies/{id}:60,/movies/ratings/{year}:20,/people/{id}/movies:20]
+ *     [-Dload.ids=uniform|zipf] [-Dload.zipf=1.0] [-Dload.arrivals=constant|poisson]
+ *     [-Dload.url=http://host:port] [-Dload.maxP99Ms=50]
+ *     -cp target/benchmarks.jar com.flickfinder.bench.LoadGenerator
+ * </pre>
+ *
+ * With load.maxP99Ms set, the run exits with status 1 when the corrected p99
+ * is over it, when any measured request failed, or when none succeeded, so it
+ * can gate a build. Failed requests, such as fast 503s from a busy server, are
+ * not in the percentiles, so they fail the gate on their own.
+ */
+public class LoadGenerator {
+
+	private static final int PORT = 8200;
+
+	private static final String DEFAULT_MIX = "/movies/{id}:60,/movies/ratings/{year}:20,/people/{id}/movies:20";
+
+	/**
+	 * How long to wait for the last requests once the schedule is done.
+	 */
+	private static final long DRAIN_SECONDS = 30;
+
+	/**
+	 * A route of the mix.
+	 */
+	private static class Route {
+
+		final String template;
+		final int weight;
+		final boolean people;
+		final LongAdder errors = new LongAdder();
+
+		Route(String template, int weight) {
+			this.template = template;
+			this.weight = weight;
+			this.people = template.startsWith("/people");
+		}
+	}
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @param args not used
+	 * @throws Exception if the server or the database fails
+	 */
+	public static void main(String[] args) throws Exception {
+		double rate = Double.parseDouble(System.getProperty("load.rate", "2000"));
+		int seconds = Integer.getInteger("load.seconds", 30);
+		int warmup = Integer.getInteger("load.warmup", 5);
+		boolean poisson = "poisson".equalsIgnoreCase(System.getProperty("load.arrivals", "constant"));
+		List<Route> routes = parseMix(System.getProperty("load.mix", DEFAULT_MIX));
+
+		Snapshot snapshot = Snapshot.load(Benchmarks.database());
+		IdSampler movies = sampler(snapshot.getMovieCount());
+		IdSampler people = sampler(snapshot.getPersonCount());
+
+		String url = System.getProperty("load.url");
+		Javalin app = null;
+		if (url == null) {
+			app = AppConfig.startServer(PORT);
+			url = "http://localhost:" + PORT;
+		}
+		try {
+			Report report = run(url, routes, snapshot, movies, people, rate, warmup, seconds, poisson);
+			System.out.println();
+			System.out.println(report.summary(routes, rate, seconds, System.getProperty("load.ids", "uniform")));
+			String maxP99 = System.getProperty("load.maxP99Ms");
+			if (maxP99 != null) {
+				if (report.size() == 0) {
+					System.out.println("No request succeeded");
+					System.exit(1);
+				}
+				if (report.failed() > 0) {
+					System.out.println(report.failed() + " requests failed");
+					System.exit(1);
+				}
+				if (report.percentileMillis(report.corrected, 0.99) > Double.parseDouble(maxP99)) {
+					System.out.println("p99 is over " + maxP99 + "ms");
+					System.exit(1);
+				}
+			}
+		} finally {
+			if (app != null) {
+				app.stop();
+			}
+		}
+	}
+
+	/**
+	 * Parses a route mix such as "/movies/{id}:60,/people/{id}:40".
+	 */
+	static List<Route> parseMix(String mix) {
+		List<Route> routes = new ArrayList<>();
+		for (String part : mix.split(",")) {
+			int colon = part.lastIndexOf(':');
+			if (colon < 0) {
+				throw new IllegalArgumentException("Missing weight in " + part);
+			}
+			routes.add(new Route(part.substring(0, colon).trim(), Integer.parseInt(part.substring(colon + 1).trim())));
+		}
+		return routes;
+	}
+
+	/**
+	 * Makes the sampler of the rows of a table, set by load.ids.
+	 */
+	private static IdSampler sampler(int count) {
+		int[] rows = new int[count];
+		for (int i = 0; i < count; i++) {
+			rows[i] = i;
+		}
+		if ("zipf".equalsIgnoreCase(System.getProperty("load.ids", "uniform"))) {
+			return IdSampler.zipf(rows, Double.parseDouble(System.getProperty("load.zipf", "1.0")), 42);
+		}
+		return IdSampler.uniform(rows);
+	}
+
+	/**
+	 * Sends requests on the schedule until it ends, then waits for the last
+	 * ones to be answered.
+	 */
+	private static Report run(String url, List<Route> routes, Snapshot snapshot, IdSampler movies, IdSampler people,
+			double rate, int warmup, int seconds, boolean poisson) throws InterruptedException {
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(10)).build();
+		int totalWeight = routes.stream().mapToInt(route -> route.weight).sum();
+		Report report = new Report((int) Math.ceil(rate * seconds * 1.2) + 1024);
+		Random random = new Random(7);
+		// a counter rather than a Phaser, which is limited to 65,535 parties: a
+		// stalled server can leave more requests than that in flight
+		AtomicLong inFlight = new AtomicLong();
+
+		long intervalNanos = (long) (1e9 / rate);
+		long start = System.nanoTime();
+		long measureFrom = start + warmup * 1_000_000_000L;
+		long end = measureFrom + seconds * 1_000_000_000L;
+		long intended = start;
+		while (intended < end) {
+			long wait = intended - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+				continue;
+			}
+
+			int pick = random.nextInt(totalWeight);
+			int routeIndex = 0;
+			while (pick >= routes.get(routeIndex).weight) {
+				pick -= routes.get(routeIndex++).weight;
+			}
+			Route route = routes.get(routeIndex);
+			String path = path(route, snapshot, movies, people, random);
+
+			boolean measured = intended >= measureFrom;
+			long scheduled = intended;
+			long sent = System.nanoTime();
+			int index = routeIndex;
+			inFlight.incrementAndGet();
+			HttpRequest request = HttpRequest.newBuilder(URI.create(url + path)).timeout(Duration.ofSeconds(30)).build();
+			client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+				long now = System.nanoTime();
+				if (measured) {
+					if (error != null) {
+						route.errors.increment();
+						report.status(-1);
+					} else if (response.statusCode() >= 400) {
+						route.errors.increment();
+						report.status(response.statusCode());
+					} else {
+						report.record(index, now - scheduled, now - sent);
+					}
+				}
+				inFlight.decrementAndGet();
+			});
+
+			intended += poisson ? (long) (-Math.log(1 - random.nextDouble()) * intervalNanos) : intervalNanos;
+		}
+
+		long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+		while (inFlight.get() > 0) {
+			if (System.nanoTime() - drainUntil >= 0) {
+				System.out.println(inFlight.get() + " requests were still in flight after " + DRAIN_SECONDS + "s");
+				break;
+			}
+			Thread.sleep(10);
+		}
+		return report;
+	}
+
+	/**
+	 * Fills in the placeholders of a route: {id} with a movie id, or a person
+	 * id on the /people routes, and {year} with the year of a movie.
+	 */
+	private static String path(Route route, Snapshot snapshot, IdSampler movies, IdSampler people, Random random) {
+		String path = route.template;
+		if (path.contains("{id}")) {
+			int id = route.people ? snapshot.personId(people.next(random)) : snapshot.movieId(movies.next(random));
+			path = path.replace("{id}", String.valueOf(id));
+		}
+		if (path.contains("{year}")) {
+			path = path.replace("{year}", String.valueOf(snapshot.year(movies.next(random))));
+		}
+		return path;
+	}
+
+	/**
+	 * The latencies of the measured requests, and the status of the failed
+	 * ones.
+	 */
+	private static class Report {
+
+		final long[] corrected;
+		final long[] service;
+		final byte[] routes;
+		final AtomicInteger count = new AtomicInteger();
+		final LongAdder dropped = new LongAdder();
+		final ConcurrentHashMap<Integer, LongAdder> failures = new ConcurrentHashMap<>();
+
+		Report(int capacity) {
+			corrected = new long[capacity];
+			service = new long[capacity];
+			routes = new byte[capacity];
+		}
+
+		void record(int route, long correctedNanos, long serviceNanos) {
+			int i = count.getAndIncrement();
+			if (i >= corrected.length) {
+				dropped.increment();
+				return;
+			}
+			corrected[i] = correctedNanos;
+			service[i] = serviceNanos;
+			routes[i] = (byte) route;
+		}
+
+		void status(int status) {
+			failures.computeIfAbsent(status, s -> new LongAdder()).increment();
+		}
+
+		int size() {
+			return Math.min(count.get(), corrected.length);
+		}
+
+		long failed() {
+			return failures.values().stream().mapToLong(LongAdder::sum).sum();
+		}
+
+		double percentileMillis(long[] latencies, double percentile) {
+			long[] sorted = Arrays.copyOf(latencies, size());
+			Arrays.sort(sorted);
+			return percentile(sorted, percentile);
+		}
+
+		static double percentile(long[] sorted, double percentile) {
+			if (sorted.length == 0) {
+				return Double.NaN;
+			}
+			int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+			return sorted[Math.max(0, index)] / 1_000_000.0;
+		}
+
+		static String line(String label, long[] sorted) {
+			return String.format("  %-28s p50 %8.2fms  p90 %8.2fms  p99 %8.2fms  p99.9 %8.2fms  max %8.2fms", label,
+					percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+					percentile(sorted, 0.999), percentile(sorted, 1.0));
+		}
+
+		String summary(List<Route> mix, double rate, int seconds, String ids) {
+			int size = size();
+			long[] correctedSorted = Arrays.copyOf(corrected, size);
+			long[] serviceSorted = Arrays.copyOf(service, size);
+			Arrays.sort(correctedSorted);
+			Arrays.sort(serviceSorted);
+			long failed = failed();
+
+			StringBuilder out = new StringBuilder();
+			out.append(String.format("Offered %,.0f req/s for %ds with %s ids: %,d ok (%,.0f req/s), %,d failed%n", rate,
+					seconds, ids, size, size / (double) seconds, failed));
+			if (!failures.isEmpty()) {
+				Map<Integer, Long> byStatus = new TreeMap<>();
+				failures.forEach((status, adder) -> byStatus.put(status, adder.sum()));
+				out.append("  failures by status (-1 is a connection error): ").append(byStatus).append('\n');
+			}
+			if (dropped.sum() > 0) {
+				out.append("  ").append(dropped.sum()).append(" latencies did not fit the report and were left out\n");
+			}
+			out.append(line("corrected (from schedule)", correctedSorted)).append('\n');
+			out.append(line("service (from send)", serviceSorted)).append('\n');
+			for (int r = 0; r < mix.size(); r++) {
+				int n = 0;
+				long[] route = new long[size];
+				for (int i = 0; i < size; i++) {
+					if (routes[i] == r) {
+						route[n++] = corrected[i];
+					}
+				}
+				route = Arrays.copyOf(route, n);
+				Arrays.sort(route);
+				out.append(line(mix.get(r).template, route)).append(String.format("  %,d ok, %,d failed%n", n,
+						mix.get(r).errors.sum()));
+			}
+			return out.toString();
+		}
+	}
+
+}
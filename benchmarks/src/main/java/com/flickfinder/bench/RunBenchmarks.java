@@ -0,0 +1,50 @@
+package com.flickfinder.bench;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The main class of benchmarks.jar. It takes the usual JMH options, and saves
+ * the results as JSON in results/ unless -rf or -rff says otherwise, so runs
+ * of different releases can be compared.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar [DaoBenchmark] [jmh options]
+ * </pre>
+ */
+public class RunBenchmarks {
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args JMH options and benchmark patterns
+	 * @throws Exception if the options are not valid or a run fails
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions options = new CommandLineOptions(args);
+		if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+				|| options.shouldListProfilers() || options.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(options);
+		if (options.getResultFormat().hasValue() || options.getResult().hasValue()) {
+			new Runner(builder.build()).run();
+			return;
+		}
+		File results = new File("results");
+		results.mkdirs();
+		String name = "jmh-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json";
+		builder.resultFormat(ResultFormatType.JSON).result(new File(results, name).getPath());
+		new Runner(builder.build()).run();
+	}
+
+}
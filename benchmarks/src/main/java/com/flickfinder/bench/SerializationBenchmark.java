@@ -0,0 +1,76 @@
+package com.flickfinder.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.flickfinder.model.MovieRating;
+
+import io.javalin.json.JavalinJackson;
+
+/**
+ * Jackson serialisation of the ratings lists the ratings endpoint sends, the
+ * way ctx.json does it and with a reused ObjectWriter straight to bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializationBenchmark {
+
+	/**
+	 * The number of ratings in the list.
+	 */
+	@Param({ "10", "50", "1000" })
+	public int size;
+
+	private List<MovieRating> ratings;
+	private JavalinJackson javalinJackson;
+	private ObjectWriter writer;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		ratings = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			ratings.add(new MovieRating(i + 1, "Movie " + Integer.toString(random.nextInt(1 << 24), 36),
+					(10 + random.nextInt(91)) / 10f, random.nextInt(2000000), 1920 + random.nextInt(105)));
+		}
+		javalinJackson = new JavalinJackson();
+		writer = javalinJackson.getMapper().writerFor(List.class);
+	}
+
+	/**
+	 * What ctx.json does: a String from the mapper Javalin is configured with.
+	 */
+	@Benchmark
+	public String toJsonString() {
+		return javalinJackson.toJsonString(ratings, List.class);
+	}
+
+	/**
+	 * The same list written to UTF-8 bytes by a writer made once.
+	 */
+	@Benchmark
+	public byte[] writeValueAsBytes() throws JsonProcessingException {
+		return writer.writeValueAsBytes(ratings);
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.flickfinder.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.dao.SnapshotMovieDAO;
+import com.flickfinder.dao.SnapshotPersonDAO;
+import com.flickfinder.index.Snapshot;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+
+/**
+ * Compares the SQLite DAOs with the in-memory snapshot DAOs on the same
+ * lookups.
+ *
+ * The database is read from the flickfinder.bench.db property, or is a
+ * synthetic one if it is not set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SnapshotBenchmark {
+
+	/**
+	 * Which DAOs to run against.
+	 */
+	@Param({ "sqlite", "snapshot" })
+	public String engine;
+
+	private MovieDAO movieDao;
+	private PersonDAO personDao;
+
+	// ids sampled from the database, so every lookup hits a real row
+	private int[] movieIds;
+	private int[] personIds;
+	private int[] years;
+	private int next;
+
+	@Setup
+	public void setUp() throws SQLException {
+		Database database = Benchmarks.database();
+		Snapshot snapshot = Snapshot.load(database);
+
+		if (engine.equals("snapshot")) {
+			movieDao = new SnapshotMovieDAO(snapshot);
+			personDao = new SnapshotPersonDAO(snapshot);
+		} else {
+			movieDao = new MovieDAO();
+			personDao = new PersonDAO();
+		}
+
+		Random random = new Random(42);
+		movieIds = new int[1024];
+		personIds = new int[1024];
+		years = new int[1024];
+		for (int i = 0; i < 1024; i++) {
+			int movie = random.nextInt(snapshot.getMovieCount());
+			movieIds[i] = snapshot.movieId(movie);
+			years[i] = snapshot.year(movie);
+			personIds[i] = snapshot.personId(random.nextInt(snapshot.getPersonCount()));
+		}
+	}
+
+	private int next() {
+		next = (next + 1) & 1023;
+		return next;
+	}
+
+	@Benchmark
+	public Movie getMovieById() throws SQLException {
+		return movieDao.getMovieById(movieIds[next()]);
+	}
+
+	@Benchmark
+	public List<Person> getStarsByMovieId() throws SQLException {
+		return movieDao.getStarsByMovieId(movieIds[next()]);
+	}
+
+	@Benchmark
+	public List<MovieRating> getMovieRatingsByYear() throws SQLException {
+		return movieDao.getMovieRatingsByYear(years[next()]);
+	}
+
+	@Benchmark
+	public Person getPersonById() throws SQLException {
+		return personDao.getPersonById(personIds[next()]);
+	}
+
+	@Benchmark
+	public List<Movie> getMoviesByPersonId() throws SQLException {
+		return personDao.getMoviesByPersonId(personIds[next()]);
+	}
+
+}
@@ -1,12 +1,32 @@
 package com.flickfinder;
 
+import java.sql.SQLException;
+
+import com.flickfinder.cache.ConditionalGet;
+import com.flickfinder.cache.ResponseCache;
+import com.flickfinder.cache.TinyLfuCache;
+import com.flickfinder.controller.AutocompleteController;
+import com.flickfinder.controller.ExportController;
+import com.flickfinder.controller.MetricsController;
 import com.flickfinder.controller.MovieController;
 import com.flickfinder.dao.MovieDAO;
 import com.flickfinder.controller.PersonController;
 import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.dao.SnapshotMovieDAO;
+import com.flickfinder.dao.SnapshotPersonDAO;
+import com.flickfinder.index.CostarIndex;
+import com.flickfinder.index.CsrIndex;
+import com.flickfinder.index.FuzzyNameIndex;
+import com.flickfinder.index.PathFinder;
+import com.flickfinder.index.PrefixIndex;
+import com.flickfinder.index.RatingIndex;
+import com.flickfinder.index.Snapshot;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.RequestMetrics;
 
 
 import io.javalin.Javalin;
+import io.javalin.http.Handler;
 import io.javalin.http.staticfiles.Location;
 
 /**
@@ -19,6 +39,31 @@ import io.javalin.http.staticfiles.Location;
 
 public class AppConfig {
 
+	/**
+	 * The default number of ids each entity cache holds.
+	 */
+	private static final int DEFAULT_CACHE_SIZE = 10000;
+
+	/**
+	 * The default budget of the response cache, in bytes.
+	 */
+	private static final long DEFAULT_RESPONSE_CACHE_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * The default number of seconds clients may reuse a response for.
+	 */
+	private static final long DEFAULT_MAX_AGE = 3600;
+
+	/**
+	 * The default most movies a path between two people may have.
+	 */
+	private static final int DEFAULT_PATH_DEPTH = 6;
+
+	/**
+	 * The default time limit of a path search, in milliseconds.
+	 */
+	private static final long DEFAULT_PATH_MILLIS = 500;
+
 	/**
 	 * Sets up the routes and the static files location.
 	 * As you can see, the routes are currently incomplete. Depending on how far you
@@ -29,15 +74,159 @@ public class AppConfig {
 	 * @return The Javalin object that represents the running server.
 	 */
 	public static Javalin startServer(int port) {
+		// With -Dflickfinder.threads=virtual every request gets its own virtual
+		// thread instead of waiting for one of Jetty's platform threads. The
+		// connection pool still bounds how many of them reach SQLite at once.
+		boolean virtualThreads = "virtual".equalsIgnoreCase(System.getProperty("flickfinder.threads", "platform"));
+		if (virtualThreads) {
+			if (Runtime.version().feature() < 21) {
+				System.out.println("Virtual threads need JDK 21 or later, falling back to platform threads");
+			} else {
+				System.out.println("Running handlers on virtual threads");
+			}
+		}
+
 		Javalin app = Javalin.create(config -> {
 			config.staticFiles.add("/public", Location.CLASSPATH);
-		}).start(port);
+			config.useVirtualThreads = virtualThreads;
+		});
 
 		// Set up controllers
 		MovieDAO movieDao = new MovieDAO();
-		MovieController movieController = new MovieController(movieDao);
 		PersonDAO personDao = new PersonDAO();
+		CsrIndex stars = null;
+
+		// In snapshot mode the whole database is loaded into memory at startup and
+		// the DAOs answer from there instead of running SQL.
+		if (Boolean.getBoolean("flickfinder.snapshot")) {
+			try {
+				Snapshot snapshot = Snapshot.load(Database.getInstance());
+				System.out.println("Loaded " + snapshot);
+				movieDao = new SnapshotMovieDAO(snapshot);
+				personDao = new SnapshotPersonDAO(snapshot);
+				stars = snapshot.getStars();
+			} catch (SQLException e) {
+				System.out.println("Could not load the snapshot, falling back to SQLite");
+				e.printStackTrace();
+			}
+		}
+
+		// Otherwise the stars table, which has no index, is indexed in memory so
+		// the star lookups become a slice of an array instead of a join.
+		if (!(movieDao instanceof SnapshotMovieDAO)) {
+			try {
+				CsrIndex starIndex = CsrIndex.load(Database.getInstance(), "stars");
+				System.out.println("Loaded stars " + starIndex);
+				movieDao.setStarIndex(starIndex);
+				personDao.setStarIndex(starIndex);
+				stars = starIndex;
+			} catch (SQLException e) {
+				System.out.println("Could not index the stars table, falling back to joins");
+				e.printStackTrace();
+			}
+
+			// The directors table is indexed the same way, for the movie detail route.
+			try {
+				CsrIndex directorIndex = CsrIndex.load(Database.getInstance(), "directors");
+				System.out.println("Loaded directors " + directorIndex);
+				movieDao.setDirectorIndex(directorIndex);
+			} catch (SQLException e) {
+				System.out.println("Could not index the directors table, falling back to joins");
+				e.printStackTrace();
+			}
+
+			// The ratings endpoint is the busiest route, so each year's ratings are
+			// sorted once here rather than on every request.
+			try {
+				RatingIndex ratingIndex = RatingIndex.load(Database.getInstance());
+				System.out.println("Loaded ratings " + ratingIndex);
+				movieDao.setRatingIndex(ratingIndex);
+			} catch (SQLException e) {
+				System.out.println("Could not index the ratings table, falling back to queries");
+				e.printStackTrace();
+			}
+
+			// Lookups by id go through a cache, which also remembers ids that were not
+			// found. Its size can be set with -Dflickfinder.cache.size.
+			int cacheSize = Integer.getInteger("flickfinder.cache.size", DEFAULT_CACHE_SIZE);
+			if (cacheSize > 0) {
+				movieDao.setCache(new TinyLfuCache<>(cacheSize));
+				personDao.setCache(new TinyLfuCache<>(cacheSize));
+			}
+		}
+
+		// Type-ahead is answered from prefix indexes of the titles and names,
+		// which keep the most popular matches of every prefix.
+		PrefixIndex movieTitles = null;
+		PrefixIndex personNames = null;
+		try {
+			movieTitles = PrefixIndex.loadMovies(Database.getInstance());
+			System.out.println("Loaded titles " + movieTitles);
+			personNames = PrefixIndex.loadPeople(Database.getInstance());
+			System.out.println("Loaded names " + personNames);
+		} catch (SQLException e) {
+			System.out.println("Could not build the autocomplete indexes");
+			e.printStackTrace();
+		}
+
+		// Fuzzy name searches are answered from an index of the words in the
+		// names that tolerates a couple of typos per word.
+		try {
+			FuzzyNameIndex fuzzyNames = FuzzyNameIndex.load(Database.getInstance());
+			System.out.println("Loaded fuzzy names " + fuzzyNames);
+			personDao.setFuzzyIndex(fuzzyNames);
+		} catch (SQLException e) {
+			System.out.println("Could not build the fuzzy name index");
+			e.printStackTrace();
+		}
+
+		// Paths between people are searched in the star index, with limits on
+		// the depth (-Dflickfinder.path.maxDepth) and time
+		// (-Dflickfinder.path.maxMillis) of each search.
+		if (stars != null) {
+			personDao.setPathFinder(new PathFinder(stars,
+					Integer.getInteger("flickfinder.path.maxDepth", DEFAULT_PATH_DEPTH),
+					Long.getLong("flickfinder.path.maxMillis", DEFAULT_PATH_MILLIS)));
+
+			// The co-star graph is built from the star index in the background, so
+			// startup does not wait for it; until then co-stars are counted with a
+			// self-join.
+			CsrIndex starGraph = stars;
+			PersonDAO costarDao = personDao;
+			Thread costarBuilder = new Thread(() -> {
+				CostarIndex costars = CostarIndex.build(starGraph);
+				System.out.println("Loaded co-stars " + costars);
+				costarDao.setCostarIndex(costars);
+			}, "flickfinder-costars");
+			costarBuilder.setDaemon(true);
+			costarBuilder.start();
+		}
+
+		MovieController movieController = new MovieController(movieDao);
 		PersonController personController = new PersonController(personDao);
+		// Each export holds a pooled connection while it streams, so only a few
+		// run at once and the rest of the pool is left for the other routes.
+		ExportController exportController = new ExportController(movieDao, personDao,
+				Integer.getInteger("flickfinder.export.maxConcurrent", ExportController.DEFAULT_MAX_EXPORTS));
+		AutocompleteController autocompleteController = new AutocompleteController(movieTitles, personNames);
+
+		// Every request is counted by route and status code, and timed, from a
+		// before and an after handler, so the controllers need no code for it.
+		RequestMetrics requestMetrics = new RequestMetrics();
+
+		// The JSON routes keep their finished responses, so a repeated request
+		// skips the DAO and Jackson. The budget can be set with
+		// -Dflickfinder.responseCache.bytes, or 0 to turn it off.
+		long responseCacheBytes = Long.getLong("flickfinder.responseCache.bytes", DEFAULT_RESPONSE_CACHE_BYTES);
+		ResponseCache responseCache = responseCacheBytes > 0 ? new ResponseCache(responseCacheBytes) : null;
+
+		// Every read route gets an ETag from the dataset version, so clients that
+		// poll can be told 304 Not Modified before any work is done.
+		ConditionalGet conditionalGet = new ConditionalGet(Database.getInstance().getVersion(),
+				Long.getLong("flickfinder.cache.maxAge", DEFAULT_MAX_AGE));
+
+		MetricsController metricsController = new MetricsController(requestMetrics, Database.getInstance(), movieDao,
+				personDao, responseCache);
 
 		// Uncomment the following lines as you progress through the assessment.
 		// PersonController personController = new PersonController();
@@ -53,17 +242,56 @@ public class AppConfig {
 		 * pattern matched in the order they are defined.
 		 * Only uncomment the routes for the functionality you have implemented.
 		 */
-		app.get("/movies/ratings/{year}", movieController::getRatingsByYear);
-		app.get("/movies", movieController::getAllMovies);
-		app.get("/movies/{id}", movieController::getMovieById);
-		app.get("/movies/{id}/stars", movieController::getPeopleByMovieId);
+		app.get("/movies/ratings/{year}", cached(conditionalGet, responseCache, movieController::getRatingsByYear));
+		app.get("/movies", cached(conditionalGet, responseCache, movieController::getAllMovies));
+		app.get("/movies/search", cached(conditionalGet, responseCache, movieController::searchMovies));
+		app.get("/movies/{id}", cached(conditionalGet, responseCache, movieController::getMovieById));
+		app.get("/movies/{id}/stars", cached(conditionalGet, responseCache, movieController::getPeopleByMovieId));
+		app.get("/movies/{id}/full", cached(conditionalGet, responseCache, movieController::getMovieDetail));
+
+		 app.get("/people", cached(conditionalGet, responseCache, personController::getAllPeople));
+		 app.get("/people/search", cached(conditionalGet, responseCache, personController::searchPeople));
+		 app.get("/people/{id}", cached(conditionalGet, responseCache, personController::getPersonById));
+		 app.get("/people/{id}/movies", cached(conditionalGet, responseCache, personController::getMoviesStarringPerson));
+		 app.get("/people/{id}/path/{other}", cached(conditionalGet, responseCache, personController::getPath));
+		 app.get("/people/{id}/costars", cached(conditionalGet, responseCache, personController::getCostars));
+
+		app.get("/autocomplete", cached(conditionalGet, responseCache, autocompleteController::getSuggestions));
+
+		app.get("/export/movies.ndjson", exportController::exportMovies);
+		app.get("/export/people.ndjson", exportController::exportPeople);
+		app.get("/export/stars.ndjson", exportController::exportStars);
+
+		app.get("/metrics", metricsController::getMetrics);
 
-		 app.get("/people", personController::getAllPeople);
-		 app.get("/people/{id}", personController::getPersonById);
-		 app.get("/people/{id}/movies", personController::getMoviesStarringPerson);
+		app.before(requestMetrics::before);
 
+		// The handlers answer from futures, so what they sent is only known
+		// once Javalin gets to the after handlers.
+		app.after(conditionalGet::afterError);
+		if (responseCache != null) {
+			app.after(responseCache::store);
+		}
+		app.after(requestMetrics::after);
+
+		// The server only starts listening once the indexes are built and every
+		// route is registered, so it never answers 404 while it warms up.
+		app.start(port);
 		return app;
 
 	}
 
+	/**
+	 * Wraps a handler with the ETag check and the response cache, if there is
+	 * one.
+	 *
+	 * @param conditionalGet the ETag support
+	 * @param responseCache  the response cache, or null
+	 * @param handler        the handler of the route
+	 * @return the handler to register
+	 */
+	private static Handler cached(ConditionalGet conditionalGet, ResponseCache responseCache, Handler handler) {
+		return conditionalGet.conditional(responseCache == null ? handler : responseCache.cached(handler));
+	}
+
 }
\ No newline at end of file
@@ -1,6 +1,12 @@
 package com.flickfinder;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
 import com.flickfinder.util.Database;
+import com.flickfinder.util.IndexDatabase;
+import com.flickfinder.util.SearchDatabase;
 
 /**
  * Entry point of the application.
@@ -13,6 +19,16 @@ public class Main {
      */
     static int port = 8000;
 
+    /**
+     * Where the indexed copy of the database is kept by default.
+     */
+    static final String DEFAULT_INDEX_DB_PATH = "src/main/resources/movies-index.db";
+
+    /**
+     * Where the full-text search database is kept by default.
+     */
+    static final String DEFAULT_SEARCH_DB_PATH = "src/main/resources/movies-search.db";
+
     /**
      * Set up a Javalin server and the database.
      * 
@@ -28,7 +44,36 @@ public class Main {
          * In this case, we are using a connection string to connect to the database.
          * For testing, we are using an in-memory database.
          */
-        Database.getInstance("jdbc:sqlite:" + dbPath);
+        String url = "jdbc:sqlite:" + dbPath;
+
+        // The queries go to an indexed copy of movies.db, built next to it on
+        // the first run and whenever movies.db changes. Set
+        // -Dflickfinder.indexDb to move it, or to false to query movies.db.
+        String indexDbPath = System.getProperty("flickfinder.indexDb", DEFAULT_INDEX_DB_PATH);
+        if (!indexDbPath.isEmpty() && !"false".equalsIgnoreCase(indexDbPath)) {
+            try {
+                url = IndexDatabase.prepare(new File(dbPath), new File(indexDbPath));
+            } catch (SQLException | IOException e) {
+                System.out.println("Could not build the index database, querying movies.db directly");
+                e.printStackTrace();
+            }
+        }
+        Database.getInstance(url);
+
+        // Full-text search runs against an FTS5 sidecar attached to every
+        // connection. It is rebuilt only when the checksum of movies.db
+        // changes. Set -Dflickfinder.searchDb to move it, or to false to go
+        // without search.
+        String searchDbPath = System.getProperty("flickfinder.searchDb", DEFAULT_SEARCH_DB_PATH);
+        if (!searchDbPath.isEmpty() && !"false".equalsIgnoreCase(searchDbPath)) {
+            try {
+                SearchDatabase.prepare(new File(dbPath), new File(searchDbPath));
+                Database.getInstance().attachSearch(new File(searchDbPath));
+            } catch (SQLException | IOException e) {
+                System.out.println("Could not build the search database, search is unavailable");
+                e.printStackTrace();
+            }
+        }
         // start the server
         AppConfig.startServer(port);
     }
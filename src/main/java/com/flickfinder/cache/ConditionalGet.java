@@ -0,0 +1,162 @@
+package com.flickfinder.cache;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * Adds ETags and Cache-Control headers to the read routes, and answers
+ * matching If-None-Match requests with 304 Not Modified.
+ *
+ * The data only changes when a new database is deployed, so a response is
+ * fully determined by the dataset version and the request. The ETag is a hash
+ * of the two, worked out before the route runs; a client that already has it
+ * gets a 304 without the handler being called, so no DAO or Jackson work is
+ * done.
+ *
+ * Javalin gzips larger bodies for clients that accept it, so the responses
+ * vary on Accept-Encoding, and the ETag of a client that accepts gzip is
+ * kept apart from the ETag of one that does not.
+ *
+ * Error responses must not carry the headers, so {@link #afterError(Context)}
+ * takes them back off. It is registered as an after handler, so that it also
+ * sees the status of handlers that answer from a future.
+ */
+public class ConditionalGet {
+
+	/**
+	 * The version of the data the responses come from.
+	 */
+	private final String version;
+
+	/**
+	 * The value of the Cache-Control header.
+	 */
+	private final String cacheControl;
+
+	/**
+	 * The request attribute set when the headers were added and the handler
+	 * was run.
+	 */
+	private static final String HANDLED_ATTRIBUTE = "flickfinder.conditionalGet.handled";
+
+	/**
+	 * Constructs the conditional GET support for a dataset.
+	 *
+	 * @param version       the version of the data
+	 * @param maxAgeSeconds how long clients may reuse a response without
+	 *                      asking again
+	 */
+	public ConditionalGet(String version, long maxAgeSeconds) {
+		this.version = version;
+		this.cacheControl = "public, max-age=" + Math.max(0, maxAgeSeconds);
+	}
+
+	/**
+	 * Wraps a handler so its responses carry an ETag, and requests that
+	 * already have it are answered with a 304.
+	 *
+	 * @param handler the handler of the route
+	 * @return the wrapped handler
+	 */
+	public Handler conditional(Handler handler) {
+		return ctx -> {
+			String etag = etag(ResponseCache.key(ctx), ResponseCache.acceptsGzip(ctx));
+			ctx.header("ETag", etag);
+			ctx.header("Cache-Control", cacheControl);
+			ctx.header("Vary", "Accept-Encoding");
+			if (matches(ctx.header("If-None-Match"), etag)) {
+				ctx.status(304);
+				return;
+			}
+
+			// the headers go on before the handler runs, as a handler may answer
+			// from a future; errors are taken back off by afterError
+			ctx.attribute(HANDLED_ATTRIBUTE, true);
+			handler.handle(ctx);
+		};
+	}
+
+	/**
+	 * Takes the ETag and Cache-Control headers back off a response that is
+	 * not a 200, so the error is not cached. Register this as an after
+	 * handler.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void afterError(Context ctx) {
+		if (ctx.attribute(HANDLED_ATTRIBUTE) == null || ctx.statusCode() == 200 || ctx.res().isCommitted()) {
+			return;
+		}
+		ctx.res().setHeader("ETag", null);
+		ctx.res().setHeader("Cache-Control", null);
+	}
+
+	/**
+	 * Works out the strong ETag of a request from a client that does not
+	 * accept gzip.
+	 *
+	 * @param key the request key
+	 * @return the quoted ETag
+	 */
+	String etag(String key) {
+		return etag(key, false);
+	}
+
+	/**
+	 * Works out the strong ETag of a request, a 64 bit FNV-1a hash of the
+	 * dataset version and the request key, marked when the client accepts
+	 * gzip as it may be sent different bytes.
+	 *
+	 * @param key  the request key
+	 * @param gzip whether the client accepts gzip
+	 * @return the quoted ETag
+	 */
+	String etag(String key, boolean gzip) {
+		long hash = 0xcbf29ce484222325L;
+		hash = fnv(hash, version);
+		hash = (hash ^ '\n') * 0x100000001b3L;
+		hash = fnv(hash, key);
+		return "\"" + Long.toHexString(hash) + (gzip ? "-gzip" : "") + "\"";
+	}
+
+	private static long fnv(long hash, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns whether an If-None-Match header matches an ETag. The header may
+	 * list several tags, weak ones included, or be a *.
+	 *
+	 * @param header the If-None-Match header, or null
+	 * @param etag   the ETag of the response
+	 * @return true if the client already has the response
+	 */
+	static boolean matches(String header, String etag) {
+		if (header == null) {
+			return false;
+		}
+		for (String tag : header.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals(etag) || tag.equals("*")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the Cache-Control header sent with each response.
+	 *
+	 * @return the header value
+	 */
+	public String getCacheControl() {
+		return cacheControl;
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.flickfinder.cache;
+
+/**
+ * A count-min sketch of how often each key has been seen recently, used by
+ * {@link TinyLfuCache} to decide whether a new key is worth admitting.
+ *
+ * Counters are four bits wide, sixteen to a long, and each key is counted in
+ * four of them; its frequency is the smallest of the four, which can only
+ * over-count. Once the number of increments reaches ten times the width of
+ * the table, every counter is halved so that old popularity fades.
+ */
+public class FrequencySketch {
+
+	/**
+	 * The seeds of the four hash functions.
+	 */
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+			0xcbf29ce484222325L };
+
+	/**
+	 * Clears the top bit of every counter after a shift, for halving.
+	 */
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private final long[] table;
+	private final int sampleSize;
+	private int additions;
+
+	/**
+	 * Constructs a sketch sized for a cache of the given capacity.
+	 *
+	 * @param capacity the maximum number of entries in the cache
+	 */
+	public FrequencySketch(int capacity) {
+		int width = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		table = new long[width];
+		sampleSize = 10 * width;
+	}
+
+	/**
+	 * Returns the estimated number of times a key has been seen, up to 15.
+	 *
+	 * @param key the key
+	 * @return the estimate
+	 */
+	public int frequency(int key) {
+		int frequency = 15;
+		for (int i = 0; i < SEEDS.length; i++) {
+			long hash = hash(key, i);
+			int counter = (int) ((table[index(hash)] >>> shift(hash)) & 0xf);
+			frequency = Math.min(frequency, counter);
+		}
+		return frequency;
+	}
+
+	/**
+	 * Records that a key has been seen.
+	 *
+	 * @param key the key
+	 */
+	public void increment(int key) {
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			long hash = hash(key, i);
+			int index = index(hash);
+			int shift = shift(hash);
+			if (((table[index] >>> shift) & 0xf) < 15) {
+				table[index] += 1L << shift;
+				added = true;
+			}
+		}
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * Halves every counter.
+	 */
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		additions /= 2;
+	}
+
+	private static long hash(int key, int i) {
+		long hash = (key + SEEDS[i]) * SEEDS[i];
+		return hash ^ (hash >>> 32);
+	}
+
+	private int index(long hash) {
+		return (int) (hash >>> 4) & (table.length - 1);
+	}
+
+	private static int shift(long hash) {
+		return (int) (hash & 0xf) << 2;
+	}
+
+}
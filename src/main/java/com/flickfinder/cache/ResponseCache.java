@@ -0,0 +1,317 @@
+package com.flickfinder.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+/**
+ * A cache of finished JSON responses, held as the bytes that were sent.
+ *
+ * A route wrapped with {@link #cached(Handler)} runs as normal the first
+ * time. If it answers 200, the body is kept under the request path plus its
+ * query parameters in sorted order. Later requests for the same key get those
+ * bytes back with {@code ctx.result(byte[])}, without calling the handler, so
+ * neither the DAO nor Jackson runs. A gzip copy of larger bodies is made the
+ * first time a client asks for one, and sent as is from then on.
+ *
+ * The handlers answer from a future, so their body is only there once the
+ * future completes. It is taken by {@link #store(Context)}, which has to be
+ * registered as an after handler, as Javalin runs those once the future is
+ * done.
+ *
+ * The cache is bounded by the total size of its bodies. When it goes over,
+ * the least recently used responses are dropped first.
+ */
+public class ResponseCache {
+
+	/**
+	 * Bodies smaller than this are never gzipped; the same threshold Javalin
+	 * uses for its own compression.
+	 */
+	private static final int MIN_GZIP_BYTES = 1500;
+
+	/**
+	 * The request attribute holding the key of a response still to be stored.
+	 */
+	private static final String KEY_ATTRIBUTE = "flickfinder.responseCache.key";
+
+	/**
+	 * A cached response.
+	 */
+	private static class Entry {
+
+		final String key;
+		final byte[] body;
+		final String contentType;
+		volatile byte[] gzip;
+
+		Entry(String key, byte[] body, String contentType) {
+			this.key = key;
+			this.body = body;
+			this.contentType = contentType;
+		}
+
+		long size() {
+			byte[] zipped = gzip;
+			return body.length + (zipped == null ? 0 : zipped.length);
+		}
+	}
+
+	private final long maxBytes;
+
+	// kept in access order, least recently used first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructs a cache that holds up to the given number of bytes of
+	 * responses.
+	 *
+	 * @param maxBytes the budget in bytes
+	 */
+	public ResponseCache(long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be at least 1");
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Wraps a handler so its responses are answered from the cache.
+	 *
+	 * @param handler the handler of the route
+	 * @return the caching handler
+	 */
+	public Handler cached(Handler handler) {
+		return ctx -> {
+			String key = key(ctx);
+			Entry entry = get(key);
+			if (entry != null) {
+				hits.increment();
+				write(ctx, entry);
+				return;
+			}
+
+			misses.increment();
+			ctx.attribute(KEY_ATTRIBUTE, key);
+			handler.handle(ctx);
+		};
+	}
+
+	/**
+	 * Keeps the response of a request that missed the cache, if it is a 200.
+	 * Register this as an after handler.
+	 *
+	 * @param ctx the Javalin context
+	 * @throws IOException if the body cannot be read
+	 */
+	public void store(Context ctx) throws IOException {
+		String key = ctx.attribute(KEY_ATTRIBUTE);
+		if (key == null || ctx.statusCode() != 200) {
+			return;
+		}
+		InputStream result = ctx.resultInputStream();
+		if (result == null) {
+			return;
+		}
+		byte[] body = result.readAllBytes();
+		ctx.result(body);
+		put(new Entry(key, body, ctx.res().getContentType()));
+	}
+
+	/**
+	 * Builds the key of a request: its path, then its query parameters sorted
+	 * by name. The names and values are decoded by then, so they are URL
+	 * encoded again; otherwise a value holding the separators could give the
+	 * same key, and so the same ETag, as a different set of parameters.
+	 *
+	 * @param ctx the Javalin context
+	 * @return the key
+	 */
+	static String key(Context ctx) {
+		StringBuilder key = new StringBuilder(ctx.path());
+		char separator = '?';
+		for (Map.Entry<String, List<String>> param : new TreeMap<>(ctx.queryParamMap()).entrySet()) {
+			for (String value : param.getValue()) {
+				key.append(separator).append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8)).append('=')
+						.append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+				separator = '&';
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns whether the client of a request accepts gzip, in which case
+	 * bodies big enough to be worth it are sent gzipped.
+	 *
+	 * @param ctx the Javalin context
+	 * @return true if the client accepts gzip
+	 */
+	static boolean acceptsGzip(Context ctx) {
+		String accept = ctx.header("Accept-Encoding");
+		return accept != null && accept.contains("gzip");
+	}
+
+	/**
+	 * Writes a cached response, gzipped if the client accepts it and the body
+	 * is big enough to be worth it. Either way the response varies on
+	 * Accept-Encoding, so shared caches keep the two apart.
+	 */
+	private void write(Context ctx, Entry entry) {
+		if (entry.contentType != null) {
+			ctx.contentType(entry.contentType);
+		}
+		ctx.header("Vary", "Accept-Encoding");
+		if (entry.body.length >= MIN_GZIP_BYTES && acceptsGzip(ctx)) {
+			byte[] zipped = entry.gzip;
+			if (zipped == null) {
+				zipped = gzip(entry.body);
+				synchronized (this) {
+					if (entry.gzip == null && entries.get(entry.key) == entry) {
+						entry.gzip = zipped;
+						bytes += zipped.length;
+						evict();
+					}
+				}
+			}
+			ctx.header("Content-Encoding", "gzip");
+			ctx.result(zipped);
+			return;
+		}
+		ctx.result(entry.body);
+	}
+
+	private synchronized Entry get(String key) {
+		return entries.get(key);
+	}
+
+	private synchronized void put(Entry entry) {
+		if (entry.size() > maxBytes) {
+			return;
+		}
+		Entry previous = entries.put(entry.key, entry);
+		if (previous != null) {
+			bytes -= previous.size();
+		}
+		bytes += entry.size();
+		evict();
+	}
+
+	/**
+	 * Drops the least recently used responses until the cache is within its
+	 * budget. Only called while holding the lock.
+	 */
+	private void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			bytes -= iterator.next().size();
+			iterator.remove();
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * Compresses a body with gzip.
+	 */
+	private static byte[] gzip(byte[] body) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(body);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Removes every response from the cache. The counters are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Returns the number of responses in the cache.
+	 *
+	 * @return the entry count
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the total size of the cached responses.
+	 *
+	 * @return the size in bytes
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the budget of the cache.
+	 *
+	 * @return the maximum size in bytes
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the number of requests answered from the cache.
+	 *
+	 * @return the hit count
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of requests that ran the handler.
+	 *
+	 * @return the miss count
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of responses dropped to stay within the budget.
+	 *
+	 * @return the eviction count
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns a one line summary of the cache, for the log.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		return "ResponseCache [entries=" + size() + ", bytes=" + getBytes() + ", maxBytes=" + maxBytes + ", hits="
+				+ getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+}
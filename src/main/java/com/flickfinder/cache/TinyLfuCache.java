@@ -0,0 +1,328 @@
+package com.flickfinder.cache;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A size-bounded cache of values by id, using the W-TinyLFU policy.
+ *
+ * New entries go into a small LRU window. When the window is full its oldest
+ * entry becomes a candidate for the main space, which is a segmented LRU: a
+ * probation segment for entries seen once there, and a protected segment for
+ * entries that have been hit again. If the main space is full, the candidate
+ * only gets in if the {@link FrequencySketch} says it is used more often
+ * than the oldest entry on probation, which is evicted in its place. This
+ * keeps a burst of one-off ids from flushing out the popular ones.
+ *
+ * Ids with no value are cached too, so repeated lookups of a missing id do
+ * not reach the database either.
+ *
+ * Lookups take no lock, in the way Caffeine does it: the entries are found in
+ * a ConcurrentHashMap, and each hit is only recorded in a small ring buffer.
+ * The segments and the sketch are kept behind one lock, by whichever thread
+ * drains the buffer; a hit drains it only when it is half full, and only if
+ * the lock is free, while a miss drains it before admitting its entry. When
+ * the buffer is full, hits are not recorded, which only makes the policy a
+ * little less exact. Until a new entry is admitted, the cache can hold a few
+ * more ids than its maximum.
+ *
+ * @param <V> the type of the cached values
+ */
+public class TinyLfuCache<V> {
+
+	/**
+	 * Loads the value of an id that is not in the cache.
+	 *
+	 * @param <V> the type of the value
+	 */
+	@FunctionalInterface
+	public interface Loader<V> {
+
+		/**
+		 * Loads a value.
+		 *
+		 * @param id the id to load
+		 * @return the value, or null if there is none
+		 * @throws SQLException if a database error occurs
+		 */
+		V load(int id) throws SQLException;
+	}
+
+	/**
+	 * An id and its value.
+	 */
+	private static final class Node {
+		final int id;
+		final Object value;
+
+		Node(int id, Object value) {
+			this.id = id;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Stands in for the value of an id that has none.
+	 */
+	private static final Object ABSENT = new Object();
+
+	/**
+	 * The number of hits the buffer holds; a power of two.
+	 */
+	private static final int READ_BUFFER_SIZE = 128;
+
+	private final int maximumSize;
+	private final int windowSize;
+	private final int protectedSize;
+
+	// the entries, for lookups
+	private final ConcurrentHashMap<Integer, Node> data = new ConcurrentHashMap<>();
+
+	// the hits not yet applied to the policy; written at the tail, drained
+	// from the head under the lock
+	private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+	private final AtomicLong readTail = new AtomicLong();
+	private volatile long readHead;
+
+	// guards the segments and the sketch
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	// each segment is kept in access order, oldest first
+	private final LinkedHashMap<Integer, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<Integer, Node> probation = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<Integer, Node> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final FrequencySketch sketch;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructs a cache that holds up to the given number of ids.
+	 *
+	 * @param maximumSize the maximum number of ids to hold
+	 */
+	public TinyLfuCache(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximumSize must be at least 1");
+		}
+		this.maximumSize = maximumSize;
+		this.windowSize = Math.max(1, maximumSize / 100);
+		this.protectedSize = (maximumSize - windowSize) * 4 / 5;
+		this.sketch = new FrequencySketch(maximumSize);
+	}
+
+	/**
+	 * Returns the value of an id, loading it on a miss. The loader is called
+	 * at most once per call, and not at all on a hit.
+	 *
+	 * @param id     the id to look up
+	 * @param loader loads the value on a miss
+	 * @return the value, or null if the id has none
+	 * @throws SQLException if the loader fails; nothing is cached
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int id, Loader<V> loader) throws SQLException {
+		Node node = data.get(id);
+		if (node != null) {
+			hits.increment();
+			afterRead(node);
+			return node.value == ABSENT ? null : (V) node.value;
+		}
+
+		misses.increment();
+		V loaded = loader.load(id);
+		Node added = new Node(id, loaded == null ? ABSENT : loaded);
+		if (data.putIfAbsent(id, added) == null) {
+			evictionLock.lock();
+			try {
+				drainReads();
+				sketch.increment(id);
+				admit(added);
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Records a hit in the buffer, draining it if it is filling up and no
+	 * other thread is.
+	 */
+	private void afterRead(Node node) {
+		long tail = readTail.get();
+		long pending = tail - readHead;
+		if (pending < READ_BUFFER_SIZE && readTail.compareAndSet(tail, tail + 1)) {
+			readBuffer.lazySet((int) (tail & (READ_BUFFER_SIZE - 1)), node);
+			pending++;
+		}
+		if (pending >= READ_BUFFER_SIZE / 2 && evictionLock.tryLock()) {
+			try {
+				drainReads();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Applies the buffered hits to the policy, oldest first. Called with the
+	 * lock held. A slot whose hit is still being written ends the drain; it is
+	 * picked up by the next one.
+	 */
+	private void drainReads() {
+		long head = readHead;
+		long tail = readTail.get();
+		for (; head < tail; head++) {
+			int index = (int) (head & (READ_BUFFER_SIZE - 1));
+			Node node = readBuffer.get(index);
+			if (node == null) {
+				break;
+			}
+			readBuffer.lazySet(index, null);
+			onRead(node);
+		}
+		readHead = head;
+	}
+
+	/**
+	 * Records a hit on an entry in the policy.
+	 */
+	private void onRead(Node node) {
+		sketch.increment(node.id);
+		if (window.get(node.id) != null || protectedSegment.get(node.id) != null) {
+			return;
+		}
+		Node value = probation.remove(node.id);
+		if (value != null) {
+			// a second hit promotes the entry, demoting the oldest protected one
+			protectedSegment.put(node.id, value);
+			if (protectedSegment.size() > protectedSize) {
+				Node demoted = removeOldest(protectedSegment);
+				probation.put(demoted.id, demoted);
+			}
+		}
+	}
+
+	/**
+	 * Adds a newly loaded entry to the window, moving the window's oldest
+	 * entry to the main space if it will be admitted. Called with the lock
+	 * held.
+	 */
+	private void admit(Node node) {
+		if (data.get(node.id) != node) {
+			// cleared since it was added
+			return;
+		}
+		window.put(node.id, node);
+		if (window.size() <= windowSize) {
+			return;
+		}
+		Node candidate = removeOldest(window);
+		if (probation.size() + protectedSegment.size() < maximumSize - windowSize) {
+			probation.put(candidate.id, candidate);
+			return;
+		}
+
+		Node victim = probation.isEmpty() ? null : probation.values().iterator().next();
+		if (victim != null && sketch.frequency(candidate.id) > sketch.frequency(victim.id)) {
+			probation.remove(victim.id);
+			data.remove(victim.id, victim);
+			probation.put(candidate.id, candidate);
+		} else {
+			data.remove(candidate.id, candidate);
+		}
+		evictions.increment();
+	}
+
+	/**
+	 * Removes and returns the oldest entry of a segment.
+	 */
+	private static Node removeOldest(LinkedHashMap<Integer, Node> segment) {
+		Iterator<Node> iterator = segment.values().iterator();
+		Node oldest = iterator.next();
+		iterator.remove();
+		return oldest;
+	}
+
+	/**
+	 * Removes every id from the cache. The counters are kept.
+	 */
+	public void clear() {
+		evictionLock.lock();
+		try {
+			drainReads();
+			data.clear();
+			window.clear();
+			probation.clear();
+			protectedSegment.clear();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of ids in the cache.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return data.size();
+	}
+
+	/**
+	 * Returns the maximum number of ids the cache holds.
+	 *
+	 * @return the maximum size
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Returns the number of lookups answered from the cache.
+	 *
+	 * @return the hit count
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that had to be loaded.
+	 *
+	 * @return the miss count
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of entries evicted or refused admission.
+	 *
+	 * @return the eviction count
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns a one line summary of the cache, for the log.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		return "TinyLfuCache [size=" + size() + ", maximumSize=" + maximumSize + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+}
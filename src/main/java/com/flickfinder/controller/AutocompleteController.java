@@ -0,0 +1,85 @@
+package com.flickfinder.controller;
+
+import com.flickfinder.index.PrefixIndex;
+
+import io.javalin.http.Context;
+
+/**
+ * The controller for the autocomplete endpoint.
+ *
+ * Suggestions come from prefix indexes built at startup, so a request never
+ * reaches the database and is answered on the request thread.
+ */
+public class AutocompleteController {
+
+	/**
+	 * The longest prefix that is accepted.
+	 */
+	private static final int MAX_PREFIX_LENGTH = 200;
+
+	/**
+	 * The prefix index of movie titles, or null if it could not be built.
+	 */
+	private final PrefixIndex movies;
+
+	/**
+	 * The prefix index of people names, or null if it could not be built.
+	 */
+	private final PrefixIndex people;
+
+	/**
+	 * Constructs an AutocompleteController object with its indexes.
+	 *
+	 * @param movies the prefix index of movie titles, or null
+	 * @param people the prefix index of people names, or null
+	 */
+	public AutocompleteController(PrefixIndex movies, PrefixIndex people) {
+		this.movies = movies;
+		this.people = people;
+	}
+
+	/**
+	 * Returns the most popular movies, or people with type=person, whose
+	 * title or name starts with the prefix, ignoring case and accents. Up to
+	 * 10 are returned, or fewer if a smaller limit is given. An empty list is
+	 * returned if nothing matches, since a type-ahead asks for prefixes that
+	 * match nothing all the time.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void getSuggestions(Context ctx) {
+		String prefix = ctx.queryParam("prefix");
+		if (prefix == null || prefix.isBlank() || prefix.length() > MAX_PREFIX_LENGTH) {
+			ctx.status(400);
+			ctx.result("Invalid prefix");
+			return;
+		}
+
+		String type = ctx.queryParam("type");
+		PrefixIndex index;
+		if (type == null || type.equals("movie")) {
+			index = movies;
+		} else if (type.equals("person")) {
+			index = people;
+		} else {
+			ctx.status(400);
+			ctx.result("Invalid type");
+			return;
+		}
+
+		int limit = PrefixIndex.DEFAULT_TOP_N;
+		String requested = ctx.queryParam("limit");
+		if (requested != null && requested.matches("[0-9]+") && requested.length() < 10
+				&& Integer.parseInt(requested) > 0) {
+			limit = Math.min(Integer.parseInt(requested), PrefixIndex.DEFAULT_TOP_N);
+		}
+
+		if (index == null) {
+			ctx.status(503);
+			ctx.result("Autocomplete unavailable");
+			return;
+		}
+		ctx.json(index.complete(prefix, limit));
+	}
+
+}
@@ -0,0 +1,222 @@
+package com.flickfinder.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+
+import org.eclipse.jetty.server.Request;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.dao.RowHandler;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
+import com.flickfinder.model.Star;
+
+import io.javalin.http.Context;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * The controller for the export endpoints.
+ *
+ * Each endpoint dumps a whole table as newline-delimited JSON, one row per
+ * line. Rows are written to the response as they are read from the database,
+ * so the response is sent with chunked transfer encoding and the heap use stays
+ * the same however big the table is.
+ *
+ * An export holds a pooled connection for as long as it streams, so only a few
+ * may run at once; the rest are answered with a 503 rather than left to take
+ * the connections the other routes need. An export that fails part way has
+ * its connection reset rather than its body ended cleanly, so a client or a
+ * cache never takes the partial file for the whole one. The exports are not
+ * cached at all, as they are too big to be worth it.
+ */
+public class ExportController {
+
+	/**
+	 * The content type of newline-delimited JSON.
+	 */
+	private static final String NDJSON = "application/x-ndjson";
+
+	/**
+	 * The object mapper used to write each row.
+	 */
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+			.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+			.configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false);
+
+	/**
+	 * The Cache-Control header of the exports.
+	 */
+	private static final String NO_STORE = "no-store";
+
+	/**
+	 * The default number of exports that may run at once.
+	 */
+	public static final int DEFAULT_MAX_EXPORTS = 1;
+
+	/**
+	 * The permits of the exports that may run at once.
+	 */
+	private final Semaphore exports;
+
+	/**
+	 * The movie data access object.
+	 */
+	private final MovieDAO movieDAO;
+
+	/**
+	 * The people data access object.
+	 */
+	private final PersonDAO personDAO;
+
+	/**
+	 * Constructs an ExportController object and initializes the DAOs, allowing
+	 * the default number of exports at once.
+	 *
+	 * @param movieDAO  the movie data access object
+	 * @param personDAO the people data access object
+	 */
+	public ExportController(MovieDAO movieDAO, PersonDAO personDAO) {
+		this(movieDAO, personDAO, DEFAULT_MAX_EXPORTS);
+	}
+
+	/**
+	 * Constructs an ExportController object and initializes the DAOs.
+	 *
+	 * @param movieDAO   the movie data access object
+	 * @param personDAO  the people data access object
+	 * @param maxExports the number of exports that may run at once
+	 */
+	public ExportController(MovieDAO movieDAO, PersonDAO personDAO, int maxExports) {
+		if (maxExports < 1) {
+			throw new IllegalArgumentException("At least one export must be allowed");
+		}
+		this.movieDAO = movieDAO;
+		this.personDAO = personDAO;
+		this.exports = new Semaphore(maxExports);
+	}
+
+	/**
+	 * Streams every movie as newline-delimited JSON.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void exportMovies(Context ctx) {
+		export(ctx, Movie.class, movieDAO::exportMovies);
+	}
+
+	/**
+	 * Streams every person as newline-delimited JSON.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void exportPeople(Context ctx) {
+		export(ctx, Person.class, personDAO::exportPeople);
+	}
+
+	/**
+	 * Streams every row of the stars table as newline-delimited JSON.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void exportStars(Context ctx) {
+		export(ctx, Star.class, movieDAO::exportStars);
+	}
+
+	/**
+	 * Writes each row the exporter produces to the response, one per line, or
+	 * answers with a 503 if too many exports are already running.
+	 *
+	 * @param <T>      the type of the rows
+	 * @param ctx      the Javalin context
+	 * @param type     the class of the rows
+	 * @param exporter reads the rows from the database
+	 */
+	private <T> void export(Context ctx, Class<T> type, Exporter<T> exporter) {
+		if (!exports.tryAcquire()) {
+			ctx.status(503);
+			ctx.result("Server busy");
+			return;
+		}
+		try {
+			stream(ctx, type, exporter);
+		} finally {
+			exports.release();
+		}
+	}
+
+	/**
+	 * Writes each row the exporter produces to the response. If reading fails
+	 * before any row is written the export is answered with a 500; after that
+	 * the status has been sent, so the connection is aborted instead.
+	 *
+	 * @param <T>      the type of the rows
+	 * @param ctx      the Javalin context
+	 * @param type     the class of the rows
+	 * @param exporter reads the rows from the database
+	 */
+	private <T> void stream(Context ctx, Class<T> type, Exporter<T> exporter) {
+		ctx.contentType(NDJSON);
+		ctx.header("Cache-Control", NO_STORE);
+		ObjectWriter writer = MAPPER.writerFor(type);
+		OutputStream out = ctx.outputStream();
+		boolean[] started = new boolean[1];
+
+		try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+			// each row goes on its own line rather than being space separated
+			generator.setRootValueSeparator(null);
+			exporter.export(row -> {
+				started[0] = true;
+				writer.writeValue(generator, row);
+				generator.writeRaw('\n');
+			});
+		} catch (SQLException e) {
+			e.printStackTrace();
+			if (started[0]) {
+				abort(ctx, e);
+			} else {
+				// nothing has reached the response yet, so the error can still be sent
+				ctx.status(500);
+				ctx.result("Database error");
+			}
+		} catch (IOException e) {
+			// most likely the client went away part way through the export
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Aborts the connection of a response that has already been started, so
+	 * the client sees a failed transfer instead of a complete file. Javalin
+	 * turns exceptions from a handler into an error body, which would only be
+	 * appended to the rows, so Jetty is asked to abort the request directly.
+	 *
+	 * @param ctx   the Javalin context
+	 * @param cause the error that stopped the export
+	 */
+	private static void abort(Context ctx, Throwable cause) {
+		HttpServletRequest req = ctx.req();
+		Request request = req == null ? null : Request.getBaseRequest(req);
+		if (request != null) {
+			request.getHttpChannel().abort(cause);
+		}
+	}
+
+	/**
+	 * Reads every row of a table and passes it to a handler.
+	 *
+	 * @param <T> the type of the rows
+	 */
+	@FunctionalInterface
+	private interface Exporter<T> {
+		void export(RowHandler<T> handler) throws SQLException, IOException;
+	}
+
+}
@@ -0,0 +1,216 @@
+package com.flickfinder.controller;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.function.ToLongFunction;
+
+import com.flickfinder.cache.ResponseCache;
+import com.flickfinder.cache.TinyLfuCache;
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.util.ConnectionPool;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.PrometheusWriter;
+import com.flickfinder.util.QueryExecutor;
+import com.flickfinder.util.QueryStats;
+import com.flickfinder.util.RequestMetrics;
+
+import io.javalin.http.Context;
+
+/**
+ * The controller for the /metrics endpoint.
+ *
+ * It answers with the counters the app keeps, in the Prometheus text format:
+ * requests by route and status code with their latencies, the connection
+ * pool, the timings of each DAO query, the caches, and the heap, garbage
+ * collectors and threads of the JVM. Everything is read when the endpoint is
+ * scraped; nothing here runs while requests are served.
+ */
+public class MetricsController {
+
+	/**
+	 * The request counters.
+	 */
+	private final RequestMetrics requests;
+
+	/**
+	 * The database, for its connection pool.
+	 */
+	private final Database database;
+
+	/**
+	 * The movie data access object, for its cache.
+	 */
+	private final MovieDAO movieDAO;
+
+	/**
+	 * The people data access object, for its cache.
+	 */
+	private final PersonDAO personDAO;
+
+	/**
+	 * The response cache, or null if it is turned off.
+	 */
+	private final ResponseCache responseCache;
+
+	/**
+	 * Constructs a MetricsController.
+	 *
+	 * @param requests      the request counters
+	 * @param database      the database
+	 * @param movieDAO      the movie data access object
+	 * @param personDAO     the people data access object
+	 * @param responseCache the response cache, or null
+	 */
+	public MetricsController(RequestMetrics requests, Database database, MovieDAO movieDAO, PersonDAO personDAO,
+			ResponseCache responseCache) {
+		this.requests = requests;
+		this.database = database;
+		this.movieDAO = movieDAO;
+		this.personDAO = personDAO;
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * Writes every metric.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void getMetrics(Context ctx) {
+		ctx.contentType(PrometheusWriter.CONTENT_TYPE).result(render());
+	}
+
+	/**
+	 * Renders every metric in the Prometheus text format.
+	 *
+	 * @return the metrics
+	 */
+	String render() {
+		PrometheusWriter out = new PrometheusWriter();
+		writeRequests(out);
+		writeDatabase(out);
+		writeQueries(out);
+		writeCaches(out);
+		writeJvm(out);
+		return out.toString();
+	}
+
+	private void writeRequests(PrometheusWriter out) {
+		out.family("flickfinder_http_requests_total", "counter", "Requests served, by route and status code.");
+		for (RequestMetrics.Route route : requests.getRoutes()) {
+			for (int status : route.getStatuses()) {
+				out.sample("flickfinder_http_requests_total", route.getStatusCount(status), "method", route.getMethod(),
+						"route", route.getPath(), "status", String.valueOf(status));
+			}
+		}
+		out.family("flickfinder_http_request_duration_seconds", "histogram", "Time taken to serve requests, by route.");
+		for (RequestMetrics.Route route : requests.getRoutes()) {
+			out.histogram("flickfinder_http_request_duration_seconds", route.getLatency(), "method", route.getMethod(),
+					"route", route.getPath());
+		}
+		out.family("flickfinder_http_requests_in_flight", "gauge", "Requests being served.")
+				.sample("flickfinder_http_requests_in_flight", requests.getInFlightCount());
+	}
+
+	private void writeDatabase(PrometheusWriter out) {
+		ConnectionPool pool = database.getPool();
+		out.family("flickfinder_db_pool_connections", "gauge", "Connections in the pool.")
+				.sample("flickfinder_db_pool_connections", pool.getSize());
+		out.family("flickfinder_db_pool_active_connections", "gauge", "Connections lent out.")
+				.sample("flickfinder_db_pool_active_connections", pool.getActiveCount());
+		out.family("flickfinder_db_pool_borrows_total", "counter", "Connections handed out.")
+				.sample("flickfinder_db_pool_borrows_total", pool.getBorrowCount());
+		out.family("flickfinder_db_pool_exhausted_total", "counter", "Borrows that found the pool empty and waited.")
+				.sample("flickfinder_db_pool_exhausted_total", pool.getExhaustionCount());
+		out.family("flickfinder_db_pool_wait_seconds_total", "counter", "Time spent waiting for a connection.")
+				.sample("flickfinder_db_pool_wait_seconds_total", pool.getTotalWaitNanos() / 1e9);
+		out.family("flickfinder_db_pool_wait_seconds_max", "gauge", "Longest wait for a connection.")
+				.sample("flickfinder_db_pool_wait_seconds_max", pool.getMaxWaitNanos() / 1e9);
+		out.family("flickfinder_db_queued_queries", "gauge", "Queries waiting for a database thread.")
+				.sample("flickfinder_db_queued_queries", QueryExecutor.getQueuedCount());
+	}
+
+	private void writeQueries(PrometheusWriter out) {
+		out.family("flickfinder_db_query_duration_seconds", "histogram", "Time taken by each DAO query.");
+		for (QueryStats stats : QueryStats.all()) {
+			out.histogram("flickfinder_db_query_duration_seconds", stats.getLatency(), "query", stats.getName());
+		}
+		out.family("flickfinder_db_query_rows_total", "counter", "Rows read by each DAO query.");
+		for (QueryStats stats : QueryStats.all()) {
+			out.sample("flickfinder_db_query_rows_total", stats.getRowCount(), "query", stats.getName());
+		}
+		out.family("flickfinder_db_query_bytes_total", "counter", "Approximate bytes of objects made by each DAO query.");
+		for (QueryStats stats : QueryStats.all()) {
+			out.sample("flickfinder_db_query_bytes_total", stats.getBytes(), "query", stats.getName());
+		}
+		out.family("flickfinder_db_query_slow_total", "counter", "Runs of each DAO query over the slow query threshold.");
+		for (QueryStats stats : QueryStats.all()) {
+			out.sample("flickfinder_db_query_slow_total", stats.getSlowCount(), "query", stats.getName());
+		}
+	}
+
+	private void writeCaches(PrometheusWriter out) {
+		out.family("flickfinder_cache_hits_total", "counter", "Lookups answered by an entity cache.");
+		writeCaches(out, "flickfinder_cache_hits_total", TinyLfuCache::getHitCount);
+		out.family("flickfinder_cache_misses_total", "counter", "Lookups an entity cache had to load.");
+		writeCaches(out, "flickfinder_cache_misses_total", TinyLfuCache::getMissCount);
+		out.family("flickfinder_cache_evictions_total", "counter", "Entries evicted from an entity cache.");
+		writeCaches(out, "flickfinder_cache_evictions_total", TinyLfuCache::getEvictionCount);
+		out.family("flickfinder_cache_entries", "gauge", "Entries in an entity cache.");
+		writeCaches(out, "flickfinder_cache_entries", TinyLfuCache::size);
+
+		if (responseCache != null) {
+			out.family("flickfinder_response_cache_hits_total", "counter", "Responses served from the response cache.")
+					.sample("flickfinder_response_cache_hits_total", responseCache.getHitCount());
+			out.family("flickfinder_response_cache_misses_total", "counter", "Responses the response cache did not have.")
+					.sample("flickfinder_response_cache_misses_total", responseCache.getMissCount());
+			out.family("flickfinder_response_cache_evictions_total", "counter", "Responses evicted from the response cache.")
+					.sample("flickfinder_response_cache_evictions_total", responseCache.getEvictionCount());
+			out.family("flickfinder_response_cache_bytes", "gauge", "Bytes held by the response cache.")
+					.sample("flickfinder_response_cache_bytes", responseCache.getBytes());
+		}
+	}
+
+	/**
+	 * Writes one sample per entity cache, leaving out the ones turned off.
+	 */
+	private void writeCaches(PrometheusWriter out, String name, ToLongFunction<TinyLfuCache<?>> value) {
+		if (movieDAO.getCache() != null) {
+			out.sample(name, value.applyAsLong(movieDAO.getCache()), "cache", "movies");
+		}
+		if (personDAO.getCache() != null) {
+			out.sample(name, value.applyAsLong(personDAO.getCache()), "cache", "people");
+		}
+	}
+
+	private void writeJvm(PrometheusWriter out) {
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+		out.family("jvm_memory_used_bytes", "gauge", "Memory in use, by area.")
+				.sample("jvm_memory_used_bytes", heap.getUsed(), "area", "heap")
+				.sample("jvm_memory_used_bytes", nonHeap.getUsed(), "area", "nonheap");
+		out.family("jvm_memory_committed_bytes", "gauge", "Memory committed, by area.")
+				.sample("jvm_memory_committed_bytes", heap.getCommitted(), "area", "heap")
+				.sample("jvm_memory_committed_bytes", nonHeap.getCommitted(), "area", "nonheap");
+		out.family("jvm_memory_max_bytes", "gauge", "Largest the heap can grow to.")
+				.sample("jvm_memory_max_bytes", heap.getMax(), "area", "heap");
+
+		out.family("jvm_gc_collections_total", "counter", "Garbage collections, by collector.");
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			out.sample("jvm_gc_collections_total", gc.getCollectionCount(), "gc", gc.getName());
+		}
+		out.family("jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collection, by collector.");
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			out.sample("jvm_gc_collection_seconds_total", gc.getCollectionTime() / 1e3, "gc", gc.getName());
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		out.family("jvm_threads", "gauge", "Live threads, by state.")
+				.sample("jvm_threads", threads.getThreadCount(), "state", "live")
+				.sample("jvm_threads", threads.getDaemonThreadCount(), "state", "daemon")
+				.sample("jvm_threads", threads.getPeakThreadCount(), "state", "peak");
+	}
+
+}
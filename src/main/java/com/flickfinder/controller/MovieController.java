@@ -1,12 +1,9 @@
 package com.flickfinder.controller;
 
-import java.sql.SQLException;
-import java.util.List;
-
 import com.flickfinder.dao.MovieDAO;
 import com.flickfinder.model.Movie;
-import com.flickfinder.model.MovieRating;
-import com.flickfinder.model.Person;
+import com.flickfinder.util.Cursor;
+import com.flickfinder.util.IdList;
 
 import io.javalin.http.Context;
 
@@ -29,6 +26,26 @@ import io.javalin.http.Context;
 
 public class MovieController {
 
+	/**
+	 * The default number of movies on a page.
+	 */
+	private static final int DEFAULT_PAGE_SIZE = 50;
+
+	/**
+	 * The largest number of movies a client can ask for on one page.
+	 */
+	private static final int MAX_PAGE_SIZE = 1000;
+
+	/**
+	 * The default number of search results.
+	 */
+	private static final int DEFAULT_SEARCH_SIZE = 20;
+
+	/**
+	 * The largest number of search results a client can ask for.
+	 */
+	private static final int MAX_SEARCH_SIZE = 100;
+
 	/**
 	 * The movie data access object.
 	 */
@@ -45,34 +62,124 @@ public class MovieController {
 	/**
 	 * Returns a list of all movies in the database.
 	 * Limited to 50, if no limit is specified, or, an invalid limit.
+	 * If an after cursor is given, a page of movies is returned along with the
+	 * cursor for the next page instead.
+	 * If a list of ids is given, the movies with those ids are returned instead,
+	 * in the same order.
 	 * 
 	 * @param ctx the Javalin context
 	 */
 	public void getAllMovies(Context ctx) {
-		try {
-			String limit = ctx.queryParam("limit");
-			
-			if (limit != null) {
-				if ((limit.matches("[0-9]+")) && (limit.length()<10)) {
-					ctx.json(movieDAO.getAllMoviesByLimit(Integer.parseInt(limit)));
-					return;
-				}  {
-					ctx.json(movieDAO.getAllMovies());
-					return;
-				}
-			}
-			 {
-				ctx.json(movieDAO.getAllMovies());
+		String limit = ctx.queryParam("limit");
+		String after = ctx.queryParam("after");
+		String ids = ctx.queryParam("ids");
+		
+		if (ids != null) {
+			getMoviesByIds(ctx, ids);
+			return;
+		}
+		
+		if (after != null) {
+			getMoviePage(ctx, after, limit);
+			return;
+		}
+		
+		if (limit != null) {
+			if ((limit.matches("[0-9]+")) && (limit.length()<10)) {
+				Responses.respond(ctx, () -> movieDAO.getAllMoviesByLimitAsync(Integer.parseInt(limit)), null);
+				return;
+			}  {
+				Responses.respond(ctx, movieDAO::getAllMoviesAsync, null);
 				return;
 			}
-			
-		} catch (SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
-			e.printStackTrace();
 		}
+		 {
+			Responses.respond(ctx, movieDAO::getAllMoviesAsync, null);
+			return;
+		}
+	}
+
+	/**
+	 * Returns the movies with the given ids, in the order they were asked for.
+	 * Up to 200 ids can be asked for at once.
+	 * 
+	 * @param ctx the Javalin context
+	 * @param ids the comma separated ids
+	 */
+	private void getMoviesByIds(Context ctx, String ids) {
+		int[] parsed;
+		try {
+			parsed = IdList.parse(ids);
+		} catch (IllegalArgumentException e) {
+			ctx.status(400);
+			ctx.result(e.getMessage());
+			return;
+		}
+		
+		Responses.respond(ctx, () -> movieDAO.getMoviesByIdsAsync(parsed), "Movie(s) not found");
+	}
+
+	/**
+	 * Returns the page of movies that follows the given cursor.
+	 * The page size is the limit, capped at 1000, or 50 if the limit is
+	 * missing or invalid.
+	 * 
+	 * @param ctx the Javalin context
+	 * @param after the cursor to continue after
+	 * @param limit the requested page size
+	 */
+	private void getMoviePage(Context ctx, String after, String limit) {
+		int afterId;
+		try {
+			afterId = Cursor.decode(after);
+		} catch (IllegalArgumentException e) {
+			ctx.status(400);
+			ctx.result("Invalid cursor");
+			return;
+		}
+		
+		int size = DEFAULT_PAGE_SIZE;
+		if (limit != null && limit.matches("[0-9]+") && limit.length() < 10 && Integer.parseInt(limit) > 0) {
+			size = Math.min(Integer.parseInt(limit), MAX_PAGE_SIZE);
+		}
+		
+		// fetch one extra row to find out whether there is another page
+		int pageSize = size;
+		Responses.respond(ctx, () -> movieDAO.getMoviesAfterAsync(afterId, pageSize + 1)
+				.thenApply(movies -> Cursor.page(movies, pageSize, Movie::getId)), null);
 	}
 
+	/**
+	 * Returns the movies whose title contains all of the words in q, best match
+	 * first. The last word may be unfinished. Up to 20 are returned, or up to
+	 * 100 if a limit is given.
+	 * 
+	 * @param ctx the Javalin context
+	 */
+	public void searchMovies(Context ctx) {
+		String q = ctx.queryParam("q");
+		if (q == null || q.isBlank() || q.length() > 200) {
+			ctx.status(400);
+			ctx.result("Invalid search");
+			return;
+		}
+		
+		String limit = ctx.queryParam("limit");
+		int size = DEFAULT_SEARCH_SIZE;
+		if (limit != null && limit.matches("[0-9]+") && limit.length() < 10 && Integer.parseInt(limit) > 0) {
+			size = Math.min(Integer.parseInt(limit), MAX_SEARCH_SIZE);
+		}
+		
+		if (!movieDAO.hasSearch()) {
+			ctx.status(503);
+			ctx.result("Search unavailable");
+			return;
+		}
+		
+		int searchSize = size;
+		Responses.respond(ctx, () -> movieDAO.searchMoviesAsync(q, searchSize), "Movie(s) not found");
+	}
+	
 	/**
 	 * Returns the movie with the specified id.
 	 * 
@@ -89,19 +196,7 @@ public class MovieController {
 		}
 		
 		int id = Integer.parseInt(ctx.pathParam("id"));
-		try {
-			Movie movie = movieDAO.getMovieById(id);
-			if (movie == null) {
-				ctx.status(404);
-				ctx.result("Movie not found");
-				return;
-			}
-			ctx.json(movieDAO.getMovieById(id));
-		} catch (SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
-			e.printStackTrace();
-		}
+		Responses.respond(ctx, () -> movieDAO.getMovieByIdAsync(id), "Movie not found");
 	}
 
 	/**
@@ -116,19 +211,24 @@ public class MovieController {
 			return;
 		}
 		int id = Integer.parseInt(ctx.pathParam("id"));
-		try {
-			List<Person> stars = movieDAO.getStarsByMovieId(id);
-			if (stars == null) {
-				ctx.status(404);
-				ctx.result("Star(s) not found");
-				return;
-			}
-			ctx.json(stars);
-		} catch(SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
-			e.printStackTrace();
+		Responses.respond(ctx, () -> movieDAO.getStarsByMovieIdAsync(id), "Star(s) not found");
+	}
+	
+	/**
+	 * Returns everything a movie page needs in one response: the movie, its
+	 * rating and votes, its stars and its directors. The lookups run in
+	 * parallel.
+	 * @param ctx the Javalin Context
+	 */
+	public void getMovieDetail(Context ctx) {
+		boolean valid = (ctx.pathParam("id").matches("[0-9]+") && ctx.pathParam("id").length()<10 && Integer.parseInt(ctx.pathParam("id"))>=1);
+		if (!valid) {
+			ctx.status(400);
+			ctx.result("Invalid id");
+			return;
 		}
+		int id = Integer.parseInt(ctx.pathParam("id"));
+		Responses.respond(ctx, () -> movieDAO.getMovieDetailAsync(id), "Movie not found");
 	}
 	
 	/**
@@ -150,14 +250,13 @@ public class MovieController {
 		
 		 if (ctx.pathParam("year").matches("[0-9]+")) {
 			int year = Integer.parseInt(ctx.pathParam("year"));
-			try {
-				String limit = ctx.queryParam("limit");
-				//System.out.println(limit);
-				//System.out.println(limit.length());
-				String votes = ctx.queryParam("votes");
-				//System.out.println(votes);
-				//System.out.println(votes.length());
-				
+			String limit = ctx.queryParam("limit");
+			//System.out.println(limit);
+			//System.out.println(limit.length());
+			String votes = ctx.queryParam("votes");
+			//System.out.println(votes);
+			//System.out.println(votes.length());
+			
 //				if (limit.length()> 10 | votes.length()>10) {
 //					List<MovieRating> ratings = (movieDAO.getMovieRatingsByYear(year));
 //					if (ratings == null) {
@@ -168,107 +267,48 @@ public class MovieController {
 //					ctx.json(ratings);
 //					return;
 //				}
+			
+			if (limit != null & votes == null) {
+				if (limit.matches("[0-9]+") && limit.length()<10) {
+					Responses.respond(ctx, () -> movieDAO.getMovieRatingsByYearAndLimitAsync(year, Integer.parseInt(limit)), "Movie(s) not found");
+					return;
+				}  {
+					Responses.respond(ctx, () -> movieDAO.getMovieRatingsByYearAsync(year), "Movie(s) not found");
+					return;
+				}
 				
-				if (limit != null & votes == null) {
-					if (limit.matches("[0-9]+") && limit.length()<10) {
-						List<MovieRating> ratings = movieDAO.getMovieRatingsByYearAndLimit(year, Integer.parseInt(limit));
-						if (ratings == null) {
-							ctx.status(404);
-							ctx.result("Movie(s) not found");
-							return;
-						}
-						ctx.json(ratings);
-						return;
-					}  {
-						List<MovieRating> ratings = (movieDAO.getMovieRatingsByYear(year));
-						if (ratings == null) {
-							ctx.status(404);
-							ctx.result("Movie(s) not found");
-							return;
-						}
-						ctx.json(ratings);
-						return;
-					}
-					
-				}  if (votes != null & limit == null) {
-					if (votes.matches("[0-9]+")&& votes.length()<10) {
-						List<MovieRating> ratings = movieDAO.getMovieRatingsByYearAndVoteLimit(year, Integer.parseInt(votes));
-						if (ratings == null) {
-							ctx.status(404);
-							ctx.result("Movie(s) not found");
-							return;
-						}
-						ctx.json(ratings);
-						return;
-					}  {
-						List<MovieRating> ratings = (movieDAO.getMovieRatingsByYear(year));
-						if (ratings == null) {
-							ctx.status(404);
-							ctx.result("Movie(s) not found");
-							return;
-						}
-						ctx.json(ratings);
-						return;
-					}
-					
-				}  if (votes != null & limit != null){ // to check both the url has to be in the form of /movies/ratings/{year}?query1=[int]&query2=[int]
-					//System.out.println("limit: " + limit + "votes: " + votes);
-					if ((votes.matches("[0-9]+")) && (votes.length()<10) &&(limit.matches("[0-9]+")) && (limit.length()<10)) {
-						//System.out.println("limit: " + limit + "votes: " + votes);
-						List<MovieRating> ratings = movieDAO.getMovieRatingsByYearLimitVoteLimit(year, Integer.parseInt(limit), Integer.parseInt(votes));
-						if (ratings == null) {
-							ctx.status(404);
-							ctx.result("Movie(s) not found");
-							return;
-						}
-						ctx.json(ratings);
-						return;
-					}  if (votes.matches("[0-9]+")&& votes.length()<10 && !limit.matches("[0-9]+")) {
-						List<MovieRating> ratings = movieDAO.getMovieRatingsByYearAndVoteLimit(year, Integer.parseInt(votes));
-						if (ratings == null) {
-							ctx.status(404);
-							ctx.result("Movie(s) not found");
-							return;
-						}
-						ctx.json(ratings);
-						return;
-					} if (!votes.matches("[0-9]+") && limit.matches("[0-9]+") && limit.length()<10) {
-						
-						List<MovieRating> ratings = movieDAO.getMovieRatingsByYearAndLimit(year, Integer.parseInt(limit));
-						if (ratings == null) {
-							ctx.status(404);
-							ctx.result("Movie(s) not found");
-							return;
-						}
-						ctx.json(ratings);
-						return;
-					} {
-						List<MovieRating> ratings = (movieDAO.getMovieRatingsByYear(year));
-						if (ratings == null) {
-							ctx.status(404);
-							ctx.result("Movie(s) not found");
-							return;
-						}
-						ctx.json(ratings);
-						return;
-					}
+			}  if (votes != null & limit == null) {
+				if (votes.matches("[0-9]+")&& votes.length()<10) {
+					Responses.respond(ctx, () -> movieDAO.getMovieRatingsByYearAndVoteLimitAsync(year, Integer.parseInt(votes)), "Movie(s) not found");
+					return;
 				}  {
-					List<MovieRating> ratings = (movieDAO.getMovieRatingsByYear(year));
-					if (ratings == null) {
-						ctx.status(404);
-						ctx.result("Movie(s) not found");
-						return;
-					}
-					ctx.json(ratings);
+					Responses.respond(ctx, () -> movieDAO.getMovieRatingsByYearAsync(year), "Movie(s) not found");
 					return;
 				}
-			} catch(SQLException e) {
-				ctx.status(500);
-				ctx.result("Database error");
-				e.printStackTrace();
+				
+			}  if (votes != null & limit != null){ // to check both the url has to be in the form of /movies/ratings/{year}?query1=[int]&query2=[int]
+				//System.out.println("limit: " + limit + "votes: " + votes);
+				if ((votes.matches("[0-9]+")) && (votes.length()<10) &&(limit.matches("[0-9]+")) && (limit.length()<10)) {
+					//System.out.println("limit: " + limit + "votes: " + votes);
+					Responses.respond(ctx, () -> movieDAO.getMovieRatingsByYearLimitVoteLimitAsync(year, Integer.parseInt(limit), Integer.parseInt(votes)), "Movie(s) not found");
+					return;
+				}  if (votes.matches("[0-9]+")&& votes.length()<10 && !limit.matches("[0-9]+")) {
+					Responses.respond(ctx, () -> movieDAO.getMovieRatingsByYearAndVoteLimitAsync(year, Integer.parseInt(votes)), "Movie(s) not found");
+					return;
+				} if (!votes.matches("[0-9]+") && limit.matches("[0-9]+") && limit.length()<10) {
+					
+					Responses.respond(ctx, () -> movieDAO.getMovieRatingsByYearAndLimitAsync(year, Integer.parseInt(limit)), "Movie(s) not found");
+					return;
+				} {
+					Responses.respond(ctx, () -> movieDAO.getMovieRatingsByYearAsync(year), "Movie(s) not found");
+					return;
+				}
+			}  {
+				Responses.respond(ctx, () -> movieDAO.getMovieRatingsByYearAsync(year), "Movie(s) not found");
+				return;
 			}
 		}
 		
 		
 	}
-}
\ No newline at end of file
+}
@@ -1,11 +1,9 @@
 package com.flickfinder.controller;
 
-import java.sql.SQLException;
-import java.util.List;
-
 import com.flickfinder.dao.PersonDAO;
-import com.flickfinder.model.Movie;
 import com.flickfinder.model.Person;
+import com.flickfinder.util.Cursor;
+import com.flickfinder.util.IdList;
 
 import io.javalin.http.Context;
 
@@ -21,6 +19,36 @@ public class PersonController {
 	// you will add further methods for the more advanced tasks; however, ensure your have completed 
 	// the must have requirements before you start these.  
 	
+	/**
+	 * The default number of people on a page.
+	 */
+	private static final int DEFAULT_PAGE_SIZE = 50;
+
+	/**
+	 * The largest number of people a client can ask for on one page.
+	 */
+	private static final int MAX_PAGE_SIZE = 1000;
+
+	/**
+	 * The default number of search results.
+	 */
+	private static final int DEFAULT_SEARCH_SIZE = 20;
+
+	/**
+	 * The largest number of search results a client can ask for.
+	 */
+	private static final int MAX_SEARCH_SIZE = 100;
+
+	/**
+	 * The default number of co-stars listed.
+	 */
+	private static final int DEFAULT_COSTARS_SIZE = 10;
+
+	/**
+	 * The largest number of co-stars a client can ask for.
+	 */
+	private static final int MAX_COSTARS_SIZE = 100;
+
 	/**
 	 * The people data access object.
 	 */
@@ -39,34 +67,131 @@ public class PersonController {
 	/**
 	 * Returns a list of people in the database.
 	 * Limited to 50, if no limit is specified, or an invalid limit.
+	 * If an after cursor is given, a page of people is returned along with the
+	 * cursor for the next page instead.
+	 * If a list of ids is given, the people with those ids are returned instead,
+	 * in the same order.
 	 * 
 	 * @param ctx
 	 */
 	
 	public void getAllPeople(Context ctx) {
-		try {
-			String limit = ctx.queryParam("limit");
-			
-			if (limit != null) {
-				if ((limit.matches("[0-9]+")) && (limit.length()<10)) {
-					ctx.json(personDAO.getAllPeopleByLimit(Integer.parseInt(limit)));
-					return;
-				}  {
-					ctx.json(personDAO.getAllPeople());
-					return;
-				}
-				
-			} 
-			 {
-				ctx.json(personDAO.getAllPeople());
+		String limit = ctx.queryParam("limit");
+		String after = ctx.queryParam("after");
+		String ids = ctx.queryParam("ids");
+		
+		if (ids != null) {
+			getPeopleByIds(ctx, ids);
+			return;
+		}
+		
+		if (after != null) {
+			getPeoplePage(ctx, after, limit);
+			return;
+		}
+		
+		if (limit != null) {
+			if ((limit.matches("[0-9]+")) && (limit.length()<10)) {
+				Responses.respond(ctx, () -> personDAO.getAllPeopleByLimitAsync(Integer.parseInt(limit)), null);
+				return;
+			}  {
+				Responses.respond(ctx, personDAO::getAllPeopleAsync, null);
 				return;
 			}
 			
-		} catch (SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
-			e.printStackTrace();
+		} 
+		 {
+			Responses.respond(ctx, personDAO::getAllPeopleAsync, null);
+			return;
+		}
+	}
+	
+	/**
+	 * Returns the people with the given ids, in the order they were asked for.
+	 * Up to 200 ids can be asked for at once.
+	 * 
+	 * @param ctx the Javalin context
+	 * @param ids the comma separated ids
+	 */
+	private void getPeopleByIds(Context ctx, String ids) {
+		int[] parsed;
+		try {
+			parsed = IdList.parse(ids);
+		} catch (IllegalArgumentException e) {
+			ctx.status(400);
+			ctx.result(e.getMessage());
+			return;
 		}
+		
+		Responses.respond(ctx, () -> personDAO.getPeopleByIdsAsync(parsed), "Person(s) not found");
+	}
+
+	/**
+	 * Returns the page of people that follows the given cursor.
+	 * The page size is the limit, capped at 1000, or 50 if the limit is
+	 * missing or invalid.
+	 * 
+	 * @param ctx the Javalin context
+	 * @param after the cursor to continue after
+	 * @param limit the requested page size
+	 */
+	private void getPeoplePage(Context ctx, String after, String limit) {
+		int afterId;
+		try {
+			afterId = Cursor.decode(after);
+		} catch (IllegalArgumentException e) {
+			ctx.status(400);
+			ctx.result("Invalid cursor");
+			return;
+		}
+		
+		int size = DEFAULT_PAGE_SIZE;
+		if (limit != null && limit.matches("[0-9]+") && limit.length() < 10 && Integer.parseInt(limit) > 0) {
+			size = Math.min(Integer.parseInt(limit), MAX_PAGE_SIZE);
+		}
+		
+		// fetch one extra row to find out whether there is another page
+		int pageSize = size;
+		Responses.respond(ctx, () -> personDAO.getPeopleAfterAsync(afterId, pageSize + 1)
+				.thenApply(people -> Cursor.page(people, pageSize, Person::getId)), null);
+	}
+	
+	/**
+	 * Returns the people whose name contains all of the words in q, best match
+	 * first. The last word may be unfinished. Up to 20 are returned, or up to
+	 * 100 if a limit is given. With fuzzy=1 the words may be misspelled, and
+	 * the people needing the fewest corrections come first.
+	 * 
+	 * @param ctx the Javalin context
+	 */
+	public void searchPeople(Context ctx) {
+		String q = ctx.queryParam("q");
+		if (q == null || q.isBlank() || q.length() > 200) {
+			ctx.status(400);
+			ctx.result("Invalid search");
+			return;
+		}
+		
+		String limit = ctx.queryParam("limit");
+		int size = DEFAULT_SEARCH_SIZE;
+		if (limit != null && limit.matches("[0-9]+") && limit.length() < 10 && Integer.parseInt(limit) > 0) {
+			size = Math.min(Integer.parseInt(limit), MAX_SEARCH_SIZE);
+		}
+		
+		String fuzzy = ctx.queryParam("fuzzy");
+		boolean fuzzySearch = "1".equals(fuzzy) || "true".equals(fuzzy);
+		if (!(fuzzySearch ? personDAO.hasFuzzySearch() : personDAO.hasSearch())) {
+			ctx.status(503);
+			ctx.result("Search unavailable");
+			return;
+		}
+		
+		int searchSize = size;
+		if (fuzzySearch) {
+			Responses.respond(ctx, () -> personDAO.searchPeopleFuzzyAsync(q, searchSize), "Person(s) not found");
+			return;
+		}
+		Responses.respond(ctx, () -> personDAO.searchPeopleAsync(q, searchSize), "Person(s) not found");
 	}
 	
 	/**
@@ -84,19 +209,7 @@ public class PersonController {
 		}
 		
 		int id = Integer.parseInt(ctx.pathParam("id"));
-		try {
-			Person person = personDAO.getPersonById(id);
-			if (person == null) {
-				ctx.status(404);
-				ctx.result("Person not found");
-				return;
-			}
-			ctx.json(personDAO.getPersonById(id));
-		} catch (SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
-			e.printStackTrace();
-		}
+		Responses.respond(ctx, () -> personDAO.getPersonByIdAsync(id), "Person not found");
 	}
 	
 	/**
@@ -111,20 +224,58 @@ public class PersonController {
 			return;
 		}
 		int id = Integer.parseInt(ctx.pathParam("id"));
-		try {
-			List<Movie> movies = personDAO.getMoviesByPersonId(id);
-			if (movies == null) {
-				ctx.status(404);
-				ctx.result("Movie(s) not found");
-				return;
-			}  {
-				ctx.json(movies);
-				return;
-			}
-		} catch(SQLException e) {
-			ctx.status(500);
-			ctx.result("Database error");
-			e.printStackTrace();
+		Responses.respond(ctx, () -> personDAO.getMoviesByPersonIdAsync(id), "Movie(s) not found");
+	}
+	
+	/**
+	 * Returns the shortest chain of movies connecting two people, where each
+	 * movie starred the people either side of it.
+	 * 
+	 * @param ctx the Javalin context
+	 */
+	public void getPath(Context ctx) {
+		boolean valid = ctx.pathParam("id").matches("[0-9]+") && ctx.pathParam("id").length() < 10
+				&& Integer.parseInt(ctx.pathParam("id")) >= 1 && ctx.pathParam("other").matches("[0-9]+")
+				&& ctx.pathParam("other").length() < 10 && Integer.parseInt(ctx.pathParam("other")) >= 1;
+		if (!valid) {
+			ctx.status(400);
+			ctx.result("Invalid id");
+			return;
+		}
+		if (!personDAO.hasPathFinder()) {
+			ctx.status(503);
+			ctx.result("Path search unavailable");
+			return;
+		}
+		
+		int from = Integer.parseInt(ctx.pathParam("id"));
+		int to = Integer.parseInt(ctx.pathParam("other"));
+		Responses.respond(ctx, () -> personDAO.getPathAsync(from, to), "No path found");
+	}
+	
+	/**
+	 * Returns the people who starred alongside a person in the most movies,
+	 * with the number of movies. Up to 10 are returned, or up to 100 if a
+	 * limit is given.
+	 * 
+	 * @param ctx the Javalin context
+	 */
+	public void getCostars(Context ctx) {
+		boolean valid = (ctx.pathParam("id").matches("[0-9]+") && ctx.pathParam("id").length()<10 && Integer.parseInt(ctx.pathParam("id"))>=1);
+		if (!valid) {
+			ctx.status(400);
+			ctx.result("Invalid id");
+			return;
+		}
+		
+		String limit = ctx.queryParam("limit");
+		int size = DEFAULT_COSTARS_SIZE;
+		if (limit != null && limit.matches("[0-9]+") && limit.length() < 10 && Integer.parseInt(limit) > 0) {
+			size = Math.min(Integer.parseInt(limit), MAX_COSTARS_SIZE);
 		}
+		
+		int id = Integer.parseInt(ctx.pathParam("id"));
+		int costarsSize = size;
+		Responses.respond(ctx, () -> personDAO.getCostarsAsync(id, costarsSize), "Co-star(s) not found");
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.flickfinder.controller;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import com.flickfinder.index.SearchTimeoutException;
+import com.flickfinder.util.QueryExecutor;
+
+import io.javalin.http.Context;
+
+/**
+ * Answers requests with the result of a lookup, the same way for every
+ * controller.
+ */
+
+final class Responses {
+
+	private Responses() {
+	}
+
+	/**
+	 * Sends the result of a lookup once it completes. The lookup runs on the
+	 * database threads, so the request thread is let go in the meantime.
+	 * A null result is answered with a 404, unless notFound is null, and a
+	 * failed lookup as described in {@link #fail(Context, Throwable)}.
+	 * 
+	 * @param ctx the Javalin context
+	 * @param lookup starts the lookup
+	 * @param notFound the message to send when there is no result, or null
+	 *                 to send the result as it is
+	 */
+	static <T> void respond(Context ctx, Supplier<CompletableFuture<T>> lookup, String notFound) {
+		ctx.future(() -> lookup.get().handle((result, error) -> {
+			if (error != null) {
+				fail(ctx, error);
+			} else if (result == null && notFound != null) {
+				ctx.status(404);
+				ctx.result(notFound);
+			} else {
+				ctx.json(result);
+			}
+			return null;
+		}));
+	}
+
+	/**
+	 * Answers a request whose lookup failed: with a 503 if the database is
+	 * too busy to take the query or a search ran out of time, and with a 500
+	 * otherwise.
+	 * 
+	 * @param ctx the Javalin context
+	 * @param error what the lookup failed with
+	 */
+	static void fail(Context ctx, Throwable error) {
+		Throwable cause = QueryExecutor.cause(error);
+		if (cause instanceof RejectedExecutionException) {
+			ctx.status(503);
+			ctx.result("Server busy");
+			return;
+		}
+		if (cause instanceof SearchTimeoutException) {
+			ctx.status(503);
+			ctx.result("Search timed out");
+			return;
+		}
+		ctx.status(500);
+		ctx.result("Database error");
+		cause.printStackTrace();
+	}
+}
@@ -1,88 +1,254 @@
 package com.flickfinder.dao;
 
-import java.sql.Connection;
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import com.flickfinder.cache.TinyLfuCache;
+import com.flickfinder.index.CsrIndex;
+import com.flickfinder.index.RatingIndex;
 import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieDetail;
 import com.flickfinder.model.MovieRating;
 import com.flickfinder.model.Person;
+import com.flickfinder.model.Star;
 import com.flickfinder.util.Database;
+import com.flickfinder.util.IdList;
+import com.flickfinder.util.PooledConnection;
+import com.flickfinder.util.QueryExecutor;
+import com.flickfinder.util.QueryTimer;
+import com.flickfinder.util.SearchDatabase;
 
 /**
  * The Data Access Object for the Movie table.
- * 
+ *
  * This class is responsible for getting data from the Movies table in the
  * database.
- * 
+ *
+ * Every query uses bound parameters, so each one is compiled once per pooled
+ * connection and then reused from the connection's statement cache.
+ *
+ * Each lookup also has an asynchronous variant, ending in Async, that runs
+ * the same query on the {@link QueryExecutor} and returns a future of its
+ * result.
+ *
  */
 public class MovieDAO {
 
 	/**
-	 * The connection to the database.
+	 * The SQL for listing movies.
 	 */
-	private final Connection connection;
+	private static final String ALL_MOVIES = "select * from movies LIMIT ?";
+
+	/**
+	 * The SQL for the page of movies after a given id.
+	 */
+	public static final String MOVIES_AFTER = "select * from movies where id > ? ORDER BY id LIMIT ?";
+
+	/**
+	 * The SQL for finding a movie by its id.
+	 */
+	private static final String MOVIE_BY_ID = "select * from movies where id = ?";
+
+	/**
+	 * The start of the SQL for finding a batch of movies by id; the IN list is
+	 * added to fit the batch.
+	 */
+	public static final String MOVIES_BY_IDS = "select * from movies where id in";
+
+	/**
+	 * The SQL for finding the stars of a movie.
+	 */
+	public static final String STARS_BY_MOVIE_ID = "select * from people inner join stars on people.id=stars.person_id where stars.movie_id = ?";
+
+	/**
+	 * The SQL for finding the directors of a movie.
+	 */
+	public static final String DIRECTORS_BY_MOVIE_ID = "select * from people inner join directors on people.id=directors.person_id where directors.movie_id = ?";
+
+	/**
+	 * The SQL for finding the rating of a movie.
+	 */
+	public static final String RATING_BY_MOVIE_ID = "select id, title, rating, votes, year from movies inner join ratings on movies.id=ratings.movie_id where movies.id = ?";
+
+	/**
+	 * The start of the SQL for finding a batch of people by id, used to fill in
+	 * the stars and directors found through the indexes; the IN list is added
+	 * to fit the batch.
+	 */
+	private static final String PEOPLE_BY_IDS = "select * from people where id in";
+
+	/**
+	 * The SQL for the ratings of a year. Every ratings method shares this
+	 * statement, binding its own vote minimum and limit.
+	 */
+	public static final String RATINGS_BY_YEAR = "select id, title, rating, votes, year from movies inner join ratings on movies.id=ratings.movie_id where year = ? AND votes > ? ORDER BY ratings.rating DESC LIMIT ?";
+
+	/**
+	 * The SQL for searching the titles in the attached search database,
+	 * best match first. The bm25 score is lower for better matches, so the
+	 * weighted boost of the votes is taken off it.
+	 */
+	private static final String SEARCH_MOVIES = "select movies.id, movies.title, movies.year from search.movie_search inner join movies on movies.id=movie_search.rowid where movie_search match ? ORDER BY bm25(movie_search) - ? * movie_search.boost, movies.id LIMIT ?";
+
+	/**
+	 * The SQL for exporting every movie.
+	 */
+	public static final String EXPORT_MOVIES = "select * from movies";
+
+	/**
+	 * The SQL for exporting every row of the stars table.
+	 */
+	public static final String EXPORT_STARS = "select movie_id, person_id from stars";
+
+	/**
+	 * How many rows the driver should fetch at a time while exporting.
+	 */
+	private static final int EXPORT_FETCH_SIZE = 1000;
+
+	/**
+	 * The default number of movies to return.
+	 */
+	private static final int DEFAULT_LIMIT = 50;
+
+	/**
+	 * The default number of votes a rated movie must have more than.
+	 */
+	private static final int DEFAULT_VOTES = 1000;
+
+	/**
+	 * The database, which lends out a connection for each query.
+	 */
+	private final Database database;
+
+	/**
+	 * The cache of movie by id, or null to query on every lookup.
+	 */
+	private TinyLfuCache<Movie> cache;
+
+	/**
+	 * The index of the stars table, or null to join the table on every lookup.
+	 */
+	private CsrIndex starIndex;
+
+	/**
+	 * The index of the directors table, or null to join the table on every
+	 * lookup.
+	 */
+	private CsrIndex directorIndex;
+
+	/**
+	 * The index of the ratings by year, or null to query the ratings table on
+	 * every lookup.
+	 */
+	private RatingIndex ratingIndex;
 
 	/**
 	 * Constructs a SQLiteMovieDAO object and gets the database connection.
-	 * 
+	 *
 	 */
 	public MovieDAO() {
-		Database database = Database.getInstance();
-		connection = database.getConnection();
+		database = Database.getInstance();
 	}
 
 	/**
 	 * Returns a list of all movies in the database.
-	 * 
+	 *
 	 * @return a list of all movies in the database
 	 * @throws SQLException if a database error occurs
 	 */
 
 	public List<Movie> getAllMovies() throws SQLException {
-		List<Movie> movies = new ArrayList<>();
-
-		Statement statement = connection.createStatement();
-		
-		// I've set the limit to 10 for development purposes - you should do the same.
-		ResultSet rs = statement.executeQuery("select * from movies LIMIT 50");
-		
-		while (rs.next()) {
-			movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
-		}
-
-		return movies;
+		// I've set the limit to 50 for development purposes - you should do the same.
+		return queryMovies("MovieDAO.getAllMovies", DEFAULT_LIMIT);
 	}
 
 	/**
 	 * Returns the movie with the specified id.
-	 * 
+	 *
 	 * @param id the id of the movie
 	 * @return the movie with the specified id
 	 * @throws SQLException if a database error occurs
 	 */
 	public Movie getMovieById(int id) throws SQLException {
+		if (cache != null) {
+			return cache.get(id, this::findMovieById);
+		}
+		return findMovieById(id);
+	}
 
-		String statement = "select * from movies where id = ?";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, id);
-		ResultSet rs = ps.executeQuery();
+	/**
+	 * Reads the movie with the specified id from the database.
+	 *
+	 * @param id the id of the movie
+	 * @return the movie with the specified id, or null if there is none
+	 * @throws SQLException if a database error occurs
+	 */
+	private Movie findMovieById(int id) throws SQLException {
 
-		if (rs.next()) {
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(MOVIE_BY_ID);
+			ps.setInt(1, id);
 
-			return new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year"));
+			try (QueryTimer timer = QueryTimer.start("MovieDAO.getMovieById", connection, MOVIE_BY_ID, id);
+					ResultSet rs = ps.executeQuery()) {
+				if (rs.next()) {
+					return timer.row(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+				}
+			}
 		}
-		
+
 		// return null if the id does not return a movie.
 
 		return null;
 
 	}
-	
+
+	/**
+	 * Returns the movies with the specified ids, in the order the ids are given.
+	 * Ids with no movie are left out. Each batch of up to 200 ids is fetched
+	 * with a single IN query.
+	 *
+	 * @param ids the ids of the movies
+	 * @return the movies, or null if none of the ids has one
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Movie> getMoviesByIds(int[] ids) throws SQLException {
+		Map<Integer, Movie> found = new HashMap<>(ids.length * 2);
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			for (int from = 0; from < ids.length; from += IdList.MAX_SIZE) {
+				int count = Math.min(IdList.MAX_SIZE, ids.length - from);
+				int size = IdList.paddedSize(count);
+				String sql = IdList.in(MOVIES_BY_IDS, size);
+				PreparedStatement ps = connection.prepare(sql);
+				Object[] bound = new Object[size];
+				for (int i = 0; i < size; i++) {
+					// the padding repeats the last id of the batch
+					int id = ids[from + Math.min(i, count - 1)];
+					ps.setInt(i + 1, id);
+					bound[i] = id;
+				}
+
+				try (QueryTimer timer = QueryTimer.start("MovieDAO.getMoviesByIds", connection, sql, bound);
+						ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						Movie movie = timer.row(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+						found.put(movie.getId(), movie);
+					}
+				}
+			}
+		}
+
+		return IdList.order(ids, found);
+	}
+
 	/**
 	 * Returns the stars associated with the specified movie id
 	 * @param id the id of the movie
@@ -90,25 +256,233 @@ public class MovieDAO {
 	 * @throws SQLException if a database error occurs
 	 */
 	public List<Person> getStarsByMovieId(int id) throws SQLException{
+		if (starIndex != null) {
+			return getIndexedPeople("MovieDAO.getStarsByMovieId", starIndex, id);
+		}
+		List<Person> persons = new ArrayList<>();
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(STARS_BY_MOVIE_ID);
+			ps.setInt(1, id);
+
+			try (QueryTimer timer = QueryTimer.start("MovieDAO.getStarsByMovieId", connection, STARS_BY_MOVIE_ID, id);
+					ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					persons.add(timer.row(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth"))));
+				}
+			}
+		}
+		if (persons.size() > 0) {
+			return persons;
+		}
+		return null;
+
+	}
+
+	/**
+	 * Returns the directors associated with the specified movie id
+	 * @param id the id of the movie
+	 * @return the list of directors associated with the movie id, or null if
+	 *         there are none
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Person> getDirectorsByMovieId(int id) throws SQLException {
+		if (directorIndex != null) {
+			return getIndexedPeople("MovieDAO.getDirectorsByMovieId", directorIndex, id);
+		}
 		List<Person> persons = new ArrayList<>();
-		
-		String statement = "select * from people inner join stars on people.id=stars.person_id where stars.movie_id = ?";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, id);
-		ResultSet rs = ps.executeQuery();
-		
-		while (rs.next()) {
-			persons.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
-		}
-		if (persons.size()>0) {
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(DIRECTORS_BY_MOVIE_ID);
+			ps.setInt(1, id);
+
+			try (QueryTimer timer = QueryTimer.start("MovieDAO.getDirectorsByMovieId", connection, DIRECTORS_BY_MOVIE_ID, id);
+					ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					persons.add(timer.row(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth"))));
+				}
+			}
+		}
+		if (persons.size() > 0) {
 			return persons;
-		}  {
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the people of a movie using an index of the stars or directors
+	 * table: the person ids are a slice of the index, and the people are then
+	 * read by primary key in batches.
+	 *
+	 * @param name the name the queries are timed under
+	 * @param index the index to look in
+	 * @param id the id of the movie
+	 * @return the list of people associated with the movie id
+	 * @throws SQLException if a database error occurs
+	 */
+	private List<Person> getIndexedPeople(String name, CsrIndex index, int id) throws SQLException {
+		int row = index.movieRow(id);
+		if (row < 0) {
 			return null;
 		}
-		
+		int start = index.castStart(row);
+		int[] ids = new int[index.castEnd(row) - start];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = index.personId(index.castMember(start + i));
+		}
+		return getPeopleByIds(name, ids);
+	}
+
+	/**
+	 * Returns the people with the specified ids, in the order the ids are
+	 * given. Each batch of up to 200 ids is fetched with a single IN query.
+	 *
+	 * @param name the name the queries are timed under
+	 * @param ids  the ids of the people
+	 * @return the people, or null if none of the ids has one
+	 * @throws SQLException if a database error occurs
+	 */
+	private List<Person> getPeopleByIds(String name, int[] ids) throws SQLException {
+		Map<Integer, Person> found = new HashMap<>(ids.length * 2);
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			for (int from = 0; from < ids.length; from += IdList.MAX_SIZE) {
+				int count = Math.min(IdList.MAX_SIZE, ids.length - from);
+				int size = IdList.paddedSize(count);
+				String sql = IdList.in(PEOPLE_BY_IDS, size);
+				PreparedStatement ps = connection.prepare(sql);
+				Object[] bound = new Object[size];
+				for (int i = 0; i < size; i++) {
+					// the padding repeats the last id of the batch
+					int id = ids[from + Math.min(i, count - 1)];
+					ps.setInt(i + 1, id);
+					bound[i] = id;
+				}
+
+				try (QueryTimer timer = QueryTimer.start(name, connection, sql, bound);
+						ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						Person person = timer.row(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+						found.put(person.getId(), person);
+					}
+				}
+			}
+		}
+
+		return IdList.order(ids, found);
+	}
+
+	/**
+	 * Sets the index of the stars table. Once set, the stars of a movie are
+	 * found in the index instead of by joining the stars table.
+	 *
+	 * @param starIndex the index, or null to go back to the join
+	 */
+	public void setStarIndex(CsrIndex starIndex) {
+		this.starIndex = starIndex;
 	}
-	
-	
+
+	/**
+	 * Sets the index of the directors table. Once set, the directors of a
+	 * movie are found in the index instead of by joining the directors table.
+	 *
+	 * @param directorIndex the index, or null to go back to the join
+	 */
+	public void setDirectorIndex(CsrIndex directorIndex) {
+		this.directorIndex = directorIndex;
+	}
+
+	/**
+	 * Sets the cache of movies by id. Once set, getMovieById looks in the cache
+	 * before the database, and remembers ids that have no movie too.
+	 *
+	 * @param cache the cache, or null to query on every lookup
+	 */
+	public void setCache(TinyLfuCache<Movie> cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns the cache of movies by id.
+	 *
+	 * @return the cache, or null if there is none
+	 */
+	public TinyLfuCache<Movie> getCache() {
+		return cache;
+	}
+
+	/**
+	 * Sets the index of the ratings by year. Once set, the ratings methods scan
+	 * the pre-sorted movies of the year instead of querying the ratings table.
+	 *
+	 * @param ratingIndex the index, or null to go back to the query
+	 */
+	public void setRatingIndex(RatingIndex ratingIndex) {
+		this.ratingIndex = ratingIndex;
+	}
+
+	/**
+	 * Returns whether searchMovies can run, which needs the search database.
+	 *
+	 * @return true if the search database is attached
+	 */
+	public boolean hasSearch() {
+		return database.hasSearch();
+	}
+
+
+	/**
+	 * Returns the rating of the specified movie.
+	 * @param id the id of the movie
+	 * @return the movie rating, or null if the movie has no rating
+	 * @throws SQLException if a database error occurs
+	 */
+	public MovieRating getRatingByMovieId(int id) throws SQLException {
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(RATING_BY_MOVIE_ID);
+			ps.setInt(1, id);
+
+			try (QueryTimer timer = QueryTimer.start("MovieDAO.getRatingByMovieId", connection, RATING_BY_MOVIE_ID, id);
+					ResultSet rs = ps.executeQuery()) {
+				if (rs.next()) {
+					return timer.row(new MovieRating(rs.getInt("id"), rs.getString("title"), rs.getFloat("rating"), rs.getInt("votes"), rs.getInt("year")));
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the movie with the specified id along with its rating, stars and
+	 * directors. The lookups run one after another; see
+	 * {@link #getMovieDetailAsync(int)} to run them in parallel.
+	 * @param id the id of the movie
+	 * @return the movie detail, or null if there is no movie with the id
+	 * @throws SQLException if a database error occurs
+	 */
+	public MovieDetail getMovieDetail(int id) throws SQLException {
+		return detail(getMovieById(id), getRatingByMovieId(id), getStarsByMovieId(id), getDirectorsByMovieId(id));
+	}
+
+	/**
+	 * Puts together a movie detail from its parts.
+	 * @param movie the movie, or null if there is none
+	 * @param rating the rating of the movie, or null
+	 * @param stars the stars of the movie, or null
+	 * @param directors the directors of the movie, or null
+	 * @return the movie detail, or null if there is no movie
+	 */
+	private static MovieDetail detail(Movie movie, MovieRating rating, List<Person> stars, List<Person> directors) {
+		if (movie == null) {
+			return null;
+		}
+		return new MovieDetail(movie.getId(), movie.getTitle(), movie.getYear(),
+				rating == null ? null : rating.getRating(), rating == null ? null : rating.getVotes(),
+				stars == null ? List.of() : stars, directors == null ? List.of() : directors);
+	}
+
 	/**
 	 * Returns the movies of a specific year, with over 1000 votes and by descending order. The number of movies is limited to 50.
 	 * @param year The year from which the highest rated movies should be shown
@@ -116,25 +490,9 @@ public class MovieDAO {
 	 * @throws SQLException if a database error occurs
 	 */
 	public List<MovieRating> getMovieRatingsByYear(int year) throws SQLException{
-		List<MovieRating> movies = new ArrayList<>();
-		
-		String statement = "select id, title, rating, votes, year from movies inner join ratings on movies.id=ratings.movie_id where year = ? AND votes>1000 ORDER BY ratings.rating DESC LIMIT 50";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, year);
-		ResultSet rs = ps.executeQuery();
-		
-		while (rs.next()) {
-			movies.add(new MovieRating(rs.getInt("id"), rs.getString("title"), rs.getFloat("rating"), rs.getInt("votes"), rs.getInt("year")));
-		}
-		//System.out.println(movies);
-		
-		if (movies.size() > 0) {
-			return movies;
-		}  {
-			return null;
-		}
+		return queryRatings("MovieDAO.getMovieRatingsByYear", year, DEFAULT_LIMIT, DEFAULT_VOTES);
 	}
-	
+
 	/**
 	 * Returns the specified number of movies
 	 * @param limit the number of movies to be listed
@@ -142,27 +500,81 @@ public class MovieDAO {
 	 * @throws SQLException
 	 */
 	public List<Movie> getAllMoviesByLimit(long limit) throws SQLException {
-		List<Movie> movies = new ArrayList<>();
-		
 		if (limit < 1) {
-			limit = 50;
+			limit = DEFAULT_LIMIT;
 		}
 		if (limit >= 2147483647) {
-			limit = 50;
+			limit = DEFAULT_LIMIT;
 		}
 
-		Statement statement = connection.createStatement();
-		
-		
-		ResultSet rs = statement.executeQuery("select * from movies LIMIT " + limit);
-		
-		while (rs.next()) {
-			movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+		return queryMovies("MovieDAO.getAllMoviesByLimit", limit);
+	}
+
+	/**
+	 * Returns the movies with an id greater than the specified id, in id order.
+	 * This walks the primary key, so a page deep into the table costs the same
+	 * as the first one.
+	 * @param after the id to continue after
+	 * @param limit the number of movies to be returned
+	 * @return a list of up to limit movies
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Movie> getMoviesAfter(int after, int limit) throws SQLException {
+		List<Movie> movies = new ArrayList<>();
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(MOVIES_AFTER);
+			ps.setInt(1, after);
+			ps.setInt(2, limit);
+
+			try (QueryTimer timer = QueryTimer.start("MovieDAO.getMoviesAfter", connection, MOVIES_AFTER, after, limit);
+					ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					movies.add(timer.row(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year"))));
+				}
+			}
 		}
 
 		return movies;
 	}
-	
+
+	/**
+	 * Returns the movies whose titles contain all of the words of a search,
+	 * the last of which may be unfinished, best match first. Matches are
+	 * ranked by bm25 blended with the votes of the movie. This needs the
+	 * search database to be attached.
+	 * @param text what the user searched for
+	 * @param limit the number of movies to be returned
+	 * @return a list of up to limit movies, or null if none match
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Movie> searchMovies(String text, int limit) throws SQLException {
+		String match = SearchDatabase.matchQuery(text);
+		if (match == null) {
+			return null;
+		}
+		List<Movie> movies = new ArrayList<>();
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(SEARCH_MOVIES);
+			ps.setString(1, match);
+			ps.setDouble(2, SearchDatabase.VOTES_WEIGHT);
+			ps.setInt(3, limit);
+
+			try (QueryTimer timer = QueryTimer.start("MovieDAO.searchMovies", connection, SEARCH_MOVIES, match,
+					SearchDatabase.VOTES_WEIGHT, limit); ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					movies.add(timer.row(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year"))));
+				}
+			}
+		}
+
+		if (movies.size() > 0) {
+			return movies;
+		}
+		return null;
+	}
+
 	/**
 	 * Returns the specific number of ratings
 	 * @param year the year of release of movies
@@ -171,31 +583,16 @@ public class MovieDAO {
 	 * @throws SQLException
 	 */
 	public List<MovieRating> getMovieRatingsByYearAndLimit(int year, long limit) throws SQLException{
-		List<MovieRating> movies = new ArrayList<>();
-		
 		if (limit < 1) {
-			limit = 50;
+			limit = DEFAULT_LIMIT;
 		}
 		if (limit >= 2147483647) {
-			limit = 50;
-		}
-		
-		String statement = "select id, title, rating, votes, year from movies inner join ratings on movies.id=ratings.movie_id where year = ? AND votes>1000 ORDER BY ratings.rating DESC LIMIT " + limit;
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, year);
-		ResultSet rs = ps.executeQuery();
-		
-		while (rs.next()) {
-			movies.add(new MovieRating(rs.getInt("id"), rs.getString("title"), rs.getFloat("rating"), rs.getInt("votes"), rs.getInt("year")));
-		}
-		//System.out.println(movies);
-		if (movies.size() > 0) {
-			return movies;
-		}  {
-			return null;
+			limit = DEFAULT_LIMIT;
 		}
+
+		return queryRatings("MovieDAO.getMovieRatingsByYearAndLimit", year, limit, DEFAULT_VOTES);
 	}
-	
+
 	/**
 	 * Returns the movies with more than the specified number of votes
 	 * @param year the year of release of movie
@@ -204,32 +601,16 @@ public class MovieDAO {
 	 * @throws SQLException
 	 */
 	public List<MovieRating> getMovieRatingsByYearAndVoteLimit(int year, long votes) throws SQLException{
-		List<MovieRating> movies = new ArrayList<>();
-		
 		if (votes < 0) { //someone might want to see list of movie with any number of votes
-			votes = 1000;
+			votes = DEFAULT_VOTES;
 		}
 		if (votes >= 2147483647) {
-			votes = 1000;
-		}
-		
-		String statement = "select id, title, rating, votes, year from movies inner join ratings on movies.id=ratings.movie_id where year = ? AND votes>" + votes +" ORDER BY ratings.rating DESC LIMIT 50";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, year);
-		ResultSet rs = ps.executeQuery();
-		
-		while (rs.next()) {
-			movies.add(new MovieRating(rs.getInt("id"), rs.getString("title"), rs.getFloat("rating"), rs.getInt("votes"), rs.getInt("year")));
-		}
-		//System.out.println(movies);
-		if (movies.size() > 0) {
-			return movies;
-		}  {
-			return null;
+			votes = DEFAULT_VOTES;
 		}
-		
+
+		return queryRatings("MovieDAO.getMovieRatingsByYearAndVoteLimit", year, DEFAULT_LIMIT, votes);
 	}
-	
+
 	/**
 	 * Returns the specified number of movies with more than the specified number of votes.
 	 * If limit or votes are invalid numbers, then they will set to default values.
@@ -240,36 +621,308 @@ public class MovieDAO {
 	 * @throws SQLException
 	 */
 	public List<MovieRating> getMovieRatingsByYearLimitVoteLimit(int year, long limit, long votes) throws SQLException{
-		List<MovieRating> movies = new ArrayList<>();
-		
 		if (limit < 1) {
-			limit = 50;
+			limit = DEFAULT_LIMIT;
 		}
 		if (limit >= 2147483647) {
-			limit = 50;
+			limit = DEFAULT_LIMIT;
 		}
 		if (votes < 0) {
-			votes = 1000;
+			votes = DEFAULT_VOTES;
 		}
 		if (votes >= 2147483647) {
-			votes = 1000;
-		}
-		
-		String statement = "select id, title, rating, votes, year from movies inner join ratings on movies.id=ratings.movie_id where year = ? AND votes>" + votes +" ORDER BY ratings.rating DESC LIMIT " + limit;
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, year);
-		ResultSet rs = ps.executeQuery();
-		
-		while (rs.next()) {
-			movies.add(new MovieRating(rs.getInt("id"), rs.getString("title"), rs.getFloat("rating"), rs.getInt("votes"), rs.getInt("year")));
-		}
-		//System.out.println(movies);
+			votes = DEFAULT_VOTES;
+		}
+
+		return queryRatings("MovieDAO.getMovieRatingsByYearLimitVoteLimit", year, limit, votes);
+	}
+
+	/**
+	 * Returns a future of all movies in the database, limited to 50.
+	 *
+	 * @return a future of the movies
+	 */
+	public CompletableFuture<List<Movie>> getAllMoviesAsync() {
+		return async(this::getAllMovies);
+	}
+
+	/**
+	 * Returns a future of the movie with the specified id.
+	 *
+	 * @param id the id of the movie
+	 * @return a future of the movie, or of null if there is none
+	 */
+	public CompletableFuture<Movie> getMovieByIdAsync(int id) {
+		return async(() -> getMovieById(id));
+	}
+
+	/**
+	 * Returns a future of the stars of the specified movie.
+	 *
+	 * @param id the id of the movie
+	 * @return a future of the stars, or of null if there are none
+	 */
+	public CompletableFuture<List<Person>> getStarsByMovieIdAsync(int id) {
+		return async(() -> getStarsByMovieId(id));
+	}
+
+	/**
+	 * Returns a future of the directors of the specified movie.
+	 *
+	 * @param id the id of the movie
+	 * @return a future of the directors, or of null if there are none
+	 */
+	public CompletableFuture<List<Person>> getDirectorsByMovieIdAsync(int id) {
+		return async(() -> getDirectorsByMovieId(id));
+	}
+
+	/**
+	 * Returns a future of the rating of the specified movie.
+	 *
+	 * @param id the id of the movie
+	 * @return a future of the movie rating, or of null if it has none
+	 */
+	public CompletableFuture<MovieRating> getRatingByMovieIdAsync(int id) {
+		return async(() -> getRatingByMovieId(id));
+	}
+
+	/**
+	 * Returns a future of the movie with the specified id along with its
+	 * rating, stars and directors. The four lookups run in parallel.
+	 *
+	 * @param id the id of the movie
+	 * @return a future of the movie detail, or of null if there is no movie
+	 *         with the id
+	 */
+	public CompletableFuture<MovieDetail> getMovieDetailAsync(int id) {
+		CompletableFuture<Movie> movie = getMovieByIdAsync(id);
+		CompletableFuture<MovieRating> rating = getRatingByMovieIdAsync(id);
+		CompletableFuture<List<Person>> stars = getStarsByMovieIdAsync(id);
+		CompletableFuture<List<Person>> directors = getDirectorsByMovieIdAsync(id);
+		return CompletableFuture.allOf(movie, rating, stars, directors)
+				.thenApply(done -> detail(movie.join(), rating.join(), stars.join(), directors.join()));
+	}
+
+	/**
+	 * Returns a future of the specified number of movies.
+	 *
+	 * @param limit the number of movies to be listed
+	 * @return a future of the movies
+	 */
+	public CompletableFuture<List<Movie>> getAllMoviesByLimitAsync(long limit) {
+		return async(() -> getAllMoviesByLimit(limit));
+	}
+
+	/**
+	 * Returns a future of the movies with an id greater than the specified id.
+	 *
+	 * @param after the id to continue after
+	 * @param limit the number of movies to be returned
+	 * @return a future of up to limit movies
+	 */
+	public CompletableFuture<List<Movie>> getMoviesAfterAsync(int after, int limit) {
+		return async(() -> getMoviesAfter(after, limit));
+	}
+
+	/**
+	 * Returns a future of the movies that match a search, best match first.
+	 *
+	 * @param text  what the user searched for
+	 * @param limit the number of movies to be returned
+	 * @return a future of the movies, or of null if none match
+	 */
+	public CompletableFuture<List<Movie>> searchMoviesAsync(String text, int limit) {
+		return async(() -> searchMovies(text, limit));
+	}
+
+	/**
+	 * Returns a future of the top 50 rated movies of a year with over 1000
+	 * votes.
+	 *
+	 * @param year the year of release of the movies
+	 * @return a future of the movie ratings, or of null if there are none
+	 */
+	public CompletableFuture<List<MovieRating>> getMovieRatingsByYearAsync(int year) {
+		return async(() -> getMovieRatingsByYear(year));
+	}
+
+	/**
+	 * Returns a future of the specified number of ratings of a year.
+	 *
+	 * @param year  the year of release of the movies
+	 * @param limit the number of movie ratings to be returned
+	 * @return a future of the movie ratings, or of null if there are none
+	 */
+	public CompletableFuture<List<MovieRating>> getMovieRatingsByYearAndLimitAsync(int year, long limit) {
+		return async(() -> getMovieRatingsByYearAndLimit(year, limit));
+	}
+
+	/**
+	 * Returns a future of the ratings of a year with more than the specified
+	 * number of votes.
+	 *
+	 * @param year  the year of release of the movies
+	 * @param votes the number of votes the movie should have more than
+	 * @return a future of the movie ratings, or of null if there are none
+	 */
+	public CompletableFuture<List<MovieRating>> getMovieRatingsByYearAndVoteLimitAsync(int year, long votes) {
+		return async(() -> getMovieRatingsByYearAndVoteLimit(year, votes));
+	}
+
+	/**
+	 * Returns a future of the specified number of ratings of a year with more
+	 * than the specified number of votes.
+	 *
+	 * @param year  the year of release of the movies
+	 * @param limit the number of movies to be returned
+	 * @param votes the number of votes the movie rating should have more than
+	 * @return a future of the movie ratings, or of null if there are none
+	 */
+	public CompletableFuture<List<MovieRating>> getMovieRatingsByYearLimitVoteLimitAsync(int year, long limit,
+			long votes) {
+		return async(() -> getMovieRatingsByYearLimitVoteLimit(year, limit, votes));
+	}
+
+	/**
+	 * Returns a future of the movies with the specified ids, in the order the ids
+	 * are given.
+	 *
+	 * @param ids the ids of the movies
+	 * @return a future of the movies, or of null if none of the ids has one
+	 */
+	public CompletableFuture<List<Movie>> getMoviesByIdsAsync(int[] ids) {
+		return async(() -> getMoviesByIds(ids));
+	}
+
+	/**
+	 * Runs a lookup on the database threads.
+	 *
+	 * @param <T>   the type of the result
+	 * @param query the lookup to run
+	 * @return a future of the result
+	 */
+	protected <T> CompletableFuture<T> async(QueryExecutor.Query<T> query) {
+		return QueryExecutor.supplyAsync(query);
+	}
+
+	/**
+	 * Passes every movie in the database to the handler, one row at a time.
+	 * Rows are read straight from the cursor and never collected into a list,
+	 * so memory use does not grow with the size of the table.
+	 * @param handler receives each movie
+	 * @throws SQLException if a database error occurs
+	 * @throws IOException if the handler fails to write a row
+	 */
+	public void exportMovies(RowHandler<Movie> handler) throws SQLException, IOException {
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(EXPORT_MOVIES);
+			ps.setFetchSize(EXPORT_FETCH_SIZE);
+
+			try (QueryTimer timer = QueryTimer.start("MovieDAO.exportMovies", connection, EXPORT_MOVIES);
+					ResultSet rs = ps.executeQuery()) {
+				// only the time to the first row is recorded, as the rest is
+				// spent writing the rows to the client
+				boolean more = rs.next();
+				timer.close();
+				while (more) {
+					handler.handle(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+					more = rs.next();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passes every row of the stars table to the handler, one row at a time.
+	 * @param handler receives each star
+	 * @throws SQLException if a database error occurs
+	 * @throws IOException if the handler fails to write a row
+	 */
+	public void exportStars(RowHandler<Star> handler) throws SQLException, IOException {
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(EXPORT_STARS);
+			ps.setFetchSize(EXPORT_FETCH_SIZE);
+
+			try (QueryTimer timer = QueryTimer.start("MovieDAO.exportStars", connection, EXPORT_STARS);
+					ResultSet rs = ps.executeQuery()) {
+				// only the time to the first row is recorded, as the rest is
+				// spent writing the rows to the client
+				boolean more = rs.next();
+				timer.close();
+				while (more) {
+					handler.handle(new Star(rs.getInt("movie_id"), rs.getInt("person_id")));
+					more = rs.next();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the movie listing query.
+	 * @param name the name the query is timed under
+	 * @param limit the number of movies to return
+	 * @return the movies
+	 * @throws SQLException if a database error occurs
+	 */
+	protected List<Movie> queryMovies(String name, long limit) throws SQLException {
+		List<Movie> movies = new ArrayList<>();
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(ALL_MOVIES);
+			ps.setLong(1, limit);
+
+			try (QueryTimer timer = QueryTimer.start(name, connection, ALL_MOVIES, limit);
+					ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					movies.add(timer.row(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year"))));
+				}
+			}
+		}
+
+		return movies;
+	}
+
+	/**
+	 * Runs the ratings query shared by every ratings method, or looks the
+	 * ratings up in the index once it is set.
+	 * @param name the name the query is timed under
+	 * @param year the year of release of the movies
+	 * @param limit the number of movie ratings to return
+	 * @param votes the number of votes a movie must have more than
+	 * @return the movie ratings, or null if there are none
+	 * @throws SQLException if a database error occurs
+	 */
+	protected List<MovieRating> queryRatings(String name, int year, long limit, long votes) throws SQLException {
+		RatingIndex index = ratingIndex;
+		if (index != null) {
+			try (QueryTimer timer = QueryTimer.start(name, year, votes, limit)) {
+				List<MovieRating> ratings = index.top(year, limit, votes);
+				if (ratings != null) {
+					ratings.forEach(timer::row);
+				}
+				return ratings;
+			}
+		}
+		List<MovieRating> movies = new ArrayList<>();
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(RATINGS_BY_YEAR);
+			ps.setInt(1, year);
+			ps.setLong(2, votes);
+			ps.setLong(3, limit);
+
+			try (QueryTimer timer = QueryTimer.start(name, connection, RATINGS_BY_YEAR, year, votes, limit);
+					ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					movies.add(timer.row(new MovieRating(rs.getInt("id"), rs.getString("title"), rs.getFloat("rating"), rs.getInt("votes"), rs.getInt("year"))));
+				}
+			}
+		}
+
 		if (movies.size() > 0) {
 			return movies;
-		}  {
-			return null;
 		}
-		
+		return null;
 	}
 
 }
@@ -1,90 +1,233 @@
 package com.flickfinder.dao;
 
-import java.sql.Connection;
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import com.flickfinder.cache.TinyLfuCache;
+import com.flickfinder.index.CostarIndex;
+import com.flickfinder.index.CsrIndex;
+import com.flickfinder.index.FuzzyNameIndex;
+import com.flickfinder.index.PathFinder;
+import com.flickfinder.model.Costar;
 import com.flickfinder.model.Movie;
 import com.flickfinder.model.Person;
+import com.flickfinder.model.Separation;
 import com.flickfinder.util.Database;
+import com.flickfinder.util.IdList;
+import com.flickfinder.util.PooledConnection;
+import com.flickfinder.util.QueryExecutor;
+import com.flickfinder.util.QueryTimer;
+import com.flickfinder.util.SearchDatabase;
 
 /**
- * TODO: Implement this class
  * The Data Access Object for the People table.
- * 
+ *
  * This class is responsible for getting data from the People table in the
  * database.
- * 
+ *
+ * Every query uses bound parameters, so each one is compiled once per pooled
+ * connection and then reused from the connection's statement cache.
+ *
+ * Each lookup also has an asynchronous variant, ending in Async, that runs
+ * the same query on the {@link QueryExecutor} and returns a future of its
+ * result.
+ *
  */
 public class PersonDAO {
 
-	// for the must have requirements, you will need to implement the following
-	// methods:	
-	// - getAllPeople()
-	// - getPersonById(int id)
-	// you will add further methods for the more advanced tasks; however, ensure your have completed 
-	// the must have requirements before you start these.  
-	
 	/**
-	 * The connection to the database
+	 * The SQL for listing people.
 	 */
-	private final Connection connection;
-	
+	private static final String ALL_PEOPLE = "select * from people LIMIT ?";
+
+	/**
+	 * The SQL for the page of people after a given id.
+	 */
+	public static final String PEOPLE_AFTER = "select * from people where id > ? ORDER BY id LIMIT ?";
+
+	/**
+	 * The SQL for finding a person by their id.
+	 */
+	private static final String PERSON_BY_ID = "select * from people where id = ?";
+
+	/**
+	 * The start of the SQL for finding a batch of people by id; the IN list is
+	 * added to fit the batch.
+	 */
+	public static final String PEOPLE_BY_IDS = "select * from people where id in";
+
+	/**
+	 * The SQL for finding the movies a person starred in.
+	 */
+	public static final String MOVIES_BY_PERSON_ID = "select * from movies inner join stars on movies.id=stars.movie_id where stars.person_id = ?";
+
+	/**
+	 * The start of the SQL for finding a batch of movies by id, used to fill in
+	 * the movies found through the star index and the paths; the IN list is
+	 * added to fit the batch.
+	 */
+	private static final String MOVIES_BY_IDS = "select * from movies where id in";
+
+	/**
+	 * The SQL for counting the movies a person shares with each of their
+	 * co-stars, used until the co-star index is built.
+	 */
+	public static final String COSTARS = "select people.id, people.name, people.birth, count(*) as shared from stars as own inner join stars as other on other.movie_id=own.movie_id and other.person_id<>own.person_id inner join people on people.id=other.person_id where own.person_id = ? group by people.id ORDER BY shared DESC, people.id LIMIT ?";
+
+	/**
+	 * The SQL for searching the names in the attached search database, best
+	 * match first, with the weighted boost of the votes taken off the bm25
+	 * score as for movies.
+	 */
+	private static final String SEARCH_PEOPLE = "select people.id, people.name, people.birth from search.person_search inner join people on people.id=person_search.rowid where person_search match ? ORDER BY bm25(person_search) - ? * person_search.boost, people.id LIMIT ?";
+
+	/**
+	 * The SQL for exporting every person.
+	 */
+	public static final String EXPORT_PEOPLE = "select * from people";
+
+	/**
+	 * How many rows the driver should fetch at a time while exporting.
+	 */
+	private static final int EXPORT_FETCH_SIZE = 1000;
+
+	/**
+	 * The default number of people to return.
+	 */
+	private static final int DEFAULT_LIMIT = 50;
+
+	/**
+	 * The database, which lends out a connection for each query.
+	 */
+	private final Database database;
+
+	/**
+	 * The cache of people by id, or null to query on every lookup.
+	 */
+	private TinyLfuCache<Person> cache;
+
+	/**
+	 * The index of the stars table, or null to join the table on every lookup.
+	 */
+	private CsrIndex starIndex;
+
+	/**
+	 * The typo tolerant index of names, or null to use the search database.
+	 */
+	private FuzzyNameIndex fuzzyIndex;
+
+	/**
+	 * The search of the stars graph, or null if there is none.
+	 */
+	private PathFinder pathFinder;
+
+	/**
+	 * The co-star graph, or null until it has been built.
+	 */
+	private volatile CostarIndex costarIndex;
+
 	/**
 	 * Constructs a SQLitePersonDAO object and gets the database connection.
 	 */
 	public PersonDAO() {
-		Database database = Database.getInstance();
-		connection = database.getConnection();
+		database = Database.getInstance();
 	}
-	
+
 	/**
 	 * Returns a list of people in the database (limited to 50)
-	 * 
+	 *
 	 * @return a list of people in the database
 	 * @throws SQLException if a database error occurs
 	 */
-	
+
 	public List<Person> getAllPeople() throws SQLException {
-		List<Person> persons = new ArrayList<>();
-		
-		Statement statement = connection.createStatement();
-		
-		ResultSet rs = statement.executeQuery("select * from people LIMIT 50");
-		
-		while (rs.next()) {
-			persons.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
-		}
-		
-		return persons;
-		
+		return queryPeople("PersonDAO.getAllPeople", DEFAULT_LIMIT);
 	}
-	
+
 	/**
 	 * Returns the movie with the specified id.
-	 * 
+	 *
 	 * @param id the id of the person
 	 * @return the person with the specified id
 	 * @throws SQLException if a database error occurs
 	 */
 	public Person getPersonById(int id) throws SQLException {
-		
-		String statement = "select * from people where id = ?";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, id);
-		ResultSet rs = ps.executeQuery();
-		
-		if (rs.next()) {
-			return new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth"));
-		}
-		
+		if (cache != null) {
+			return cache.get(id, this::findPersonById);
+		}
+		return findPersonById(id);
+	}
+
+	/**
+	 * Reads the person with the specified id from the database.
+	 *
+	 * @param id the id of the person
+	 * @return the person with the specified id, or null if there is none
+	 * @throws SQLException if a database error occurs
+	 */
+	private Person findPersonById(int id) throws SQLException {
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(PERSON_BY_ID);
+			ps.setInt(1, id);
+
+			try (QueryTimer timer = QueryTimer.start("PersonDAO.getPersonById", connection, PERSON_BY_ID, id);
+					ResultSet rs = ps.executeQuery()) {
+				if (rs.next()) {
+					return timer.row(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+				}
+			}
+		}
+
 		return null;
 	}
-	
+
+	/**
+	 * Returns the people with the specified ids, in the order the ids are given.
+	 * Ids with no person are left out. Each batch of up to 200 ids is fetched
+	 * with a single IN query.
+	 *
+	 * @param ids the ids of the people
+	 * @return the people, or null if none of the ids has one
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Person> getPeopleByIds(int[] ids) throws SQLException {
+		Map<Integer, Person> found = new HashMap<>(ids.length * 2);
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			for (int from = 0; from < ids.length; from += IdList.MAX_SIZE) {
+				int count = Math.min(IdList.MAX_SIZE, ids.length - from);
+				int size = IdList.paddedSize(count);
+				String sql = IdList.in(PEOPLE_BY_IDS, size);
+				PreparedStatement ps = connection.prepare(sql);
+				Object[] bound = new Object[size];
+				for (int i = 0; i < size; i++) {
+					// the padding repeats the last id of the batch
+					int id = ids[from + Math.min(i, count - 1)];
+					ps.setInt(i + 1, id);
+					bound[i] = id;
+				}
+
+				try (QueryTimer timer = QueryTimer.start("PersonDAO.getPeopleByIds", connection, sql, bound);
+						ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						Person person = timer.row(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+						found.put(person.getId(), person);
+					}
+				}
+			}
+		}
+
+		return IdList.order(ids, found);
+	}
+
 	/**
 	 * Returns the movies associated with a specific star
 	 * @param id the id of the person
@@ -92,26 +235,138 @@ public class PersonDAO {
 	 * @throws SQLException if a database error occurs
 	 */
 	public List<Movie> getMoviesByPersonId(int id) throws SQLException{
+		if (starIndex != null) {
+			return getIndexedMoviesByPersonId(id);
+		}
 		List<Movie> movies = new ArrayList<>();
-		
-		String statement = "select * from movies inner join stars on movies.id=stars.movie_id where stars.person_id = ?";
-		PreparedStatement ps = connection.prepareStatement(statement);
-		ps.setInt(1, id);
-		ResultSet rs = ps.executeQuery();
-		
-		
-		while (rs.next()) {
-			movies.add(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
-		}
-		
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(MOVIES_BY_PERSON_ID);
+			ps.setInt(1, id);
+
+			try (QueryTimer timer = QueryTimer.start("PersonDAO.getMoviesByPersonId", connection, MOVIES_BY_PERSON_ID, id);
+					ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					movies.add(timer.row(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year"))));
+				}
+			}
+		}
+
 		if (movies.size() > 0) {
 			return movies;
-		}  {
+		}
+		return null;
+
+	}
+
+	/**
+	 * Returns the movies of a person using the star index: the movie ids are a
+	 * slice of the index, and the movies are then read by primary key in
+	 * batches.
+	 *
+	 * @param id the id of the person
+	 * @return the list of movies associated with the person
+	 * @throws SQLException if a database error occurs
+	 */
+	private List<Movie> getIndexedMoviesByPersonId(int id) throws SQLException {
+		CsrIndex stars = starIndex;
+		int row = stars.personRow(id);
+		if (row < 0) {
 			return null;
 		}
-		
+		int start = stars.filmographyStart(row);
+		int[] ids = new int[stars.filmographyEnd(row) - start];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = stars.movieId(stars.filmographyMovie(start + i));
+		}
+		return getMoviesByIds("PersonDAO.getMoviesByPersonId", ids);
 	}
-	
+
+	/**
+	 * Sets the index of the stars table. Once set, the movies of a person are
+	 * found in the index instead of by joining the stars table.
+	 *
+	 * @param starIndex the index, or null to go back to the join
+	 */
+	public void setStarIndex(CsrIndex starIndex) {
+		this.starIndex = starIndex;
+	}
+
+	/**
+	 * Sets the typo tolerant index of names that fuzzy searches use.
+	 *
+	 * @param fuzzyIndex the index, or null to search the search database instead
+	 */
+	public void setFuzzyIndex(FuzzyNameIndex fuzzyIndex) {
+		this.fuzzyIndex = fuzzyIndex;
+	}
+
+	/**
+	 * Sets the search of the stars graph that getPath uses.
+	 *
+	 * @param pathFinder the search, or null if paths cannot be found
+	 */
+	public void setPathFinder(PathFinder pathFinder) {
+		this.pathFinder = pathFinder;
+	}
+
+	/**
+	 * Returns whether getPath can find paths.
+	 *
+	 * @return true if there is a search of the stars graph
+	 */
+	public boolean hasPathFinder() {
+		return pathFinder != null;
+	}
+
+	/**
+	 * Returns whether searchPeople can run, which needs the search database.
+	 *
+	 * @return true if the search database is attached
+	 */
+	public boolean hasSearch() {
+		return database.hasSearch();
+	}
+
+	/**
+	 * Returns whether searchPeopleFuzzy can run, either with the typo tolerant
+	 * index or with the search database.
+	 *
+	 * @return true if there is something to search
+	 */
+	public boolean hasFuzzySearch() {
+		return fuzzyIndex != null || hasSearch();
+	}
+
+	/**
+	 * Sets the co-star graph. Until it is set, co-stars are counted with a
+	 * self-join of the stars table.
+	 *
+	 * @param costarIndex the index, or null to go back to the join
+	 */
+	public void setCostarIndex(CostarIndex costarIndex) {
+		this.costarIndex = costarIndex;
+	}
+
+	/**
+	 * Sets the cache of people by id. Once set, getPersonById looks in the cache
+	 * before the database, and remembers ids that have no person too.
+	 *
+	 * @param cache the cache, or null to query on every lookup
+	 */
+	public void setCache(TinyLfuCache<Person> cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns the cache of people by id.
+	 *
+	 * @return the cache, or null if there is none
+	 */
+	public TinyLfuCache<Person> getCache() {
+		return cache;
+	}
+
 	/**
 	 * Returns the specified number of people
 	 * @param limit the number of people to be returned
@@ -119,22 +374,406 @@ public class PersonDAO {
 	 * @throws SQLException
 	 */
 	public List<Person> getAllPeopleByLimit(int limit) throws SQLException{
-		List<Person> people = new ArrayList<>();
 		if (limit < 1) {
-			limit = 50;
+			limit = DEFAULT_LIMIT;
 		}
 		if (limit >= 2147483647) {
-			limit = 50;
+			limit = DEFAULT_LIMIT;
+		}
+
+		return queryPeople("PersonDAO.getAllPeopleByLimit", limit);
+	}
+
+	/**
+	 * Returns the people with an id greater than the specified id, in id order.
+	 * This walks the primary key, so a page deep into the table costs the same
+	 * as the first one.
+	 * @param after the id to continue after
+	 * @param limit the number of people to be returned
+	 * @return a list of up to limit people
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Person> getPeopleAfter(int after, int limit) throws SQLException {
+		List<Person> people = new ArrayList<>();
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(PEOPLE_AFTER);
+			ps.setInt(1, after);
+			ps.setInt(2, limit);
+
+			try (QueryTimer timer = QueryTimer.start("PersonDAO.getPeopleAfter", connection, PEOPLE_AFTER, after, limit);
+					ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					people.add(timer.row(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth"))));
+				}
+			}
+		}
+
+		return people;
+	}
+
+	/**
+	 * Returns the people whose names contain all of the words of a search,
+	 * the last of which may be unfinished, best match first. Matches are
+	 * ranked by bm25 blended with the summed votes of the movies the person
+	 * starred in. This needs the search database to be attached.
+	 * @param text what the user searched for
+	 * @param limit the number of people to be returned
+	 * @return a list of up to limit people, or null if none match
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Person> searchPeople(String text, int limit) throws SQLException {
+		String match = SearchDatabase.matchQuery(text);
+		if (match == null) {
+			return null;
+		}
+		List<Person> people = new ArrayList<>();
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(SEARCH_PEOPLE);
+			ps.setString(1, match);
+			ps.setDouble(2, SearchDatabase.VOTES_WEIGHT);
+			ps.setInt(3, limit);
+
+			try (QueryTimer timer = QueryTimer.start("PersonDAO.searchPeople", connection, SEARCH_PEOPLE, match,
+					SearchDatabase.VOTES_WEIGHT, limit); ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					people.add(timer.row(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth"))));
+				}
+			}
+		}
+
+		if (people.size() > 0) {
+			return people;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the people whose names are close to a search, allowing for
+	 * misspelled words, fewest edits first and then by the summed votes of
+	 * the movies they starred in. Without the fuzzy index this is the same as
+	 * searchPeople.
+	 * @param text what the user searched for
+	 * @param limit the number of people to be returned
+	 * @return a list of up to limit people, or null if none match
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Person> searchPeopleFuzzy(String text, int limit) throws SQLException {
+		if (fuzzyIndex == null) {
+			return searchPeople(text, limit);
+		}
+		return fuzzyIndex.search(text, limit);
+	}
+
+	/**
+	 * Returns the shortest chain of movies connecting two people through the
+	 * stars table.
+	 * @param from the id of the first person
+	 * @param to the id of the last person
+	 * @return the chain, or null if there is no search of the stars graph or
+	 *         no chain within its depth limit
+	 * @throws SQLException if a database error occurs
+	 * @throws com.flickfinder.index.SearchTimeoutException if the search runs
+	 *         out of time
+	 */
+	public Separation getPath(int from, int to) throws SQLException {
+		PathFinder finder = pathFinder;
+		if (finder == null) {
+			return null;
+		}
+		int[] path = finder.find(from, to);
+		if (path == null) {
+			return null;
+		}
+		int[] personIds = new int[path.length / 2 + 1];
+		int[] movieIds = new int[path.length / 2];
+		for (int i = 0; i < path.length; i++) {
+			if (i % 2 == 0) {
+				personIds[i / 2] = path[i];
+			} else {
+				movieIds[i / 2] = path[i];
+			}
+		}
+		return new Separation(movieIds.length, getPeopleByIds(personIds), getMoviesByIds(movieIds));
+	}
+
+	/**
+	 * Returns the people who starred alongside a person in the most movies,
+	 * with the number of movies, most first and then in id order.
+	 * @param id the id of the person
+	 * @param limit the number of co-stars to be returned
+	 * @return a list of up to limit co-stars, or null if there are none
+	 * @throws SQLException if a database error occurs
+	 */
+	public List<Costar> getCostars(int id, int limit) throws SQLException {
+		CostarIndex index = costarIndex;
+		if (index == null) {
+			return queryCostars(id, limit);
+		}
+		int[] ids = index.top(id, limit);
+		if (ids.length == 0) {
+			return null;
+		}
+		List<Person> people = getPeopleByIds(ids);
+		if (people == null) {
+			return null;
+		}
+		List<Costar> costars = new ArrayList<>(people.size());
+		for (Person person : people) {
+			costars.add(new Costar(person.getId(), person.getName(), person.getBirth(),
+					index.count(id, person.getId())));
+		}
+		return costars;
+	}
+
+	/**
+	 * Counts a person's co-stars with a self-join of the stars table.
+	 *
+	 * @param id the id of the person
+	 * @param limit the number of co-stars to be returned
+	 * @return a list of up to limit co-stars, or null if there are none
+	 * @throws SQLException if a database error occurs
+	 */
+	protected List<Costar> queryCostars(int id, int limit) throws SQLException {
+		List<Costar> costars = new ArrayList<>();
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(COSTARS);
+			ps.setInt(1, id);
+			ps.setInt(2, limit);
+
+			try (QueryTimer timer = QueryTimer.start("PersonDAO.queryCostars", connection, COSTARS, id, limit);
+					ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					costars.add(timer.row(new Costar(rs.getInt("id"), rs.getString("name"), rs.getInt("birth"),
+							rs.getInt("shared"))));
+				}
+			}
+		}
+
+		if (costars.size() > 0) {
+			return costars;
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the movies with the specified ids, in the order the ids are given.
+	 *
+	 * @param ids the ids of the movies
+	 * @return the movies that were found
+	 * @throws SQLException if a database error occurs
+	 */
+	protected List<Movie> getMoviesByIds(int[] ids) throws SQLException {
+		List<Movie> movies = getMoviesByIds("PersonDAO.getMoviesByIds", ids);
+		return movies != null ? movies : new ArrayList<>();
+	}
+
+	/**
+	 * Returns the movies with the specified ids, in the order the ids are
+	 * given. Each batch of up to 200 ids is fetched with a single IN query.
+	 *
+	 * @param name the name the queries are timed under
+	 * @param ids  the ids of the movies
+	 * @return the movies, or null if none of the ids has one
+	 * @throws SQLException if a database error occurs
+	 */
+	private List<Movie> getMoviesByIds(String name, int[] ids) throws SQLException {
+		Map<Integer, Movie> found = new HashMap<>(ids.length * 2);
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			for (int from = 0; from < ids.length; from += IdList.MAX_SIZE) {
+				int count = Math.min(IdList.MAX_SIZE, ids.length - from);
+				int size = IdList.paddedSize(count);
+				String sql = IdList.in(MOVIES_BY_IDS, size);
+				PreparedStatement ps = connection.prepare(sql);
+				Object[] bound = new Object[size];
+				for (int i = 0; i < size; i++) {
+					// the padding repeats the last id of the batch
+					int id = ids[from + Math.min(i, count - 1)];
+					ps.setInt(i + 1, id);
+					bound[i] = id;
+				}
+
+				try (QueryTimer timer = QueryTimer.start(name, connection, sql, bound);
+						ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						Movie movie = timer.row(new Movie(rs.getInt("id"), rs.getString("title"), rs.getInt("year")));
+						found.put(movie.getId(), movie);
+					}
+				}
+			}
 		}
-		
-		Statement statement = connection.createStatement();
-		
-		ResultSet rs = statement.executeQuery("select * from people LIMIT " + limit);
-		
-		while (rs.next()) {
-			people.add(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+
+		return IdList.order(ids, found);
+	}
+
+	/**
+	 * Returns a future of the people in the database, limited to 50.
+	 *
+	 * @return a future of the people
+	 */
+	public CompletableFuture<List<Person>> getAllPeopleAsync() {
+		return async(this::getAllPeople);
+	}
+
+	/**
+	 * Returns a future of the person with the specified id.
+	 *
+	 * @param id the id of the person
+	 * @return a future of the person, or of null if there is none
+	 */
+	public CompletableFuture<Person> getPersonByIdAsync(int id) {
+		return async(() -> getPersonById(id));
+	}
+
+	/**
+	 * Returns a future of the movies the specified person starred in.
+	 *
+	 * @param id the id of the person
+	 * @return a future of the movies, or of null if there are none
+	 */
+	public CompletableFuture<List<Movie>> getMoviesByPersonIdAsync(int id) {
+		return async(() -> getMoviesByPersonId(id));
+	}
+
+	/**
+	 * Returns a future of the specified number of people.
+	 *
+	 * @param limit the number of people to be listed
+	 * @return a future of the people
+	 */
+	public CompletableFuture<List<Person>> getAllPeopleByLimitAsync(int limit) {
+		return async(() -> getAllPeopleByLimit(limit));
+	}
+
+	/**
+	 * Returns a future of the people that match a search, best match first.
+	 *
+	 * @param text  what the user searched for
+	 * @param limit the number of people to be returned
+	 * @return a future of the people, or of null if none match
+	 */
+	public CompletableFuture<List<Person>> searchPeopleAsync(String text, int limit) {
+		return async(() -> searchPeople(text, limit));
+	}
+
+	/**
+	 * Returns a future of the people whose names are close to a search.
+	 *
+	 * @param text  what the user searched for
+	 * @param limit the number of people to be returned
+	 * @return a future of the people, or of null if none match
+	 */
+	public CompletableFuture<List<Person>> searchPeopleFuzzyAsync(String text, int limit) {
+		return async(() -> searchPeopleFuzzy(text, limit));
+	}
+
+	/**
+	 * Returns a future of the shortest chain of movies connecting two people.
+	 *
+	 * @param from the id of the first person
+	 * @param to   the id of the last person
+	 * @return a future of the chain, or of null if there is none
+	 */
+	public CompletableFuture<Separation> getPathAsync(int from, int to) {
+		return async(() -> getPath(from, to));
+	}
+
+	/**
+	 * Returns a future of the people who starred alongside a person the most.
+	 *
+	 * @param id    the id of the person
+	 * @param limit the number of co-stars to be returned
+	 * @return a future of the co-stars, or of null if there are none
+	 */
+	public CompletableFuture<List<Costar>> getCostarsAsync(int id, int limit) {
+		return async(() -> getCostars(id, limit));
+	}
+
+	/**
+	 * Returns a future of the people with an id greater than the specified id.
+	 *
+	 * @param after the id to continue after
+	 * @param limit the number of people to be returned
+	 * @return a future of up to limit people
+	 */
+	public CompletableFuture<List<Person>> getPeopleAfterAsync(int after, int limit) {
+		return async(() -> getPeopleAfter(after, limit));
+	}
+
+	/**
+	 * Returns a future of the people with the specified ids, in the order the ids
+	 * are given.
+	 *
+	 * @param ids the ids of the people
+	 * @return a future of the people, or of null if none of the ids has one
+	 */
+	public CompletableFuture<List<Person>> getPeopleByIdsAsync(int[] ids) {
+		return async(() -> getPeopleByIds(ids));
+	}
+
+	/**
+	 * Runs a lookup on the database threads.
+	 *
+	 * @param <T>   the type of the result
+	 * @param query the lookup to run
+	 * @return a future of the result
+	 */
+	protected <T> CompletableFuture<T> async(QueryExecutor.Query<T> query) {
+		return QueryExecutor.supplyAsync(query);
+	}
+
+	/**
+	 * Passes every person in the database to the handler, one row at a time.
+	 * Rows are read straight from the cursor and never collected into a list,
+	 * so memory use does not grow with the size of the table.
+	 * @param handler receives each person
+	 * @throws SQLException if a database error occurs
+	 * @throws IOException if the handler fails to write a row
+	 */
+	public void exportPeople(RowHandler<Person> handler) throws SQLException, IOException {
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(EXPORT_PEOPLE);
+			ps.setFetchSize(EXPORT_FETCH_SIZE);
+
+			try (QueryTimer timer = QueryTimer.start("PersonDAO.exportPeople", connection, EXPORT_PEOPLE);
+					ResultSet rs = ps.executeQuery()) {
+				// only the time to the first row is recorded, as the rest is
+				// spent writing the rows to the client
+				boolean more = rs.next();
+				timer.close();
+				while (more) {
+					handler.handle(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth")));
+					more = rs.next();
+				}
+			}
 		}
-		
+	}
+
+	/**
+	 * Runs the people listing query.
+	 * @param name the name the query is timed under
+	 * @param limit the number of people to return
+	 * @return the people
+	 * @throws SQLException if a database error occurs
+	 */
+	protected List<Person> queryPeople(String name, int limit) throws SQLException {
+		List<Person> people = new ArrayList<>();
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			PreparedStatement ps = connection.prepare(ALL_PEOPLE);
+			ps.setInt(1, limit);
+
+			try (QueryTimer timer = QueryTimer.start(name, connection, ALL_PEOPLE, limit);
+					ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					people.add(timer.row(new Person(rs.getInt("id"), rs.getString("name"), rs.getInt("birth"))));
+				}
+			}
+		}
+
 		return people;
 	}
 }
@@ -0,0 +1,24 @@
+package com.flickfinder.dao;
+
+import java.io.IOException;
+
+/**
+ * Receives rows one at a time as a DAO reads them from the database.
+ *
+ * This lets a caller deal with each row (for example, write it to the
+ * response) without the DAO building a list of every row first.
+ *
+ * @param <T> the type of the rows
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+
+	/**
+	 * Handles a single row.
+	 *
+	 * @param row the row
+	 * @throws IOException if the row could not be written out
+	 */
+	void handle(T row) throws IOException;
+
+}
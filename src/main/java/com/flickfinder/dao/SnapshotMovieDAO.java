@@ -0,0 +1,235 @@
+package com.flickfinder.dao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.flickfinder.index.CsrIndex;
+import com.flickfinder.index.Snapshot;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.model.Person;
+import com.flickfinder.model.Star;
+import com.flickfinder.util.QueryExecutor;
+
+/**
+ * A Movie Data Access Object that answers from an in-memory {@link Snapshot}
+ * instead of running SQL.
+ *
+ * The results match those of {@link MovieDAO}; the parameter checks and
+ * defaults are inherited from it, and only the lookups are replaced.
+ */
+public class SnapshotMovieDAO extends MovieDAO {
+
+	/**
+	 * The snapshot of the database.
+	 */
+	private final Snapshot snapshot;
+
+	/**
+	 * Constructs a SnapshotMovieDAO object backed by the given snapshot.
+	 *
+	 * @param snapshot the snapshot to answer from
+	 */
+	public SnapshotMovieDAO(Snapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Returns the movie with the specified id.
+	 *
+	 * @param id the id of the movie
+	 * @return the movie with the specified id, or null if there is none
+	 */
+	@Override
+	public Movie getMovieById(int id) {
+		int index = snapshot.movieIndex(id);
+		if (index < 0) {
+			return null;
+		}
+		return movie(index);
+	}
+
+	/**
+	 * Returns the movies with the specified ids, in the order the ids are given.
+	 *
+	 * @param ids the ids of the movies
+	 * @return the movies, or null if none of the ids has one
+	 */
+	@Override
+	public List<Movie> getMoviesByIds(int[] ids) {
+		List<Movie> movies = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			int index = snapshot.movieIndex(id);
+			if (index >= 0) {
+				movies.add(movie(index));
+			}
+		}
+		if (movies.size() > 0) {
+			return movies;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the stars associated with the specified movie id
+	 *
+	 * @param id the id of the movie
+	 * @return the list of stars, or null if there are none
+	 */
+	@Override
+	public List<Person> getStarsByMovieId(int id) {
+		return people(snapshot.getStars(), id);
+	}
+
+	/**
+	 * Returns the directors associated with the specified movie id
+	 *
+	 * @param id the id of the movie
+	 * @return the list of directors, or null if there are none
+	 */
+	@Override
+	public List<Person> getDirectorsByMovieId(int id) {
+		return people(snapshot.getDirectors(), id);
+	}
+
+	/**
+	 * Returns the rating of the specified movie.
+	 *
+	 * @param id the id of the movie
+	 * @return the movie rating, or null if the movie has no rating
+	 */
+	@Override
+	public MovieRating getRatingByMovieId(int id) {
+		int index = snapshot.movieIndex(id);
+		if (index < 0 || !snapshot.hasRating(index)) {
+			return null;
+		}
+		return new MovieRating(id, snapshot.title(index), snapshot.rating(index), snapshot.votes(index),
+				snapshot.year(index));
+	}
+
+	/**
+	 * Returns the people of a movie in the stars or directors table.
+	 *
+	 * @param stars the table to look in
+	 * @param id    the id of the movie
+	 * @return the list of people, or null if there are none
+	 */
+	private List<Person> people(CsrIndex stars, int id) {
+		int row = stars.movieRow(id);
+		if (row < 0) {
+			return null;
+		}
+		List<Person> persons = new ArrayList<>(stars.castEnd(row) - stars.castStart(row));
+		for (int i = stars.castStart(row); i < stars.castEnd(row); i++) {
+			int personId = stars.personId(stars.castMember(i));
+			int index = snapshot.personIndex(personId);
+			if (index >= 0) {
+				persons.add(new Person(personId, snapshot.name(index), snapshot.birth(index)));
+			}
+		}
+		if (persons.size() > 0) {
+			return persons;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the movies with an id greater than the specified id, in id order.
+	 *
+	 * @param after the id to continue after
+	 * @param limit the number of movies to be returned
+	 * @return a list of up to limit movies
+	 */
+	@Override
+	public List<Movie> getMoviesAfter(int after, int limit) {
+		int from = snapshot.movieIndexAfter(after);
+		int to = (int) Math.min(snapshot.getMovieCount(), (long) from + limit);
+		List<Movie> movies = new ArrayList<>(Math.max(0, to - from));
+		for (int i = from; i < to; i++) {
+			movies.add(movie(i));
+		}
+		return movies;
+	}
+
+	/**
+	 * Passes every movie to the handler, one at a time.
+	 *
+	 * @param handler receives each movie
+	 * @throws IOException if the handler fails to write a row
+	 */
+	@Override
+	public void exportMovies(RowHandler<Movie> handler) throws IOException {
+		for (int i = 0; i < snapshot.getMovieCount(); i++) {
+			handler.handle(movie(i));
+		}
+	}
+
+	/**
+	 * Passes every row of the stars table to the handler, one at a time.
+	 *
+	 * @param handler receives each star
+	 * @throws IOException if the handler fails to write a row
+	 */
+	@Override
+	public void exportStars(RowHandler<Star> handler) throws IOException {
+		CsrIndex stars = snapshot.getStars();
+		for (int row = 0; row < stars.getMovieCount(); row++) {
+			for (int i = stars.castStart(row); i < stars.castEnd(row); i++) {
+				handler.handle(new Star(stars.movieId(row), stars.personId(stars.castMember(i))));
+			}
+		}
+	}
+
+	/**
+	 * Returns the first movies in id order.
+	 *
+	 * @param name  the name the query is timed under, not used here
+	 * @param limit the number of movies to return
+	 * @return the movies
+	 */
+	@Override
+	protected List<Movie> queryMovies(String name, long limit) {
+		return getMoviesAfter(Integer.MIN_VALUE, (int) Math.min(limit, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Returns the highest rated movies of a year that have more than the given
+	 * number of votes.
+	 *
+	 * @param name  the name the query is timed under, not used here
+	 * @param year  the year of release of the movies
+	 * @param limit the number of movie ratings to return
+	 * @param votes the number of votes a movie must have more than
+	 * @return the movie ratings, or null if there are none
+	 */
+	@Override
+	protected List<MovieRating> queryRatings(String name, int year, long limit, long votes) {
+		return snapshot.getRatingIndex().top(year, limit, votes);
+	}
+
+	/**
+	 * Runs a lookup on the calling thread, as the snapshot never blocks.
+	 *
+	 * @param <T>   the type of the result
+	 * @param query the lookup to run
+	 * @return a completed future of the result
+	 */
+	@Override
+	protected <T> CompletableFuture<T> async(QueryExecutor.Query<T> query) {
+		return QueryExecutor.completed(query);
+	}
+
+	/**
+	 * Builds the movie at the given index of the snapshot.
+	 *
+	 * @param index the index of the movie
+	 * @return the movie
+	 */
+	private Movie movie(int index) {
+		return new Movie(snapshot.movieId(index), snapshot.title(index), snapshot.year(index));
+	}
+
+}
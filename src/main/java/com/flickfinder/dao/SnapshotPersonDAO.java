@@ -0,0 +1,225 @@
+package com.flickfinder.dao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.flickfinder.index.CsrIndex;
+import com.flickfinder.index.Snapshot;
+import com.flickfinder.model.Costar;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.QueryExecutor;
+
+/**
+ * A Person Data Access Object that answers from an in-memory
+ * {@link Snapshot} instead of running SQL.
+ *
+ * The results match those of {@link PersonDAO}; the parameter checks and
+ * defaults are inherited from it, and only the lookups are replaced.
+ */
+public class SnapshotPersonDAO extends PersonDAO {
+
+	/**
+	 * The snapshot of the database.
+	 */
+	private final Snapshot snapshot;
+
+	/**
+	 * Constructs a SnapshotPersonDAO object backed by the given snapshot.
+	 *
+	 * @param snapshot the snapshot to answer from
+	 */
+	public SnapshotPersonDAO(Snapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Returns the person with the specified id.
+	 *
+	 * @param id the id of the person
+	 * @return the person with the specified id, or null if there is none
+	 */
+	@Override
+	public Person getPersonById(int id) {
+		int index = snapshot.personIndex(id);
+		if (index < 0) {
+			return null;
+		}
+		return person(index);
+	}
+
+	/**
+	 * Returns the people with the specified ids, in the order the ids are given.
+	 *
+	 * @param ids the ids of the people
+	 * @return the people, or null if none of the ids has one
+	 */
+	@Override
+	public List<Person> getPeopleByIds(int[] ids) {
+		List<Person> people = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			int index = snapshot.personIndex(id);
+			if (index >= 0) {
+				people.add(person(index));
+			}
+		}
+		if (people.size() > 0) {
+			return people;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the movies associated with a specific star
+	 *
+	 * @param id the id of the person
+	 * @return the list of movies, or null if there are none
+	 */
+	@Override
+	public List<Movie> getMoviesByPersonId(int id) {
+		CsrIndex stars = snapshot.getStars();
+		int row = stars.personRow(id);
+		if (row < 0) {
+			return null;
+		}
+		List<Movie> movies = new ArrayList<>(stars.filmographyEnd(row) - stars.filmographyStart(row));
+		for (int i = stars.filmographyStart(row); i < stars.filmographyEnd(row); i++) {
+			int movieId = stars.movieId(stars.filmographyMovie(i));
+			int index = snapshot.movieIndex(movieId);
+			if (index >= 0) {
+				movies.add(new Movie(movieId, snapshot.title(index), snapshot.year(index)));
+			}
+		}
+		if (movies.size() > 0) {
+			return movies;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the people with an id greater than the specified id, in id order.
+	 *
+	 * @param after the id to continue after
+	 * @param limit the number of people to be returned
+	 * @return a list of up to limit people
+	 */
+	@Override
+	public List<Person> getPeopleAfter(int after, int limit) {
+		int from = snapshot.personIndexAfter(after);
+		int to = (int) Math.min(snapshot.getPersonCount(), (long) from + limit);
+		List<Person> people = new ArrayList<>(Math.max(0, to - from));
+		for (int i = from; i < to; i++) {
+			people.add(person(i));
+		}
+		return people;
+	}
+
+	/**
+	 * Passes every person to the handler, one at a time.
+	 *
+	 * @param handler receives each person
+	 * @throws IOException if the handler fails to write a row
+	 */
+	@Override
+	public void exportPeople(RowHandler<Person> handler) throws IOException {
+		for (int i = 0; i < snapshot.getPersonCount(); i++) {
+			handler.handle(person(i));
+		}
+	}
+
+	/**
+	 * Returns the first people in id order.
+	 *
+	 * @param name  the name the query is timed under, not used here
+	 * @param limit the number of people to return
+	 * @return the people
+	 */
+	@Override
+	protected List<Person> queryPeople(String name, int limit) {
+		return getPeopleAfter(Integer.MIN_VALUE, limit);
+	}
+
+	/**
+	 * Runs a lookup on the calling thread, as the snapshot never blocks.
+	 *
+	 * @param <T>   the type of the result
+	 * @param query the lookup to run
+	 * @return a completed future of the result
+	 */
+	@Override
+	protected <T> CompletableFuture<T> async(QueryExecutor.Query<T> query) {
+		return QueryExecutor.completed(query);
+	}
+
+	/**
+	 * Returns the movies with the specified ids, in the order the ids are given.
+	 *
+	 * @param ids the ids of the movies
+	 * @return the movies that were found
+	 */
+	@Override
+	protected List<Movie> getMoviesByIds(int[] ids) {
+		List<Movie> movies = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			int index = snapshot.movieIndex(id);
+			if (index >= 0) {
+				movies.add(new Movie(id, snapshot.title(index), snapshot.year(index)));
+			}
+		}
+		return movies;
+	}
+
+	/**
+	 * Counts a person's co-stars by walking the snapshot's star index.
+	 *
+	 * @param id    the id of the person
+	 * @param limit the number of co-stars to be returned
+	 * @return a list of up to limit co-stars, or null if there are none
+	 */
+	@Override
+	protected List<Costar> queryCostars(int id, int limit) {
+		CsrIndex stars = snapshot.getStars();
+		int row = stars.personRow(id);
+		if (row < 0) {
+			return null;
+		}
+		Map<Integer, Integer> shared = new HashMap<>();
+		for (int f = stars.filmographyStart(row); f < stars.filmographyEnd(row); f++) {
+			int movie = stars.filmographyMovie(f);
+			for (int c = stars.castStart(movie); c < stars.castEnd(movie); c++) {
+				if (stars.castMember(c) != row) {
+					shared.merge(stars.castMember(c), 1, Integer::sum);
+				}
+			}
+		}
+		List<Costar> costars = new ArrayList<>();
+		// the star index is built from the stars table alone, so a co-star may
+		// have no row in people; like the join, such co-stars are left out
+		shared.entrySet().stream()
+				.filter(entry -> snapshot.personIndex(stars.personId(entry.getKey())) >= 0)
+				.sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+				.limit(limit).forEach(entry -> {
+					Person person = person(snapshot.personIndex(stars.personId(entry.getKey())));
+					costars.add(new Costar(person.getId(), person.getName(), person.getBirth(), entry.getValue()));
+				});
+		if (costars.size() > 0) {
+			return costars;
+		}
+		return null;
+	}
+
+	/**
+	 * Builds the person at the given index of the snapshot.
+	 *
+	 * @param index the index of the person
+	 * @return the person
+	 */
+	private Person person(int index) {
+		return new Person(snapshot.personId(index), snapshot.name(index), snapshot.birth(index));
+	}
+
+}
@@ -0,0 +1,45 @@
+package com.flickfinder.index;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of strings packed into one char array.
+ *
+ * String i is {@code chars[offsets[i]]} up to (not including)
+ * {@code chars[offsets[i + 1]]}, so a column of strings costs one array of
+ * chars and one of offsets rather than an object per row.
+ */
+class CharBuffer {
+
+	private char[] chars = new char[1024];
+	private int length;
+	private int[] offsets;
+	private int count;
+
+	CharBuffer(int capacity) {
+		offsets = new int[capacity + 1];
+	}
+
+	void add(String value) {
+		if (value == null) {
+			value = "";
+		}
+		if (count + 1 == offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+		if (length + value.length() > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + value.length()));
+		}
+		value.getChars(0, value.length(), chars, length);
+		length += value.length();
+		offsets[++count] = length;
+	}
+
+	char[] chars() {
+		return Arrays.copyOf(chars, length);
+	}
+
+	int[] offsets() {
+		return Arrays.copyOf(offsets, count + 1);
+	}
+}
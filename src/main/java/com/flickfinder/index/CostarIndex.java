@@ -0,0 +1,313 @@
+package com.flickfinder.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The co-star graph: for every person, the people they starred alongside
+ * and in how many movies.
+ *
+ * It is built from the movie to person lists of the star index. Every
+ * movie's cast is turned into (person, co-star) pairs, split across the
+ * fork-join pool by ranges of movies, and the pairs are sorted in parallel
+ * so that repeats of a pair, one per shared movie, end up next to each
+ * other. Counting those runs gives each person's co-stars, stored CSR style
+ * as their rows in ascending order with a parallel array of counts held as
+ * chars, which saturate at 65535.
+ *
+ * Two caps keep hubs from blowing up the build and the memory: only the
+ * first {@value #MAX_CAST} people of a cast are paired up, and each person
+ * keeps only their {@value #MAX_COSTARS} most frequent co-stars.
+ */
+public class CostarIndex {
+
+	/**
+	 * The most people of a movie's cast that are paired up.
+	 */
+	static final int MAX_CAST = 100;
+
+	/**
+	 * The most co-stars kept for one person.
+	 */
+	static final int MAX_COSTARS = 256;
+
+	/**
+	 * The most rows a fork-join task handles without splitting.
+	 */
+	private static final int GRAIN = 4096;
+
+	private final CsrIndex stars;
+
+	// one row per person row of the star index
+	private final int[] offsets;
+	private final int[] costars;
+	private final char[] counts;
+
+	/**
+	 * How long the index took to build, in milliseconds.
+	 */
+	private final long buildMillis;
+
+	private CostarIndex(CsrIndex stars, int[] offsets, int[] costars, char[] counts, long buildMillis) {
+		this.stars = stars;
+		this.offsets = offsets;
+		this.costars = costars;
+		this.counts = counts;
+		this.buildMillis = buildMillis;
+	}
+
+	/**
+	 * Builds the co-star graph of a star index.
+	 *
+	 * @param stars the index of the stars table
+	 * @return the index
+	 */
+	public static CostarIndex build(CsrIndex stars) {
+		long start = System.nanoTime();
+		int movieCount = stars.getMovieCount();
+		int personCount = stars.getPersonCount();
+
+		// every ordered pair of people in each cast, as person << 32 | co-star
+		int[] pairOffsets = new int[movieCount + 1];
+		for (int movie = 0; movie < movieCount; movie++) {
+			int cast = Math.min(stars.castEnd(movie) - stars.castStart(movie), MAX_CAST);
+			pairOffsets[movie + 1] = Math.addExact(pairOffsets[movie], cast * (cast - 1));
+		}
+		long[] pairs = new long[pairOffsets[movieCount]];
+		parallel(movieCount, (from, to) -> {
+			for (int movie = from; movie < to; movie++) {
+				int first = stars.castStart(movie);
+				int last = Math.min(stars.castEnd(movie), first + MAX_CAST);
+				int at = pairOffsets[movie];
+				for (int a = first; a < last; a++) {
+					for (int b = first; b < last; b++) {
+						if (a != b) {
+							int person = stars.castMember(a);
+							int costar = stars.castMember(b);
+							// someone listed twice is not their own co-star
+							pairs[at++] = person == costar ? -1 : ((long) person << 32) | costar;
+						}
+					}
+				}
+			}
+		});
+		Arrays.parallelSort(pairs);
+
+		// where each person's pairs start
+		int[] runOffsets = new int[personCount + 1];
+		int skipped = 0;
+		for (long pair : pairs) {
+			if (pair < 0) {
+				skipped++;
+			} else {
+				runOffsets[(int) (pair >>> 32) + 1]++;
+			}
+		}
+		runOffsets[0] = skipped;
+		for (int person = 0; person < personCount; person++) {
+			runOffsets[person + 1] += runOffsets[person];
+		}
+
+		// how many co-stars each person keeps, then the co-stars themselves
+		int[] offsets = new int[personCount + 1];
+		parallel(personCount, (from, to) -> {
+			for (int person = from; person < to; person++) {
+				offsets[person + 1] = Math.min(distinct(pairs, runOffsets[person], runOffsets[person + 1]),
+						MAX_COSTARS);
+			}
+		});
+		for (int person = 0; person < personCount; person++) {
+			offsets[person + 1] += offsets[person];
+		}
+		int[] costars = new int[offsets[personCount]];
+		char[] counts = new char[offsets[personCount]];
+		parallel(personCount, (from, to) -> {
+			for (int person = from; person < to; person++) {
+				fill(pairs, runOffsets[person], runOffsets[person + 1], costars, counts, offsets[person],
+						offsets[person + 1] - offsets[person]);
+			}
+		});
+
+		return new CostarIndex(stars, offsets, costars, counts, (System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Returns the number of distinct pairs in a sorted range.
+	 */
+	private static int distinct(long[] pairs, int from, int to) {
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			if (i == from || pairs[i] != pairs[i - 1]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the repeats of each pair in one person's sorted range, and writes
+	 * the kept co-stars and their counts, in co-star order. If there are too
+	 * many, the most frequent are kept.
+	 */
+	private static void fill(long[] pairs, int from, int to, int[] costars, char[] counts, int at, int kept) {
+		// (65535 - count) << 32 | co-star, so the most frequent sort first
+		long[] runs = new long[distinct(pairs, from, to)];
+		int run = 0;
+		for (int i = from; i < to;) {
+			int end = i + 1;
+			while (end < to && pairs[end] == pairs[i]) {
+				end++;
+			}
+			runs[run++] = ((long) (Character.MAX_VALUE - Math.min(end - i, Character.MAX_VALUE)) << 32)
+					| (int) pairs[i];
+			i = end;
+		}
+		if (runs.length > kept) {
+			Arrays.sort(runs);
+			runs = Arrays.copyOf(runs, kept);
+			// back into co-star order
+			swapHalves(runs);
+			Arrays.sort(runs);
+			swapHalves(runs);
+		}
+		for (int i = 0; i < kept; i++) {
+			costars[at + i] = (int) runs[i];
+			counts[at + i] = (char) (Character.MAX_VALUE - (runs[i] >>> 32));
+		}
+	}
+
+	private static void swapHalves(long[] values) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (values[i] << 32) | (values[i] >>> 32);
+		}
+	}
+
+	/**
+	 * Runs a body over the range 0 to size, split into tasks on the common
+	 * fork-join pool.
+	 */
+	private static void parallel(int size, RangeBody body) {
+		ForkJoinPool.commonPool().invoke(new RangeTask(0, size, body));
+	}
+
+	/**
+	 * Work on a range of rows.
+	 */
+	@FunctionalInterface
+	private interface RangeBody {
+		void run(int from, int to);
+	}
+
+	/**
+	 * Splits a range of rows in half until it is small enough to run.
+	 */
+	private static final class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final transient RangeBody body;
+
+		private RangeTask(int from, int to, RangeBody body) {
+			this.from = from;
+			this.to = to;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				body.run(from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RangeTask(from, middle, body), new RangeTask(middle, to, body));
+		}
+	}
+
+	/**
+	 * Returns the people who starred alongside a person in the most movies,
+	 * most first and then in id order.
+	 *
+	 * @param personId the id of the person
+	 * @param limit    the most co-stars to return
+	 * @return the ids of the co-stars, empty if there are none
+	 */
+	public int[] top(int personId, int limit) {
+		int row = stars.personRow(personId);
+		if (row < 0) {
+			return new int[0];
+		}
+		int from = offsets[row];
+		long[] ranked = new long[offsets[row + 1] - from];
+		for (int i = 0; i < ranked.length; i++) {
+			ranked[i] = ((long) (Character.MAX_VALUE - counts[from + i]) << 32) | costars[from + i];
+		}
+		Arrays.sort(ranked);
+		int[] ids = new int[Math.min(limit, ranked.length)];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = stars.personId((int) ranked[i]);
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the number of movies two people starred in together.
+	 *
+	 * @param personId  the id of one person
+	 * @param costarId  the id of the other
+	 * @return the number of shared movies, or 0 if the other is not a kept
+	 *         co-star of the first
+	 */
+	public int count(int personId, int costarId) {
+		int row = stars.personRow(personId);
+		int costar = stars.personRow(costarId);
+		if (row < 0 || costar < 0) {
+			return 0;
+		}
+		int at = Arrays.binarySearch(costars, offsets[row], offsets[row + 1], costar);
+		return at >= 0 ? counts[at] : 0;
+	}
+
+	/**
+	 * Returns the number of co-star links in the index, counting each
+	 * direction.
+	 *
+	 * @return the link count
+	 */
+	public int size() {
+		return costars.length;
+	}
+
+	/**
+	 * Returns how much memory the arrays of the index take up.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * (offsets.length + costars.length) + 2L * counts.length;
+	}
+
+	/**
+	 * Returns how long the index took to build.
+	 *
+	 * @return the build time in milliseconds
+	 */
+	public long getBuildMillis() {
+		return buildMillis;
+	}
+
+	/**
+	 * Returns a one line summary of the index, for the startup log.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		return "CostarIndex [people=" + (offsets.length - 1) + ", links=" + costars.length + ", bytes="
+				+ getMemoryBytes() + ", buildMillis=" + buildMillis + "]";
+	}
+
+}
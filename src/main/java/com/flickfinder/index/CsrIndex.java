@@ -0,0 +1,359 @@
+package com.flickfinder.index;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import com.flickfinder.util.Database;
+import com.flickfinder.util.PooledConnection;
+
+/**
+ * A compressed sparse row (CSR) index over a movie to person table, such as
+ * stars or directors, built in both directions.
+ *
+ * Every movie in the table gets a row. The rows are in movie id order, and
+ * the people of row r are {@code cast[castOffsets[r]]} up to (not including)
+ * {@code cast[castOffsets[r + 1]]}. People get rows the same way, pointing
+ * back at movie rows. Entries hold the row of the other side rather than its
+ * id, so walking the graph never needs an id lookup; the id of a row is one
+ * array read away.
+ *
+ * Finding the people of a movie is a binary search for its row followed by
+ * a slice of one array, with no boxing and no join.
+ */
+public class CsrIndex {
+
+	// one row per movie, in id order
+	private final int[] movieIds;
+	private final int[] castOffsets;
+	private final int[] cast;
+
+	// one row per person, in id order
+	private final int[] personIds;
+	private final int[] filmographyOffsets;
+	private final int[] filmography;
+
+	/**
+	 * How long the index took to build, in milliseconds.
+	 */
+	private final long buildMillis;
+
+	private CsrIndex(int[] movieIds, int[] castOffsets, int[] cast, int[] personIds, int[] filmographyOffsets,
+			int[] filmography, long buildMillis) {
+		this.movieIds = movieIds;
+		this.castOffsets = castOffsets;
+		this.cast = cast;
+		this.personIds = personIds;
+		this.filmographyOffsets = filmographyOffsets;
+		this.filmography = filmography;
+		this.buildMillis = buildMillis;
+	}
+
+	/**
+	 * Builds the index for a movie_id, person_id table.
+	 *
+	 * @param database the database to read from
+	 * @param table    the name of the table, stars or directors
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	public static CsrIndex load(Database database, String table) throws SQLException {
+		try (PooledConnection connection = database.borrowConnection()) {
+			return load(connection, table);
+		}
+	}
+
+	/**
+	 * Builds the index for a movie_id, person_id table using a connection that
+	 * has already been borrowed.
+	 *
+	 * @param connection the connection to use
+	 * @param table      the name of the table, stars or directors
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	static CsrIndex load(PooledConnection connection, String table) throws SQLException {
+		long start = System.nanoTime();
+		int[] movies = new int[1024];
+		int[] people = new int[1024];
+		int size = 0;
+		try (ResultSet rs = connection.prepare("select movie_id, person_id from " + table).executeQuery()) {
+			while (rs.next()) {
+				if (size == movies.length) {
+					movies = Arrays.copyOf(movies, size * 2);
+					people = Arrays.copyOf(people, size * 2);
+				}
+				movies[size] = rs.getInt("movie_id");
+				people[size] = rs.getInt("person_id");
+				size++;
+			}
+		}
+		return build(movies, people, size, start);
+	}
+
+	/**
+	 * Builds the index from parallel arrays of movie and person ids.
+	 *
+	 * @param movies the movie id of each pair
+	 * @param people the person id of each pair
+	 * @param size   the number of pairs
+	 * @return the index
+	 */
+	public static CsrIndex build(int[] movies, int[] people, int size) {
+		return build(movies, people, size, System.nanoTime());
+	}
+
+	private static CsrIndex build(int[] movies, int[] people, int size, long start) {
+		int[] movieIds = distinct(movies, size);
+		int[] personIds = distinct(people, size);
+
+		// swap the ids for rows, then count sort each direction
+		int[] movieRows = new int[size];
+		int[] personRows = new int[size];
+		for (int i = 0; i < size; i++) {
+			movieRows[i] = Arrays.binarySearch(movieIds, movies[i]);
+			personRows[i] = Arrays.binarySearch(personIds, people[i]);
+		}
+		int[] castOffsets = new int[movieIds.length + 1];
+		int[] cast = group(movieRows, personRows, size, castOffsets);
+		int[] filmographyOffsets = new int[personIds.length + 1];
+		int[] filmography = group(personRows, movieRows, size, filmographyOffsets);
+
+		return new CsrIndex(movieIds, castOffsets, cast, personIds, filmographyOffsets, filmography,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Returns the sorted distinct values of the first size entries of an array.
+	 */
+	private static int[] distinct(int[] values, int size) {
+		int[] sorted = Arrays.copyOf(values, size);
+		Arrays.sort(sorted);
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (count == 0 || sorted[i] != sorted[count - 1]) {
+				sorted[count++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, count);
+	}
+
+	/**
+	 * Groups the targets by their source row with a counting sort, filling in
+	 * the offsets of each row. Each row's targets end up in ascending order.
+	 */
+	private static int[] group(int[] sources, int[] targets, int size, int[] offsets) {
+		for (int i = 0; i < size; i++) {
+			offsets[sources[i] + 1]++;
+		}
+		for (int row = 0; row + 1 < offsets.length; row++) {
+			offsets[row + 1] += offsets[row];
+		}
+		int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+		int[] grouped = new int[size];
+		for (int i = 0; i < size; i++) {
+			grouped[next[sources[i]]++] = targets[i];
+		}
+		for (int row = 0; row + 1 < offsets.length; row++) {
+			Arrays.sort(grouped, offsets[row], offsets[row + 1]);
+		}
+		return grouped;
+	}
+
+	/**
+	 * Returns the number of pairs in the index.
+	 *
+	 * @return the pair count
+	 */
+	public int size() {
+		return cast.length;
+	}
+
+	/**
+	 * Returns the number of movie rows.
+	 *
+	 * @return the movie count
+	 */
+	public int getMovieCount() {
+		return movieIds.length;
+	}
+
+	/**
+	 * Returns the number of person rows.
+	 *
+	 * @return the person count
+	 */
+	public int getPersonCount() {
+		return personIds.length;
+	}
+
+	/**
+	 * Returns the row of a movie.
+	 *
+	 * @param movieId the id of the movie
+	 * @return the row, or -1 if the movie is not in the table
+	 */
+	public int movieRow(int movieId) {
+		int row = Arrays.binarySearch(movieIds, movieId);
+		return row >= 0 ? row : -1;
+	}
+
+	/**
+	 * Returns the row of a person.
+	 *
+	 * @param personId the id of the person
+	 * @return the row, or -1 if the person is not in the table
+	 */
+	public int personRow(int personId) {
+		int row = Arrays.binarySearch(personIds, personId);
+		return row >= 0 ? row : -1;
+	}
+
+	/**
+	 * Returns the id of a movie row.
+	 *
+	 * @param row the movie row
+	 * @return the movie id
+	 */
+	public int movieId(int row) {
+		return movieIds[row];
+	}
+
+	/**
+	 * Returns the id of a person row.
+	 *
+	 * @param row the person row
+	 * @return the person id
+	 */
+	public int personId(int row) {
+		return personIds[row];
+	}
+
+	/**
+	 * Returns where the people of a movie row start.
+	 *
+	 * @param row the movie row
+	 * @return the first position, for {@link #castMember(int)}
+	 */
+	public int castStart(int row) {
+		return castOffsets[row];
+	}
+
+	/**
+	 * Returns where the people of a movie row end.
+	 *
+	 * @param row the movie row
+	 * @return the position after the last person
+	 */
+	public int castEnd(int row) {
+		return castOffsets[row + 1];
+	}
+
+	/**
+	 * Returns the person row at a position in the cast array.
+	 *
+	 * @param position the position, between castStart and castEnd of a row
+	 * @return the person row
+	 */
+	public int castMember(int position) {
+		return cast[position];
+	}
+
+	/**
+	 * Returns where the movies of a person row start.
+	 *
+	 * @param row the person row
+	 * @return the first position, for {@link #filmographyMovie(int)}
+	 */
+	public int filmographyStart(int row) {
+		return filmographyOffsets[row];
+	}
+
+	/**
+	 * Returns where the movies of a person row end.
+	 *
+	 * @param row the person row
+	 * @return the position after the last movie
+	 */
+	public int filmographyEnd(int row) {
+		return filmographyOffsets[row + 1];
+	}
+
+	/**
+	 * Returns the movie row at a position in the filmography array.
+	 *
+	 * @param position the position, between filmographyStart and filmographyEnd
+	 *                 of a row
+	 * @return the movie row
+	 */
+	public int filmographyMovie(int position) {
+		return filmography[position];
+	}
+
+	/**
+	 * Returns the ids of the people linked to a movie, in id order.
+	 *
+	 * @param movieId the id of the movie
+	 * @return the person ids, empty if there are none
+	 */
+	public int[] peopleOf(int movieId) {
+		int row = movieRow(movieId);
+		if (row < 0) {
+			return new int[0];
+		}
+		int[] ids = new int[castEnd(row) - castStart(row)];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = personIds[cast[castStart(row) + i]];
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the ids of the movies linked to a person, in id order.
+	 *
+	 * @param personId the id of the person
+	 * @return the movie ids, empty if there are none
+	 */
+	public int[] moviesOf(int personId) {
+		int row = personRow(personId);
+		if (row < 0) {
+			return new int[0];
+		}
+		int[] ids = new int[filmographyEnd(row) - filmographyStart(row)];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = movieIds[filmography[filmographyStart(row) + i]];
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns how much memory the arrays of the index take up.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * (movieIds.length + castOffsets.length + cast.length + personIds.length + filmographyOffsets.length
+				+ filmography.length);
+	}
+
+	/**
+	 * Returns how long the index took to build.
+	 *
+	 * @return the build time in milliseconds
+	 */
+	public long getBuildMillis() {
+		return buildMillis;
+	}
+
+	/**
+	 * Returns a one line summary of the index, for the startup log.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		return "CsrIndex [movies=" + movieIds.length + ", people=" + personIds.length + ", pairs=" + cast.length
+				+ ", bytes=" + getMemoryBytes() + ", buildMillis=" + buildMillis + "]";
+	}
+
+}
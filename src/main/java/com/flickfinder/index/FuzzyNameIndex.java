@@ -0,0 +1,590 @@
+package com.flickfinder.index;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+
+/**
+ * A typo tolerant index of people names, in the style of SymSpell.
+ *
+ * Names are normalized (lower case, without accents) and split into words.
+ * Each distinct word is indexed under every string that can be made by
+ * deleting up to {@value #MAX_DISTANCE} characters from its first
+ * {@value #PREFIX_LENGTH} characters. Two words within that edit distance
+ * share at least one of those strings, so the candidates for a misspelled
+ * word are found by generating the query word's own deletes and looking them
+ * up, rather than comparing it with every word. The deletes are kept as a
+ * sorted array of (hash, word) pairs.
+ *
+ * People are numbered by popularity, most popular first, and each word lists
+ * the people whose names have it in that order. The normalized names are
+ * kept in one char array, so a candidate person is checked by comparing the
+ * query words with slices of it, with no allocation.
+ *
+ * The work per search is bounded: how far a word may be misspelled depends
+ * on its length, and at most {@value #MAX_EXAMINED} people are examined, the
+ * most popular first. A short query that matches thousands of people costs no
+ * more than that.
+ */
+public class FuzzyNameIndex {
+
+	/**
+	 * The most edits allowed in a word.
+	 */
+	static final int MAX_DISTANCE = 2;
+
+	/**
+	 * How many characters at the start of a word the deletes are made from.
+	 */
+	static final int PREFIX_LENGTH = 7;
+
+	/**
+	 * The most people checked against the query in one search.
+	 */
+	static final int MAX_EXAMINED = 20000;
+
+	/**
+	 * The most words of a query that are used.
+	 */
+	private static final int MAX_QUERY_WORDS = 4;
+
+	/**
+	 * The most indexed words a query word can be matched with.
+	 */
+	private static final int MAX_CANDIDATES = 10000;
+
+	// people, most popular first; a person's position is their rank
+	private final int[] personIds;
+	private final int[] births;
+	private final char[] nameChars;
+	private final int[] nameOffsets;
+	private final char[] normalChars;
+	private final int[] normalOffsets;
+
+	// the distinct words of the normalized names, and the ranks of the
+	// people whose names have each one, in rank order
+	private final char[] wordChars;
+	private final int[] wordOffsets;
+	private final int[] postingOffsets;
+	private final int[] postings;
+
+	// (hash of a delete << 32) | word, sorted
+	private final long[] deletes;
+
+	private final int maxWordLength;
+
+	/**
+	 * How long the index took to build, in milliseconds.
+	 */
+	private final long buildMillis;
+
+	private FuzzyNameIndex(int[] personIds, int[] births, CharBuffer names, CharBuffer normals, CharBuffer words,
+			int[] postingOffsets, int[] postings, long[] deletes, int maxWordLength, long buildMillis) {
+		this.personIds = personIds;
+		this.births = births;
+		this.nameChars = names.chars();
+		this.nameOffsets = names.offsets();
+		this.normalChars = normals.chars();
+		this.normalOffsets = normals.offsets();
+		this.wordChars = words.chars();
+		this.wordOffsets = words.offsets();
+		this.postingOffsets = postingOffsets;
+		this.postings = postings;
+		this.deletes = deletes;
+		this.maxWordLength = maxWordLength;
+		this.buildMillis = buildMillis;
+	}
+
+	/**
+	 * Builds the index of people names. People are ranked by the summed votes
+	 * of the movies they starred in.
+	 *
+	 * @param database the database to read from
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	public static FuzzyNameIndex load(Database database) throws SQLException {
+		long start = System.nanoTime();
+		return build(TextColumns.people(database), start);
+	}
+
+	/**
+	 * Builds the index from columns of people.
+	 */
+	static FuzzyNameIndex build(TextColumns people, long start) {
+		int size = people.size;
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.<Integer>comparingLong(i -> -people.popularity[i])
+				.thenComparingInt(i -> people.ids[i]));
+
+		int[] personIds = new int[size];
+		int[] births = new int[size];
+		CharBuffer names = new CharBuffer(size);
+		CharBuffer normals = new CharBuffer(size);
+		CharBuffer words = new CharBuffer(1024);
+		Map<String, Integer> wordIds = new HashMap<>();
+		long[] pairs = new long[1024];
+		int pairCount = 0;
+		int maxWordLength = 0;
+
+		for (int rank = 0; rank < size; rank++) {
+			int i = order[rank];
+			personIds[rank] = people.ids[i];
+			births[rank] = people.years[i];
+			names.add(people.texts[i]);
+			String normal = PrefixIndex.normalize(people.texts[i]);
+			normals.add(normal);
+
+			int from = 0;
+			while ((from = nextWord(normal, from)) < normal.length()) {
+				int to = wordEnd(normal, from);
+				String word = normal.substring(from, to);
+				Integer id = wordIds.get(word);
+				if (id == null) {
+					id = wordIds.size();
+					wordIds.put(word, id);
+					words.add(word);
+					maxWordLength = Math.max(maxWordLength, word.length());
+				}
+				if (pairCount == pairs.length) {
+					pairs = Arrays.copyOf(pairs, pairCount * 2);
+				}
+				pairs[pairCount++] = ((long) id << 32) | rank;
+				from = to;
+			}
+		}
+
+		// the people of each word, in rank order, without repeats
+		Arrays.sort(pairs, 0, pairCount);
+		int wordCount = wordIds.size();
+		int[] postingOffsets = new int[wordCount + 1];
+		int[] postings = new int[pairCount];
+		int postingCount = 0;
+		for (int k = 0; k < pairCount; k++) {
+			if (k > 0 && pairs[k] == pairs[k - 1]) {
+				continue;
+			}
+			postingOffsets[(int) (pairs[k] >>> 32) + 1]++;
+			postings[postingCount++] = (int) pairs[k];
+		}
+		for (int w = 0; w < wordCount; w++) {
+			postingOffsets[w + 1] += postingOffsets[w];
+		}
+
+		// the deletes of each word
+		String[] byId = new String[wordCount];
+		wordIds.forEach((word, id) -> byId[id] = word);
+		long[] deletes = new long[wordCount * 8];
+		int deleteCount = 0;
+		Set<String> variants = new HashSet<>();
+		for (int w = 0; w < wordCount; w++) {
+			variants.clear();
+			String prefix = byId[w].substring(0, Math.min(byId[w].length(), PREFIX_LENGTH));
+			variants.add(prefix);
+			addDeletes(prefix, MAX_DISTANCE, variants);
+			if (deleteCount + variants.size() > deletes.length) {
+				deletes = Arrays.copyOf(deletes, Math.max(deletes.length * 2, deleteCount + variants.size()));
+			}
+			for (String variant : variants) {
+				deletes[deleteCount++] = ((long) variant.hashCode() << 32) | w;
+			}
+		}
+		Arrays.sort(deletes, 0, deleteCount);
+
+		return new FuzzyNameIndex(personIds, births, names, normals, words, postingOffsets,
+				Arrays.copyOf(postings, postingCount), Arrays.copyOf(deletes, deleteCount), maxWordLength,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Adds every string made by deleting up to distance characters from a word.
+	 */
+	private static void addDeletes(String word, int distance, Set<String> variants) {
+		if (distance == 0) {
+			return;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			String shorter = word.substring(0, i) + word.substring(i + 1);
+			if (variants.add(shorter)) {
+				addDeletes(shorter, distance - 1, variants);
+			}
+		}
+	}
+
+	/**
+	 * Returns the people whose names have a word close to each word of the
+	 * query, fewest edits first and then most popular first. Words of up to
+	 * two characters must match exactly, words of up to five may have one
+	 * edit, and longer words two. An edit is an insertion, deletion or
+	 * substitution of a character, or a swap of two neighbouring ones.
+	 *
+	 * @param query what the user typed
+	 * @param limit the most people to return
+	 * @return the people, or null if none match
+	 */
+	public List<Person> search(String query, int limit) {
+		String normal = PrefixIndex.normalize(query);
+		char[][] words = new char[MAX_QUERY_WORDS][];
+		int[] allowed = new int[MAX_QUERY_WORDS];
+		int wordCount = 0;
+		int from = 0;
+		while (wordCount < MAX_QUERY_WORDS && (from = nextWord(normal, from)) < normal.length()) {
+			int to = wordEnd(normal, from);
+			words[wordCount] = normal.substring(from, Math.min(to, from + maxWordLength + MAX_DISTANCE)).toCharArray();
+			allowed[wordCount] = allowedDistance(words[wordCount].length);
+			wordCount++;
+			from = to;
+		}
+		if (wordCount == 0 || limit < 1) {
+			return null;
+		}
+
+		int[][] rows = new int[3][maxWordLength + MAX_DISTANCE + 2];
+
+		// the indexed words close enough to each query word, and the one
+		// whose people are fewest, which the others are checked against
+		int anchor = -1;
+		int[] anchorWords = null;
+		long anchorPostings = Long.MAX_VALUE;
+		for (int q = 0; q < wordCount; q++) {
+			int[] candidates = candidates(words[q], allowed[q], rows);
+			long count = 0;
+			for (int w : candidates) {
+				count += postingOffsets[w + 1] - postingOffsets[w];
+			}
+			if (count < anchorPostings) {
+				anchor = q;
+				anchorWords = candidates;
+				anchorPostings = count;
+			}
+		}
+		if (anchorPostings == 0) {
+			return null;
+		}
+
+		// walk the anchor's people in rank order, merging the lists of its
+		// words with a heap of (rank << 32 | list)
+		long[] heap = new long[anchorWords.length];
+		int[] cursors = new int[anchorWords.length];
+		int heapSize = 0;
+		for (int list = 0; list < anchorWords.length; list++) {
+			cursors[list] = postingOffsets[anchorWords[list]];
+			if (cursors[list] < postingOffsets[anchorWords[list] + 1]) {
+				heapSize = push(heap, heapSize, ((long) postings[cursors[list]] << 32) | list);
+			}
+		}
+
+		int[] best = new int[limit];
+		int[] bestScores = new int[limit];
+		int found = 0;
+		int examined = 0;
+		int previous = -1;
+		while (heapSize > 0 && examined < MAX_EXAMINED) {
+			long top = heap[0];
+			heapSize = pop(heap, heapSize);
+			int rank = (int) (top >>> 32);
+			int list = (int) top;
+			if (++cursors[list] < postingOffsets[anchorWords[list] + 1]) {
+				heapSize = push(heap, heapSize, ((long) postings[cursors[list]] << 32) | list);
+			}
+			if (rank == previous) {
+				continue;
+			}
+			previous = rank;
+			examined++;
+
+			int score = score(rank, words, allowed, wordCount, rows);
+			if (score < 0) {
+				continue;
+			}
+			// people come in rank order, so a later one only goes ahead of
+			// one already found if it needs fewer edits
+			int at = found;
+			while (at > 0 && bestScores[at - 1] > score) {
+				at--;
+			}
+			if (at < limit) {
+				int moved = Math.min(found, limit - 1) - at;
+				System.arraycopy(best, at, best, at + 1, moved);
+				System.arraycopy(bestScores, at, bestScores, at + 1, moved);
+				best[at] = rank;
+				bestScores[at] = score;
+				found = Math.min(found + 1, limit);
+			}
+			if (found == limit && bestScores[limit - 1] == 0) {
+				break;
+			}
+		}
+
+		if (found == 0) {
+			return null;
+		}
+		List<Person> people = new ArrayList<>(found);
+		for (int k = 0; k < found; k++) {
+			int rank = best[k];
+			people.add(new Person(personIds[rank],
+					new String(nameChars, nameOffsets[rank], nameOffsets[rank + 1] - nameOffsets[rank]), births[rank]));
+		}
+		return people;
+	}
+
+	/**
+	 * Finds the indexed words within the allowed distance of a query word.
+	 */
+	private int[] candidates(char[] word, int allowed, int[][] rows) {
+		Set<String> variants = new HashSet<>();
+		String prefix = new String(word, 0, Math.min(word.length, PREFIX_LENGTH));
+		variants.add(prefix);
+		addDeletes(prefix, allowed, variants);
+
+		int[] found = new int[64];
+		int count = 0;
+		for (String variant : variants) {
+			long low = (long) variant.hashCode() << 32;
+			int k = lowerBound(deletes, low);
+			while (k < deletes.length && (deletes[k] & 0xFFFFFFFF00000000L) == low && count < MAX_CANDIDATES) {
+				if (count == found.length) {
+					found = Arrays.copyOf(found, count * 2);
+				}
+				found[count++] = (int) deletes[k];
+				k++;
+			}
+		}
+
+		// drop repeats, then the words that are too far away
+		Arrays.sort(found, 0, count);
+		int kept = 0;
+		for (int k = 0; k < count; k++) {
+			int w = found[k];
+			if (k > 0 && w == found[k - 1]) {
+				continue;
+			}
+			if (distance(word, 0, word.length, wordChars, wordOffsets[w], wordOffsets[w + 1] - wordOffsets[w],
+					allowed, rows) <= allowed) {
+				found[kept++] = w;
+			}
+		}
+		return Arrays.copyOf(found, kept);
+	}
+
+	/**
+	 * Adds up the edits each query word needs to match a word of a person's
+	 * name, the closest one.
+	 *
+	 * @return the total, or -1 if some query word matches none of them
+	 */
+	private int score(int rank, char[][] words, int[] allowed, int wordCount, int[][] rows) {
+		int total = 0;
+		int end = normalOffsets[rank + 1];
+		for (int q = 0; q < wordCount; q++) {
+			int closest = allowed[q] + 1;
+			int from = normalOffsets[rank];
+			while (closest > 0 && (from = nextWord(normalChars, from, end)) < end) {
+				int to = wordEnd(normalChars, from, end);
+				closest = Math.min(closest,
+						distance(words[q], 0, words[q].length, normalChars, from, to - from, allowed[q], rows));
+				from = to;
+			}
+			if (closest > allowed[q]) {
+				return -1;
+			}
+			total += closest;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns how many edits a query word of a length may have.
+	 */
+	static int allowedDistance(int length) {
+		if (length <= 2) {
+			return 0;
+		}
+		if (length <= 5) {
+			return 1;
+		}
+		return MAX_DISTANCE;
+	}
+
+	/**
+	 * Works out the optimal string alignment distance between two slices of
+	 * char arrays, giving up once it is over max. The rows are reused across
+	 * calls, so nothing is allocated.
+	 *
+	 * @return the distance, or max + 1 if it is over max
+	 */
+	static int distance(char[] a, int aFrom, int aLength, char[] b, int bFrom, int bLength, int max,
+			int[][] rows) {
+		if (Math.abs(aLength - bLength) > max) {
+			return max + 1;
+		}
+		int[] beforeLast = rows[0];
+		int[] last = rows[1];
+		int[] current = rows[2];
+		for (int j = 0; j <= bLength; j++) {
+			last[j] = j;
+		}
+		for (int i = 1; i <= aLength; i++) {
+			char ca = a[aFrom + i - 1];
+			current[0] = i;
+			int rowMin = i;
+			for (int j = 1; j <= bLength; j++) {
+				char cb = b[bFrom + j - 1];
+				int value = Math.min(Math.min(last[j] + 1, current[j - 1] + 1), last[j - 1] + (ca == cb ? 0 : 1));
+				if (i > 1 && j > 1 && ca == b[bFrom + j - 2] && a[aFrom + i - 2] == cb) {
+					value = Math.min(value, beforeLast[j - 2] + 1);
+				}
+				current[j] = value;
+				rowMin = Math.min(rowMin, value);
+			}
+			if (rowMin > max) {
+				return max + 1;
+			}
+			int[] recycled = beforeLast;
+			beforeLast = last;
+			last = current;
+			current = recycled;
+		}
+		return Math.min(last[bLength], max + 1);
+	}
+
+	private static int lowerBound(long[] values, long key) {
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (values[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static int push(long[] heap, int size, long value) {
+		int i = size;
+		heap[i] = value;
+		while (i > 0 && heap[(i - 1) / 2] > heap[i]) {
+			long parent = heap[(i - 1) / 2];
+			heap[(i - 1) / 2] = heap[i];
+			heap[i] = parent;
+			i = (i - 1) / 2;
+		}
+		return size + 1;
+	}
+
+	private static int pop(long[] heap, int size) {
+		size--;
+		heap[0] = heap[size];
+		int i = 0;
+		while (true) {
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && heap[left] < heap[smallest]) {
+				smallest = left;
+			}
+			if (right < size && heap[right] < heap[smallest]) {
+				smallest = right;
+			}
+			if (smallest == i) {
+				return size;
+			}
+			long swap = heap[i];
+			heap[i] = heap[smallest];
+			heap[smallest] = swap;
+			i = smallest;
+		}
+	}
+
+	private static int nextWord(String text, int from) {
+		while (from < text.length() && !Character.isLetterOrDigit(text.charAt(from))) {
+			from++;
+		}
+		return from;
+	}
+
+	private static int wordEnd(String text, int from) {
+		while (from < text.length() && Character.isLetterOrDigit(text.charAt(from))) {
+			from++;
+		}
+		return from;
+	}
+
+	private static int nextWord(char[] text, int from, int end) {
+		while (from < end && !Character.isLetterOrDigit(text[from])) {
+			from++;
+		}
+		return from;
+	}
+
+	private static int wordEnd(char[] text, int from, int end) {
+		while (from < end && Character.isLetterOrDigit(text[from])) {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * Returns the number of people in the index.
+	 *
+	 * @return the person count
+	 */
+	public int size() {
+		return personIds.length;
+	}
+
+	/**
+	 * Returns the number of distinct words in the names.
+	 *
+	 * @return the word count
+	 */
+	public int getWordCount() {
+		return wordOffsets.length - 1;
+	}
+
+	/**
+	 * Returns how much memory the arrays of the index take up.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * (personIds.length + births.length + nameOffsets.length + normalOffsets.length
+				+ wordOffsets.length + postingOffsets.length + postings.length)
+				+ 2L * (nameChars.length + normalChars.length + wordChars.length) + 8L * deletes.length;
+	}
+
+	/**
+	 * Returns how long the index took to build.
+	 *
+	 * @return the build time in milliseconds
+	 */
+	public long getBuildMillis() {
+		return buildMillis;
+	}
+
+	/**
+	 * Returns a one line summary of the index, for the startup log.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		return "FuzzyNameIndex [people=" + personIds.length + ", words=" + getWordCount() + ", deletes="
+				+ deletes.length + ", bytes=" + getMemoryBytes() + ", buildMillis=" + buildMillis + "]";
+	}
+
+}
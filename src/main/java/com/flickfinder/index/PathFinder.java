@@ -0,0 +1,217 @@
+package com.flickfinder.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Finds the shortest chain of movies connecting two people in the stars
+ * graph, where people are linked through the movies they starred in.
+ *
+ * The search is a bidirectional breadth first search over the rows of a
+ * {@link CsrIndex}: one side starts from each person, and each step expands
+ * a whole level of whichever side has the smaller frontier, until the sides
+ * meet. The bookkeeping is kept in primitive arrays with one entry per row,
+ * in a workspace that is reused across searches. Rather than being cleared,
+ * the visited marks are compared with a number that goes up for every
+ * search, so starting a search costs nothing however big the graph is. A
+ * workspace is only used by one search at a time, and a new one is only made
+ * when every other one is busy.
+ *
+ * A search gives up after {@code maxDepth} movies, and throws a
+ * {@link SearchTimeoutException} once it has run for {@code maxMillis}.
+ */
+public class PathFinder {
+
+	/**
+	 * How many links are followed between checks of the clock.
+	 */
+	private static final int CLOCK_INTERVAL = 1024;
+
+	private final CsrIndex stars;
+	private final int maxDepth;
+	private final long maxNanos;
+
+	/**
+	 * The workspaces not in use by a search.
+	 */
+	private final ConcurrentLinkedQueue<Workspace> idle = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Constructs a PathFinder over the stars graph.
+	 *
+	 * @param stars     the index of the stars table
+	 * @param maxDepth  the most movies a chain may have
+	 * @param maxMillis how long a search may run, in milliseconds
+	 */
+	public PathFinder(CsrIndex stars, int maxDepth, long maxMillis) {
+		this.stars = stars;
+		this.maxDepth = maxDepth;
+		this.maxNanos = maxMillis * 1_000_000;
+	}
+
+	/**
+	 * Finds a shortest chain of movies connecting two people.
+	 *
+	 * @param fromId the id of the first person
+	 * @param toId   the id of the last person
+	 * @return the ids along the chain, starting and ending with a person and
+	 *         alternating between people and movies, or null if either person
+	 *         starred in nothing or there is no chain of up to maxDepth movies
+	 * @throws SearchTimeoutException if the search runs out of time
+	 */
+	public int[] find(int fromId, int toId) {
+		int from = stars.personRow(fromId);
+		int to = stars.personRow(toId);
+		if (from < 0 || to < 0) {
+			return null;
+		}
+		if (from == to) {
+			return new int[] { fromId };
+		}
+		Workspace workspace = idle.poll();
+		if (workspace == null) {
+			workspace = new Workspace(stars.getPersonCount(), stars.getMovieCount());
+		}
+		try {
+			return workspace.search(from, to, System.nanoTime() + maxNanos);
+		} finally {
+			idle.offer(workspace);
+		}
+	}
+
+	/**
+	 * Returns the most movies a chain may have.
+	 *
+	 * @return the depth limit
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * The arrays of one search. Side 0 searches from the first person and
+	 * side 1 from the last.
+	 */
+	private final class Workspace {
+
+		// a person is marked 2 * epoch + side when a side reaches them
+		private final int[] personMarks;
+		// the person and movie they were reached from
+		private final int[] parentPeople;
+		private final int[] parentMovies;
+		// a movie is marked epoch once a side has gone through its cast
+		private final int[][] movieMarks;
+		// the people reached by each side, level by level
+		private final int[][] queues;
+
+		private int epoch;
+
+		private Workspace(int personCount, int movieCount) {
+			personMarks = new int[personCount];
+			parentPeople = new int[personCount];
+			parentMovies = new int[personCount];
+			movieMarks = new int[2][movieCount];
+			queues = new int[2][personCount];
+		}
+
+		private int[] search(int from, int to, long deadline) {
+			if (++epoch >= Integer.MAX_VALUE / 2) {
+				Arrays.fill(personMarks, 0);
+				Arrays.fill(movieMarks[0], 0);
+				Arrays.fill(movieMarks[1], 0);
+				epoch = 1;
+			}
+			int[] starts = new int[2];
+			int[] ends = new int[2];
+			visit(0, from, -1, -1);
+			queues[0][ends[0]++] = from;
+			visit(1, to, -1, -1);
+			queues[1][ends[1]++] = to;
+
+			int links = 0;
+			for (int depth = 0; depth < maxDepth; depth++) {
+				if (starts[0] == ends[0] || starts[1] == ends[1]) {
+					return null;
+				}
+				int side = ends[0] - starts[0] <= ends[1] - starts[1] ? 0 : 1;
+				int own = 2 * epoch + side;
+				int other = 2 * epoch + 1 - side;
+				int[] queue = queues[side];
+				int[] movies = movieMarks[side];
+				int levelEnd = ends[side];
+				for (int i = starts[side]; i < levelEnd; i++) {
+					int person = queue[i];
+					for (int f = stars.filmographyStart(person); f < stars.filmographyEnd(person); f++) {
+						int movie = stars.filmographyMovie(f);
+						if (movies[movie] == epoch) {
+							continue;
+						}
+						movies[movie] = epoch;
+						for (int c = stars.castStart(movie); c < stars.castEnd(movie); c++) {
+							int costar = stars.castMember(c);
+							if (++links % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) {
+								throw new SearchTimeoutException("Path search timed out after " + depth + " movies");
+							}
+							if (personMarks[costar] == own) {
+								continue;
+							}
+							if (personMarks[costar] == other) {
+								// every shorter chain would have met in an earlier level
+								return side == 0 ? chain(person, movie, costar) : chain(costar, movie, person);
+							}
+							visit(side, costar, person, movie);
+							queue[ends[side]++] = costar;
+						}
+					}
+				}
+				starts[side] = levelEnd;
+			}
+			return null;
+		}
+
+		private void visit(int side, int person, int parentPerson, int parentMovie) {
+			personMarks[person] = 2 * epoch + side;
+			parentPeople[person] = parentPerson;
+			parentMovies[person] = parentMovie;
+		}
+
+		/**
+		 * Joins the chain from the first person to one reached by side 0 with
+		 * the chain from one reached by side 1 to the last person.
+		 */
+		private int[] chain(int forward, int movie, int backward) {
+			int forwardLength = length(forward);
+			int[] ids = new int[forwardLength + 1 + length(backward)];
+			// the forward half is read from the meeting point back to the start
+			int at = forwardLength - 1;
+			for (int p = forward; p >= 0; p = parentPeople[p]) {
+				ids[at--] = stars.personId(p);
+				if (parentPeople[p] >= 0) {
+					ids[at--] = stars.movieId(parentMovies[p]);
+				}
+			}
+			at = forwardLength;
+			ids[at++] = stars.movieId(movie);
+			for (int p = backward; p >= 0; p = parentPeople[p]) {
+				ids[at++] = stars.personId(p);
+				if (parentPeople[p] >= 0) {
+					ids[at++] = stars.movieId(parentMovies[p]);
+				}
+			}
+			return ids;
+		}
+
+		/**
+		 * Returns how many people and movies there are from a person back to
+		 * where their side started.
+		 */
+		private int length(int person) {
+			int length = 1;
+			for (int p = person; parentPeople[p] >= 0; p = parentPeople[p]) {
+				length += 2;
+			}
+			return length;
+		}
+	}
+
+}
@@ -0,0 +1,424 @@
+package com.flickfinder.index;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import com.flickfinder.model.Suggestion;
+import com.flickfinder.util.Database;
+
+/**
+ * A prefix index over movie titles or people names, for type-ahead.
+ *
+ * The entries are sorted by their normalized text (lower case, without
+ * accents), so the entries starting with any prefix are a contiguous range.
+ * On top of them sits a trie, held in arrays: node n covers the entries
+ * {@code start[n]} up to (not including) {@code end[n]}, and its children are
+ * the nodes {@code firstChild[n]} up to {@code firstChild[n] + childCount[n]},
+ * sorted by the character that leads to them.
+ *
+ * Every node with more than topN entries keeps its topN most popular entries,
+ * worked out when the index is built, so a prefix is answered by walking one
+ * node per character and copying out a list, with no sort. A node with topN
+ * entries or fewer has no children: its few entries are checked against the
+ * rest of the prefix and put in order directly. Keeping the trie this shallow
+ * is what keeps it small.
+ */
+public class PrefixIndex {
+
+	/**
+	 * The number of suggestions kept for each prefix.
+	 */
+	public static final int DEFAULT_TOP_N = 10;
+
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+	// one entry per movie or person, sorted by normalized text
+	private final int[] ids;
+	private final long[] popularity;
+	private final char[] textChars;
+	private final int[] textOffsets;
+
+	// one row per trie node; node 0 is the root
+	private final int[] start;
+	private final int[] end;
+	private final int[] firstChild;
+	private final char[] childCount;
+	private final char[] nodeChars;
+	private final int[] topOffsets;
+	private final int[] top;
+
+	private final int topN;
+
+	/**
+	 * How long the index took to build, in milliseconds.
+	 */
+	private final long buildMillis;
+
+	private PrefixIndex(int[] ids, long[] popularity, char[] textChars, int[] textOffsets, Nodes nodes, int topN,
+			long buildMillis) {
+		this.ids = ids;
+		this.popularity = popularity;
+		this.textChars = textChars;
+		this.textOffsets = textOffsets;
+		this.start = Arrays.copyOf(nodes.start, nodes.count);
+		this.end = Arrays.copyOf(nodes.end, nodes.count);
+		this.firstChild = Arrays.copyOf(nodes.firstChild, nodes.count);
+		this.childCount = Arrays.copyOf(nodes.childCount, nodes.count);
+		this.nodeChars = Arrays.copyOf(nodes.chars, nodes.count);
+		this.topOffsets = Arrays.copyOf(nodes.topOffsets, nodes.count);
+		this.top = Arrays.copyOf(nodes.top, nodes.topCount);
+		this.topN = topN;
+		this.buildMillis = buildMillis;
+	}
+
+	/**
+	 * Builds the index of movie titles, ranked by votes.
+	 *
+	 * @param database the database to read from
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	public static PrefixIndex loadMovies(Database database) throws SQLException {
+		long start = System.nanoTime();
+		TextColumns movies = TextColumns.movies(database);
+		return build(movies.ids, movies.texts, movies.popularity, movies.size, DEFAULT_TOP_N, start);
+	}
+
+	/**
+	 * Builds the index of people names, ranked by the summed votes of the
+	 * movies they starred in.
+	 *
+	 * @param database the database to read from
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	public static PrefixIndex loadPeople(Database database) throws SQLException {
+		long start = System.nanoTime();
+		TextColumns people = TextColumns.people(database);
+		return build(people.ids, people.texts, people.popularity, people.size, DEFAULT_TOP_N, start);
+	}
+
+	/**
+	 * Builds an index from parallel arrays of ids, texts and popularity.
+	 *
+	 * @param ids        the ids of the entries
+	 * @param texts      the titles or names of the entries
+	 * @param popularity how popular each entry is; higher comes first
+	 * @param topN       the number of suggestions kept for each prefix
+	 * @return the index
+	 */
+	public static PrefixIndex build(int[] ids, String[] texts, long[] popularity, int topN) {
+		return build(ids, texts, popularity, ids.length, topN, System.nanoTime());
+	}
+
+	private static PrefixIndex build(int[] ids, String[] texts, long[] popularity, int size, int topN, long started) {
+		if (topN < 1 || topN > Character.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid topN " + topN);
+		}
+
+		// sort the entries by their normalized text, then by id
+		String[] keys = new String[size];
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = normalize(texts[i]);
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.<Integer, String>comparing(i -> keys[i]).thenComparingInt(i -> ids[i]));
+
+		int[] sortedIds = new int[size];
+		long[] sortedPopularity = new long[size];
+		String[] sortedKeys = new String[size];
+		CharBuffer sortedTexts = new CharBuffer(size);
+		for (int k = 0; k < size; k++) {
+			int i = order[k];
+			sortedIds[k] = ids[i];
+			sortedPopularity[k] = popularity[i];
+			sortedKeys[k] = keys[i];
+			sortedTexts.add(texts[i]);
+		}
+
+		Nodes nodes = new Nodes(topN);
+		nodes.add('\0', 0, size);
+		nodes.build(0, 0, sortedKeys, sortedPopularity);
+
+		return new PrefixIndex(sortedIds, sortedPopularity, sortedTexts.chars(), sortedTexts.offsets(), nodes, topN,
+				(System.nanoTime() - started) / 1_000_000);
+	}
+
+	/**
+	 * Returns the most popular entries whose text starts with a prefix, most
+	 * popular first. Case and accents are ignored.
+	 *
+	 * @param prefix the prefix
+	 * @param limit  the most suggestions to return, at most topN
+	 * @return the suggestions, empty if none match
+	 */
+	public List<Suggestion> complete(String prefix, int limit) {
+		String key = normalize(prefix);
+		limit = Math.min(limit, topN);
+		List<Suggestion> suggestions = new ArrayList<>(Math.max(limit, 0));
+		if (limit < 1) {
+			return suggestions;
+		}
+
+		// walk down while the nodes still have children
+		int node = 0;
+		int depth = 0;
+		while (depth < key.length() && childCount[node] > 0) {
+			node = child(node, key.charAt(depth));
+			if (node < 0) {
+				return suggestions;
+			}
+			depth++;
+		}
+
+		if (topOffsets[node] >= 0) {
+			if (depth == key.length()) {
+				for (int k = 0; k < limit; k++) {
+					suggestions.add(suggestion(top[topOffsets[node] + k]));
+				}
+				return suggestions;
+			}
+			// a node that is too big to be a leaf but has no children, because
+			// all of its entries end here, matches nothing longer
+			return suggestions;
+		}
+
+		// a leaf: pick out the few entries that match all of the prefix
+		int[] matches = new int[end[node] - start[node]];
+		int count = 0;
+		for (int i = start[node]; i < end[node]; i++) {
+			if (depth == key.length() || normalize(text(i)).startsWith(key)) {
+				count = insert(matches, count, matches.length, i, popularity);
+			}
+		}
+		for (int k = 0; k < Math.min(count, limit); k++) {
+			suggestions.add(suggestion(matches[k]));
+		}
+		return suggestions;
+	}
+
+	/**
+	 * Finds the child of a node that a character leads to.
+	 *
+	 * @return the child, or -1 if there is none
+	 */
+	private int child(int node, char c) {
+		int low = firstChild[node];
+		int high = low + childCount[node] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (nodeChars[mid] < c) {
+				low = mid + 1;
+			} else if (nodeChars[mid] > c) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private Suggestion suggestion(int entry) {
+		return new Suggestion(ids[entry], text(entry), popularity[entry]);
+	}
+
+	/**
+	 * Returns the text of the entry at a position in the index.
+	 */
+	private String text(int i) {
+		return new String(textChars, textOffsets[i], textOffsets[i + 1] - textOffsets[i]);
+	}
+
+	/**
+	 * Normalizes text for matching: accents are removed and it is lower cased.
+	 *
+	 * @param text the text
+	 * @return the normalized text
+	 */
+	static String normalize(String text) {
+		if (text == null) {
+			return "";
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) >= 128) {
+				return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+						.toLowerCase(Locale.ROOT);
+			}
+		}
+		return text.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Inserts an entry into a list kept in order of popularity, most popular
+	 * first and ties by position, dropping the last one if the list is full.
+	 *
+	 * @return the new length of the list
+	 */
+	private static int insert(int[] list, int count, int capacity, int entry, long[] popularity) {
+		int at = count;
+		while (at > 0 && (popularity[list[at - 1]] < popularity[entry]
+				|| popularity[list[at - 1]] == popularity[entry] && list[at - 1] > entry)) {
+			at--;
+		}
+		if (at >= capacity) {
+			return count;
+		}
+		int moved = Math.min(count, capacity - 1) - at;
+		System.arraycopy(list, at, list, at + 1, moved);
+		list[at] = entry;
+		return Math.min(count + 1, capacity);
+	}
+
+	/**
+	 * Returns the number of entries in the index.
+	 *
+	 * @return the entry count
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Returns the number of nodes in the trie.
+	 *
+	 * @return the node count
+	 */
+	public int getNodeCount() {
+		return start.length;
+	}
+
+	/**
+	 * Returns how much memory the arrays of the index take up.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * (ids.length + textOffsets.length + top.length) + 8L * popularity.length + 2L * textChars.length
+				+ 20L * start.length;
+	}
+
+	/**
+	 * Returns how long the index took to build.
+	 *
+	 * @return the build time in milliseconds
+	 */
+	public long getBuildMillis() {
+		return buildMillis;
+	}
+
+	/**
+	 * Returns a one line summary of the index, for the startup log.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		return "PrefixIndex [entries=" + ids.length + ", nodes=" + start.length + ", bytes=" + getMemoryBytes()
+				+ ", buildMillis=" + buildMillis + "]";
+	}
+
+	/**
+	 * The growable arrays the trie is built in.
+	 */
+	private static class Nodes {
+
+		final int topN;
+		int[] start = new int[1024];
+		int[] end = new int[1024];
+		int[] firstChild = new int[1024];
+		char[] childCount = new char[1024];
+		char[] chars = new char[1024];
+		int[] topOffsets = new int[1024];
+		int count;
+		int[] top = new int[1024];
+		int topCount;
+
+		Nodes(int topN) {
+			this.topN = topN;
+		}
+
+		int add(char c, int from, int to) {
+			if (count == start.length) {
+				int length = count * 2;
+				start = Arrays.copyOf(start, length);
+				end = Arrays.copyOf(end, length);
+				firstChild = Arrays.copyOf(firstChild, length);
+				childCount = Arrays.copyOf(childCount, length);
+				chars = Arrays.copyOf(chars, length);
+				topOffsets = Arrays.copyOf(topOffsets, length);
+			}
+			start[count] = from;
+			end[count] = to;
+			chars[count] = c;
+			topOffsets[count] = -1;
+			return count++;
+		}
+
+		/**
+		 * Gives a node children if it has more than topN entries, builds them,
+		 * and then keeps the node's topN entries from theirs. The children of a
+		 * node are added together, so they sit next to each other.
+		 */
+		void build(int node, int depth, String[] keys, long[] popularity) {
+			int from = start[node];
+			int to = end[node];
+			if (to - from <= topN) {
+				return;
+			}
+
+			// entries that end at this node sort first
+			int i = from;
+			while (i < to && keys[i].length() == depth) {
+				i++;
+			}
+			int ending = i;
+
+			firstChild[node] = count;
+			int children = 0;
+			while (i < to) {
+				char c = keys[i].charAt(depth);
+				int j = i + 1;
+				while (j < to && keys[j].charAt(depth) == c) {
+					j++;
+				}
+				add(c, i, j);
+				children++;
+				i = j;
+			}
+			childCount[node] = (char) children;
+
+			int[] best = new int[topN];
+			int size = 0;
+			for (int e = from; e < ending; e++) {
+				size = insert(best, size, topN, e, popularity);
+			}
+			for (int c = firstChild[node]; c < firstChild[node] + children; c++) {
+				build(c, depth + 1, keys, popularity);
+				if (topOffsets[c] >= 0) {
+					for (int k = 0; k < topN; k++) {
+						size = insert(best, size, topN, top[topOffsets[c] + k], popularity);
+					}
+				} else {
+					for (int e = start[c]; e < end[c]; e++) {
+						size = insert(best, size, topN, e, popularity);
+					}
+				}
+			}
+
+			if (topCount + topN > top.length) {
+				top = Arrays.copyOf(top, Math.max(top.length * 2, topCount + topN));
+			}
+			System.arraycopy(best, 0, top, topCount, topN);
+			topOffsets[node] = topCount;
+			topCount += topN;
+		}
+	}
+
+}
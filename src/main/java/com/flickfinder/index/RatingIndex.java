@@ -0,0 +1,255 @@
+package com.flickfinder.index;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.PooledConnection;
+
+/**
+ * The rated movies of every year, sorted by rating from highest to lowest.
+ *
+ * Each year gets a slice of a set of parallel arrays holding the id, title,
+ * rating and vote count of its movies, already in the order the ratings
+ * endpoint returns them. A query for any vote minimum and limit is then a
+ * binary search for the year followed by a scan down its slice, with no
+ * sort and no join. Movies with the same rating keep id order.
+ */
+public class RatingIndex {
+
+	// one row per year, in year order
+	private final int[] years;
+	private final int[] yearOffsets;
+
+	// one entry per rated movie, grouped by year and sorted by rating
+	private final int[] movieIds;
+	private final float[] ratings;
+	private final int[] votes;
+	private final char[] titleChars;
+	private final int[] titleOffsets;
+
+	/**
+	 * How long the index took to build, in milliseconds.
+	 */
+	private final long buildMillis;
+
+	private RatingIndex(int[] years, int[] yearOffsets, int[] movieIds, float[] ratings, int[] votes,
+			char[] titleChars, int[] titleOffsets, long buildMillis) {
+		this.years = years;
+		this.yearOffsets = yearOffsets;
+		this.movieIds = movieIds;
+		this.ratings = ratings;
+		this.votes = votes;
+		this.titleChars = titleChars;
+		this.titleOffsets = titleOffsets;
+		this.buildMillis = buildMillis;
+	}
+
+	/**
+	 * Builds the index from the movies and ratings tables.
+	 *
+	 * @param database the database to read from
+	 * @return the index
+	 * @throws SQLException if a database error occurs
+	 */
+	public static RatingIndex load(Database database) throws SQLException {
+		long start = System.nanoTime();
+		int[] ids = new int[1024];
+		String[] titles = new String[1024];
+		float[] ratings = new float[1024];
+		int[] votes = new int[1024];
+		int[] years = new int[1024];
+		int size = 0;
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			try (ResultSet rs = connection.prepare(
+					"select id, title, rating, votes, year from movies inner join ratings on movies.id=ratings.movie_id order by id")
+					.executeQuery()) {
+				while (rs.next()) {
+					if (size == ids.length) {
+						ids = Arrays.copyOf(ids, size * 2);
+						titles = Arrays.copyOf(titles, size * 2);
+						ratings = Arrays.copyOf(ratings, size * 2);
+						votes = Arrays.copyOf(votes, size * 2);
+						years = Arrays.copyOf(years, size * 2);
+					}
+					ids[size] = rs.getInt("id");
+					titles[size] = rs.getString("title");
+					ratings[size] = rs.getFloat("rating");
+					votes[size] = rs.getInt("votes");
+					years[size] = rs.getInt("year");
+					size++;
+				}
+			}
+		}
+		return build(ids, titles, ratings, votes, years, size, start);
+	}
+
+	/**
+	 * Builds the index from the rated movies of a snapshot.
+	 *
+	 * @param snapshot the snapshot to index
+	 * @return the index
+	 */
+	public static RatingIndex build(Snapshot snapshot) {
+		long start = System.nanoTime();
+		int count = snapshot.getMovieCount();
+		int[] ids = new int[count];
+		String[] titles = new String[count];
+		float[] ratings = new float[count];
+		int[] votes = new int[count];
+		int[] years = new int[count];
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			if (snapshot.hasRating(i)) {
+				ids[size] = snapshot.movieId(i);
+				titles[size] = snapshot.title(i);
+				ratings[size] = snapshot.rating(i);
+				votes[size] = snapshot.votes(i);
+				years[size] = snapshot.year(i);
+				size++;
+			}
+		}
+		return build(ids, titles, ratings, votes, years, size, start);
+	}
+
+	/**
+	 * Sorts the movies into the index. The input must be in id order, which is
+	 * the order ties are left in.
+	 */
+	private static RatingIndex build(int[] ids, String[] titles, float[] ratings, int[] votes, int[] years, int size,
+			long start) {
+		// the distinct years, and the row of each movie's year
+		int[] sortedYears = Arrays.copyOf(years, size);
+		Arrays.sort(sortedYears);
+		int yearCount = 0;
+		for (int i = 0; i < size; i++) {
+			if (yearCount == 0 || sortedYears[i] != sortedYears[yearCount - 1]) {
+				sortedYears[yearCount++] = sortedYears[i];
+			}
+		}
+		int[] distinctYears = Arrays.copyOf(sortedYears, yearCount);
+
+		// count sort the movies by year; each key packs the rating, inverted so
+		// that higher ratings sort first, above the position of the movie
+		int[] yearOffsets = new int[yearCount + 1];
+		int[] rows = new int[size];
+		for (int i = 0; i < size; i++) {
+			rows[i] = Arrays.binarySearch(distinctYears, years[i]);
+			yearOffsets[rows[i] + 1]++;
+		}
+		for (int row = 0; row < yearCount; row++) {
+			yearOffsets[row + 1] += yearOffsets[row];
+		}
+		int[] next = Arrays.copyOf(yearOffsets, yearCount);
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			long rank = Integer.MAX_VALUE - (long) Float.floatToIntBits(Math.max(ratings[i], 0f));
+			keys[next[rows[i]]++] = (rank << 32) | i;
+		}
+		for (int row = 0; row < yearCount; row++) {
+			Arrays.sort(keys, yearOffsets[row], yearOffsets[row + 1]);
+		}
+
+		int[] sortedIds = new int[size];
+		float[] sortedRatings = new float[size];
+		int[] sortedVotes = new int[size];
+		CharBuffer sortedTitles = new CharBuffer(size);
+		for (int k = 0; k < size; k++) {
+			int i = (int) keys[k];
+			sortedIds[k] = ids[i];
+			sortedRatings[k] = ratings[i];
+			sortedVotes[k] = votes[i];
+			sortedTitles.add(titles[i]);
+		}
+
+		return new RatingIndex(distinctYears, yearOffsets, sortedIds, sortedRatings, sortedVotes,
+				sortedTitles.chars(), sortedTitles.offsets(), (System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Returns the highest rated movies of a year that have more than the given
+	 * number of votes, highest rating first.
+	 *
+	 * @param year     the year of release of the movies
+	 * @param limit    the number of movie ratings to return
+	 * @param minVotes the number of votes a movie must have more than
+	 * @return the movie ratings, or null if there are none
+	 */
+	public List<MovieRating> top(int year, long limit, long minVotes) {
+		int row = Arrays.binarySearch(years, year);
+		if (row < 0 || limit < 1) {
+			return null;
+		}
+		List<MovieRating> movies = new ArrayList<>((int) Math.min(limit, yearOffsets[row + 1] - yearOffsets[row]));
+		for (int i = yearOffsets[row]; i < yearOffsets[row + 1] && movies.size() < limit; i++) {
+			if (votes[i] > minVotes) {
+				movies.add(new MovieRating(movieIds[i], title(i), ratings[i], votes[i], year));
+			}
+		}
+		if (movies.size() > 0) {
+			return movies;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the title of the movie at a position in the index.
+	 */
+	private String title(int i) {
+		return new String(titleChars, titleOffsets[i], titleOffsets[i + 1] - titleOffsets[i]);
+	}
+
+	/**
+	 * Returns the number of rated movies in the index.
+	 *
+	 * @return the movie count
+	 */
+	public int size() {
+		return movieIds.length;
+	}
+
+	/**
+	 * Returns the number of years in the index.
+	 *
+	 * @return the year count
+	 */
+	public int getYearCount() {
+		return years.length;
+	}
+
+	/**
+	 * Returns how much memory the arrays of the index take up.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMemoryBytes() {
+		return 4L * (years.length + yearOffsets.length + movieIds.length * 3L + titleOffsets.length)
+				+ 2L * titleChars.length;
+	}
+
+	/**
+	 * Returns how long the index took to build.
+	 *
+	 * @return the build time in milliseconds
+	 */
+	public long getBuildMillis() {
+		return buildMillis;
+	}
+
+	/**
+	 * Returns a one line summary of the index, for the startup log.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		return "RatingIndex [years=" + years.length + ", movies=" + movieIds.length + ", bytes=" + getMemoryBytes()
+				+ ", buildMillis=" + buildMillis + "]";
+	}
+
+}
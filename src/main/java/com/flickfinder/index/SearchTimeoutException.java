@@ -0,0 +1,19 @@
+package com.flickfinder.index;
+
+/**
+ * Thrown when a search of an in-memory index runs past its time limit.
+ */
+public class SearchTimeoutException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs a SearchTimeoutException with a message.
+	 *
+	 * @param message what timed out
+	 */
+	public SearchTimeoutException(String message) {
+		super(message);
+	}
+
+}
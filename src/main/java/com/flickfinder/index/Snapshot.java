@@ -0,0 +1,372 @@
+package com.flickfinder.index;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import com.flickfinder.util.Database;
+import com.flickfinder.util.PooledConnection;
+
+/**
+ * An in-memory copy of the database, held in primitive arrays.
+ *
+ * movies.db is read-only, so it can be loaded once at startup and every
+ * request answered from memory. Each table is stored column by column: the
+ * movies are sorted by id, with their years, ratings and votes in arrays at
+ * the same position, and all of the titles packed into one char buffer. People
+ * are stored the same way. The stars and directors tables are kept as
+ * {@link CsrIndex}es, so they can be walked in either direction.
+ *
+ * A movie's position in the arrays is its index; most lookups start by
+ * finding the index for an id with a binary search.
+ */
+public class Snapshot {
+
+	/**
+	 * The rating stored for a movie that has no row in the ratings table.
+	 */
+	public static final float NO_RATING = Float.NaN;
+
+	// movies, sorted by id
+	private final int[] movieIds;
+	private final int[] years;
+	private final float[] ratings;
+	private final int[] votes;
+	private final char[] titleChars;
+	private final int[] titleOffsets;
+
+	// people, sorted by id
+	private final int[] personIds;
+	private final int[] births;
+	private final char[] nameChars;
+	private final int[] nameOffsets;
+
+	// stars and directors, indexed in both directions
+	private final CsrIndex stars;
+	private final CsrIndex directors;
+
+	// rated movies, sorted by rating within each year
+	private RatingIndex ratingIndex;
+
+	/**
+	 * How long the snapshot took to load, in milliseconds.
+	 */
+	private long loadMillis;
+
+	private Snapshot(int[] movieIds, int[] years, float[] ratings, int[] votes, char[] titleChars,
+			int[] titleOffsets, int[] personIds, int[] births, char[] nameChars, int[] nameOffsets, CsrIndex stars,
+			CsrIndex directors) {
+		this.movieIds = movieIds;
+		this.years = years;
+		this.ratings = ratings;
+		this.votes = votes;
+		this.titleChars = titleChars;
+		this.titleOffsets = titleOffsets;
+		this.personIds = personIds;
+		this.births = births;
+		this.nameChars = nameChars;
+		this.nameOffsets = nameOffsets;
+		this.stars = stars;
+		this.directors = directors;
+	}
+
+	/**
+	 * Loads the movies, people, ratings, stars and directors tables into
+	 * memory.
+	 *
+	 * @param database the database to load
+	 * @return the snapshot
+	 * @throws SQLException if a database error occurs
+	 */
+	public static Snapshot load(Database database) throws SQLException {
+		long start = System.nanoTime();
+		Snapshot snapshot;
+
+		try (PooledConnection connection = database.borrowConnection()) {
+			// movies
+			int movieCount = count(connection, "select count(*) from movies");
+			int[] movieIds = new int[movieCount];
+			int[] years = new int[movieCount];
+			CharBuffer titles = new CharBuffer(movieCount);
+			int m = 0;
+			try (ResultSet rs = connection.prepare("select id, title, year from movies order by id").executeQuery()) {
+				while (rs.next() && m < movieCount) {
+					movieIds[m] = rs.getInt("id");
+					years[m] = rs.getInt("year");
+					titles.add(rs.getString("title"));
+					m++;
+				}
+			}
+
+			// ratings, stored alongside the movie they belong to
+			float[] ratings = new float[movieCount];
+			int[] votes = new int[movieCount];
+			Arrays.fill(ratings, NO_RATING);
+			try (ResultSet rs = connection.prepare("select movie_id, rating, votes from ratings").executeQuery()) {
+				while (rs.next()) {
+					int index = Arrays.binarySearch(movieIds, 0, m, rs.getInt("movie_id"));
+					if (index >= 0) {
+						ratings[index] = rs.getFloat("rating");
+						votes[index] = rs.getInt("votes");
+					}
+				}
+			}
+
+			// people
+			int personCount = count(connection, "select count(*) from people");
+			int[] personIds = new int[personCount];
+			int[] births = new int[personCount];
+			CharBuffer names = new CharBuffer(personCount);
+			int p = 0;
+			try (ResultSet rs = connection.prepare("select id, name, birth from people order by id").executeQuery()) {
+				while (rs.next() && p < personCount) {
+					personIds[p] = rs.getInt("id");
+					births[p] = rs.getInt("birth");
+					names.add(rs.getString("name"));
+					p++;
+				}
+			}
+
+			CsrIndex stars = CsrIndex.load(connection, "stars");
+			CsrIndex directors = CsrIndex.load(connection, "directors");
+
+			snapshot = new Snapshot(Arrays.copyOf(movieIds, m), Arrays.copyOf(years, m), Arrays.copyOf(ratings, m),
+					Arrays.copyOf(votes, m), titles.chars(), titles.offsets(), Arrays.copyOf(personIds, p),
+					Arrays.copyOf(births, p), names.chars(), names.offsets(), stars, directors);
+		}
+
+		snapshot.ratingIndex = RatingIndex.build(snapshot);
+		snapshot.loadMillis = (System.nanoTime() - start) / 1_000_000;
+		return snapshot;
+	}
+
+	/**
+	 * Runs a count query.
+	 *
+	 * @param connection the connection to use
+	 * @param sql        the count query
+	 * @return the count
+	 * @throws SQLException if a database error occurs
+	 */
+	private static int count(PooledConnection connection, String sql) throws SQLException {
+		PreparedStatement ps = connection.prepare(sql);
+		try (ResultSet rs = ps.executeQuery()) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	/**
+	 * Returns the number of movies.
+	 *
+	 * @return the movie count
+	 */
+	public int getMovieCount() {
+		return movieIds.length;
+	}
+
+	/**
+	 * Returns the index of the movie with the given id.
+	 *
+	 * @param id the id of the movie
+	 * @return the index of the movie, or -1 if there is no such movie
+	 */
+	public int movieIndex(int id) {
+		int index = Arrays.binarySearch(movieIds, id);
+		return index >= 0 ? index : -1;
+	}
+
+	/**
+	 * Returns the index of the first movie with an id greater than the given
+	 * id.
+	 *
+	 * @param id the id to search after
+	 * @return the index of the first movie after the id
+	 */
+	public int movieIndexAfter(int id) {
+		int index = Arrays.binarySearch(movieIds, id);
+		return index >= 0 ? index + 1 : -index - 1;
+	}
+
+	/**
+	 * Returns the id of the movie at the given index.
+	 *
+	 * @param index the index of the movie
+	 * @return the id of the movie
+	 */
+	public int movieId(int index) {
+		return movieIds[index];
+	}
+
+	/**
+	 * Returns the title of the movie at the given index.
+	 *
+	 * @param index the index of the movie
+	 * @return the title of the movie
+	 */
+	public String title(int index) {
+		return new String(titleChars, titleOffsets[index], titleOffsets[index + 1] - titleOffsets[index]);
+	}
+
+	/**
+	 * Returns the release year of the movie at the given index.
+	 *
+	 * @param index the index of the movie
+	 * @return the release year
+	 */
+	public int year(int index) {
+		return years[index];
+	}
+
+	/**
+	 * Returns the rating of the movie at the given index.
+	 *
+	 * @param index the index of the movie
+	 * @return the rating, or {@link #NO_RATING} if the movie is not rated
+	 */
+	public float rating(int index) {
+		return ratings[index];
+	}
+
+	/**
+	 * Returns whether the movie at the given index has a rating.
+	 *
+	 * @param index the index of the movie
+	 * @return true if the movie is rated
+	 */
+	public boolean hasRating(int index) {
+		return !Float.isNaN(ratings[index]);
+	}
+
+	/**
+	 * Returns the number of votes of the movie at the given index.
+	 *
+	 * @param index the index of the movie
+	 * @return the number of votes
+	 */
+	public int votes(int index) {
+		return votes[index];
+	}
+
+	/**
+	 * Returns the number of people.
+	 *
+	 * @return the person count
+	 */
+	public int getPersonCount() {
+		return personIds.length;
+	}
+
+	/**
+	 * Returns the index of the person with the given id.
+	 *
+	 * @param id the id of the person
+	 * @return the index of the person, or -1 if there is no such person
+	 */
+	public int personIndex(int id) {
+		int index = Arrays.binarySearch(personIds, id);
+		return index >= 0 ? index : -1;
+	}
+
+	/**
+	 * Returns the index of the first person with an id greater than the given
+	 * id.
+	 *
+	 * @param id the id to search after
+	 * @return the index of the first person after the id
+	 */
+	public int personIndexAfter(int id) {
+		int index = Arrays.binarySearch(personIds, id);
+		return index >= 0 ? index + 1 : -index - 1;
+	}
+
+	/**
+	 * Returns the id of the person at the given index.
+	 *
+	 * @param index the index of the person
+	 * @return the id of the person
+	 */
+	public int personId(int index) {
+		return personIds[index];
+	}
+
+	/**
+	 * Returns the name of the person at the given index.
+	 *
+	 * @param index the index of the person
+	 * @return the name of the person
+	 */
+	public String name(int index) {
+		return new String(nameChars, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index]);
+	}
+
+	/**
+	 * Returns the birth year of the person at the given index.
+	 *
+	 * @param index the index of the person
+	 * @return the birth year
+	 */
+	public int birth(int index) {
+		return births[index];
+	}
+
+	/**
+	 * Returns the stars table.
+	 *
+	 * @return the stars
+	 */
+	public CsrIndex getStars() {
+		return stars;
+	}
+
+	/**
+	 * Returns the directors table.
+	 *
+	 * @return the directors
+	 */
+	public CsrIndex getDirectors() {
+		return directors;
+	}
+
+	/**
+	 * Returns the rated movies of each year, sorted by rating.
+	 *
+	 * @return the rating index
+	 */
+	public RatingIndex getRatingIndex() {
+		return ratingIndex;
+	}
+
+	/**
+	 * Returns how long the snapshot took to load.
+	 *
+	 * @return the load time in milliseconds
+	 */
+	public long getLoadMillis() {
+		return loadMillis;
+	}
+
+	/**
+	 * Returns roughly how much memory the arrays of the snapshot take up.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMemoryBytes() {
+		long bytes = 4L * (movieIds.length * 4L + titleOffsets.length + personIds.length * 2L + nameOffsets.length);
+		bytes += 2L * (titleChars.length + nameChars.length);
+		return bytes + stars.getMemoryBytes() + directors.getMemoryBytes() + ratingIndex.getMemoryBytes();
+	}
+
+	/**
+	 * Returns a one line summary of the snapshot, for the startup log.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		return "Snapshot [movies=" + movieIds.length + ", people=" + personIds.length + ", stars=" + stars.size()
+				+ ", directors=" + directors.size() + ", bytes=" + getMemoryBytes() + ", loadMillis=" + loadMillis
+				+ "]";
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.flickfinder.index;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import com.flickfinder.util.Database;
+import com.flickfinder.util.PooledConnection;
+
+/**
+ * Growable columns of the movies or people that the text indexes are built
+ * from: the id, the title or name, the year of release or birth, and how
+ * popular each one is.
+ */
+class TextColumns {
+
+	int[] ids = new int[1024];
+	String[] texts = new String[1024];
+	int[] years = new int[1024];
+	long[] popularity = new long[1024];
+	int size;
+
+	void add(int id, String text, int year, long count) {
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2);
+			texts = Arrays.copyOf(texts, size * 2);
+			years = Arrays.copyOf(years, size * 2);
+			popularity = Arrays.copyOf(popularity, size * 2);
+		}
+		ids[size] = id;
+		texts[size] = text;
+		years[size] = year;
+		popularity[size] = count;
+		size++;
+	}
+
+	/**
+	 * Reads every movie, with its votes as its popularity.
+	 */
+	static TextColumns movies(Database database) throws SQLException {
+		TextColumns movies = new TextColumns();
+		try (PooledConnection connection = database.borrowConnection()) {
+			try (ResultSet rs = connection.prepare(
+					"select id, title, year, coalesce(votes, 0) from movies left join ratings on movies.id=ratings.movie_id")
+					.executeQuery()) {
+				while (rs.next()) {
+					movies.add(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getLong(4));
+				}
+			}
+		}
+		return movies;
+	}
+
+	/**
+	 * Reads every person, with the summed votes of the movies they starred in
+	 * as their popularity.
+	 */
+	static TextColumns people(Database database) throws SQLException {
+		TextColumns people = new TextColumns();
+		try (PooledConnection connection = database.borrowConnection()) {
+			try (ResultSet rs = connection.prepare("select id, name, birth from people order by id").executeQuery()) {
+				while (rs.next()) {
+					people.add(rs.getInt(1), rs.getString(2), rs.getInt(3), 0);
+				}
+			}
+			try (ResultSet rs = connection.prepare(
+					"select person_id, sum(votes) from stars inner join ratings on stars.movie_id=ratings.movie_id group by person_id")
+					.executeQuery()) {
+				while (rs.next()) {
+					int index = Arrays.binarySearch(people.ids, 0, people.size, rs.getInt(1));
+					if (index >= 0) {
+						people.popularity[index] = rs.getLong(2);
+					}
+				}
+			}
+		}
+		return people;
+	}
+}
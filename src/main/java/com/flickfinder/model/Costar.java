@@ -0,0 +1,54 @@
+package com.flickfinder.model;
+
+/**
+ * Represents a person who starred alongside another person, with the number
+ * of movies they starred in together.
+ */
+public class Costar extends Person {
+
+	private int sharedMovies;
+
+	/**
+	 * Constructs a Costar object.
+	 *
+	 * @param id           the unique identifier of the person
+	 * @param name         the name of the person
+	 * @param birth        the birth year of the person
+	 * @param sharedMovies the number of movies the two people starred in
+	 *                     together
+	 */
+	public Costar(int id, String name, int birth, int sharedMovies) {
+		super(id, name, birth);
+		this.sharedMovies = sharedMovies;
+	}
+
+	/**
+	 * Returns the number of movies the two people starred in together.
+	 *
+	 * @return the number of shared movies
+	 */
+	public int getSharedMovies() {
+		return sharedMovies;
+	}
+
+	/**
+	 * Sets the number of movies the two people starred in together.
+	 *
+	 * @param sharedMovies the number of shared movies to set
+	 */
+	public void setSharedMovies(int sharedMovies) {
+		this.sharedMovies = sharedMovies;
+	}
+
+	/**
+	 * Returns a string representation of the Costar object.
+	 *
+	 * @return a string representation of the Costar object
+	 */
+	@Override
+	public String toString() {
+		return "Costar [id=" + getId() + ", name=" + getName() + ", birth=" + getBirth() + ", sharedMovies="
+				+ sharedMovies + "]";
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.flickfinder.model;
+
+import java.util.List;
+
+/**
+ * Represents everything a movie page shows: the movie itself, its rating,
+ * its stars and its directors.
+ */
+public class MovieDetail extends Movie {
+
+	private Float rating;
+	private Integer votes;
+	private List<Person> stars;
+	private List<Person> directors;
+
+	/**
+	 * Constructs a MovieDetail object.
+	 *
+	 * @param id        the unique identifier of the movie
+	 * @param title     the title of the movie
+	 * @param year      the release year of the movie
+	 * @param rating    the rating of the movie, or null if it has none
+	 * @param votes     the number of votes given to the movie, or null if it
+	 *                  has no rating
+	 * @param stars     the stars of the movie
+	 * @param directors the directors of the movie
+	 */
+	public MovieDetail(int id, String title, int year, Float rating, Integer votes, List<Person> stars,
+			List<Person> directors) {
+		super(id, title, year);
+		this.rating = rating;
+		this.votes = votes;
+		this.stars = stars;
+		this.directors = directors;
+	}
+
+	/**
+	 * Returns the rating of the movie.
+	 *
+	 * @return the rating, or null if the movie has none
+	 */
+	public Float getRating() {
+		return rating;
+	}
+
+	/**
+	 * Sets the rating of the movie.
+	 *
+	 * @param rating the rating to set
+	 */
+	public void setRating(Float rating) {
+		this.rating = rating;
+	}
+
+	/**
+	 * Returns the number of votes for the movie.
+	 *
+	 * @return the number of votes, or null if the movie has no rating
+	 */
+	public Integer getVotes() {
+		return votes;
+	}
+
+	/**
+	 * Sets the number of votes for the movie.
+	 *
+	 * @param votes the number of votes to set
+	 */
+	public void setVotes(Integer votes) {
+		this.votes = votes;
+	}
+
+	/**
+	 * Returns the stars of the movie.
+	 *
+	 * @return the stars, empty if there are none
+	 */
+	public List<Person> getStars() {
+		return stars;
+	}
+
+	/**
+	 * Sets the stars of the movie.
+	 *
+	 * @param stars the stars to set
+	 */
+	public void setStars(List<Person> stars) {
+		this.stars = stars;
+	}
+
+	/**
+	 * Returns the directors of the movie.
+	 *
+	 * @return the directors, empty if there are none
+	 */
+	public List<Person> getDirectors() {
+		return directors;
+	}
+
+	/**
+	 * Sets the directors of the movie.
+	 *
+	 * @param directors the directors to set
+	 */
+	public void setDirectors(List<Person> directors) {
+		this.directors = directors;
+	}
+
+	/**
+	 * Returns a string representation of the MovieDetail object.
+	 * This is primarily used for debugging purposes.
+	 *
+	 * @return a string representation of the MovieDetail object
+	 */
+	@Override
+	public String toString() {
+		return "MovieDetail [id=" + getId() + ", title=" + getTitle() + ", year=" + getYear() + ", rating=" + rating
+				+ ", votes=" + votes + ", stars=" + stars + ", directors=" + directors + "]";
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.flickfinder.model;
+
+import java.util.List;
+
+/**
+ * Represents one page of a list that is walked with a cursor.
+ *
+ * @param <T> the type of the items on the page
+ */
+public class Page<T> {
+
+	private List<T> items;
+	private String next;
+
+	/**
+	 * Constructs a Page object with the specified items and next cursor.
+	 *
+	 * @param items the items on the page
+	 * @param next  the cursor for the following page, or null if this is the
+	 *              last page
+	 */
+	public Page(List<T> items, String next) {
+		this.items = items;
+		this.next = next;
+	}
+
+	/**
+	 * Returns the items on the page.
+	 *
+	 * @return the items on the page
+	 */
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * Sets the items on the page.
+	 *
+	 * @param items the items to set
+	 */
+	public void setItems(List<T> items) {
+		this.items = items;
+	}
+
+	/**
+	 * Returns the cursor for the following page.
+	 *
+	 * @return the next cursor, or null if this is the last page
+	 */
+	public String getNext() {
+		return next;
+	}
+
+	/**
+	 * Sets the cursor for the following page.
+	 *
+	 * @param next the next cursor to set
+	 */
+	public void setNext(String next) {
+		this.next = next;
+	}
+
+	/**
+	 * Returns a string representation of the Page object.
+	 *
+	 * @return a string representation of the Page object
+	 */
+	@Override
+	public String toString() {
+		return "Page [items=" + items + ", next=" + next + "]";
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.flickfinder.model;
+
+import java.util.List;
+
+/**
+ * Represents the shortest chain of movies connecting two people: the first
+ * person starred in the first movie with the second person, who starred in
+ * the second movie with the third, and so on to the last person.
+ */
+public class Separation {
+
+	private int degrees;
+	private List<Person> people;
+	private List<Movie> movies;
+
+	/**
+	 * Constructs a Separation object.
+	 *
+	 * @param degrees the number of movies in the chain
+	 * @param people  the people of the chain, from the first to the last
+	 * @param movies  the movies of the chain; movie i links person i and
+	 *                person i + 1
+	 */
+	public Separation(int degrees, List<Person> people, List<Movie> movies) {
+		this.degrees = degrees;
+		this.people = people;
+		this.movies = movies;
+	}
+
+	/**
+	 * Returns the number of movies in the chain.
+	 *
+	 * @return the degrees of separation
+	 */
+	public int getDegrees() {
+		return degrees;
+	}
+
+	/**
+	 * Sets the number of movies in the chain.
+	 *
+	 * @param degrees the degrees to set
+	 */
+	public void setDegrees(int degrees) {
+		this.degrees = degrees;
+	}
+
+	/**
+	 * Returns the people of the chain, from the first to the last.
+	 *
+	 * @return the people
+	 */
+	public List<Person> getPeople() {
+		return people;
+	}
+
+	/**
+	 * Sets the people of the chain.
+	 *
+	 * @param people the people to set
+	 */
+	public void setPeople(List<Person> people) {
+		this.people = people;
+	}
+
+	/**
+	 * Returns the movies of the chain, each linking the people either side of
+	 * it.
+	 *
+	 * @return the movies
+	 */
+	public List<Movie> getMovies() {
+		return movies;
+	}
+
+	/**
+	 * Sets the movies of the chain.
+	 *
+	 * @param movies the movies to set
+	 */
+	public void setMovies(List<Movie> movies) {
+		this.movies = movies;
+	}
+
+	/**
+	 * Returns a string representation of the Separation object.
+	 *
+	 * @return a string representation of the Separation object
+	 */
+	@Override
+	public String toString() {
+		return "Separation [degrees=" + degrees + ", people=" + people + ", movies=" + movies + "]";
+	}
+
+}
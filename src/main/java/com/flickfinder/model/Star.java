@@ -0,0 +1,68 @@
+package com.flickfinder.model;
+
+/**
+ * Represents a person starring in a movie, one row of the stars table.
+ */
+public class Star {
+
+	private int movieId;
+	private int personId;
+
+	/**
+	 * Constructs a Star object with the specified movie and person.
+	 *
+	 * @param movieId  the unique identifier of the movie
+	 * @param personId the unique identifier of the person
+	 */
+	public Star(int movieId, int personId) {
+		this.movieId = movieId;
+		this.personId = personId;
+	}
+
+	/**
+	 * Returns the unique identifier of the movie.
+	 *
+	 * @return the id of the movie
+	 */
+	public int getMovieId() {
+		return movieId;
+	}
+
+	/**
+	 * Sets the unique identifier of the movie.
+	 *
+	 * @param movieId the movie id to set
+	 */
+	public void setMovieId(int movieId) {
+		this.movieId = movieId;
+	}
+
+	/**
+	 * Returns the unique identifier of the person.
+	 *
+	 * @return the id of the person
+	 */
+	public int getPersonId() {
+		return personId;
+	}
+
+	/**
+	 * Sets the unique identifier of the person.
+	 *
+	 * @param personId the person id to set
+	 */
+	public void setPersonId(int personId) {
+		this.personId = personId;
+	}
+
+	/**
+	 * Returns a string representation of the Star object.
+	 *
+	 * @return a string representation of the Star object
+	 */
+	@Override
+	public String toString() {
+		return "Star [movieId=" + movieId + ", personId=" + personId + "]";
+	}
+
+}
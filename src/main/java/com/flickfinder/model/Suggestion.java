@@ -0,0 +1,92 @@
+package com.flickfinder.model;
+
+/**
+ * Represents a type-ahead suggestion: a movie title or a person's name, with
+ * how popular it is.
+ */
+public class Suggestion {
+
+	private int id;
+	private String name;
+	private long popularity;
+
+	/**
+	 * Constructs a Suggestion object with the specified id, name and
+	 * popularity.
+	 *
+	 * @param id         the unique identifier of the movie or person
+	 * @param name       the title of the movie or the name of the person
+	 * @param popularity the votes of the movie, or the summed votes of the
+	 *                   movies the person starred in
+	 */
+	public Suggestion(int id, String name, long popularity) {
+		this.id = id;
+		this.name = name;
+		this.popularity = popularity;
+	}
+
+	/**
+	 * Returns the unique identifier of the movie or person.
+	 *
+	 * @return the id
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the unique identifier of the movie or person.
+	 *
+	 * @param id the id to set
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Returns the title of the movie or the name of the person.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Sets the title of the movie or the name of the person.
+	 *
+	 * @param name the name to set
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns how popular the suggestion is.
+	 *
+	 * @return the popularity
+	 */
+	public long getPopularity() {
+		return popularity;
+	}
+
+	/**
+	 * Sets how popular the suggestion is.
+	 *
+	 * @param popularity the popularity to set
+	 */
+	public void setPopularity(long popularity) {
+		this.popularity = popularity;
+	}
+
+	/**
+	 * Returns a string representation of the Suggestion object.
+	 *
+	 * @return a string representation of the Suggestion object
+	 */
+	@Override
+	public String toString() {
+		return "Suggestion [id=" + id + ", name=" + name + ", popularity=" + popularity + "]";
+	}
+
+}
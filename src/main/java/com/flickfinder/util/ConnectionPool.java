@@ -0,0 +1,250 @@
+package com.flickfinder.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * A bounded pool of database connections.
+ *
+ * Each request borrows a connection, runs its query and gives it back, so
+ * concurrent requests no longer queue up behind a single connection. When
+ * the pool is opened from a path the connections are read-only and do not
+ * share a cache, as movies.db is never written to.
+ *
+ * The pool is also what limits how many requests use the database at once.
+ * When the handlers run on virtual threads there can be thousands of them,
+ * but only as many as there are connections get past {@link #borrow()}; the
+ * rest wait their turn in order.
+ *
+ * The pool also keeps a few counters (time spent waiting, connections in use
+ * and how often the pool ran dry) so we can tell when it needs to be bigger.
+ */
+public class ConnectionPool {
+
+	/**
+	 * How long a request waits for a free connection before giving up.
+	 */
+	private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * The connections that are not lent out.
+	 */
+	private final BlockingQueue<PooledConnection> idle;
+
+	/**
+	 * Every connection owned by the pool.
+	 */
+	private final List<PooledConnection> connections;
+
+	/**
+	 * How long to wait for a free connection, in milliseconds.
+	 */
+	private final long timeoutMillis;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder borrows = new LongAdder();
+	private final LongAdder exhaustions = new LongAdder();
+	private final LongAdder totalWaitNanos = new LongAdder();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	/**
+	 * Constructs a pool over the given connections.
+	 *
+	 * @param connections   the connections to hand out
+	 * @param timeoutMillis how long to wait for a free connection
+	 */
+	private ConnectionPool(List<Connection> connections, long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+		// fair, so that when many virtual threads are queued for a connection
+		// they are served in the order they arrived
+		this.idle = new ArrayBlockingQueue<>(connections.size(), true);
+		this.connections = new ArrayList<>(connections.size());
+		for (Connection connection : connections) {
+			PooledConnection pooled = new PooledConnection(this, connection);
+			this.connections.add(pooled);
+			this.idle.add(pooled);
+		}
+	}
+
+	/**
+	 * Opens a pool of read-only connections to the database at the given url.
+	 *
+	 * @param url  the JDBC url of the database
+	 * @param size the number of connections to open
+	 * @return the pool
+	 * @throws SQLException if a connection could not be opened
+	 */
+	public static ConnectionPool open(String url, int size) throws SQLException {
+		if (size < 1) {
+			throw new IllegalArgumentException("Pool size must be at least 1");
+		}
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		config.setSharedCache(false);
+
+		List<Connection> connections = new ArrayList<>(size);
+		try {
+			for (int i = 0; i < size; i++) {
+				connections.add(config.createConnection(url));
+			}
+		} catch (SQLException e) {
+			for (Connection connection : connections) {
+				connection.close();
+			}
+			throw e;
+		}
+		return new ConnectionPool(connections, Long.getLong("flickfinder.db.poolTimeoutMs", DEFAULT_TIMEOUT_MILLIS));
+	}
+
+	/**
+	 * Wraps an existing connection in a pool of one.
+	 * This is used for the in-memory test database, which cannot be opened
+	 * twice.
+	 *
+	 * @param connection the connection to wrap
+	 * @return the pool
+	 */
+	public static ConnectionPool wrap(Connection connection) {
+		return new ConnectionPool(List.of(connection), DEFAULT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Attaches another database file to every connection in the pool, so
+	 * queries can use its tables as {@code schema.table}. It must be called
+	 * before the connections are lent out. Read-only connections attach it
+	 * read-only.
+	 *
+	 * @param path   the path to the database file
+	 * @param schema the schema name to attach it under
+	 * @throws SQLException if it could not be attached
+	 */
+	public void attach(String path, String schema) throws SQLException {
+		for (PooledConnection pooled : connections) {
+			try (PreparedStatement ps = pooled.getConnection().prepareStatement("ATTACH DATABASE ? AS " + schema)) {
+				ps.setString(1, path);
+				ps.execute();
+			}
+		}
+	}
+
+	/**
+	 * Borrows a connection, waiting for one to be returned if they are all in
+	 * use. The connection must be closed to give it back.
+	 *
+	 * @return a connection from the pool
+	 * @throws SQLException if no connection became free in time
+	 */
+	public PooledConnection borrow() throws SQLException {
+		PooledConnection pooled = idle.poll();
+		if (pooled == null) {
+			exhaustions.increment();
+			long start = System.nanoTime();
+			try {
+				pooled = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted waiting for a database connection", e);
+			}
+			long waited = System.nanoTime() - start;
+			totalWaitNanos.add(waited);
+			maxWaitNanos.accumulateAndGet(waited, Math::max);
+			if (pooled == null) {
+				throw new SQLException("Timed out waiting for a database connection");
+			}
+		}
+		borrows.increment();
+		active.incrementAndGet();
+		pooled.markBorrowed();
+		return pooled;
+	}
+
+	/**
+	 * Puts a connection back in the pool.
+	 *
+	 * @param pooled the connection to return
+	 */
+	void release(PooledConnection pooled) {
+		active.decrementAndGet();
+		idle.offer(pooled);
+	}
+
+	/**
+	 * Closes every connection in the pool, along with their cached statements.
+	 */
+	public void close() {
+		for (PooledConnection pooled : connections) {
+			pooled.closeStatements();
+			try {
+				pooled.getConnection().close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of connections in the pool.
+	 *
+	 * @return the pool size
+	 */
+	public int getSize() {
+		return connections.size();
+	}
+
+	/**
+	 * Returns the number of connections currently lent out.
+	 *
+	 * @return the active connection count
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	/**
+	 * Returns the number of connections handed out since the pool was opened.
+	 *
+	 * @return the borrow count
+	 */
+	public long getBorrowCount() {
+		return borrows.sum();
+	}
+
+	/**
+	 * Returns how many times a request found the pool empty and had to wait.
+	 *
+	 * @return the exhaustion count
+	 */
+	public long getExhaustionCount() {
+		return exhaustions.sum();
+	}
+
+	/**
+	 * Returns the total time requests have spent waiting for a connection.
+	 *
+	 * @return the total wait time in nanoseconds
+	 */
+	public long getTotalWaitNanos() {
+		return totalWaitNanos.sum();
+	}
+
+	/**
+	 * Returns the longest time a single request has waited for a connection.
+	 *
+	 * @return the maximum wait time in nanoseconds
+	 */
+	public long getMaxWaitNanos() {
+		return maxWaitNanos.get();
+	}
+
+}
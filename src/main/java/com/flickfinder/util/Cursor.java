@@ -0,0 +1,83 @@
+package com.flickfinder.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import com.flickfinder.model.Page;
+
+/**
+ * Encodes and decodes the cursors used to page through lists.
+ *
+ * A cursor records the id of the last row on a page, so the next page can be
+ * fetched with {@code WHERE id > ?} rather than an OFFSET, and a deep page
+ * costs the same as the first. Clients should treat cursors as opaque; a
+ * plain id is also accepted so a walk can start from a known row.
+ *
+ */
+public class Cursor {
+
+	/**
+	 * The prefix of every encoded cursor, so the format can change later.
+	 */
+	private static final String PREFIX = "v1:";
+
+	private Cursor() {
+	}
+
+	/**
+	 * Returns the cursor for the page that follows the given id.
+	 *
+	 * @param id the id of the last row on the current page
+	 * @return the encoded cursor
+	 */
+	public static String encode(int id) {
+		byte[] bytes = (PREFIX + id).getBytes(StandardCharsets.US_ASCII);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+	/**
+	 * Returns the id a cursor points after.
+	 *
+	 * @param cursor the cursor, or a plain non-negative id
+	 * @return the id to continue after
+	 * @throws IllegalArgumentException if the cursor is not valid
+	 */
+	public static int decode(String cursor) {
+		if (cursor.matches("[0-9]+") && cursor.length() < 10) {
+			return Integer.parseInt(cursor);
+		}
+		String decoded;
+		try {
+			decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid cursor", e);
+		}
+		String id = decoded.startsWith(PREFIX) ? decoded.substring(PREFIX.length()) : "";
+		if (!id.matches("[0-9]+") || id.length() >= 10) {
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+		return Integer.parseInt(id);
+	}
+
+	/**
+	 * Builds a page from rows fetched with one more row than the page size.
+	 * If the extra row is there it is dropped, and the cursor for the next page
+	 * points after the last row that was kept.
+	 *
+	 * @param <T>  the type of the rows
+	 * @param rows the rows, in id order
+	 * @param size the page size
+	 * @param id   returns the id of a row
+	 * @return the page
+	 */
+	public static <T> Page<T> page(List<T> rows, int size, ToIntFunction<T> id) {
+		if (rows.size() <= size) {
+			return new Page<>(rows, null);
+		}
+		List<T> items = rows.subList(0, size);
+		return new Page<>(items, encode(id.applyAsInt(items.get(size - 1))));
+	}
+
+}
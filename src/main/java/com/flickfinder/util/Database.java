@@ -1,13 +1,15 @@
 package com.flickfinder.util;
 
+import java.io.File;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * A class to handle the database connection.
- * You should not need to modify this class.
- * 
+ *
+ * The connections are held in a {@link ConnectionPool}; the DAOs borrow a
+ * connection for each query and hand it back when they are done.
+ *
  */
 
 public class Database {
@@ -18,15 +20,24 @@ public class Database {
 	private static Database instance;
 
 	/**
-	 * The connection to the database.
-	 * This is optional as we can also
-	 * pass in a connection to the database.
+	 * The pool of connections to the database.
 	 */
-	Connection connection;
+	private ConnectionPool pool;
 
-	private Database(String path) {
+	/**
+	 * Identifies the data in the database, for the ETags of the responses.
+	 */
+	private final String version;
+
+	/**
+	 * Whether the search database is attached to the connections.
+	 */
+	private volatile boolean searchAttached;
+
+	private Database(String path, int poolSize) {
+		this.version = versionOf(path);
 		try {
-			this.connection = DriverManager.getConnection(path);
+			this.pool = ConnectionPool.open(path, poolSize);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -35,35 +46,73 @@ public class Database {
 	/**
 	 * This allows use to pass in an existing database connection.
 	 * This is useful for testing.
-	 * 
+	 *
 	 * @param connection
 	 */
 
 	private Database(Connection connection) {
-		this.connection = connection;
+		this.pool = ConnectionPool.wrap(connection);
+		this.version = versionOf(null);
+	}
+
+	/**
+	 * Works out the version of the data. movies.db is only replaced between
+	 * deployments, so its size and modification time identify it; anything
+	 * else, such as an in-memory database, gets the time it was opened. The
+	 * flickfinder.dataset.version system property overrides both.
+	 *
+	 * @param path the path to the database, or null
+	 * @return the version
+	 */
+	private static String versionOf(String path) {
+		String configured = System.getProperty("flickfinder.dataset.version");
+		if (configured != null && !configured.isEmpty()) {
+			return configured;
+		}
+		if (path != null && path.startsWith("jdbc:sqlite:")) {
+			File file = new File(path.substring("jdbc:sqlite:".length()));
+			if (file.isFile()) {
+				return Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified());
+			}
+		}
+		return "t" + Long.toHexString(System.currentTimeMillis());
 	}
 
 	/**
 	 * Returns the instance of the database.
 	 * We pass in the path to the database.
 	 * This is the path to the database file.
-	 * 
+	 * The pool size is read from the flickfinder.db.poolSize system property,
+	 * and defaults to the number of processors.
+	 *
 	 * @param path
 	 * @return
 	 */
 	public static Database getInstance(String path) {
+		return getInstance(path, Integer.getInteger("flickfinder.db.poolSize", Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Returns the instance of the database, opening a pool with the given number
+	 * of read-only connections if it has not been set yet.
+	 *
+	 * @param path     the path to the database
+	 * @param poolSize the number of connections in the pool
+	 * @return
+	 */
+	public static Database getInstance(String path, int poolSize) {
 		if (instance == null) {
-			instance = new Database(path);
+			instance = new Database(path, poolSize);
 		}
 		return instance;
 	}
 
 	/**
-	 * Returns the instance of the database. However, this methods allows us 
+	 * Returns the instance of the database. However, this methods allows us
 	 * to pass in the connection to an instance of an in-memory database.
-	 * We use this for testing. Notice how we are using the same method name, overloading the above 
+	 * We use this for testing. Notice how we are using the same method name, overloading the above
 	 * method.
-	 * 
+	 *
 	 * @param conn
 	 * @return
 	 */
@@ -78,10 +127,10 @@ public class Database {
 	/**
 	 * Returns the instance of the database.
 	 * notice how this method is static and does not take any parameters.
-	 * This is because if we have already set the instance of the database, we 
+	 * This is because if we have already set the instance of the database, we
 	 * can just return the instance. There is no need to pass in the path or connection to the database.
-	 * 
-	 * 
+	 *
+	 *
 	 * @return
 	 */
 
@@ -90,7 +139,7 @@ public class Database {
 		/**
 		 * If the instance is null, we throw an IllegalStateException.
 		 * This is because we need to set the instance of the database before we can use it.
-		 * As we are using a singleton pattern, we only have to do this once. 
+		 * As we are using a singleton pattern, we only have to do this once.
 		 */
 		if (instance == null) {
 			throw new IllegalStateException("Database instance not set");
@@ -99,13 +148,61 @@ public class Database {
 	}
 
 	/**
-	 * Returns the connection to the database.
-	 * 
-	 * @return
+	 * Borrows a connection from the pool. Close the returned connection to give
+	 * it back.
+	 *
+	 * @return a connection to the database
+	 * @throws SQLException if no connection is available
 	 */
+	public PooledConnection borrowConnection() throws SQLException {
+		if (pool == null) {
+			throw new SQLException("Database connection not open");
+		}
+		return pool.borrow();
+	}
 
-	public Connection getConnection() {
-		return this.connection;
+	/**
+	 * Attaches a search database built by {@link SearchDatabase} to every
+	 * connection, for the search queries.
+	 *
+	 * @param sidecar the search database file
+	 * @throws SQLException if it could not be attached
+	 */
+	public void attachSearch(File sidecar) throws SQLException {
+		if (pool == null) {
+			throw new SQLException("Database connection not open");
+		}
+		pool.attach(sidecar.getPath(), SearchDatabase.SCHEMA);
+		searchAttached = true;
+	}
+
+	/**
+	 * Returns whether the search database is attached, so the search queries
+	 * can be run.
+	 *
+	 * @return true if {@link #attachSearch(File)} succeeded
+	 */
+	public boolean hasSearch() {
+		return searchAttached;
+	}
+
+	/**
+	 * Returns the version of the data in the database. It changes whenever the
+	 * database file is replaced.
+	 *
+	 * @return the version
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the connection pool, mainly so its metrics can be read.
+	 *
+	 * @return the connection pool
+	 */
+	public ConnectionPool getPool() {
+		return this.pool;
 	}
 
 }
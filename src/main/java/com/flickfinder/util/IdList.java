@@ -0,0 +1,97 @@
+package com.flickfinder.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the comma separated lists of ids taken by the batch lookups, such
+ * as {@code /movies?ids=1,2,3}, and builds the IN clauses that fetch them.
+ *
+ */
+public class IdList {
+
+	/**
+	 * The largest number of ids a client can ask for at once.
+	 */
+	public static final int MAX_SIZE = 200;
+
+	private IdList() {
+	}
+
+	/**
+	 * Parses a comma separated list of ids, keeping their order.
+	 *
+	 * @param ids the list, such as "1,2,3"
+	 * @return the ids
+	 * @throws IllegalArgumentException if an id is not valid, or there are
+	 *                                  more than {@link #MAX_SIZE} of them
+	 */
+	public static int[] parse(String ids) {
+		String[] parts = ids.split(",", -1);
+		if (parts.length > MAX_SIZE) {
+			throw new IllegalArgumentException("Too many ids");
+		}
+		int[] parsed = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			String id = parts[i].trim();
+			if (!id.matches("[0-9]+") || id.length() >= 10) {
+				throw new IllegalArgumentException("Invalid ids");
+			}
+			parsed[i] = Integer.parseInt(id);
+		}
+		return parsed;
+	}
+
+	/**
+	 * Returns the number of parameters to bind for a batch of ids. Batches
+	 * are rounded up to a power of two, so only a handful of distinct
+	 * statements are ever prepared and they stay in the statement cache.
+	 *
+	 * @param count the number of ids
+	 * @return the number of parameters
+	 */
+	public static int paddedSize(int count) {
+		return count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+	}
+
+	/**
+	 * Builds a query that ends in an IN clause with the given number of
+	 * parameters.
+	 *
+	 * @param prefix the query up to and including "in"
+	 * @param size   the number of parameters
+	 * @return the query
+	 */
+	public static String in(String prefix, int size) {
+		StringBuilder sql = new StringBuilder(prefix.length() + size * 2 + 2).append(prefix).append(" (?");
+		for (int i = 1; i < size; i++) {
+			sql.append(",?");
+		}
+		return sql.append(')').toString();
+	}
+
+	/**
+	 * Puts the rows found for a batch back in the order the ids were asked
+	 * for, leaving out ids that were not found.
+	 *
+	 * @param <T>   the type of the rows
+	 * @param ids   the ids, in the order they were asked for
+	 * @param found the rows that were found, by id
+	 * @return the rows, or null if none were found
+	 */
+	public static <T> List<T> order(int[] ids, Map<Integer, T> found) {
+		if (found.isEmpty()) {
+			return null;
+		}
+		List<T> rows = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			T row = found.get(id);
+			if (row != null) {
+				rows.add(row);
+			}
+		}
+		return rows;
+	}
+
+}
@@ -0,0 +1,208 @@
+package com.flickfinder.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sqlite.SQLiteConfig;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+
+/**
+ * Builds an indexed copy of the database next to it, for the app to query
+ * instead of the original.
+ *
+ * movies.db has no indexes besides the primary keys of movies and people, so
+ * every lookup in the stars, directors and ratings tables scans the whole
+ * table. The file must not be changed, so at startup a copy is made with
+ * {@code VACUUM INTO}, and the covering indexes below are added to the copy.
+ * The copy records the size and modification time of the file it was made
+ * from, and is only rebuilt when those change.
+ *
+ * The query plans of the DAO queries are printed before and after, so it is
+ * easy to see which scans became index searches.
+ */
+public class IndexDatabase {
+
+	/**
+	 * The indexes added to the copy. Each one covers the columns its queries
+	 * read, so SQLite never has to visit the table itself.
+	 */
+	static final String[] INDEXES = {
+			"CREATE INDEX stars_movie ON stars(movie_id, person_id)",
+			"CREATE INDEX stars_person ON stars(person_id, movie_id)",
+			"CREATE INDEX directors_movie ON directors(movie_id, person_id)",
+			"CREATE INDEX directors_person ON directors(person_id, movie_id)",
+			"CREATE INDEX ratings_movie ON ratings(movie_id, rating, votes)",
+			"CREATE INDEX movies_year ON movies(year, id)" };
+
+	/**
+	 * The queries whose plans are reported, by name. They are the DAOs' own
+	 * SQL, so the report follows any change to it; a batch of ids is planned
+	 * with a list of two. The search queries are left out, as they need the
+	 * search database attached.
+	 */
+	static final String[][] QUERIES = {
+			{ "stars of a movie", MovieDAO.STARS_BY_MOVIE_ID },
+			{ "movies of a person", PersonDAO.MOVIES_BY_PERSON_ID },
+			{ "directors of a movie", MovieDAO.DIRECTORS_BY_MOVIE_ID },
+			{ "rating of a movie", MovieDAO.RATING_BY_MOVIE_ID },
+			{ "ratings of a year", MovieDAO.RATINGS_BY_YEAR },
+			{ "batch of movies", IdList.in(MovieDAO.MOVIES_BY_IDS, IdList.paddedSize(2)) },
+			{ "batch of people", IdList.in(PersonDAO.PEOPLE_BY_IDS, IdList.paddedSize(2)) },
+			{ "page of movies", MovieDAO.MOVIES_AFTER },
+			{ "page of people", PersonDAO.PEOPLE_AFTER },
+			{ "co-stars of a person", PersonDAO.COSTARS },
+			{ "export of movies", MovieDAO.EXPORT_MOVIES },
+			{ "export of people", PersonDAO.EXPORT_PEOPLE },
+			{ "export of stars", MovieDAO.EXPORT_STARS } };
+
+	/**
+	 * The table in the copy that records the file it was made from.
+	 */
+	private static final String META_TABLE = "flickfinder_index";
+
+	private IndexDatabase() {
+	}
+
+	/**
+	 * Makes sure there is an up to date indexed copy of a database file, and
+	 * prints the query plans before and after.
+	 *
+	 * @param source  the database file
+	 * @param sidecar where to keep the indexed copy
+	 * @return the JDBC url of the copy
+	 * @throws SQLException if the copy could not be made
+	 * @throws IOException  if the copy could not be moved into place
+	 */
+	public static String prepare(File source, File sidecar) throws SQLException, IOException {
+		String sourceUrl = "jdbc:sqlite:" + source.getPath();
+		String sidecarUrl = "jdbc:sqlite:" + sidecar.getPath();
+		long start = System.nanoTime();
+		boolean built = false;
+		if (!isCurrent(source, sidecar)) {
+			build(source, sidecar);
+			built = true;
+		}
+		System.out.println((built ? "Built" : "Reusing") + " index database " + sidecar + " in "
+				+ (System.nanoTime() - start) / 1_000_000 + "ms");
+		for (String line : report(sourceUrl, sidecarUrl)) {
+			System.out.println(line);
+		}
+		return sidecarUrl;
+	}
+
+	/**
+	 * Returns whether a copy exists and was made from the file as it is now.
+	 */
+	static boolean isCurrent(File source, File sidecar) {
+		if (!sidecar.isFile()) {
+			return false;
+		}
+		try (Connection connection = open("jdbc:sqlite:" + sidecar.getPath(), true);
+				Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("select source_size, source_modified from " + META_TABLE)) {
+			return rs.next() && rs.getLong(1) == source.length() && rs.getLong(2) == source.lastModified();
+		} catch (SQLException e) {
+			// not one of our copies, or an old format; it is rebuilt
+			return false;
+		}
+	}
+
+	/**
+	 * Copies the file and adds the indexes. The copy is made under a
+	 * temporary name and moved into place once it is complete, so a crash
+	 * never leaves a half built copy behind.
+	 */
+	private static void build(File source, File sidecar) throws SQLException, IOException {
+		File temporary = new File(sidecar.getPath() + ".tmp");
+		Files.deleteIfExists(temporary.toPath());
+		try (Connection connection = open("jdbc:sqlite:" + source.getPath(), true);
+				PreparedStatement vacuum = connection.prepareStatement("VACUUM INTO ?")) {
+			vacuum.setString(1, temporary.getPath());
+			vacuum.execute();
+		}
+
+		try (Connection connection = open("jdbc:sqlite:" + temporary.getPath(), false);
+				Statement statement = connection.createStatement()) {
+			for (String index : INDEXES) {
+				statement.execute(index);
+			}
+			statement.execute("CREATE TABLE " + META_TABLE + " (source_size INTEGER, source_modified INTEGER)");
+			statement.execute("INSERT INTO " + META_TABLE + " VALUES (" + source.length() + ", "
+					+ source.lastModified() + ")");
+			statement.execute("ANALYZE");
+		}
+		Files.move(temporary.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Lists the query plan of each DAO query on the original and on the copy.
+	 *
+	 * @param sourceUrl  the JDBC url of the original
+	 * @param sidecarUrl the JDBC url of the copy
+	 * @return the lines of the report
+	 * @throws SQLException if a plan could not be read
+	 */
+	static List<String> report(String sourceUrl, String sidecarUrl) throws SQLException {
+		List<String> lines = new ArrayList<>();
+		try (Connection before = open(sourceUrl, true); Connection after = open(sidecarUrl, true)) {
+			for (String[] query : QUERIES) {
+				lines.add("Query plan of " + query[0] + ":");
+				lines.add("  before: " + plan(before, query[1]));
+				lines.add("  after:  " + plan(after, query[1]));
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Returns the steps of the plan SQLite picks for a query, separated by
+	 * semicolons.
+	 *
+	 * @param connection the database to plan against
+	 * @param sql        the query
+	 * @param params     the parameters to bind, if any; the plan can depend
+	 *                   on them
+	 * @return the plan
+	 * @throws SQLException if the query is not valid
+	 */
+	static String plan(Connection connection, String sql, Object... params) throws SQLException {
+		StringBuilder plan = new StringBuilder();
+		try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+			for (int i = 0; i < params.length; i++) {
+				statement.setObject(i + 1, params[i]);
+			}
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					if (plan.length() > 0) {
+						plan.append("; ");
+					}
+					plan.append(rs.getString("detail"));
+				}
+			}
+		}
+		return plan.toString();
+	}
+
+	private static Connection open(String url, boolean readOnly) throws SQLException {
+		if (!readOnly) {
+			return DriverManager.getConnection(url);
+		}
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		return config.createConnection(url);
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.flickfinder.util;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with buckets that double in width: the first
+ * counts latencies up to 1 microsecond, the next up to 2, then 4, and so on
+ * up to about two minutes. Recording is a couple of adds, with no locks, so
+ * it can sit on every query.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The number of buckets. The last one also takes anything longer than
+	 * its bound.
+	 */
+	public static final int BUCKETS = 28;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Constructs an empty histogram.
+	 */
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records one latency.
+	 *
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		buckets[bucketOf(nanos)].increment();
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	/**
+	 * Returns the bucket a latency falls in.
+	 */
+	static int bucketOf(long nanos) {
+		long micros = nanos / 1000 + (nanos % 1000 == 0 ? 0 : 1);
+		if (micros <= 1) {
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+	}
+
+	/**
+	 * Returns the upper bound of a bucket.
+	 *
+	 * @param bucket the bucket
+	 * @return the largest latency it counts, in microseconds
+	 */
+	public static long getBucketBoundMicros(int bucket) {
+		return 1L << bucket;
+	}
+
+	/**
+	 * Returns the number of latencies in a bucket.
+	 *
+	 * @param bucket the bucket
+	 * @return the count
+	 */
+	public long getBucketCount(int bucket) {
+		return buckets[bucket].sum();
+	}
+
+	/**
+	 * Returns an upper bound of a percentile of the latencies, the bound of
+	 * the bucket it falls in.
+	 *
+	 * @param percentile the percentile, between 0 and 1
+	 * @return the bound in microseconds, or 0 if nothing was recorded
+	 */
+	public long getPercentileMicros(double percentile) {
+		long total = getCount();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets[i].sum();
+			if (seen >= rank) {
+				return getBucketBoundMicros(i);
+			}
+		}
+		return getBucketBoundMicros(BUCKETS - 1);
+	}
+
+	/**
+	 * Returns the number of latencies recorded.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the sum of the latencies recorded.
+	 *
+	 * @return the total in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * Returns the longest latency recorded.
+	 *
+	 * @return the maximum in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+}
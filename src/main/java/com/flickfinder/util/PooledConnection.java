@@ -0,0 +1,155 @@
+package com.flickfinder.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}.
+ *
+ * Closing a pooled connection does not close the underlying JDBC connection,
+ * it hands it back to the pool so another request can use it. This means the
+ * DAOs can borrow a connection in a try-with-resources block and never worry
+ * about returning it.
+ *
+ * Each connection also keeps a cache of the statements it has compiled, keyed
+ * by their SQL text, so a query is only parsed once per connection. The cached
+ * statements belong to the connection; callers must not close them, and they
+ * are closed when the pool is closed.
+ *
+ */
+public class PooledConnection implements AutoCloseable {
+
+	/**
+	 * The pool this connection belongs to.
+	 */
+	private final ConnectionPool pool;
+
+	/**
+	 * The underlying JDBC connection.
+	 */
+	private final Connection connection;
+
+	/**
+	 * The most statements kept compiled on a single connection.
+	 */
+	private static final int MAX_CACHED_STATEMENTS = 64;
+
+	/**
+	 * Whether the connection is currently lent out.
+	 */
+	private boolean borrowed;
+
+	/**
+	 * The compiled statements, least recently used first.
+	 * Only the thread that borrowed the connection touches this, so it does not
+	 * need to be synchronised.
+	 */
+	private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+			if (size() > MAX_CACHED_STATEMENTS) {
+				closeQuietly(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Constructs a PooledConnection wrapping the given JDBC connection.
+	 *
+	 * @param pool       the pool the connection is returned to
+	 * @param connection the underlying JDBC connection
+	 */
+	PooledConnection(ConnectionPool pool, Connection connection) {
+		this.pool = pool;
+		this.connection = connection;
+	}
+
+	/**
+	 * Returns the underlying JDBC connection.
+	 *
+	 * @return the JDBC connection
+	 */
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Returns a compiled statement for the given SQL, compiling it on first use.
+	 * The statement's parameters are cleared, but it must not be closed by the
+	 * caller.
+	 *
+	 * @param sql the SQL to compile
+	 * @return the prepared statement
+	 * @throws SQLException if the SQL could not be compiled
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement statement = statements.get(sql);
+		if (statement == null) {
+			statement = connection.prepareStatement(sql);
+			statements.put(sql, statement);
+		} else {
+			statement.clearParameters();
+		}
+		return statement;
+	}
+
+	/**
+	 * Returns the number of statements cached on this connection.
+	 *
+	 * @return the cached statement count
+	 */
+	public int getCachedStatementCount() {
+		return statements.size();
+	}
+
+	/**
+	 * Closes every cached statement.
+	 */
+	void closeStatements() {
+		for (PreparedStatement statement : statements.values()) {
+			closeQuietly(statement);
+		}
+		statements.clear();
+	}
+
+	/**
+	 * Closes a statement, printing rather than throwing any error.
+	 *
+	 * @param statement the statement to close
+	 */
+	private static void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Marks the connection as lent out.
+	 */
+	void markBorrowed() {
+		borrowed = true;
+	}
+
+	/**
+	 * Returns the connection to the pool. Calling this more than once has no
+	 * effect.
+	 */
+	@Override
+	public void close() {
+		if (!borrowed) {
+			return;
+		}
+		borrowed = false;
+		pool.release(this);
+	}
+
+}
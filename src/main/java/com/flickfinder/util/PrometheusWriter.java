@@ -0,0 +1,141 @@
+package com.flickfinder.util;
+
+/**
+ * Writes metrics in the Prometheus text exposition format.
+ *
+ * Each metric starts with {@link #family(String, String, String)}, which
+ * writes its HELP and TYPE lines, followed by its samples. Labels are given
+ * as name and value pairs.
+ */
+public class PrometheusWriter {
+
+	/**
+	 * The content type of the format.
+	 */
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final StringBuilder out = new StringBuilder(16384);
+
+	/**
+	 * Starts a metric.
+	 *
+	 * @param name the name of the metric
+	 * @param type counter, gauge or histogram
+	 * @param help what it measures
+	 * @return this writer
+	 */
+	public PrometheusWriter family(String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		return this;
+	}
+
+	/**
+	 * Writes a whole number sample.
+	 *
+	 * @param name   the name of the sample
+	 * @param value  the value
+	 * @param labels the labels, as name and value pairs
+	 * @return this writer
+	 */
+	public PrometheusWriter sample(String name, long value, String... labels) {
+		name(name, labels);
+		out.append(value).append('\n');
+		return this;
+	}
+
+	/**
+	 * Writes a sample.
+	 *
+	 * @param name   the name of the sample
+	 * @param value  the value
+	 * @param labels the labels, as name and value pairs
+	 * @return this writer
+	 */
+	public PrometheusWriter sample(String name, double value, String... labels) {
+		name(name, labels);
+		out.append(format(value)).append('\n');
+		return this;
+	}
+
+	/**
+	 * Writes the buckets, sum and count of a histogram of latencies, in
+	 * seconds. The counts are read once, and the count written is their total,
+	 * so the buckets always add up even while requests are being recorded.
+	 *
+	 * @param name      the name of the metric
+	 * @param histogram the latencies
+	 * @param labels    the labels, as name and value pairs
+	 * @return this writer
+	 */
+	public PrometheusWriter histogram(String name, LatencyHistogram histogram, String... labels) {
+		String[] withBound = new String[labels.length + 2];
+		System.arraycopy(labels, 0, withBound, 0, labels.length);
+		withBound[labels.length] = "le";
+		long cumulative = 0;
+		for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+			cumulative += histogram.getBucketCount(i);
+			withBound[labels.length + 1] = format(LatencyHistogram.getBucketBoundMicros(i) / 1e6);
+			sample(name + "_bucket", cumulative, withBound);
+		}
+		withBound[labels.length + 1] = "+Inf";
+		sample(name + "_bucket", cumulative, withBound);
+		sample(name + "_sum", histogram.getTotalNanos() / 1e9, labels);
+		sample(name + "_count", cumulative, labels);
+		return this;
+	}
+
+	private void name(String name, String[] labels) {
+		out.append(name);
+		if (labels.length > 0) {
+			out.append('{');
+			for (int i = 0; i + 1 < labels.length; i += 2) {
+				if (i > 0) {
+					out.append(',');
+				}
+				out.append(labels[i]).append("=\"");
+				escape(labels[i + 1]);
+				out.append('"');
+			}
+			out.append('}');
+		}
+		out.append(' ');
+	}
+
+	/**
+	 * Escapes a label value: backslashes, quotes and new lines.
+	 */
+	private void escape(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"') {
+				out.append('\\').append(c);
+			} else if (c == '\n') {
+				out.append("\\n");
+			} else {
+				out.append(c);
+			}
+		}
+	}
+
+	static String format(double value) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		}
+		if (Double.isInfinite(value)) {
+			return value > 0 ? "+Inf" : "-Inf";
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * Returns what has been written.
+	 *
+	 * @return the metrics
+	 */
+	@Override
+	public String toString() {
+		return out.toString();
+	}
+
+}
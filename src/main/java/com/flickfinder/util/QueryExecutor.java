@@ -0,0 +1,138 @@
+package com.flickfinder.util;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads the asynchronous DAO methods run their queries on.
+ *
+ * There is one thread per pooled connection, so a query handed to the
+ * executor never has to wait for a connection, and the request thread that
+ * handed it over is free to serve another request in the meantime. Queries
+ * that arrive while every thread is busy wait in a bounded queue; once that
+ * is full, new queries fail straight away with a
+ * {@link RejectedExecutionException} rather than piling up.
+ *
+ * The number of threads follows the flickfinder.db.poolSize system property,
+ * like the pool itself, and the length of the queue can be set with
+ * flickfinder.db.queueSize.
+ */
+public class QueryExecutor {
+
+	/**
+	 * The default number of queries that may wait for a thread.
+	 */
+	private static final int DEFAULT_QUEUE_SIZE = 10000;
+
+	/**
+	 * A query to run on the executor.
+	 *
+	 * @param <T> the type of the result
+	 */
+	@FunctionalInterface
+	public interface Query<T> {
+
+		/**
+		 * Runs the query.
+		 *
+		 * @return the result
+		 * @throws SQLException if a database error occurs
+		 */
+		T run() throws SQLException;
+	}
+
+	/**
+	 * Holds the executor, so its threads are only started once a query is
+	 * run asynchronously.
+	 */
+	private static class Holder {
+
+		static final ThreadPoolExecutor EXECUTOR = create();
+
+		private static ThreadPoolExecutor create() {
+			int threads = Math.max(1,
+					Integer.getInteger("flickfinder.db.poolSize", Runtime.getRuntime().availableProcessors()));
+			int queueSize = Math.max(1, Integer.getInteger("flickfinder.db.queueSize", DEFAULT_QUEUE_SIZE));
+			AtomicInteger count = new AtomicInteger();
+			return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(queueSize), runnable -> {
+						Thread thread = new Thread(runnable, "flickfinder-db-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+		}
+	}
+
+	private QueryExecutor() {
+	}
+
+	/**
+	 * Runs a query on one of the database threads.
+	 *
+	 * @param <T>   the type of the result
+	 * @param query the query to run
+	 * @return a future of the result; a SQLException from the query, or a
+	 *         RejectedExecutionException if the queue is full, fails it
+	 */
+	public static <T> CompletableFuture<T> supplyAsync(Query<T> query) {
+		try {
+			return CompletableFuture.supplyAsync(() -> call(query), Holder.EXECUTOR);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Runs a query on the calling thread, for data sources that never block,
+	 * such as the in-memory snapshot.
+	 *
+	 * @param <T>   the type of the result
+	 * @param query the query to run
+	 * @return a completed future of the result
+	 */
+	public static <T> CompletableFuture<T> completed(Query<T> query) {
+		try {
+			return CompletableFuture.completedFuture(query.run());
+		} catch (SQLException | RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Unwraps the cause of a failed future, so callers can tell a database
+	 * error from a full queue.
+	 *
+	 * @param throwable what the future failed with
+	 * @return the underlying exception
+	 */
+	public static Throwable cause(Throwable throwable) {
+		while (throwable instanceof CompletionException && throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+		return throwable;
+	}
+
+	/**
+	 * Returns the number of queries waiting for a thread.
+	 *
+	 * @return the queue length
+	 */
+	public static int getQueuedCount() {
+		return Holder.EXECUTOR.getQueue().size();
+	}
+
+	private static <T> T call(Query<T> query) {
+		try {
+			return query.run();
+		} catch (SQLException e) {
+			throw new CompletionException(e);
+		}
+	}
+
+}
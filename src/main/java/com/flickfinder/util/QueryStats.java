@@ -0,0 +1,129 @@
+package com.flickfinder.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The timings of one logical query, such as MovieDAO.getStarsByMovieId, over the life
+ * of the app: a latency histogram, and how many rows and bytes of objects it
+ * has produced.
+ *
+ * There is one instance per query name, shared by every DAO, found with
+ * {@link #of(String)}.
+ */
+public class QueryStats {
+
+	/**
+	 * The stats of every query that has run, by name.
+	 */
+	private static final ConcurrentHashMap<String, QueryStats> ALL = new ConcurrentHashMap<>();
+
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder slow = new LongAdder();
+
+	private QueryStats(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the stats of a query, creating them the first time.
+	 *
+	 * @param name the name of the query
+	 * @return the stats
+	 */
+	public static QueryStats of(String name) {
+		return ALL.computeIfAbsent(name, QueryStats::new);
+	}
+
+	/**
+	 * Returns the stats of every query that has run, by name.
+	 *
+	 * @return the stats
+	 */
+	public static List<QueryStats> all() {
+		List<QueryStats> all = new ArrayList<>(ALL.values());
+		all.sort(Comparator.comparing(QueryStats::getName));
+		return all;
+	}
+
+	/**
+	 * Records one run of the query.
+	 *
+	 * @param nanos how long it took
+	 * @param rows  the number of rows it returned
+	 * @param bytes the approximate size of the objects made from the rows
+	 * @param slow  whether it went over the slow query threshold
+	 */
+	void record(long nanos, long rows, long bytes, boolean slow) {
+		latency.record(nanos);
+		this.rows.add(rows);
+		this.bytes.add(bytes);
+		if (slow) {
+			this.slow.increment();
+		}
+	}
+
+	/**
+	 * Returns the name of the query.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the latencies of the query.
+	 *
+	 * @return the histogram
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Returns the number of rows the query has returned.
+	 *
+	 * @return the row count
+	 */
+	public long getRowCount() {
+		return rows.sum();
+	}
+
+	/**
+	 * Returns the approximate size of the objects made from the rows.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	/**
+	 * Returns the number of runs that were logged as slow.
+	 *
+	 * @return the slow count
+	 */
+	public long getSlowCount() {
+		return slow.sum();
+	}
+
+	/**
+	 * Returns a one line summary of the query, for the log.
+	 *
+	 * @return the summary
+	 */
+	@Override
+	public String toString() {
+		return "QueryStats [name=" + name + ", count=" + latency.getCount() + ", p50=" + latency.getPercentileMicros(0.5)
+				+ "us, p99=" + latency.getPercentileMicros(0.99) + "us, max=" + latency.getMaxNanos() / 1000
+				+ "us, rows=" + getRowCount() + ", bytes=" + getBytes() + ", slow=" + getSlowCount() + "]";
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.flickfinder.util;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.model.Person;
+import com.flickfinder.model.Star;
+
+/**
+ * Times one run of a DAO query, from just before it is executed until its
+ * rows have been read.
+ *
+ * The DAOs open a timer around each query and pass every object they make
+ * from a row through {@link #row(Object)}. On close the time, row count and
+ * approximate bytes go into the {@link QueryStats} of the query. A run that
+ * takes longer than the slow query threshold is also logged with its bound
+ * parameters and query plan. The threshold is set in milliseconds with
+ * -Dflickfinder.slowQueryMs, 100 by default, or a negative number to turn the
+ * log off.
+ */
+public class QueryTimer implements AutoCloseable {
+
+	/**
+	 * The default slow query threshold, in milliseconds.
+	 */
+	private static final long DEFAULT_SLOW_MILLIS = 100;
+
+	/**
+	 * The slow query threshold in nanoseconds, or negative for no log.
+	 */
+	private static volatile long slowNanos = millisToNanos(
+			Long.getLong("flickfinder.slowQueryMs", DEFAULT_SLOW_MILLIS));
+
+	private final QueryStats stats;
+	private final PooledConnection connection;
+	private final String sql;
+	private final Object[] params;
+	private final long start;
+	private long rows;
+	private long bytes;
+	private boolean closed;
+
+	private QueryTimer(QueryStats stats, PooledConnection connection, String sql, Object[] params) {
+		this.stats = stats;
+		this.connection = connection;
+		this.sql = sql;
+		this.params = params;
+		this.start = System.nanoTime();
+	}
+
+	/**
+	 * Starts timing a query.
+	 *
+	 * @param name       the name of the query, usually the DAO method
+	 * @param connection the connection it runs on
+	 * @param sql        the SQL of the query
+	 * @param params     the parameters bound to it, for the slow query log
+	 * @return the timer, to be closed once the rows have been read
+	 */
+	public static QueryTimer start(String name, PooledConnection connection, String sql, Object... params) {
+		return new QueryTimer(QueryStats.of(name), connection, sql, params);
+	}
+
+	/**
+	 * Starts timing a lookup answered from an in-memory index rather than by a
+	 * query. It is recorded like a query, and a slow run is logged without SQL
+	 * or a plan.
+	 *
+	 * @param name   the name of the lookup, usually the DAO method
+	 * @param params the parameters of the lookup, for the slow query log
+	 * @return the timer, to be closed once the rows have been read
+	 */
+	public static QueryTimer start(String name, Object... params) {
+		return new QueryTimer(QueryStats.of(name), null, null, params);
+	}
+
+	/**
+	 * Counts an object made from a row of the result.
+	 *
+	 * @param <T>   the type of the object
+	 * @param value the object
+	 * @return the same object
+	 */
+	public <T> T row(T value) {
+		rows++;
+		bytes += sizeOf(value);
+		return value;
+	}
+
+	/**
+	 * Records the run, and logs it if it was slow. Closing it again does
+	 * nothing, so a query can stop its timer early and still close it in a
+	 * try-with-resources.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		long elapsed = System.nanoTime() - start;
+		long threshold = slowNanos;
+		boolean slow = threshold >= 0 && elapsed >= threshold;
+		stats.record(elapsed, rows, bytes, slow);
+		if (slow) {
+			log(elapsed);
+		}
+	}
+
+	/**
+	 * Logs a slow run with its parameters and plan.
+	 */
+	private void log(long elapsed) {
+		if (sql == null) {
+			System.out.println("Slow query " + stats.getName() + " took " + elapsed / 1_000_000 + "ms, " + rows
+					+ " rows, params " + Arrays.toString(params) + "\n  answered from memory");
+			return;
+		}
+		String plan;
+		try {
+			plan = IndexDatabase.plan(connection.getConnection(), sql, params);
+		} catch (SQLException e) {
+			plan = "unavailable (" + e.getMessage() + ")";
+		}
+		System.out.println("Slow query " + stats.getName() + " took " + elapsed / 1_000_000 + "ms, " + rows
+				+ " rows, params " + Arrays.toString(params) + "\n  sql: " + sql + "\n  plan: " + plan);
+	}
+
+	/**
+	 * Estimates how many bytes an object made from a row takes up: its
+	 * header and fields, and its strings.
+	 *
+	 * @param value the object
+	 * @return the estimate in bytes
+	 */
+	static long sizeOf(Object value) {
+		if (value instanceof MovieRating rating) {
+			return 32 + sizeOf(rating.getTitle());
+		}
+		if (value instanceof Movie movie) {
+			return 24 + sizeOf(movie.getTitle());
+		}
+		if (value instanceof Person person) {
+			return 24 + sizeOf(person.getName());
+		}
+		if (value instanceof Star) {
+			return 24;
+		}
+		if (value instanceof String string) {
+			return 40 + string.length();
+		}
+		return 16;
+	}
+
+	/**
+	 * Sets the slow query threshold.
+	 *
+	 * @param millis the threshold in milliseconds, or negative for no log
+	 */
+	public static void setSlowThresholdMillis(long millis) {
+		slowNanos = millisToNanos(millis);
+	}
+
+	private static long millisToNanos(long millis) {
+		return millis < 0 ? -1 : millis * 1_000_000;
+	}
+
+}
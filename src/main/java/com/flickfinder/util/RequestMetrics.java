@@ -0,0 +1,203 @@
+package com.flickfinder.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.javalin.http.Context;
+
+/**
+ * Counts the requests the app serves, by method and route: how many got each
+ * status code, and how long they took. It also keeps the number of requests
+ * in flight.
+ *
+ * It is registered as a before and an after handler, so no controller has to
+ * know about it. The route is the path the handler was registered with, such
+ * as /movies/{id}, so there is one set of counters per route rather than one
+ * per id. Recording only adds to {@link LongAdder}s and reads from concurrent
+ * maps, with no locks, so it never makes requests wait for each other.
+ */
+public class RequestMetrics {
+
+	/**
+	 * The request attribute holding the time the request started.
+	 */
+	private static final String START_ATTRIBUTE = "flickfinder.metrics.start";
+
+	/**
+	 * The route of requests that matched no handler, such as static files and
+	 * 404s.
+	 */
+	static final String UNMATCHED = "unmatched";
+
+	/**
+	 * The routes that have been requested, by method and then by path.
+	 */
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, Route>> routes = new ConcurrentHashMap<>();
+
+	private final LongAdder inFlight = new LongAdder();
+
+	/**
+	 * The counters of one method and route.
+	 */
+	public static class Route {
+
+		/**
+		 * One more than the largest status code counted.
+		 */
+		private static final int STATUSES = 600;
+
+		private final String method;
+		private final String path;
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		/**
+		 * The count of each status code, made the first time the code is seen.
+		 */
+		private final AtomicReferenceArray<LongAdder> statuses = new AtomicReferenceArray<>(STATUSES);
+
+		Route(String method, String path) {
+			this.method = method;
+			this.path = path;
+		}
+
+		void record(int status, long nanos) {
+			int index = status >= 0 && status < STATUSES ? status : 0;
+			LongAdder count = statuses.get(index);
+			if (count == null) {
+				statuses.compareAndSet(index, null, new LongAdder());
+				count = statuses.get(index);
+			}
+			count.increment();
+			latency.record(nanos);
+		}
+
+		/**
+		 * Returns the method of the route.
+		 *
+		 * @return the method, such as GET
+		 */
+		public String getMethod() {
+			return method;
+		}
+
+		/**
+		 * Returns the path the route was registered with.
+		 *
+		 * @return the path, such as /movies/{id}
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * Returns the latencies of the route.
+		 *
+		 * @return the histogram
+		 */
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Returns the number of responses with a status code.
+		 *
+		 * @param status the status code
+		 * @return the count
+		 */
+		public long getStatusCount(int status) {
+			LongAdder count = status >= 0 && status < STATUSES ? statuses.get(status) : null;
+			return count == null ? 0 : count.sum();
+		}
+
+		/**
+		 * Returns the status codes the route has answered with, in order.
+		 *
+		 * @return the status codes
+		 */
+		public List<Integer> getStatuses() {
+			List<Integer> seen = new ArrayList<>();
+			for (int i = 0; i < STATUSES; i++) {
+				if (statuses.get(i) != null) {
+					seen.add(i);
+				}
+			}
+			return seen;
+		}
+	}
+
+	/**
+	 * Marks the start of a request. Registered with {@code app.before}.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void before(Context ctx) {
+		inFlight.increment();
+		ctx.attribute(START_ATTRIBUTE, System.nanoTime());
+	}
+
+	/**
+	 * Records a finished request. Registered with {@code app.after}, which
+	 * Javalin runs once a future returned by the handler has completed, and
+	 * after an exception has been handled.
+	 *
+	 * @param ctx the Javalin context
+	 */
+	public void after(Context ctx) {
+		Long start = ctx.attribute(START_ATTRIBUTE);
+		if (start == null) {
+			return;
+		}
+		inFlight.decrement();
+		String path = ctx.endpointHandlerPath();
+		record(ctx.method().name(), path == null || path.isEmpty() ? UNMATCHED : path, ctx.statusCode(),
+				System.nanoTime() - start);
+	}
+
+	/**
+	 * Records one request.
+	 *
+	 * @param method the method
+	 * @param path   the path of the route
+	 * @param status the status code of the response
+	 * @param nanos  how long it took
+	 */
+	void record(String method, String path, int status, long nanos) {
+		ConcurrentHashMap<String, Route> byPath = routes.get(method);
+		if (byPath == null) {
+			byPath = routes.computeIfAbsent(method, m -> new ConcurrentHashMap<>());
+		}
+		Route route = byPath.get(path);
+		if (route == null) {
+			route = byPath.computeIfAbsent(path, p -> new Route(method, p));
+		}
+		route.record(status, nanos);
+	}
+
+	/**
+	 * Returns the routes that have been requested, by path and then method.
+	 *
+	 * @return the routes
+	 */
+	public List<Route> getRoutes() {
+		List<Route> all = new ArrayList<>();
+		for (ConcurrentHashMap<String, Route> byPath : routes.values()) {
+			all.addAll(byPath.values());
+		}
+		all.sort(Comparator.comparing(Route::getPath).thenComparing(Route::getMethod));
+		return all;
+	}
+
+	/**
+	 * Returns the number of requests being served.
+	 *
+	 * @return the count
+	 */
+	public long getInFlightCount() {
+		return inFlight.sum();
+	}
+
+}
@@ -0,0 +1,277 @@
+package com.flickfinder.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Builds the full-text search database, a sidecar file holding SQLite FTS5
+ * tables of the movie titles and people names.
+ *
+ * The sidecar is attached to every pooled connection under the schema name
+ * {@value #SCHEMA}, so the search queries can join it to movies.db. Unlike the
+ * in-memory indexes it lives on disk, and is read through the page cache, so
+ * search works on nodes without the memory for those.
+ *
+ * Each row also keeps a boost, the log of the votes of the movie or of the
+ * summed votes of the movies a person starred in, which the DAOs blend with
+ * the bm25 score so the better known of two equal matches comes first.
+ *
+ * The sidecar records a checksum of the database it was built from, and is
+ * only rebuilt when that changes. It can also be built ahead of time:
+ *
+ * <pre>
+ * java -cp ... com.flickfinder.util.SearchDatabase movies.db movies-search.db
+ * </pre>
+ */
+public class SearchDatabase {
+
+	/**
+	 * The schema name the sidecar is attached under.
+	 */
+	public static final String SCHEMA = "search";
+
+	/**
+	 * How much the boost counts against the bm25 score when ranking matches,
+	 * set with flickfinder.search.votesWeight. At 0.2 a movie with a million
+	 * votes gains about 2.8 over one with none, about as much as matching a
+	 * rare word.
+	 */
+	public static final double VOTES_WEIGHT = Double
+			.parseDouble(System.getProperty("flickfinder.search.votesWeight", "0.2"));
+
+	/**
+	 * The FTS5 tables. Diacritics are removed, so a search for "amelie" finds
+	 * "Am&eacute;lie", and the rowid of each row is the id of its movie or person.
+	 */
+	static final String[] TABLES = {
+			"CREATE VIRTUAL TABLE movie_search USING fts5(title, boost UNINDEXED, tokenize = 'unicode61 remove_diacritics 2')",
+			"CREATE VIRTUAL TABLE person_search USING fts5(name, boost UNINDEXED, tokenize = 'unicode61 remove_diacritics 2')" };
+
+	/**
+	 * The table in the sidecar that records the database it was built from.
+	 */
+	private static final String META_TABLE = "flickfinder_search";
+
+	/**
+	 * The number of rows inserted per batch.
+	 */
+	private static final int BATCH_SIZE = 10000;
+
+	/**
+	 * The most words of a search that are matched.
+	 */
+	private static final int MAX_TERMS = 10;
+
+	private SearchDatabase() {
+	}
+
+	/**
+	 * Makes sure there is an up to date search database for a database file.
+	 *
+	 * @param source  the database file
+	 * @param sidecar where to keep the search database
+	 * @return whether it had to be built
+	 * @throws SQLException if it could not be built
+	 * @throws IOException  if the source could not be read or the sidecar
+	 *                      moved into place
+	 */
+	public static boolean prepare(File source, File sidecar) throws SQLException, IOException {
+		long start = System.nanoTime();
+		String checksum = checksum(source);
+		boolean built = false;
+		if (!checksum.equals(builtFrom(sidecar))) {
+			File temporary = new File(sidecar.getPath() + ".tmp");
+			Files.deleteIfExists(temporary.toPath());
+			SQLiteConfig config = new SQLiteConfig();
+			config.setReadOnly(true);
+			try (Connection connection = config.createConnection("jdbc:sqlite:" + source.getPath())) {
+				build(connection, temporary, checksum);
+			}
+			Files.move(temporary.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			built = true;
+		}
+		System.out.println((built ? "Built" : "Reusing") + " search database " + sidecar + " in "
+				+ (System.nanoTime() - start) / 1_000_000 + "ms");
+		return built;
+	}
+
+	/**
+	 * Returns the checksum of the database a sidecar was built from, or null
+	 * if there is no sidecar or it is not one of ours.
+	 */
+	static String builtFrom(File sidecar) {
+		if (!sidecar.isFile()) {
+			return null;
+		}
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		try (Connection connection = config.createConnection("jdbc:sqlite:" + sidecar.getPath());
+				Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("select source_checksum from " + META_TABLE)) {
+			return rs.next() ? rs.getString(1) : null;
+		} catch (SQLException e) {
+			// not one of our sidecars, or an old format; it is rebuilt
+			return null;
+		}
+	}
+
+	/**
+	 * Works out the CRC32C of a file, in hex.
+	 *
+	 * @param file the file
+	 * @return the checksum
+	 * @throws IOException if the file could not be read
+	 */
+	static String checksum(File file) throws IOException {
+		CRC32C crc = new CRC32C();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				crc.update(buffer, 0, read);
+			}
+		}
+		return Long.toHexString(crc.getValue()) + "-" + Long.toHexString(file.length());
+	}
+
+	/**
+	 * Builds a search database from the tables of an open database.
+	 *
+	 * @param source   the database to read the titles and names from
+	 * @param sidecar  the file to build; it must not exist yet
+	 * @param checksum the checksum to record for the source
+	 * @throws SQLException if a database error occurs
+	 */
+	public static void build(Connection source, File sidecar, String checksum) throws SQLException {
+		try (Connection target = DriverManager.getConnection("jdbc:sqlite:" + sidecar.getPath());
+				Statement statement = target.createStatement()) {
+			statement.execute("PRAGMA journal_mode = OFF");
+			statement.execute("PRAGMA synchronous = OFF");
+			target.setAutoCommit(false);
+			for (String table : TABLES) {
+				statement.execute(table);
+			}
+
+			// the summed votes of the movies each person starred in
+			Map<Integer, Long> starVotes = new HashMap<>();
+			try (Statement query = source.createStatement();
+					ResultSet rs = query.executeQuery(
+							"select person_id, sum(votes) from stars inner join ratings on stars.movie_id=ratings.movie_id group by person_id")) {
+				while (rs.next()) {
+					starVotes.put(rs.getInt(1), rs.getLong(2));
+				}
+			}
+
+			try (Statement query = source.createStatement();
+					ResultSet rs = query.executeQuery(
+							"select id, title, coalesce(votes, 0) from movies left join ratings on movies.id=ratings.movie_id");
+					PreparedStatement insert = target
+							.prepareStatement("INSERT INTO movie_search (rowid, title, boost) VALUES (?, ?, ?)")) {
+				long rows = 0;
+				while (rs.next()) {
+					insert.setInt(1, rs.getInt(1));
+					insert.setString(2, rs.getString(2));
+					insert.setDouble(3, Math.log1p(rs.getLong(3)));
+					add(insert, ++rows);
+				}
+				insert.executeBatch();
+			}
+
+			try (Statement query = source.createStatement();
+					ResultSet rs = query.executeQuery("select id, name from people");
+					PreparedStatement insert = target
+							.prepareStatement("INSERT INTO person_search (rowid, name, boost) VALUES (?, ?, ?)")) {
+				long rows = 0;
+				while (rs.next()) {
+					insert.setInt(1, rs.getInt(1));
+					insert.setString(2, rs.getString(2));
+					insert.setDouble(3, Math.log1p(starVotes.getOrDefault(rs.getInt(1), 0L)));
+					add(insert, ++rows);
+				}
+				insert.executeBatch();
+			}
+
+			statement.execute("INSERT INTO movie_search (movie_search) VALUES ('optimize')");
+			statement.execute("INSERT INTO person_search (person_search) VALUES ('optimize')");
+			statement.execute("CREATE TABLE " + META_TABLE + " (source_checksum TEXT)");
+			try (PreparedStatement insert = target.prepareStatement("INSERT INTO " + META_TABLE + " VALUES (?)")) {
+				insert.setString(1, checksum);
+				insert.execute();
+			}
+			target.commit();
+		}
+	}
+
+	private static void add(PreparedStatement ps, long row) throws SQLException {
+		ps.addBatch();
+		if (row % BATCH_SIZE == 0) {
+			ps.executeBatch();
+		}
+	}
+
+	/**
+	 * Turns what a user typed into an FTS5 query that matches rows containing
+	 * all of its words, the last of which may be unfinished. Everything but
+	 * letters and digits is dropped, so the text cannot use the FTS5 query
+	 * syntax.
+	 *
+	 * @param text what the user typed
+	 * @return the query, or null if the text has no words
+	 */
+	public static String matchQuery(String text) {
+		List<String> terms = new ArrayList<>();
+		StringBuilder term = new StringBuilder();
+		for (int i = 0; i <= text.length() && terms.size() < MAX_TERMS; i++) {
+			if (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+				term.append(text.charAt(i));
+			} else if (term.length() > 0) {
+				terms.add(term.toString());
+				term.setLength(0);
+			}
+		}
+		if (terms.isEmpty()) {
+			return null;
+		}
+		StringBuilder query = new StringBuilder();
+		for (String word : terms) {
+			if (query.length() > 0) {
+				query.append(' ');
+			}
+			query.append('"').append(word).append('"');
+		}
+		return query.append('*').toString();
+	}
+
+	/**
+	 * Builds the search database for a database file, unless it is already
+	 * up to date.
+	 *
+	 * @param args the database file and the search database file
+	 * @throws Exception if it could not be built
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println("Usage: SearchDatabase <database> <search database>");
+			return;
+		}
+		prepare(new File(args[0]), new File(args[1]));
+	}
+
+}
@@ -1,14 +1,25 @@
 package com.flickfinder;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.SQLException;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import com.flickfinder.util.Database;
+import com.flickfinder.util.SearchDatabase;
 import com.flickfinder.util.Seeder;
 
 import io.javalin.Javalin;
@@ -621,6 +632,252 @@ given().when().get(baseURL + "/people/1234").then().assertThat().statusCode(404)
 	 * Tears down the application after each test.
 	 * We want to make sure that each test runs in isolation.
 	 */
+	/**
+	 * Checking that the movies can be walked a page at a time with the next cursor
+	 */
+	@Test
+	void retrieves_movies_a_page_at_a_time() {
+		String next = given().when().get(baseURL + "/movies?after=0&limit=2").then().assertThat().statusCode(200).
+		
+		body("items.id", contains(1, 2))
+		.extract().path("next");
+		
+		next = given().when().get(baseURL + "/movies?after=" + next + "&limit=2").then().assertThat().statusCode(200).
+		
+		body("items.id", contains(3, 4))
+		.extract().path("next");
+		
+		given().when().get(baseURL + "/movies?after=" + next + "&limit=2").then().assertThat().statusCode(200).
+		
+		body("items.id", contains(5))
+		.body("next", nullValue());
+	}
+	
+	/**
+	 * Checking an invalid cursor is rejected
+	 */
+	@Test
+	void retrieves_people_with_invalid_cursor() {
+		given().when().get(baseURL + "/people?after=abc").then().assertThat().statusCode(400).
+		
+		body(equalTo("Invalid cursor"));
+	}
+	
+
+	/**
+	 * Checking the movie detail has the movie, its rating, stars and directors
+	 */
+	@Test
+	void retrieves_movie_detail() {
+		given().when().get(baseURL + "/movies/1/full").then().assertThat().statusCode(200).
+		
+		body("title", equalTo("The Shawshank Redemption"))
+		.body("votes", equalTo(2200000))
+		.body("stars.id", containsInAnyOrder(1, 2))
+		.body("directors.name", contains("Christopher Nolan"));
+		
+		given().when().get(baseURL + "/movies/1000/full").then().assertThat().statusCode(404);
+	}
+	
+	/**
+	 * Checking a batch of movies comes back in the order the ids were asked for
+	 */
+	@Test
+	void retrieves_movies_by_ids() {
+		given().when().get(baseURL + "/movies?ids=4,1,1000,2").then().assertThat().statusCode(200).
+		
+		body("id", contains(4, 1, 2))
+		.body("title", contains("The Dark Knight", "The Shawshank Redemption", "The Godfather"));
+	}
+	
+	/**
+	 * Checking a batch of people, and the errors for bad or missing ids
+	 */
+	@Test
+	void retrieves_people_by_ids() {
+		given().when().get(baseURL + "/people?ids=3,2").then().assertThat().statusCode(200).
+		
+		body("name", contains("Christopher Nolan", "Morgan Freeman"));
+		
+		given().when().get(baseURL + "/people?ids=1,x").then().assertThat().statusCode(400).
+		
+		body(equalTo("Invalid ids"));
+		
+		given().when().get(baseURL + "/people?ids=1000").then().assertThat().statusCode(404);
+	}
+	
+
+	/**
+	 * Checking the movies export has one JSON object per line
+	 */
+	@Test
+	void exports_movies_as_ndjson() {
+		String body = given().when().get(baseURL + "/export/movies.ndjson").then().assertThat().statusCode(200)
+				.contentType("application/x-ndjson")
+				.extract().asString();
+		
+		String[] lines = body.split("\n");
+		assertEquals(5, lines.length);
+		assertEquals("{\"id\":1,\"title\":\"The Shawshank Redemption\",\"year\":1994}", lines[0]);
+	}
+	
+	/**
+	 * Checking the stars export has a line per row of the stars table
+	 */
+	@Test
+	void exports_stars_as_ndjson() {
+		String body = given().when().get(baseURL + "/export/stars.ndjson").then().assertThat().statusCode(200)
+				.extract().asString();
+		
+		assertEquals(5, body.split("\n").length);
+		assertEquals("{\"movieId\":1,\"personId\":1}", body.split("\n")[0]);
+	}
+	
+
+	/**
+	 * Checking a repeated request, answered from the response cache, gets the
+	 * same JSON back
+	 */
+	@Test
+	void repeated_request_returns_same_json() {
+		String first = given().when().get(baseURL + "/movies/ratings/1994?limit=5&votes=10").then().assertThat()
+				.statusCode(200).contentType("application/json").extract().asString();
+		String second = given().when().get(baseURL + "/movies/ratings/1994?votes=10&limit=5").then().assertThat()
+				.statusCode(200).contentType("application/json").extract().asString();
+
+		assertEquals(first, second);
+	}
+	
+
+	/**
+	 * Checking a request with the ETag of its response gets a 304
+	 */
+	@Test
+	void etag_returns_not_modified() {
+		String etag = given().when().get(baseURL + "/people/1/movies").then().assertThat().statusCode(200)
+				.header("Cache-Control", "public, max-age=3600").extract().header("ETag");
+
+		given().header("If-None-Match", etag).when().get(baseURL + "/people/1/movies").then().assertThat()
+				.statusCode(304).header("ETag", etag);
+		given().header("If-None-Match", "\"stale\"").when().get(baseURL + "/people/1/movies").then().assertThat()
+				.statusCode(200);
+	}
+	
+
+	/**
+	 * Checking /metrics counts requests by route and status, in Prometheus format
+	 */
+	@Test
+	void metrics_count_requests_by_route() {
+		given().when().get(baseURL + "/movies/1").then().assertThat().statusCode(200);
+		given().when().get(baseURL + "/movies/1000").then().assertThat().statusCode(404);
+
+		String metrics = given().when().get(baseURL + "/metrics").then().assertThat().statusCode(200)
+				.contentType("text/plain").extract().asString();
+		assertTrue(metrics.contains(
+				"flickfinder_http_requests_total{method=\"GET\",route=\"/movies/{id}\",status=\"200\"} 1\n"), metrics);
+		assertTrue(metrics.contains(
+				"flickfinder_http_requests_total{method=\"GET\",route=\"/movies/{id}\",status=\"404\"} 1\n"), metrics);
+		assertTrue(metrics.contains(
+				"flickfinder_http_request_duration_seconds_count{method=\"GET\",route=\"/movies/{id}\"} 2\n"), metrics);
+		assertTrue(metrics.contains("flickfinder_http_requests_in_flight 1\n"), metrics);
+		assertTrue(metrics.contains("flickfinder_db_query_duration_seconds_bucket{query=\"MovieDAO.getMovieById\""), metrics);
+		assertTrue(metrics.contains("jvm_memory_used_bytes{area=\"heap\"}"), metrics);
+	}
+
+	/**
+	 * Test that titles and names are suggested by popularity, and that a bad
+	 * prefix or type is rejected.
+	 */
+	@Test
+	void autocomplete_suggests_popular_matches() {
+		given().queryParam("prefix", "the god").when().get(baseURL + "/autocomplete").then().assertThat().statusCode(200)
+				.body("id", contains(2, 3)).body("name", contains("The Godfather", "The Godfather: Part II"));
+		given().when().get(baseURL + "/autocomplete?prefix=the&limit=1").then().assertThat().statusCode(200)
+				.body("id", contains(1));
+		given().when().get(baseURL + "/autocomplete?prefix=al&type=person").then().assertThat().statusCode(200)
+				.body("name", contains("Al Pacino")).body("popularity", contains(2500000));
+		given().when().get(baseURL + "/autocomplete?prefix=zzz").then().assertThat().statusCode(200)
+				.body("size()", equalTo(0));
+		given().when().get(baseURL + "/autocomplete").then().assertThat().statusCode(400);
+		given().when().get(baseURL + "/autocomplete?prefix=the&type=studio").then().assertThat().statusCode(400);
+	}
+
+	/**
+	 * Test that titles and names are searched in the attached search database,
+	 * and that the search routes are not taken for ids.
+	 */
+	@Test
+	void search_finds_titles_and_names(@TempDir Path directory) throws SQLException {
+		File sidecar = directory.resolve("movies-search.db").toFile();
+		SearchDatabase.build(seeder.getConnection(), sidecar, "test");
+		Database.getInstance().attachSearch(sidecar);
+
+		given().queryParam("q", "godfather").when().get(baseURL + "/movies/search").then().assertThat()
+				.statusCode(200).body("id", contains(2, 3)).body("year", contains(1972, 1974));
+		given().queryParam("q", "the dark kn").when().get(baseURL + "/movies/search").then().assertThat()
+				.statusCode(200).body("title", contains("The Dark Knight"));
+		given().queryParam("q", "nolan").when().get(baseURL + "/people/search").then().assertThat()
+				.statusCode(200).body("name", contains("Christopher Nolan"));
+		given().queryParam("q", "casablanca").when().get(baseURL + "/movies/search").then().assertThat()
+				.statusCode(404);
+		given().when().get(baseURL + "/people/search").then().assertThat().statusCode(400);
+	}
+
+	/**
+	 * Tests the search routes answer a 503 when the search database is not
+	 * attached, while the fuzzy people search still uses its own index.
+	 */
+	@Test
+	void search_unavailable_without_sidecar() {
+		given().queryParam("q", "godfather").when().get(baseURL + "/movies/search").then().assertThat()
+				.statusCode(503).body(equalTo("Search unavailable"));
+		given().queryParam("q", "nolan").when().get(baseURL + "/people/search").then().assertThat()
+				.statusCode(503).body(equalTo("Search unavailable"));
+		given().queryParam("q", "morgn freemen").queryParam("fuzzy", "1").when().get(baseURL + "/people/search")
+				.then().assertThat().statusCode(200);
+	}
+
+	/**
+	 * Tests a fuzzy people search finds names with typos in them.
+	 */
+	@Test
+	void fuzzy_search_corrects_typos() {
+		given().queryParam("q", "morgn freemen").queryParam("fuzzy", "1").when().get(baseURL + "/people/search")
+				.then().assertThat().statusCode(200).body("id", contains(2)).body("name", contains("Morgan Freeman"));
+		given().queryParam("q", "pacnio").queryParam("fuzzy", "true").when().get(baseURL + "/people/search")
+				.then().assertThat().statusCode(200).body("name", contains("Al Pacino"));
+		given().queryParam("q", "casablanca").queryParam("fuzzy", "1").when().get(baseURL + "/people/search")
+				.then().assertThat().statusCode(404);
+	}
+
+	/**
+	 * Tests the path between two people is the movies linking them.
+	 */
+	@Test
+	void path_links_people_through_movies() {
+		given().when().get(baseURL + "/people/1/path/2").then().assertThat().statusCode(200)
+				.body("degrees", equalTo(1)).body("people.name", contains("Tim Robbins", "Morgan Freeman"))
+				.body("movies.title", contains("The Shawshank Redemption"));
+		given().when().get(baseURL + "/people/4/path/4").then().assertThat().statusCode(200)
+				.body("degrees", equalTo(0)).body("people.id", contains(4));
+		given().when().get(baseURL + "/people/1/path/4").then().assertThat().statusCode(404);
+		given().when().get(baseURL + "/people/1/path/abc").then().assertThat().statusCode(400);
+	}
+
+	/**
+	 * Tests co-stars are listed with the number of movies they share.
+	 */
+	@Test
+	void costars_are_counted() {
+		given().when().get(baseURL + "/people/1/costars").then().assertThat().statusCode(200)
+				.body("name", contains("Morgan Freeman")).body("sharedMovies", contains(1));
+		given().queryParam("limit", "5").when().get(baseURL + "/people/2/costars").then().assertThat()
+				.statusCode(200).body("id", contains(1));
+		given().when().get(baseURL + "/people/4/costars").then().assertThat().statusCode(404);
+		given().when().get(baseURL + "/people/abc/costars").then().assertThat().statusCode(400);
+	}
+
 	@AfterEach
 	void tearDown() {
 		seeder.closeConnection();
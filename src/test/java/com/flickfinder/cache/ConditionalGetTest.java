@@ -0,0 +1,185 @@
+package com.flickfinder.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Test for the ETag support.
+ */
+class ConditionalGetTest {
+
+	/**
+	 * The ETag support under test.
+	 */
+	private ConditionalGet conditionalGet;
+
+	/**
+	 * Counts the calls to the handler.
+	 */
+	private AtomicInteger calls;
+
+	/**
+	 * A handler that only counts its calls.
+	 */
+	private Handler handler;
+
+	/**
+	 * The mock context of the request.
+	 */
+	private Context ctx;
+
+	/**
+	 * The mock response.
+	 */
+	private HttpServletResponse res;
+
+	@BeforeEach
+	void setUp() {
+		conditionalGet = new ConditionalGet("v1", 60);
+		calls = new AtomicInteger();
+		handler = ctx -> calls.incrementAndGet();
+		ctx = mock(Context.class);
+		res = mock(HttpServletResponse.class);
+		when(ctx.path()).thenReturn("/movies/1");
+		when(ctx.queryParamMap()).thenReturn(Map.of());
+		when(ctx.statusCode()).thenReturn(200);
+		when(ctx.res()).thenReturn(res);
+		Map<String, Object> attributes = new HashMap<>();
+		doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1))).when(ctx)
+				.attribute(anyString(), any());
+		when(ctx.attribute(anyString())).thenAnswer(invocation -> attributes.get(invocation.getArgument(0)));
+	}
+
+	/**
+	 * Tests a first request runs the handler and gets an ETag.
+	 */
+	@Test
+	void testETagAdded() throws Exception {
+		conditionalGet.conditional(handler).handle(ctx);
+		assertEquals(1, calls.get());
+		verify(ctx).header("ETag", conditionalGet.etag("/movies/1"));
+		verify(ctx).header("Cache-Control", "public, max-age=60");
+		verify(ctx).header("Vary", "Accept-Encoding");
+	}
+
+	/**
+	 * Tests a client that accepts gzip gets its own ETag, and the identity
+	 * ETag does not match it.
+	 */
+	@Test
+	void testETagVariesWithEncoding() throws Exception {
+		when(ctx.header("Accept-Encoding")).thenReturn("gzip, deflate");
+		conditionalGet.conditional(handler).handle(ctx);
+		String gzip = conditionalGet.etag("/movies/1", true);
+		verify(ctx).header("ETag", gzip);
+		verify(ctx).header("Vary", "Accept-Encoding");
+		assertNotEquals(conditionalGet.etag("/movies/1"), gzip);
+
+		when(ctx.header("If-None-Match")).thenReturn(conditionalGet.etag("/movies/1"));
+		conditionalGet.conditional(handler).handle(ctx);
+		assertEquals(2, calls.get());
+	}
+
+	/**
+	 * Tests a request with the current ETag gets a 304 without running the
+	 * handler.
+	 */
+	@Test
+	void testNotModified() throws Exception {
+		when(ctx.header("If-None-Match")).thenReturn(conditionalGet.etag("/movies/1"));
+		conditionalGet.conditional(handler).handle(ctx);
+		assertEquals(0, calls.get());
+		verify(ctx).status(304);
+	}
+
+	/**
+	 * Tests a request with an old ETag runs the handler.
+	 */
+	@Test
+	void testModified() throws Exception {
+		when(ctx.header("If-None-Match")).thenReturn(new ConditionalGet("v0", 60).etag("/movies/1"));
+		conditionalGet.conditional(handler).handle(ctx);
+		assertEquals(1, calls.get());
+		verify(ctx, never()).status(304);
+	}
+
+	/**
+	 * Tests an error response does not keep the ETag.
+	 */
+	@Test
+	void testErrorNotTagged() throws Exception {
+		when(ctx.statusCode()).thenReturn(404);
+		conditionalGet.conditional(handler).handle(ctx);
+		conditionalGet.afterError(ctx);
+		verify(res).setHeader("ETag", null);
+		verify(res).setHeader("Cache-Control", null);
+	}
+
+	/**
+	 * Tests a 304 keeps its ETag, as the handler was never run.
+	 */
+	@Test
+	void testNotModifiedKeepsETag() throws Exception {
+		when(ctx.header("If-None-Match")).thenReturn(conditionalGet.etag("/movies/1"));
+		when(ctx.statusCode()).thenReturn(304);
+		conditionalGet.conditional(handler).handle(ctx);
+		conditionalGet.afterError(ctx);
+		verify(res, never()).setHeader("ETag", null);
+	}
+
+	/**
+	 * Tests the ETag depends on the dataset version and the request.
+	 */
+	@Test
+	void testETag() {
+		String etag = conditionalGet.etag("/movies/1");
+		assertEquals(etag, new ConditionalGet("v1", 0).etag("/movies/1"));
+		assertNotEquals(etag, new ConditionalGet("v2", 60).etag("/movies/1"));
+		assertNotEquals(etag, conditionalGet.etag("/movies/2"));
+		assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+	}
+
+	/**
+	 * Tests the If-None-Match header is matched against lists, weak tags and *.
+	 */
+	@Test
+	void testMatches() {
+		assertTrue(ConditionalGet.matches("\"a\"", "\"a\""));
+		assertTrue(ConditionalGet.matches("\"b\", W/\"a\"", "\"a\""));
+		assertTrue(ConditionalGet.matches("*", "\"a\""));
+		assertFalse(ConditionalGet.matches("\"b\"", "\"a\""));
+		assertFalse(ConditionalGet.matches(null, "\"a\""));
+	}
+
+	/**
+	 * Tests the query parameters are part of the ETag.
+	 */
+	@Test
+	void testQueryInETag() {
+		when(ctx.queryParamMap()).thenReturn(Map.of("limit", List.of("5")));
+		assertEquals("/movies/1?limit=5", ResponseCache.key(ctx));
+		assertNotEquals(conditionalGet.etag("/movies/1"), conditionalGet.etag(ResponseCache.key(ctx)));
+	}
+
+}
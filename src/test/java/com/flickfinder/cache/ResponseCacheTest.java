@@ -0,0 +1,213 @@
+package com.flickfinder.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Test for the response cache.
+ */
+class ResponseCacheTest {
+
+	/**
+	 * The body the handler answers with.
+	 */
+	private byte[] body;
+
+	/**
+	 * Counts the calls to the handler.
+	 */
+	private AtomicInteger calls;
+
+	/**
+	 * A handler that answers with the body.
+	 */
+	private Handler handler;
+
+	@BeforeEach
+	void setUp() {
+		body = "{\"id\":1,\"title\":\"The Shawshank Redemption\",\"year\":1994}".getBytes(StandardCharsets.UTF_8);
+		calls = new AtomicInteger();
+		handler = ctx -> calls.incrementAndGet();
+	}
+
+	/**
+	 * Builds a mock context for a request that succeeds with the body.
+	 */
+	private Context request(String path, Map<String, List<String>> query) {
+		Context ctx = mock(Context.class);
+		HttpServletResponse res = mock(HttpServletResponse.class);
+		when(ctx.path()).thenReturn(path);
+		when(ctx.queryParamMap()).thenReturn(query);
+		when(ctx.statusCode()).thenReturn(200);
+		when(ctx.res()).thenReturn(res);
+		when(res.getContentType()).thenReturn("application/json");
+		when(ctx.resultInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(body));
+		Map<String, Object> attributes = new HashMap<>();
+		doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1))).when(ctx)
+				.attribute(anyString(), any());
+		when(ctx.attribute(anyString())).thenAnswer(invocation -> attributes.get(invocation.getArgument(0)));
+		return ctx;
+	}
+
+	/**
+	 * Wraps the handler the way the app does: the cache in front of it, and
+	 * the response stored by the after handler.
+	 */
+	private Handler route(ResponseCache cache) {
+		Handler cached = cache.cached(handler);
+		return ctx -> {
+			cached.handle(ctx);
+			cache.store(ctx);
+		};
+	}
+
+	/**
+	 * Tests a repeated request is answered with the cached bytes, without
+	 * running the handler.
+	 */
+	@Test
+	void testHit() throws Exception {
+		ResponseCache cache = new ResponseCache(1024);
+		Handler cached = route(cache);
+		cached.handle(request("/movies/1", Map.of()));
+		Context ctx = request("/movies/1", Map.of());
+		cached.handle(ctx);
+
+		assertEquals(1, calls.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(body.length, cache.getBytes());
+		verify(ctx).result(body);
+		verify(ctx).contentType("application/json");
+	}
+
+	/**
+	 * Tests a response is only kept once the after handler runs, as an
+	 * asynchronous handler has no body until its future completes.
+	 */
+	@Test
+	void testStoredAfterHandler() throws Exception {
+		ResponseCache cache = new ResponseCache(1024);
+		Context ctx = request("/movies/1", Map.of());
+		cache.cached(handler).handle(ctx);
+		assertEquals(0, cache.size());
+
+		cache.store(ctx);
+		assertEquals(1, cache.size());
+		cache.store(request("/movies/2", Map.of()));
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 * Tests the query parameters are part of the key, in any order.
+	 */
+	@Test
+	void testKey() {
+		Context ctx = request("/movies/ratings/1994", Map.of("votes", List.of("10"), "limit", List.of("5")));
+		assertEquals("/movies/ratings/1994?limit=5&votes=10", ResponseCache.key(ctx));
+		assertEquals("/movies", ResponseCache.key(request("/movies", Map.of())));
+	}
+
+	/**
+	 * Tests a value holding the separators does not give the key of other
+	 * parameters.
+	 */
+	@Test
+	void testKeyEscapesSeparators() {
+		Context joined = request("/people/search", Map.of("name", List.of("a&fuzzy=1")));
+		Context split = request("/people/search", Map.of("name", List.of("a"), "fuzzy", List.of("1")));
+		assertEquals("/people/search?name=a%26fuzzy%3D1", ResponseCache.key(joined));
+		assertNotEquals(ResponseCache.key(joined), ResponseCache.key(split));
+	}
+
+	/**
+	 * Tests a response that is not a 200 is not cached.
+	 */
+	@Test
+	void testErrorsNotCached() throws Exception {
+		ResponseCache cache = new ResponseCache(1024);
+		Handler cached = route(cache);
+		Context ctx = request("/movies/1000", Map.of());
+		when(ctx.statusCode()).thenReturn(404);
+		cached.handle(ctx);
+		cached.handle(ctx);
+
+		assertEquals(2, calls.get());
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Tests the least recently used responses are dropped to stay within the
+	 * budget.
+	 */
+	@Test
+	void testEviction() throws Exception {
+		ResponseCache cache = new ResponseCache(body.length * 2L);
+		Handler cached = route(cache);
+		cached.handle(request("/movies/1", Map.of()));
+		cached.handle(request("/movies/2", Map.of()));
+		cached.handle(request("/movies/1", Map.of()));
+		cached.handle(request("/movies/3", Map.of()));
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		cached.handle(request("/movies/1", Map.of()));
+		assertEquals(3, calls.get());
+		cached.handle(request("/movies/2", Map.of()));
+		assertEquals(4, calls.get());
+	}
+
+	/**
+	 * Tests a large body is sent gzipped to a client that accepts it, and the
+	 * gzip copy counts towards the budget.
+	 */
+	@Test
+	void testGzip() throws Exception {
+		body = "[{\"id\":1,\"title\":\"The Shawshank Redemption\",\"year\":1994}]".repeat(50)
+				.getBytes(StandardCharsets.UTF_8);
+		ResponseCache cache = new ResponseCache(1024 * 1024);
+		Handler cached = route(cache);
+		cached.handle(request("/movies", Map.of()));
+		Context ctx = request("/movies", Map.of());
+		when(ctx.header("Accept-Encoding")).thenReturn("gzip, deflate");
+		cached.handle(ctx);
+		cached.handle(ctx);
+
+		verify(ctx, times(2)).header("Content-Encoding", "gzip");
+		verify(ctx, times(2)).header("Vary", "Accept-Encoding");
+		assertEquals(1, calls.get());
+		assertTrue(cache.getBytes() > body.length);
+	}
+
+	/**
+	 * Tests the cache rejects a budget below one byte.
+	 */
+	@Test
+	void testInvalidBudget() {
+		assertThrows(IllegalArgumentException.class, () -> new ResponseCache(0));
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.flickfinder.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the W-TinyLFU cache and its frequency sketch.
+ */
+class TinyLfuCacheTest {
+
+	/**
+	 * Counts the calls to the loader.
+	 */
+	private AtomicInteger loads;
+
+	/**
+	 * A loader that names the id, and has nothing for negative ids.
+	 */
+	private TinyLfuCache.Loader<String> loader;
+
+	@BeforeEach
+	void setUp() {
+		loads = new AtomicInteger();
+		loader = id -> {
+			loads.incrementAndGet();
+			return id < 0 ? null : "value " + id;
+		};
+	}
+
+	/**
+	 * Tests a second lookup is answered from the cache.
+	 */
+	@Test
+	void testHit() throws SQLException {
+		TinyLfuCache<String> cache = new TinyLfuCache<>(100);
+		assertEquals("value 1", cache.get(1, loader));
+		assertEquals("value 1", cache.get(1, loader));
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	/**
+	 * Tests an id with no value is cached too.
+	 */
+	@Test
+	void testNegativeCaching() throws SQLException {
+		TinyLfuCache<String> cache = new TinyLfuCache<>(100);
+		assertNull(cache.get(-1, loader));
+		assertNull(cache.get(-1, loader));
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	/**
+	 * Tests a failed load is not cached.
+	 */
+	@Test
+	void testLoaderFailure() throws SQLException {
+		TinyLfuCache<String> cache = new TinyLfuCache<>(100);
+		assertThrows(SQLException.class, () -> cache.get(1, id -> {
+			throw new SQLException();
+		}));
+		assertEquals("value 1", cache.get(1, loader));
+		assertEquals(0, cache.getHitCount());
+	}
+
+	/**
+	 * Tests the cache never holds more than its maximum size.
+	 */
+	@Test
+	void testBounded() throws SQLException {
+		TinyLfuCache<String> cache = new TinyLfuCache<>(100);
+		for (int id = 0; id < 1000; id++) {
+			cache.get(id, loader);
+		}
+		assertTrue(cache.size() <= 100);
+		assertEquals(1000 - cache.size(), cache.getEvictionCount());
+	}
+
+	/**
+	 * Tests popular ids survive a scan of ids that are only seen once.
+	 */
+	@Test
+	void testScanResistance() throws SQLException {
+		TinyLfuCache<String> cache = new TinyLfuCache<>(100);
+		for (int round = 0; round < 5; round++) {
+			for (int id = 0; id < 50; id++) {
+				cache.get(id, loader);
+			}
+		}
+		for (int id = 1000; id < 2000; id++) {
+			cache.get(id, loader);
+		}
+		loads.set(0);
+		for (int id = 0; id < 50; id++) {
+			cache.get(id, loader);
+		}
+		assertEquals(0, loads.get());
+	}
+
+	/**
+	 * Tests lookups from many threads at once get the right values, and leave
+	 * the cache within its maximum size once they are done.
+	 */
+	@Test
+	void testConcurrentLookups() throws Exception {
+		TinyLfuCache<String> cache = new TinyLfuCache<>(100);
+		int threads = 8;
+		int lookups = 20000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int seed = t;
+				results.add(executor.submit(() -> {
+					Random random = new Random(seed);
+					for (int i = 0; i < lookups; i++) {
+						// mostly popular ids, with a tail of rare ones
+						int id = random.nextInt(4) > 0 ? random.nextInt(50) : random.nextInt(5000);
+						if (!("value " + id).equals(cache.get(id, loader))) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals((long) threads * lookups, cache.getHitCount() + cache.getMissCount());
+		assertEquals(cache.getMissCount(), loads.get());
+		assertTrue(cache.size() <= 100);
+		assertTrue(cache.getHitCount() > cache.getMissCount());
+	}
+
+	/**
+	 * Tests the sketch counts keys, and ages its counts.
+	 */
+	@Test
+	void testFrequencySketch() {
+		FrequencySketch sketch = new FrequencySketch(64);
+		assertEquals(0, sketch.frequency(7));
+		for (int i = 0; i < 5; i++) {
+			sketch.increment(7);
+		}
+		assertTrue(sketch.frequency(7) >= 5);
+		for (int i = 0; i < 20; i++) {
+			sketch.increment(7);
+		}
+		assertEquals(15, sketch.frequency(7));
+
+		for (int key = 100; key < 1000; key++) {
+			sketch.increment(key);
+		}
+		assertTrue(sketch.frequency(7) < 15);
+	}
+
+	/**
+	 * Tests the cache rejects a size below one.
+	 */
+	@Test
+	void testInvalidSize() {
+		assertThrows(IllegalArgumentException.class, () -> new TinyLfuCache<String>(0));
+	}
+
+}
@@ -0,0 +1,207 @@
+package com.flickfinder.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.dao.RowHandler;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Star;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+/**
+ * Test for the Export Controller.
+ */
+
+class ExportControllerTest {
+
+	/**
+	 * The movie data access object.
+	 */
+	private MovieDAO movieDAO;
+
+	/**
+	 * The export controller, allowing one export at a time.
+	 */
+	private ExportController exportController;
+
+	@BeforeEach
+	void setUp() {
+		movieDAO = mock(MovieDAO.class);
+		exportController = new ExportController(movieDAO, mock(PersonDAO.class), 1);
+	}
+
+	/**
+	 * Tests every movie is written on its own line, the last one included.
+	 */
+	@Test
+	void testExportMovies() throws Exception {
+		doAnswer(invocation -> {
+			RowHandler<Movie> handler = invocation.getArgument(0);
+			handler.handle(new Movie(1, "The Shawshank Redemption", 1994));
+			handler.handle(new Movie(2, "The Godfather", 1972));
+			return null;
+		}).when(movieDAO).exportMovies(any());
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		exportController.exportMovies(context(body));
+
+		String[] lines = body.toString(StandardCharsets.UTF_8).split("\n", -1);
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].contains("\"id\":1"));
+		assertTrue(lines[1].contains("\"id\":2"));
+		assertEquals("", lines[2]);
+	}
+
+	/**
+	 * Tests a database error before any row is written is answered with a 500.
+	 */
+	@Test
+	void testExportMoviesDatabaseError() throws Exception {
+		doThrow(new SQLException()).when(movieDAO).exportMovies(any());
+		Context ctx = context(new ByteArrayOutputStream());
+
+		exportController.exportMovies(ctx);
+
+		verify(ctx).status(500);
+	}
+
+	/**
+	 * Tests a database error part way through does not try to change the
+	 * status that was already sent.
+	 */
+	@Test
+	void testExportMoviesFailsPartWay() throws Exception {
+		doAnswer(invocation -> {
+			RowHandler<Movie> handler = invocation.getArgument(0);
+			handler.handle(new Movie(1, "The Shawshank Redemption", 1994));
+			throw new SQLException();
+		}).when(movieDAO).exportMovies(any());
+		Context ctx = context(new ByteArrayOutputStream());
+
+		exportController.exportMovies(ctx);
+
+		verify(ctx, never()).status(anyInt());
+	}
+
+	/**
+	 * Tests a database error part way through resets the connection, so the
+	 * client does not get a clean end of the body, and that exports are not
+	 * cacheable.
+	 */
+	@Test
+	void testExportMoviesAbortsConnection() throws Exception {
+		doAnswer(invocation -> {
+			RowHandler<Movie> handler = invocation.getArgument(0);
+			// enough rows for the response to be sent before the error
+			for (int id = 1; id <= 20000; id++) {
+				handler.handle(new Movie(id, "The Shawshank Redemption", 1994));
+			}
+			throw new SQLException();
+		}).when(movieDAO).exportMovies(any());
+		doAnswer(invocation -> {
+			RowHandler<Star> handler = invocation.getArgument(0);
+			handler.handle(new Star(1, 1));
+			return null;
+		}).when(movieDAO).exportStars(any());
+		Javalin app = Javalin.create().get("/movies", exportController::exportMovies)
+				.get("/stars", exportController::exportStars).start(0);
+		try {
+			HttpClient client = HttpClient.newHttpClient();
+			String base = "http://localhost:" + app.port();
+
+			HttpResponse<String> stars = client.send(HttpRequest.newBuilder(URI.create(base + "/stars")).build(),
+					BodyHandlers.ofString());
+			assertEquals(200, stars.statusCode());
+			assertEquals("no-store", stars.headers().firstValue("Cache-Control").orElse(null));
+			assertFalse(stars.headers().firstValue("ETag").isPresent());
+
+			assertThrows(IOException.class, () -> client
+					.send(HttpRequest.newBuilder(URI.create(base + "/movies")).build(), BodyHandlers.ofString()));
+		} finally {
+			app.stop();
+		}
+	}
+
+	/**
+	 * Tests an export asked for while another one is running is answered with
+	 * a 503, and does not reach the database.
+	 */
+	@Test
+	void testExportMoviesWhenBusy() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch finish = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			started.countDown();
+			finish.await();
+			return null;
+		}).when(movieDAO).exportMovies(any());
+		Thread first = new Thread(() -> exportController.exportMovies(context(new ByteArrayOutputStream())));
+		first.start();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		Context busy = context(new ByteArrayOutputStream());
+		exportController.exportMovies(busy);
+		verify(busy).status(503);
+
+		finish.countDown();
+		first.join();
+		Context next = context(new ByteArrayOutputStream());
+		exportController.exportMovies(next);
+		verify(next, never()).status(503);
+	}
+
+	/**
+	 * Returns a mock context whose output stream writes to the given buffer.
+	 */
+	private static Context context(ByteArrayOutputStream body) {
+		Context ctx = mock(Context.class);
+		when(ctx.outputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				body.write(b);
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener listener) {
+			}
+		});
+		return ctx;
+	}
+
+}
@@ -1,15 +1,25 @@
 package com.flickfinder.controller;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.Movie;
 
 import io.javalin.http.Context;
 
@@ -39,9 +49,19 @@ class MovieControllerTest {
 	@BeforeEach
 	void setUp() {
 		// We create a mock of the MovieDAO class.
-		movieDAO = mock(MovieDAO.class);
+		// The async methods are left real, so they run the mocked lookups on
+		// the database threads.
+		movieDAO = mock(MovieDAO.class, invocation -> invocation.getMethod().getReturnType() == CompletableFuture.class
+				? invocation.callRealMethod()
+				: RETURNS_DEFAULTS.answer(invocation));
 		// We create a mock of the Context class.
 		ctx = mock(Context.class);
+		// Futures handed to the context are waited for, as Javalin would.
+		doAnswer(invocation -> {
+			Supplier<CompletableFuture<?>> future = invocation.getArgument(0);
+			future.get().join();
+			return null;
+		}).when(ctx).future(any());
 
 		// We create an instance of the MovieController class and pass the mock object
 		movieController = new MovieController(movieDAO);
@@ -581,4 +601,140 @@ class MovieControllerTest {
 		movieController.getRatingsByYear(ctx);
 		verify(ctx).status(400);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Tests the getAllMovies with a cursor, we expect one extra row to be asked for
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetMoviesAfterCursor() throws SQLException {
+		when(ctx.queryParam("after")).thenReturn("0");
+		when(ctx.queryParam("limit")).thenReturn("10");
+		movieController.getAllMovies(ctx);
+		verify(movieDAO).getMoviesAfter(0, 11);
+	}
+	
+	/**
+	 * Test that the controller returns a 400 status code for an invalid cursor
+	 * @throws SQLException
+	 */
+	@Test
+	void testThrows400ExceptionWhenInvalidCursor() throws SQLException {
+		when(ctx.queryParam("after")).thenReturn("not-a-cursor");
+		movieController.getAllMovies(ctx);
+		verify(ctx).status(400);
+	}
+
+	/**
+	 * Tests getMovieById looks the movie up only once when it is found.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetMovieByIdQueriesOnce() throws SQLException {
+		Movie movie = new Movie(1, "The Shawshank Redemption", 1994);
+		when(ctx.pathParam("id")).thenReturn("1");
+		when(movieDAO.getMovieById(1)).thenReturn(movie);
+		movieController.getMovieById(ctx);
+		verify(movieDAO, times(1)).getMovieById(1);
+		verify(ctx).json(movie);
+	}
+
+	/**
+	 * Tests a 503 status code is returned when the database is too busy to
+	 * take the query.
+	 */
+	@Test
+	void testThrows503WhenQueueFull() {
+		when(ctx.pathParam("id")).thenReturn("1");
+		doReturn(CompletableFuture.failedFuture(new RejectedExecutionException())).when(movieDAO).getMovieByIdAsync(1);
+		movieController.getMovieById(ctx);
+		verify(ctx).status(503);
+	}
+
+	/**
+	 * Tests a list of ids is looked up as one batch, in order.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetMoviesByIds() throws SQLException {
+		when(ctx.queryParam("ids")).thenReturn("3,1,2");
+		movieController.getAllMovies(ctx);
+		verify(movieDAO).getMoviesByIds(new int[] { 3, 1, 2 });
+	}
+
+	/**
+	 * Tests invalid lists of ids are rejected with a 400 status code.
+	 */
+	@Test
+	void testThrows400WhenInvalidIds() {
+		when(ctx.queryParam("ids")).thenReturn("1,,2");
+		movieController.getAllMovies(ctx);
+		when(ctx.queryParam("ids")).thenReturn("1,".repeat(200) + "1");
+		movieController.getAllMovies(ctx);
+		verify(ctx, times(2)).status(400);
+		verify(ctx).result("Invalid ids");
+		verify(ctx).result("Too many ids");
+	}
+
+	/**
+	 * Tests the movie detail runs the movie, rating, stars and directors
+	 * lookups and sends one response.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetMovieDetail() throws SQLException {
+		when(ctx.pathParam("id")).thenReturn("1");
+		when(movieDAO.getMovieById(1)).thenReturn(new Movie(1, "The Shawshank Redemption", 1994));
+		movieController.getMovieDetail(ctx);
+		verify(movieDAO).getMovieById(1);
+		verify(movieDAO).getRatingByMovieId(1);
+		verify(movieDAO).getStarsByMovieId(1);
+		verify(movieDAO).getDirectorsByMovieId(1);
+		verify(ctx, times(1)).json(any());
+	}
+
+	/**
+	 * Tests the movie detail of a missing movie is a 404, and of an invalid id
+	 * a 400.
+	 */
+	@Test
+	void testGetMovieDetailErrors() {
+		when(ctx.pathParam("id")).thenReturn("1000");
+		movieController.getMovieDetail(ctx);
+		verify(ctx).status(404);
+		when(ctx.pathParam("id")).thenReturn("abc");
+		movieController.getMovieDetail(ctx);
+		verify(ctx).status(400);
+	}
+
+	/**
+	 * Tests a search is answered with a 503 when the search database is not
+	 * attached, without reaching the database.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testSearchMoviesUnavailable() throws SQLException {
+		when(ctx.queryParam("q")).thenReturn("godfather");
+		movieController.searchMovies(ctx);
+		verify(ctx).status(503);
+		verify(ctx).result("Search unavailable");
+		verify(movieDAO, never()).searchMovies("godfather", 20);
+	}
+
+	/**
+	 * Tests a search runs once the search database is attached.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testSearchMovies() throws SQLException {
+		when(ctx.queryParam("q")).thenReturn("godfather");
+		when(movieDAO.hasSearch()).thenReturn(true);
+		movieController.searchMovies(ctx);
+		verify(movieDAO).searchMovies("godfather", 20);
+	}
+}
@@ -1,16 +1,24 @@
 package com.flickfinder.controller;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.model.Person;
 
 
 import io.javalin.http.Context;
@@ -37,10 +45,20 @@ class PersonControllerTest {
 	void setup() {
 		
 		// Create a mock of the person class
-		personDAO = mock(PersonDAO.class);
+		// The async methods are left real, so they run the mocked lookups on
+		// the database threads.
+		personDAO = mock(PersonDAO.class, invocation -> invocation.getMethod().getReturnType() == CompletableFuture.class
+				? invocation.callRealMethod()
+				: RETURNS_DEFAULTS.answer(invocation));
 		
 		// Create a mock of the Context class
 		ctx = mock(Context.class);
+		// Futures handed to the context are waited for, as Javalin would.
+		doAnswer(invocation -> {
+			Supplier<CompletableFuture<?>> future = invocation.getArgument(0);
+			future.get().join();
+			return null;
+		}).when(ctx).future(any());
 		
 		// Create an instance if the PersonController class and pass the mock object
 		personController = new PersonController(personDAO);
@@ -245,6 +263,82 @@ class PersonControllerTest {
 		personController.getAllPeople(ctx);
 		verify(ctx).status(500);
 	}
+
+	/**
+	 * Tests the getAllPeople with a cursor, the page size is capped at 1000
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetPeopleAfterCursor() throws SQLException {
+		when(ctx.queryParam("after")).thenReturn("7");
+		when(ctx.queryParam("limit")).thenReturn("5000");
+		personController.getAllPeople(ctx);
+		verify(personDAO).getPeopleAfter(7, 1001);
+	}
 	
-	
-}
\ No newline at end of file
+	/**
+	 * Test that the controller returns a 400 status code for an invalid cursor
+	 * @throws SQLException
+	 */
+	@Test
+	void testThrows400ExceptionWhenInvalidCursor() throws SQLException {
+		when(ctx.queryParam("after")).thenReturn("-1");
+		personController.getAllPeople(ctx);
+		verify(ctx).status(400);
+	}
+
+	/**
+	 * Tests getPersonById looks the person up only once when they are found.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetPersonByIdQueriesOnce() throws SQLException {
+		Person person = new Person(1, "Tim Robbins", 1958);
+		when(ctx.pathParam("id")).thenReturn("1");
+		when(personDAO.getPersonById(1)).thenReturn(person);
+		personController.getPersonById(ctx);
+		verify(personDAO, times(1)).getPersonById(1);
+		verify(ctx).json(person);
+	}
+
+	/**
+	 * Tests a list of ids is looked up as one batch, in order.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetPeopleByIds() throws SQLException {
+		when(ctx.queryParam("ids")).thenReturn("2, 1");
+		personController.getAllPeople(ctx);
+		verify(personDAO).getPeopleByIds(new int[] { 2, 1 });
+	}
+
+	/**
+	 * Tests a search is answered with a 503 when there is nothing to search,
+	 * without reaching the database.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testSearchPeopleUnavailable() throws SQLException {
+		when(ctx.queryParam("q")).thenReturn("nolan");
+		personController.searchPeople(ctx);
+		verify(ctx).status(503);
+		verify(ctx).result("Search unavailable");
+		verify(personDAO, never()).searchPeople("nolan", 20);
+	}
+
+	/**
+	 * Tests a search runs once the search database is attached.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testSearchPeople() throws SQLException {
+		when(ctx.queryParam("q")).thenReturn("nolan");
+		when(personDAO.hasSearch()).thenReturn(true);
+		personController.searchPeople(ctx);
+		verify(personDAO).searchPeople("nolan", 20);
+	}
+}
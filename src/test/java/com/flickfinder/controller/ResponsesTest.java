@@ -0,0 +1,105 @@
+package com.flickfinder.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.index.SearchTimeoutException;
+
+import io.javalin.http.Context;
+
+/**
+ * Test for the responses shared by the controllers.
+ */
+
+class ResponsesTest {
+
+	/**
+	 * The context object, later we will mock it.
+	 */
+	private Context ctx;
+
+	@BeforeEach
+	void setUp() {
+		ctx = mock(Context.class);
+		// Futures handed to the context are waited for, as Javalin would.
+		doAnswer(invocation -> {
+			Supplier<CompletableFuture<?>> future = invocation.getArgument(0);
+			future.get().join();
+			return null;
+		}).when(ctx).future(any());
+	}
+
+	/**
+	 * Tests a result is sent as JSON.
+	 */
+	@Test
+	void testRespond() {
+		List<Integer> result = List.of(1, 2);
+		Responses.respond(ctx, () -> CompletableFuture.completedFuture(result), "Not found");
+		verify(ctx).json(result);
+		verify(ctx, never()).status(404);
+	}
+
+	/**
+	 * Tests a missing result is answered with a 404, unless there is no
+	 * message for it.
+	 */
+	@Test
+	void testRespondNotFound() {
+		Responses.respond(ctx, () -> CompletableFuture.completedFuture(null), "Not found");
+		verify(ctx).status(404);
+		verify(ctx).result("Not found");
+
+		Context plain = mock(Context.class);
+		doAnswer(invocation -> {
+			Supplier<CompletableFuture<?>> future = invocation.getArgument(0);
+			future.get().join();
+			return null;
+		}).when(plain).future(any());
+		Responses.respond(plain, () -> CompletableFuture.completedFuture(null), null);
+		verify(plain, never()).status(404);
+	}
+
+	/**
+	 * Tests a database error is answered with a 500.
+	 */
+	@Test
+	void testFailDatabaseError() {
+		Responses.fail(ctx, new CompletionException(new SQLException()));
+		verify(ctx).status(500);
+		verify(ctx).result("Database error");
+	}
+
+	/**
+	 * Tests a query the database is too busy to take is answered with a 503.
+	 */
+	@Test
+	void testFailBusy() {
+		Responses.fail(ctx, new CompletionException(new RejectedExecutionException()));
+		verify(ctx).status(503);
+		verify(ctx).result("Server busy");
+	}
+
+	/**
+	 * Tests a search that ran out of time is answered with a 503.
+	 */
+	@Test
+	void testFailSearchTimedOut() {
+		Responses.fail(ctx, new CompletionException(new SearchTimeoutException("timed out")));
+		verify(ctx).status(503);
+		verify(ctx).result("Search timed out");
+	}
+}
@@ -1,19 +1,28 @@
 package com.flickfinder.dao;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.flickfinder.cache.TinyLfuCache;
+import com.flickfinder.index.CsrIndex;
+import com.flickfinder.index.RatingIndex;
 import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieDetail;
 import com.flickfinder.model.MovieRating;
 import com.flickfinder.model.Person;
+import com.flickfinder.model.Star;
 import com.flickfinder.util.Database;
+import com.flickfinder.util.QueryStats;
 import com.flickfinder.util.Seeder;
 
 /**
@@ -369,6 +378,231 @@ class MovieDAOTest {
 		}
 	}
 
+	/**
+	 * Test the getMoviesAfter method
+	 * We expect to get the movies after the given id, in id order
+	 */
+	@Test
+	void testGetMoviesAfter() {
+		try {
+			List<Movie> movies = movieDAO.getMoviesAfter(0, 2);
+			assertEquals(2, movies.size());
+			assertEquals(1, movies.get(0).getId());
+			assertEquals(2, movies.get(1).getId());
+			
+			List<Movie> movies2 = movieDAO.getMoviesAfter(2, 2);
+			assertEquals(3, movies2.get(0).getId());
+			assertEquals(4, movies2.get(1).getId());
+			
+			List<Movie> movies3 = movieDAO.getMoviesAfter(4, 2);
+			assertEquals(1, movies3.size());
+			
+			List<Movie> movies4 = movieDAO.getMoviesAfter(5, 2);
+			assertEquals(0, movies4.size());
+		} catch (SQLException e) {
+			fail("SQLException thrown");
+			e.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * Test the exportMovies method, every movie should be passed to the handler
+	 */
+	@Test
+	void testExportMovies() {
+		try {
+			List<Movie> movies = new ArrayList<>();
+			movieDAO.exportMovies(movies::add);
+			assertEquals(5, movies.size());
+		} catch (SQLException | IOException e) {
+			fail("Exception thrown");
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Test the exportStars method, every row of the stars table should be passed to the handler
+	 */
+	@Test
+	void testExportStars() {
+		try {
+			List<Star> stars = new ArrayList<>();
+			movieDAO.exportStars(stars::add);
+			assertEquals(5, stars.size());
+			assertEquals(1, stars.get(0).getMovieId());
+			assertEquals(1, stars.get(0).getPersonId());
+		} catch (SQLException | IOException e) {
+			fail("Exception thrown");
+			e.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * Tests getMovieById answers repeated lookups, including ones for a missing
+	 * id, from the cache.
+	 */
+	@Test
+	void testGetMovieByIdCached() throws SQLException {
+		TinyLfuCache<Movie> cache = new TinyLfuCache<>(100);
+		movieDAO.setCache(cache);
+		assertEquals("The Shawshank Redemption", movieDAO.getMovieById(1).getTitle());
+		assertEquals("The Shawshank Redemption", movieDAO.getMovieById(1).getTitle());
+		assertNull(movieDAO.getMovieById(1000));
+		assertNull(movieDAO.getMovieById(1000));
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.getHitCount());
+	}
+
+
+	/**
+	 * Tests the async lookups give the same results as the blocking ones.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testAsyncMatchesBlocking() throws SQLException {
+		assertEquals(movieDAO.getMovieById(1).toString(), movieDAO.getMovieByIdAsync(1).join().toString());
+		assertNull(movieDAO.getMovieByIdAsync(1000).join());
+		assertEquals(movieDAO.getStarsByMovieId(1).toString(), movieDAO.getStarsByMovieIdAsync(1).join().toString());
+		assertEquals(movieDAO.getMovieRatingsByYearAndVoteLimit(1994, 0).toString(),
+				movieDAO.getMovieRatingsByYearAndVoteLimitAsync(1994, 0).join().toString());
+		assertEquals(5, movieDAO.getAllMoviesAsync().join().size());
+	}
+
+	/**
+	 * Tests a batch of movies comes back in the order the ids were given,
+	 * without the ids that have no movie.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetMoviesByIds() throws SQLException {
+		List<Movie> movies = movieDAO.getMoviesByIds(new int[] { 5, 1, 1000, 3 });
+		assertEquals(3, movies.size());
+		assertEquals(5, movies.get(0).getId());
+		assertEquals(1, movies.get(1).getId());
+		assertEquals("The Godfather: Part II", movies.get(2).getTitle());
+		assertNull(movieDAO.getMoviesByIds(new int[] { 1000 }));
+		assertNull(movieDAO.getMoviesByIds(new int[0]));
+	}
+
+	/**
+	 * Tests a batch bigger than one IN query is split up.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetMoviesByIdsManyBatches() throws SQLException {
+		int[] ids = new int[450];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = ids.length - i;
+		}
+		List<Movie> movies = movieDAO.getMoviesByIds(ids);
+		assertEquals(5, movies.size());
+		assertEquals(5, movies.get(0).getId());
+		assertEquals(1, movies.get(4).getId());
+	}
+
+	/**
+	 * Tests the movie detail has the movie, its rating, stars and directors.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetMovieDetail() throws SQLException {
+		MovieDetail detail = movieDAO.getMovieDetail(1);
+		assertEquals("The Shawshank Redemption", detail.getTitle());
+		assertEquals(9.3f, detail.getRating());
+		assertEquals(2200000, detail.getVotes());
+		assertEquals(2, detail.getStars().size());
+		assertEquals(1, detail.getDirectors().size());
+		assertEquals("Christopher Nolan", detail.getDirectors().get(0).getName());
+		assertNull(movieDAO.getMovieDetail(1000));
+		assertEquals(detail.toString(), movieDAO.getMovieDetailAsync(1).join().toString());
+		assertNull(movieDAO.getMovieDetailAsync(1000).join());
+	}
+
+	/**
+	 * Tests the directors found through the index match the join.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetDirectorsIndexed() throws SQLException {
+		MovieDAO indexed = new MovieDAO();
+		indexed.setDirectorIndex(CsrIndex.load(Database.getInstance(), "directors"));
+		for (int id = 0; id <= 6; id++) {
+			assertEquals(String.valueOf(movieDAO.getDirectorsByMovieId(id)),
+					String.valueOf(indexed.getDirectorsByMovieId(id)));
+		}
+		assertNull(movieDAO.getRatingByMovieId(1000));
+	}
+
+	/**
+	 * Tests each lookup is timed under its own name, with the rows it read.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testQueriesAreTimed() throws SQLException {
+		QueryStats stats = QueryStats.of("MovieDAO.getStarsByMovieId");
+		long count = stats.getLatency().getCount();
+		long rows = stats.getRowCount();
+		movieDAO.getStarsByMovieId(1);
+		assertEquals(count + 1, stats.getLatency().getCount());
+		assertEquals(rows + 2, stats.getRowCount());
+	}
+
+	/**
+	 * Tests an export is timed only up to its first row, so the time spent
+	 * writing the rows out is not counted as query time.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testExportTimedToFirstRow() throws Exception {
+		QueryStats stats = QueryStats.of("MovieDAO.exportMovies");
+		long count = stats.getLatency().getCount();
+		long rows = stats.getRowCount();
+		List<Movie> movies = new ArrayList<>();
+		movieDAO.exportMovies(movies::add);
+		assertEquals(5, movies.size());
+		assertEquals(count + 1, stats.getLatency().getCount());
+		assertEquals(rows, stats.getRowCount());
+	}
+
+	/**
+	 * Tests the ratings lookups and the index-backed lookups are timed under
+	 * the name of the public method, with or without the indexes.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testIndexedLookupsAreTimed() throws SQLException {
+		QueryStats byYear = QueryStats.of("MovieDAO.getMovieRatingsByYear");
+		QueryStats byLimit = QueryStats.of("MovieDAO.getMovieRatingsByYearAndLimit");
+		QueryStats stars = QueryStats.of("MovieDAO.getStarsByMovieId");
+		long years = byYear.getLatency().getCount();
+		long limits = byLimit.getLatency().getCount();
+		long starCount = stars.getLatency().getCount();
+		long starRows = stars.getRowCount();
+
+		MovieDAO indexed = new MovieDAO();
+		indexed.setRatingIndex(RatingIndex.load(Database.getInstance()));
+		indexed.setStarIndex(CsrIndex.load(Database.getInstance(), "stars"));
+		movieDAO.getMovieRatingsByYear(1994);
+		indexed.getMovieRatingsByYear(1994);
+		indexed.getMovieRatingsByYearAndLimit(1994, 1);
+		indexed.getStarsByMovieId(1);
+
+		assertEquals(years + 2, byYear.getLatency().getCount());
+		assertEquals(limits + 1, byLimit.getLatency().getCount());
+		assertEquals(starCount + 1, stars.getLatency().getCount());
+		assertEquals(starRows + 2, stars.getRowCount());
+	}
+
 	@AfterEach
 	void tearDown() {
 		seeder.closeConnection();
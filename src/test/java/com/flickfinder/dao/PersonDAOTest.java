@@ -1,18 +1,26 @@
 package com.flickfinder.dao;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.flickfinder.cache.TinyLfuCache;
+import com.flickfinder.index.CostarIndex;
+import com.flickfinder.index.CsrIndex;
 import com.flickfinder.model.Movie;
 import com.flickfinder.model.Person;
 import com.flickfinder.util.Database;
+import com.flickfinder.util.QueryStats;
 import com.flickfinder.util.Seeder;
 
 /**
@@ -172,6 +180,134 @@ class PersonDAOTest {
 		}
 	}
 	
+	/**
+	 * Test the getPeopleAfter method
+	 * We expect to get the people after the given id, in id order
+	 */
+	@Test
+	void testGetPeopleAfter() {
+		try {
+			List<Person> people = personDAO.getPeopleAfter(3, 5);
+			assertEquals(2, people.size());
+			assertEquals(4, people.get(0).getId());
+			assertEquals(5, people.get(1).getId());
+			
+			List<Person> people2 = personDAO.getPeopleAfter(5, 5);
+			assertEquals(0, people2.size());
+		} catch (SQLException e) {
+			fail("SQLException thrown");
+			e.printStackTrace();
+		}
+	}
+	
+
+	/**
+	 * Test the exportPeople method, every person should be passed to the handler
+	 */
+	@Test
+	void testExportPeople() {
+		try {
+			List<Person> people = new ArrayList<>();
+			personDAO.exportPeople(people::add);
+			assertEquals(5, people.size());
+		} catch (SQLException | IOException e) {
+			fail("Exception thrown");
+			e.printStackTrace();
+		}
+	}
+	
+
+	/**
+	 * Tests getPersonById answers repeated lookups, including ones for a
+	 * missing id, from the cache.
+	 */
+	@Test
+	void testGetPersonByIdCached() throws SQLException {
+		TinyLfuCache<Person> cache = new TinyLfuCache<>(100);
+		personDAO.setCache(cache);
+		assertEquals("Tim Robbins", personDAO.getPersonById(1).getName());
+		assertEquals("Tim Robbins", personDAO.getPersonById(1).getName());
+		assertNull(personDAO.getPersonById(1000));
+		assertNull(personDAO.getPersonById(1000));
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.getHitCount());
+	}
+
+
+	/**
+	 * Tests the async lookups give the same results as the blocking ones.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testAsyncMatchesBlocking() throws SQLException {
+		assertEquals(personDAO.getPersonById(1).toString(), personDAO.getPersonByIdAsync(1).join().toString());
+		assertNull(personDAO.getPersonByIdAsync(1000).join());
+		assertEquals(personDAO.getMoviesByPersonId(1).toString(), personDAO.getMoviesByPersonIdAsync(1).join().toString());
+		assertEquals(5, personDAO.getAllPeopleAsync().join().size());
+	}
+
+	/**
+	 * Tests a batch of people comes back in the order the ids were given.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetPeopleByIds() throws SQLException {
+		List<Person> people = personDAO.getPeopleByIds(new int[] { 2, 1000, 1, 2 });
+		assertEquals(3, people.size());
+		assertEquals("Morgan Freeman", people.get(0).getName());
+		assertEquals("Tim Robbins", people.get(1).getName());
+		assertEquals("Morgan Freeman", people.get(2).getName());
+		assertNull(personDAO.getPeopleByIds(new int[] { 1000 }));
+	}
+
+	/**
+	 * Tests the co-star graph gives the same co-stars as the self-join it
+	 * replaces.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testGetCostars() throws SQLException {
+		try (Statement stmt = seeder.getConnection().createStatement()) {
+			stmt.execute("INSERT INTO stars (movie_id, person_id) VALUES(2, 2)");
+			stmt.execute("INSERT INTO stars (movie_id, person_id) VALUES(3, 2)");
+			stmt.execute("INSERT INTO stars (movie_id, person_id) VALUES(3, 1)");
+		}
+		List<String> joined = new ArrayList<>();
+		for (int id = 1; id <= 6; id++) {
+			joined.add(String.valueOf(personDAO.getCostars(id, 10)));
+		}
+		assertEquals(1, personDAO.getCostars(2, 10).get(0).getId());
+		assertEquals(2, personDAO.getCostars(2, 10).get(0).getSharedMovies());
+		assertEquals(1, personDAO.getCostars(2, 1).size());
+		assertNull(personDAO.getCostars(5, 10));
+
+		personDAO.setCostarIndex(CostarIndex.build(CsrIndex.load(Database.getInstance(), "stars")));
+		for (int id = 1; id <= 6; id++) {
+			assertEquals(joined.get(id - 1), String.valueOf(personDAO.getCostars(id, 10)));
+		}
+	}
+
+	/**
+	 * Tests the two listings are timed apart, each under its public method.
+	 *
+	 * @throws SQLException
+	 */
+	@Test
+	void testListingsAreTimedApart() throws SQLException {
+		QueryStats all = QueryStats.of("PersonDAO.getAllPeople");
+		QueryStats byLimit = QueryStats.of("PersonDAO.getAllPeopleByLimit");
+		long allCount = all.getLatency().getCount();
+		long limitCount = byLimit.getLatency().getCount();
+		personDAO.getAllPeople();
+		personDAO.getAllPeopleByLimit(2);
+		personDAO.getAllPeopleByLimit(3);
+		assertEquals(allCount + 1, all.getLatency().getCount());
+		assertEquals(limitCount + 2, byLimit.getLatency().getCount());
+	}
+
 	@AfterEach
 	void tearDown() {
 		seeder.closeConnection();
@@ -0,0 +1,214 @@
+package com.flickfinder.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.index.Snapshot;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Test for the snapshot Data Access Objects.
+ * Each test asks the SQLite DAO and the snapshot DAO the same question and
+ * expects the same answer.
+ */
+class SnapshotDAOTest {
+
+	/**
+	 * The SQLite movie data access object.
+	 */
+	private MovieDAO movieDAO;
+
+	/**
+	 * The snapshot movie data access object.
+	 */
+	private SnapshotMovieDAO snapshotMovieDAO;
+
+	/**
+	 * The SQLite person data access object.
+	 */
+	private PersonDAO personDAO;
+
+	/**
+	 * The snapshot person data access object.
+	 */
+	private SnapshotPersonDAO snapshotPersonDAO;
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		var url = "jdbc:sqlite::memory:";
+		seeder = new Seeder(url);
+		Database.getInstance(seeder.getConnection());
+		movieDAO = new MovieDAO();
+		personDAO = new PersonDAO();
+
+		Snapshot snapshot = Snapshot.load(Database.getInstance());
+		snapshotMovieDAO = new SnapshotMovieDAO(snapshot);
+		snapshotPersonDAO = new SnapshotPersonDAO(snapshot);
+	}
+
+	/**
+	 * Tests the snapshot holds every row.
+	 */
+	@Test
+	void testSnapshotLoaded() throws SQLException {
+		Snapshot snapshot = Snapshot.load(Database.getInstance());
+		assertEquals(5, snapshot.getMovieCount());
+		assertEquals(5, snapshot.getPersonCount());
+		assertEquals(5, snapshot.getStars().size());
+		assertEquals(5, snapshot.getDirectors().size());
+	}
+
+	/**
+	 * Tests the movie lookups match.
+	 */
+	@Test
+	void testMoviesMatch() throws SQLException {
+		assertEquals(movies(movieDAO.getAllMovies()), movies(snapshotMovieDAO.getAllMovies()));
+		assertEquals(movies(movieDAO.getAllMoviesByLimit(3)), movies(snapshotMovieDAO.getAllMoviesByLimit(3)));
+		assertEquals(movies(movieDAO.getMoviesAfter(2, 2)), movies(snapshotMovieDAO.getMoviesAfter(2, 2)));
+		for (int id = 0; id <= 6; id++) {
+			assertEquals(String.valueOf(movieDAO.getMovieDetail(id)), String.valueOf(snapshotMovieDAO.getMovieDetail(id)));
+		}
+		int[] ids = { 4, 1, 1000, 2 };
+		assertEquals(String.valueOf(movieDAO.getMoviesByIds(ids)), String.valueOf(snapshotMovieDAO.getMoviesByIds(ids)));
+		for (int id = 0; id <= 6; id++) {
+			Movie expected = movieDAO.getMovieById(id);
+			Movie actual = snapshotMovieDAO.getMovieById(id);
+			assertEquals(String.valueOf(expected), String.valueOf(actual));
+		}
+	}
+
+	/**
+	 * Tests the star lookups match.
+	 */
+	@Test
+	void testStarsMatch() throws SQLException {
+		for (int id = 0; id <= 6; id++) {
+			assertEquals(people(movieDAO.getStarsByMovieId(id)), people(snapshotMovieDAO.getStarsByMovieId(id)));
+			assertEquals(movies(personDAO.getMoviesByPersonId(id)), movies(snapshotPersonDAO.getMoviesByPersonId(id)));
+			assertEquals(String.valueOf(personDAO.getCostars(id, 10)), String.valueOf(snapshotPersonDAO.getCostars(id, 10)));
+		}
+	}
+
+	/**
+	 * Tests a stars row for a person who is not in the people table is left
+	 * out of the co-stars, as the join leaves it out.
+	 */
+	@Test
+	void testCostarsSkipMissingPeople() throws SQLException {
+		try (Statement stmt = seeder.getConnection().createStatement()) {
+			stmt.execute("INSERT INTO stars (movie_id, person_id) VALUES(1, 999)");
+		}
+		SnapshotPersonDAO reloaded = new SnapshotPersonDAO(Snapshot.load(Database.getInstance()));
+		for (int id = 0; id <= 6; id++) {
+			assertEquals(String.valueOf(personDAO.getCostars(id, 10)), String.valueOf(reloaded.getCostars(id, 10)));
+		}
+	}
+
+	/**
+	 * Tests the ratings lookups match.
+	 */
+	@Test
+	void testRatingsMatch() throws SQLException {
+		for (int year : new int[] { 1957, 1972, 1974, 1994, 2008, 2028 }) {
+			assertEquals(ratings(movieDAO.getMovieRatingsByYear(year)), ratings(snapshotMovieDAO.getMovieRatingsByYear(year)));
+			assertEquals(ratings(movieDAO.getMovieRatingsByYearLimitVoteLimit(year, 1, 1000000)),
+					ratings(snapshotMovieDAO.getMovieRatingsByYearLimitVoteLimit(year, 1, 1000000)));
+		}
+		assertNull(snapshotMovieDAO.getMovieRatingsByYearAndVoteLimit(1994, 2300000));
+	}
+
+	/**
+	 * Tests the people lookups match.
+	 */
+	@Test
+	void testPeopleMatch() throws SQLException {
+		assertEquals(people(personDAO.getAllPeople()), people(snapshotPersonDAO.getAllPeople()));
+		assertEquals(people(personDAO.getAllPeopleByLimit(2)), people(snapshotPersonDAO.getAllPeopleByLimit(2)));
+		assertEquals(people(personDAO.getPeopleAfter(3, 5)), people(snapshotPersonDAO.getPeopleAfter(3, 5)));
+		int[] ids = { 5, 3, 1000, 3 };
+		assertEquals(String.valueOf(personDAO.getPeopleByIds(ids)), String.valueOf(snapshotPersonDAO.getPeopleByIds(ids)));
+		for (int id = 0; id <= 6; id++) {
+			assertEquals(String.valueOf(personDAO.getPersonById(id)), String.valueOf(snapshotPersonDAO.getPersonById(id)));
+		}
+	}
+
+	/**
+	 * Tests the exports match.
+	 */
+	@Test
+	void testExportsMatch() throws SQLException, IOException {
+		List<Movie> expected = new ArrayList<>();
+		List<Movie> actual = new ArrayList<>();
+		movieDAO.exportMovies(expected::add);
+		snapshotMovieDAO.exportMovies(actual::add);
+		assertEquals(movies(expected), movies(actual));
+
+		List<String> expectedStars = new ArrayList<>();
+		List<String> actualStars = new ArrayList<>();
+		movieDAO.exportStars(star -> expectedStars.add(star.toString()));
+		snapshotMovieDAO.exportStars(star -> actualStars.add(star.toString()));
+		expectedStars.sort(Comparator.naturalOrder());
+		actualStars.sort(Comparator.naturalOrder());
+		assertEquals(expectedStars, actualStars);
+	}
+
+	/**
+	 * Renders a list of movies so two lists can be compared.
+	 */
+	private static String movies(List<? extends Movie> movies) {
+		return String.valueOf(movies);
+	}
+
+	/**
+	 * Renders a list of people, in id order, so two lists can be compared.
+	 */
+	private static String people(List<Person> people) {
+		if (people == null) {
+			return "null";
+		}
+		List<Person> sorted = new ArrayList<>(people);
+		sorted.sort(Comparator.comparingInt(Person::getId));
+		return sorted.toString();
+	}
+
+	/**
+	 * Renders a list of movie ratings, including the rating and votes.
+	 */
+	private static String ratings(List<MovieRating> ratings) {
+		if (ratings == null) {
+			return "null";
+		}
+		StringBuilder builder = new StringBuilder();
+		for (MovieRating rating : ratings) {
+			builder.append(rating).append(' ').append(rating.getRating()).append(' ').append(rating.getVotes()).append('\n');
+		}
+		return builder.toString();
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.flickfinder.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the co-star graph.
+ * Random casts are checked against counting every pair of people.
+ */
+class CostarIndexTest {
+
+	/**
+	 * Tests co-stars are ranked by shared movies, and that someone listed
+	 * twice in a cast is not their own co-star.
+	 */
+	@Test
+	void testTop() {
+		int[] movies = { 1, 1, 1, 2, 2, 3, 3, 3 };
+		int[] people = { 10, 20, 30, 10, 30, 30, 40, 40 };
+		CostarIndex index = CostarIndex.build(CsrIndex.build(movies, people, movies.length));
+
+		assertArrayEquals(new int[] { 30, 20 }, index.top(10, 10));
+		assertArrayEquals(new int[] { 10, 40, 20 }, index.top(30, 10));
+		assertArrayEquals(new int[] { 10 }, index.top(30, 1));
+		assertArrayEquals(new int[] { 30 }, index.top(40, 10));
+		assertArrayEquals(new int[0], index.top(99, 10));
+		assertEquals(2, index.count(10, 30));
+		assertEquals(2, index.count(30, 10));
+		assertEquals(0, index.count(40, 40));
+		assertEquals(0, index.count(10, 40));
+	}
+
+	/**
+	 * Tests a hub keeps only its most frequent co-stars.
+	 */
+	@Test
+	void testHubsAreCapped() {
+		// person 0 stars with person k in k % 5 + 1 movies
+		int costars = CostarIndex.MAX_COSTARS + 100;
+		int size = 0;
+		int[] movies = new int[costars * 10];
+		int[] people = new int[costars * 10];
+		int movie = 0;
+		for (int k = 1; k <= costars; k++) {
+			for (int shared = 0; shared <= k % 5; shared++) {
+				movies[size] = movie;
+				people[size++] = 0;
+				movies[size] = movie++;
+				people[size++] = k;
+			}
+		}
+		CostarIndex index = CostarIndex.build(CsrIndex.build(movies, people, size));
+
+		int[] top = index.top(0, 1000);
+		assertEquals(CostarIndex.MAX_COSTARS, top.length);
+		assertEquals(4, top[0]);
+		assertEquals(5, index.count(0, top[0]));
+		assertEquals(2, index.count(0, top[top.length - 1]));
+		assertEquals(costars % 5 + 1, index.count(costars, 0));
+	}
+
+	/**
+	 * Tests random casts against counting the pairs of every movie.
+	 */
+	@Test
+	void testMatchesCounting() {
+		Random random = new Random(9);
+		int size = 20000;
+		int[] movies = new int[size];
+		int[] people = new int[size];
+		for (int i = 0; i < size; i++) {
+			movies[i] = random.nextInt(3000);
+			people[i] = random.nextInt(2000);
+		}
+		CsrIndex stars = CsrIndex.build(movies, people, size);
+		CostarIndex index = CostarIndex.build(stars);
+
+		Map<Long, Integer> expected = new HashMap<>();
+		for (int m = 0; m < stars.getMovieCount(); m++) {
+			for (int a = stars.castStart(m); a < stars.castEnd(m); a++) {
+				for (int b = stars.castStart(m); b < stars.castEnd(m); b++) {
+					int person = stars.personId(stars.castMember(a));
+					int costar = stars.personId(stars.castMember(b));
+					if (person != costar) {
+						expected.merge(((long) person << 32) | costar, 1, Integer::sum);
+					}
+				}
+			}
+		}
+		expected.forEach((pair, count) -> assertEquals(count, index.count((int) (pair >>> 32), (int) (long) pair)));
+		assertEquals(expected.size(), index.size());
+
+		for (int i = 0; i < 200; i++) {
+			int person = stars.personId(random.nextInt(stars.getPersonCount()));
+			int[] top = index.top(person, 5);
+			for (int k = 1; k < top.length; k++) {
+				int before = index.count(person, top[k - 1]);
+				int after = index.count(person, top[k]);
+				assertEquals(true, before > after || before == after && top[k - 1] < top[k]);
+			}
+		}
+	}
+
+}
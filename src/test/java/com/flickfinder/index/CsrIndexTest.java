@@ -0,0 +1,128 @@
+package com.flickfinder.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Test for the CSR index.
+ * The index is checked against the joins it replaces.
+ */
+class CsrIndexTest {
+
+	/**
+	 * The index of the stars table.
+	 */
+	private CsrIndex index;
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		var url = "jdbc:sqlite::memory:";
+		seeder = new Seeder(url);
+		Database.getInstance(seeder.getConnection());
+		index = CsrIndex.load(Database.getInstance(), "stars");
+	}
+
+	/**
+	 * Tests the index holds every row of the table.
+	 */
+	@Test
+	void testLoad() {
+		assertEquals(5, index.size());
+		assertEquals(4, index.getMovieCount());
+		assertEquals(4, index.getPersonCount());
+		assertArrayEquals(new int[] { 1, 2 }, index.peopleOf(1));
+		assertArrayEquals(new int[] { 2, 3 }, index.moviesOf(4));
+		assertTrue(index.getMemoryBytes() > 0);
+		assertTrue(index.getBuildMillis() >= 0);
+	}
+
+	/**
+	 * Tests an index built from arrays, in both directions.
+	 */
+	@Test
+	void testBuild() {
+		int[] movies = { 10, 20, 10, 30, 20 };
+		int[] people = { 2, 1, 1, 2, 3 };
+		CsrIndex built = CsrIndex.build(movies, people, movies.length);
+
+		assertArrayEquals(new int[] { 1, 2 }, built.peopleOf(10));
+		assertArrayEquals(new int[] { 1, 3 }, built.peopleOf(20));
+		assertArrayEquals(new int[] { 2 }, built.peopleOf(30));
+		assertArrayEquals(new int[] { 10, 20 }, built.moviesOf(1));
+		assertArrayEquals(new int[] { 10, 30 }, built.moviesOf(2));
+		assertArrayEquals(new int[0], built.peopleOf(40));
+		assertArrayEquals(new int[0], built.moviesOf(4));
+		assertEquals(-1, built.movieRow(40));
+		assertEquals(4L * (3 + 4 + 5 + 3 + 4 + 5), built.getMemoryBytes());
+	}
+
+	/**
+	 * Tests the index gives the same people and movies as the joins.
+	 */
+	@Test
+	void testMatchesJoins() throws SQLException {
+		MovieDAO movieDAO = new MovieDAO();
+		PersonDAO personDAO = new PersonDAO();
+		MovieDAO indexedMovieDAO = new MovieDAO();
+		PersonDAO indexedPersonDAO = new PersonDAO();
+		indexedMovieDAO.setStarIndex(index);
+		indexedPersonDAO.setStarIndex(index);
+
+		for (int id = 0; id <= 6; id++) {
+			assertEquals(people(movieDAO.getStarsByMovieId(id)), people(indexedMovieDAO.getStarsByMovieId(id)));
+			assertEquals(movies(personDAO.getMoviesByPersonId(id)), movies(indexedPersonDAO.getMoviesByPersonId(id)));
+		}
+	}
+
+	/**
+	 * Renders a list of people, in id order, so two lists can be compared.
+	 */
+	private static String people(List<Person> people) {
+		if (people == null) {
+			return "null";
+		}
+		List<Person> sorted = new ArrayList<>(people);
+		sorted.sort(Comparator.comparingInt(Person::getId));
+		return sorted.toString();
+	}
+
+	/**
+	 * Renders a list of movies, in id order, so two lists can be compared.
+	 */
+	private static String movies(List<Movie> movies) {
+		if (movies == null) {
+			return "null";
+		}
+		List<Movie> sorted = new ArrayList<>(movies);
+		sorted.sort(Comparator.comparingInt(Movie::getId));
+		return sorted.toString();
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+
+}
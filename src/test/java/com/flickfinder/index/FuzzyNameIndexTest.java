@@ -0,0 +1,195 @@
+package com.flickfinder.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.model.Person;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Test for the fuzzy name index.
+ * Random names are checked against comparing the query with every name.
+ */
+class FuzzyNameIndexTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	@BeforeEach
+	void setUp() {
+		var url = "jdbc:sqlite::memory:";
+		seeder = new Seeder(url);
+		Database.getInstance(seeder.getConnection());
+	}
+
+	/**
+	 * Tests misspelled names are found, and that short words must be exact.
+	 */
+	@Test
+	void testLoad() throws SQLException {
+		FuzzyNameIndex index = FuzzyNameIndex.load(Database.getInstance());
+		assertEquals(5, index.size());
+		assertEquals(10, index.getWordCount());
+
+		List<Person> people = index.search("morgn freemen", 10);
+		assertEquals(List.of(2), ids(people));
+		assertEquals("Morgan Freeman", people.get(0).getName());
+		assertEquals(List.of(4), ids(index.search("al pacnio", 10)));
+		assertEquals(List.of(3), ids(index.search("Cristopher", 10)));
+		assertEquals(List.of(3), ids(index.search("nloan", 10)));
+		assertNull(index.search("xl pacino", 10));
+		assertNull(index.search("morgan nolan", 10));
+		assertNull(index.search("  !! ", 10));
+	}
+
+	/**
+	 * Tests exact matches come before close ones, then the more popular.
+	 */
+	@Test
+	void testOrder() {
+		TextColumns people = new TextColumns();
+		people.add(1, "Jon Smith", 1970, 5);
+		people.add(2, "John Smith", 1970, 1);
+		people.add(3, "Joan Smyth", 1970, 9);
+		people.add(4, "Am\u00e9lie Poulain", 1990, 0);
+		FuzzyNameIndex index = FuzzyNameIndex.build(people, System.nanoTime());
+
+		assertEquals(List.of(2, 1, 3), ids(index.search("john smith", 10)));
+		assertEquals(List.of(2), ids(index.search("john smith", 1)));
+		assertEquals(List.of(1, 2), ids(index.search("smiht", 10)));
+		assertEquals(List.of(3, 1, 2), ids(index.search("smyth", 10)));
+		assertEquals(List.of(4), ids(index.search("AMELIE", 10)));
+		assertEquals(List.of(4), ids(index.search("am\u00e9lei", 10)));
+	}
+
+	/**
+	 * Tests the distance against a plain optimal string alignment.
+	 */
+	@Test
+	void testDistance() {
+		Random random = new Random(3);
+		int[][] rows = new int[3][16];
+		for (int i = 0; i < 2000; i++) {
+			String a = randomWord(random, 8);
+			String b = randomWord(random, 8);
+			int expected = Math.min(osa(a, b), 3);
+			assertEquals(expected, FuzzyNameIndex.distance(a.toCharArray(), 0, a.length(), b.toCharArray(), 0,
+					b.length(), 2, rows), a + " " + b);
+		}
+	}
+
+	/**
+	 * Tests searches of many random names against checking every name.
+	 */
+	@Test
+	void testMatchesScan() {
+		Random random = new Random(11);
+		TextColumns people = new TextColumns();
+		int size = 2000;
+		for (int i = 0; i < size; i++) {
+			people.add(i + 1, randomWord(random, 9) + " " + randomWord(random, 9), 1900, random.nextInt(100));
+		}
+		FuzzyNameIndex index = FuzzyNameIndex.build(people, System.nanoTime());
+		int[][] rows = new int[3][32];
+
+		for (int i = 0; i < 300; i++) {
+			String name = people.texts[random.nextInt(size)];
+			String query = mutate(random, name.substring(0, name.indexOf(' ')));
+			if (random.nextBoolean()) {
+				query += " " + mutate(random, name.substring(name.indexOf(' ') + 1));
+			}
+			String[] words = query.split(" ");
+
+			List<Integer> expected = new ArrayList<>();
+			List<Integer> scores = new ArrayList<>();
+			for (int p = 0; p < size; p++) {
+				String[] nameWords = people.texts[p].split(" ");
+				int score = 0;
+				for (String word : words) {
+					int allowed = FuzzyNameIndex.allowedDistance(word.length());
+					int closest = allowed + 1;
+					for (String nameWord : nameWords) {
+						closest = Math.min(closest, FuzzyNameIndex.distance(word.toCharArray(), 0, word.length(),
+								nameWord.toCharArray(), 0, nameWord.length(), allowed, rows));
+					}
+					score = closest > allowed || score < 0 ? -1 : score + closest;
+				}
+				expected.add(p);
+				scores.add(score);
+			}
+			List<Integer> expectedIds = expected.stream().filter(p -> scores.get(p) >= 0)
+					.sorted(Comparator.<Integer>comparingInt(scores::get)
+							.thenComparingLong(p -> -people.popularity[p]).thenComparingInt(p -> people.ids[p]))
+					.limit(5).map(p -> people.ids[p]).collect(Collectors.toList());
+			List<Person> found = index.search(query, 5);
+			assertEquals(expectedIds, found == null ? List.of() : ids(found), query);
+		}
+	}
+
+	private static String randomWord(Random random, int maxLength) {
+		StringBuilder word = new StringBuilder();
+		int length = 1 + random.nextInt(maxLength);
+		for (int i = 0; i < length; i++) {
+			word.append((char) ('a' + random.nextInt(4)));
+		}
+		return word.toString();
+	}
+
+	private static String mutate(Random random, String word) {
+		StringBuilder mutated = new StringBuilder(word);
+		int edits = random.nextInt(3);
+		for (int i = 0; i < edits && mutated.length() > 1; i++) {
+			int at = random.nextInt(mutated.length());
+			switch (random.nextInt(3)) {
+			case 0 -> mutated.deleteCharAt(at);
+			case 1 -> mutated.insert(at, (char) ('a' + random.nextInt(4)));
+			default -> mutated.setCharAt(at, (char) ('a' + random.nextInt(4)));
+			}
+		}
+		return mutated.toString();
+	}
+
+	private static int osa(String a, String b) {
+		int[][] d = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++) {
+			d[i][0] = i;
+		}
+		for (int j = 0; j <= b.length(); j++) {
+			d[0][j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+				if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+					d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+				}
+			}
+		}
+		return d[a.length()][b.length()];
+	}
+
+	private static List<Integer> ids(List<Person> people) {
+		return people.stream().map(Person::getId).collect(Collectors.toList());
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.flickfinder.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the path search of the stars graph.
+ * Random graphs are checked against a plain breadth first search.
+ */
+class PathFinderTest {
+
+	/**
+	 * Tests the chain alternates people and movies, and is a shortest one.
+	 */
+	@Test
+	void testFind() {
+		// 1 -(10)- 2 -(11)- 3 -(12)- 4, with a shortcut 1 -(13)- 3
+		int[] movies = { 10, 10, 11, 11, 12, 12, 13, 13, 14 };
+		int[] people = { 1, 2, 2, 3, 3, 4, 1, 3, 5 };
+		PathFinder finder = new PathFinder(CsrIndex.build(movies, people, movies.length), 6, 1000);
+
+		assertArrayEquals(new int[] { 1, 10, 2 }, finder.find(1, 2));
+		assertArrayEquals(new int[] { 1, 13, 3, 12, 4 }, finder.find(1, 4));
+		assertArrayEquals(new int[] { 4, 12, 3, 13, 1 }, finder.find(4, 1));
+		assertArrayEquals(new int[] { 2 }, finder.find(2, 2));
+		assertNull(finder.find(1, 5));
+		assertNull(finder.find(1, 99));
+	}
+
+	/**
+	 * Tests a search stops at the depth limit, and throws once it runs out of
+	 * time.
+	 */
+	@Test
+	void testLimits() {
+		// a line of people, each movie linking the next two
+		int size = 5000;
+		int[] movies = new int[2 * size];
+		int[] people = new int[2 * size];
+		for (int i = 0; i < size; i++) {
+			movies[2 * i] = i;
+			people[2 * i] = i;
+			movies[2 * i + 1] = i;
+			people[2 * i + 1] = i + 1;
+		}
+		CsrIndex stars = CsrIndex.build(movies, people, movies.length);
+
+		PathFinder shallow = new PathFinder(stars, 3, 1000);
+		assertEquals(7, shallow.find(0, 3).length);
+		assertNull(shallow.find(0, 4));
+
+		PathFinder hurried = new PathFinder(stars, size, 0);
+		assertThrows(SearchTimeoutException.class, () -> hurried.find(0, size));
+		assertEquals(3, hurried.find(0, 1).length);
+	}
+
+	/**
+	 * Tests many searches with one finder against a breadth first search
+	 * from scratch, so marks left by one search cannot affect the next.
+	 */
+	@Test
+	void testMatchesBreadthFirstSearch() {
+		Random random = new Random(5);
+		int movieCount = 300;
+		int personCount = 400;
+		int size = 700;
+		int[] movies = new int[size];
+		int[] people = new int[size];
+		for (int i = 0; i < size; i++) {
+			movies[i] = random.nextInt(movieCount);
+			people[i] = random.nextInt(personCount);
+		}
+		CsrIndex stars = CsrIndex.build(movies, people, size);
+		PathFinder finder = new PathFinder(stars, 8, 1000);
+
+		Map<Integer, Set<Integer>> casts = new HashMap<>();
+		Map<Integer, Set<Integer>> filmographies = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			casts.computeIfAbsent(movies[i], m -> new HashSet<>()).add(people[i]);
+			filmographies.computeIfAbsent(people[i], p -> new HashSet<>()).add(movies[i]);
+		}
+
+		for (int i = 0; i < 500; i++) {
+			int from = random.nextInt(personCount);
+			int to = random.nextInt(personCount);
+			int expected = degrees(filmographies, casts, from, to, 8);
+			int[] path = finder.find(from, to);
+			if (expected < 0) {
+				assertNull(path, from + " " + to);
+				continue;
+			}
+			assertEquals(2 * expected + 1, path.length, from + " " + to);
+			assertEquals(from, path[0]);
+			assertEquals(to, path[path.length - 1]);
+			for (int p = 1; p < path.length; p += 2) {
+				assertTrue(casts.get(path[p]).contains(path[p - 1]), Arrays.toString(path));
+				assertTrue(casts.get(path[p]).contains(path[p + 1]), Arrays.toString(path));
+			}
+		}
+	}
+
+	/**
+	 * Returns the fewest movies linking two people, or -1 if it is more than
+	 * the limit.
+	 */
+	private static int degrees(Map<Integer, Set<Integer>> filmographies, Map<Integer, Set<Integer>> casts, int from,
+			int to, int limit) {
+		if (!filmographies.containsKey(from) || !filmographies.containsKey(to)) {
+			return -1;
+		}
+		Map<Integer, Integer> distances = new HashMap<>();
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		distances.put(from, 0);
+		queue.add(from);
+		while (!queue.isEmpty()) {
+			int person = queue.poll();
+			int distance = distances.get(person);
+			if (person == to) {
+				return distance;
+			}
+			if (distance == limit) {
+				continue;
+			}
+			for (int movie : filmographies.get(person)) {
+				for (int costar : casts.get(movie)) {
+					if (distances.putIfAbsent(costar, distance + 1) == null) {
+						queue.add(costar);
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.flickfinder.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.model.Suggestion;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Test for the prefix index.
+ * Larger indexes are checked against sorting every matching entry.
+ */
+class PrefixIndexTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	@BeforeEach
+	void setUp() {
+		var url = "jdbc:sqlite::memory:";
+		seeder = new Seeder(url);
+		Database.getInstance(seeder.getConnection());
+	}
+
+	/**
+	 * Tests movie titles are suggested by votes, ignoring case.
+	 */
+	@Test
+	void testLoadMovies() throws SQLException {
+		PrefixIndex index = PrefixIndex.loadMovies(Database.getInstance());
+		assertEquals(5, index.size());
+		assertTrue(index.getMemoryBytes() > 0);
+
+		List<Suggestion> suggestions = index.complete("the ", 10);
+		assertEquals(List.of(1, 4, 2, 3), ids(suggestions));
+		assertEquals("The Shawshank Redemption", suggestions.get(0).getName());
+		assertEquals(2200000, suggestions.get(0).getPopularity());
+
+		assertEquals(List.of(2, 3), ids(index.complete("THE GODFATHER", 10)));
+		assertEquals(List.of(1, 4), ids(index.complete("the", 2)));
+		assertEquals(List.of(), ids(index.complete("godfather", 10)));
+	}
+
+	/**
+	 * Tests people are suggested by the summed votes of the movies they
+	 * starred in.
+	 */
+	@Test
+	void testLoadPeople() throws SQLException {
+		PrefixIndex index = PrefixIndex.loadPeople(Database.getInstance());
+		assertEquals(5, index.size());
+
+		List<Suggestion> everyone = index.complete("", 10);
+		assertEquals(List.of(4, 2, 1, 5, 3), ids(everyone));
+		assertEquals(2500000, everyone.get(0).getPopularity());
+		assertEquals(0, everyone.get(4).getPopularity());
+		assertEquals(List.of(2), ids(index.complete("mor", 10)));
+	}
+
+	/**
+	 * Tests accents are ignored on both sides.
+	 */
+	@Test
+	void testAccents() {
+		PrefixIndex index = PrefixIndex.build(new int[] { 1, 2, 3 }, new String[] { "Am\u00e9lie", "Amelia", "\u00c5sa" },
+				new long[] { 10, 20, 30 }, 10);
+		assertEquals(List.of(2, 1), ids(index.complete("ame", 10)));
+		assertEquals(List.of(2, 1), ids(index.complete("Am\u00e9", 10)));
+		assertEquals(List.of(3), ids(index.complete("as", 10)));
+	}
+
+	/**
+	 * Tests every prefix of a large index against sorting all of the entries
+	 * that match it, with many duplicates and shared prefixes.
+	 */
+	@Test
+	void testMatchesSorting() {
+		Random random = new Random(7);
+		String[] words = { "a", "ab", "abc", "b", "ba", "bab", "c", "ca", "\u00c7a" };
+		int size = 3000;
+		int[] ids = new int[size];
+		String[] texts = new String[size];
+		long[] popularity = new long[size];
+		for (int i = 0; i < size; i++) {
+			ids[i] = i + 1;
+			texts[i] = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+			popularity[i] = random.nextInt(50);
+		}
+		PrefixIndex index = PrefixIndex.build(ids, texts, popularity, 3);
+		assertTrue(index.getNodeCount() > 1);
+
+		for (int i = 0; i < 500; i++) {
+			String text = PrefixIndex.normalize(texts[random.nextInt(size)]);
+			String prefix = text.substring(0, random.nextInt(text.length() + 1));
+			int limit = 1 + random.nextInt(3);
+			List<Integer> expected = new ArrayList<>();
+			for (int e = 0; e < size; e++) {
+				if (PrefixIndex.normalize(texts[e]).startsWith(prefix)) {
+					expected.add(e);
+				}
+			}
+			expected.sort(Comparator.<Integer>comparingLong(e -> -popularity[e])
+					.thenComparing(e -> PrefixIndex.normalize(texts[e])).thenComparingInt(e -> ids[e]));
+			List<Integer> expectedIds = expected.stream().limit(limit).map(e -> ids[e]).collect(Collectors.toList());
+			assertEquals(expectedIds, ids(index.complete(prefix, limit)), prefix);
+		}
+		assertEquals(List.of(), ids(index.complete("abd", 3)));
+		assertEquals(List.of(), ids(index.complete("a b ", 3)));
+	}
+
+	private static List<Integer> ids(List<Suggestion> suggestions) {
+		return suggestions.stream().map(Suggestion::getId).collect(Collectors.toList());
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.flickfinder.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.model.MovieRating;
+import com.flickfinder.util.Database;
+import com.flickfinder.util.Seeder;
+
+/**
+ * Test for the ratings index.
+ * The index is checked against the ratings query it replaces.
+ */
+class RatingIndexTest {
+
+	/**
+	 * The index of the ratings table.
+	 */
+	private RatingIndex index;
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		var url = "jdbc:sqlite::memory:";
+		seeder = new Seeder(url);
+		Database.getInstance(seeder.getConnection());
+		index = RatingIndex.load(Database.getInstance());
+	}
+
+	/**
+	 * Tests the index holds every rated movie.
+	 */
+	@Test
+	void testLoad() {
+		assertEquals(5, index.size());
+		assertEquals(5, index.getYearCount());
+		assertTrue(index.getMemoryBytes() > 0);
+		assertTrue(index.getBuildMillis() >= 0);
+	}
+
+	/**
+	 * Tests a year's movies come back highest rated first, honouring the vote
+	 * minimum and the limit.
+	 */
+	@Test
+	void testTop() throws SQLException {
+		try (Statement stmt = seeder.getConnection().createStatement()) {
+			stmt.execute("INSERT INTO movies (id, title, year) VALUES (6, 'The Godfather Part III', 1972)");
+			stmt.execute("INSERT INTO ratings (movie_id, rating, votes) VALUES (6, 7.6, 400000)");
+		}
+		RatingIndex reloaded = RatingIndex.load(Database.getInstance());
+
+		List<MovieRating> top = reloaded.top(1972, 10, 1000);
+		assertEquals(2, top.size());
+		assertEquals("The Godfather", top.get(0).getTitle());
+		assertEquals(7.6f, top.get(1).getRating());
+		assertEquals(1, reloaded.top(1972, 1, 1000).size());
+		assertEquals(1, reloaded.top(1972, 10, 500000).size());
+		assertNull(reloaded.top(1972, 10, 2000000));
+		assertNull(reloaded.top(1900, 10, 0));
+	}
+
+	/**
+	 * Tests the index gives the same ratings as the query.
+	 */
+	@Test
+	void testMatchesQuery() throws SQLException {
+		MovieDAO movieDAO = new MovieDAO();
+		MovieDAO indexedMovieDAO = new MovieDAO();
+		indexedMovieDAO.setRatingIndex(index);
+
+		for (int year : new int[] { 1957, 1972, 1974, 1994, 2008, 2028 }) {
+			for (int votes : new int[] { 0, 1000, 1000000, 3000000 }) {
+				for (int limit : new int[] { 1, 2, 50 }) {
+					assertEquals(ratings(movieDAO.getMovieRatingsByYearLimitVoteLimit(year, limit, votes)),
+							ratings(indexedMovieDAO.getMovieRatingsByYearLimitVoteLimit(year, limit, votes)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Renders a list of movie ratings, including the rating and votes.
+	 */
+	private static String ratings(List<MovieRating> ratings) {
+		if (ratings == null) {
+			return "null";
+		}
+		StringBuilder builder = new StringBuilder();
+		for (MovieRating rating : ratings) {
+			builder.append(rating).append(' ').append(rating.getRating()).append(' ').append(rating.getVotes()).append('\n');
+		}
+		return builder.toString();
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+
+}
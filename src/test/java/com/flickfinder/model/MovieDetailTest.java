@@ -0,0 +1,59 @@
+package com.flickfinder.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the Movie Detail Model
+ */
+public class MovieDetailTest {
+
+	/**
+	 * The movie detail object to be tested.
+	 */
+	private MovieDetail movieDetail;
+
+	/**
+	 * Set up the movie detail object before each test.
+	 */
+	@BeforeEach
+	public void setUp() {
+		movieDetail = new MovieDetail(1, "The Matrix", 1999, 8.7f, 1895415,
+				List.of(new Person(2, "Keanu Reeves", 1964)), List.of(new Person(3, "Lana Wachowski", 1965)));
+	}
+
+	/**
+	 * Test the movie detail object is created with the correct values
+	 */
+	@Test
+	public void testMovieDetailCreated() {
+		assertEquals(1, movieDetail.getId());
+		assertEquals("The Matrix", movieDetail.getTitle());
+		assertEquals(1999, movieDetail.getYear());
+		assertEquals(8.7f, movieDetail.getRating());
+		assertEquals(1895415, movieDetail.getVotes());
+		assertEquals("Keanu Reeves", movieDetail.getStars().get(0).getName());
+		assertEquals("Lana Wachowski", movieDetail.getDirectors().get(0).getName());
+	}
+
+	/**
+	 * Test the setters of the movie detail object.
+	 */
+	@Test
+	public void testMovieDetailSetters() {
+		movieDetail.setRating(null);
+		movieDetail.setVotes(null);
+		movieDetail.setStars(List.of());
+		movieDetail.setDirectors(List.of());
+		assertNull(movieDetail.getRating());
+		assertNull(movieDetail.getVotes());
+		assertEquals(0, movieDetail.getStars().size());
+		assertEquals(0, movieDetail.getDirectors().size());
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.flickfinder.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the Star Model.
+ */
+public class StarTest {
+
+	/**
+	 * The star object to be tested.
+	 */
+	private Star star;
+
+	/**
+	 * Set up the star object before each test.
+	 */
+	@BeforeEach
+	public void setUp() {
+		star = new Star(1, 2);
+	}
+
+	/**
+	 * Test the star object is created with the correct values.
+	 */
+	@Test
+	public void testStarCreated() {
+		assertEquals(1, star.getMovieId());
+		assertEquals(2, star.getPersonId());
+	}
+
+	/**
+	 * Test the star object setters.
+	 */
+	@Test
+	public void testStarSetters() {
+		star.setMovieId(3);
+		star.setPersonId(4);
+		assertEquals(3, star.getMovieId());
+		assertEquals(4, star.getPersonId());
+	}
+
+}
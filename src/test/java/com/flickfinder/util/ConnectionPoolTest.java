@@ -0,0 +1,141 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the connection pool.
+ */
+class ConnectionPoolTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * The pool under test.
+	 */
+	ConnectionPool pool;
+
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		pool = ConnectionPool.wrap(seeder.getConnection());
+	}
+
+	/**
+	 * Tests that a borrowed connection is counted as active and given back on
+	 * close.
+	 */
+	@Test
+	void testBorrowAndRelease() throws SQLException {
+		try (PooledConnection connection = pool.borrow()) {
+			assertSame(seeder.getConnection(), connection.getConnection());
+			assertEquals(1, pool.getActiveCount());
+		}
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, pool.getBorrowCount());
+	}
+
+	/**
+	 * Tests that closing a connection twice only returns it once.
+	 */
+	@Test
+	void testDoubleCloseIsIgnored() throws SQLException {
+		PooledConnection connection = pool.borrow();
+		connection.close();
+		connection.close();
+		assertEquals(0, pool.getActiveCount());
+	}
+
+	/**
+	 * Tests that preparing the same SQL twice returns the cached statement.
+	 */
+	@Test
+	void testPrepareReusesStatement() throws SQLException {
+		try (PooledConnection connection = pool.borrow()) {
+			PreparedStatement first = connection.prepare("select * from movies where id = ?");
+			PreparedStatement second = connection.prepare("select * from movies where id = ?");
+			connection.prepare("select * from people where id = ?");
+			assertSame(first, second);
+			assertEquals(2, connection.getCachedStatementCount());
+		}
+	}
+
+	/**
+	 * Tests that the cached statements are closed along with the pool.
+	 */
+	@Test
+	void testCloseClosesStatements() throws SQLException {
+		PreparedStatement statement;
+		try (PooledConnection connection = pool.borrow()) {
+			statement = connection.prepare("select * from movies where id = ?");
+		}
+		pool.close();
+		assertTrue(statement.isClosed());
+	}
+
+	/**
+	 * Tests that a request waits for a connection when the pool is empty and
+	 * that the wait is recorded.
+	 */
+	@Test
+	void testExhaustionIsRecorded() throws Exception {
+		PooledConnection first = pool.borrow();
+		CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> {
+			try (PooledConnection second = pool.borrow()) {
+				assertSame(seeder.getConnection(), second.getConnection());
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		Thread.sleep(50);
+		first.close();
+		waiter.get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, pool.getExhaustionCount());
+		assertTrue(pool.getTotalWaitNanos() > 0);
+		assertEquals(0, pool.getActiveCount());
+	}
+
+	/**
+	 * Tests that connections opened from a path are read-only.
+	 */
+	@Test
+	void testOpenedConnectionsAreReadOnly() throws IOException, SQLException {
+		File file = File.createTempFile("flickfinder", ".db");
+		file.deleteOnExit();
+		Seeder fileSeeder = new Seeder("jdbc:sqlite:" + file.getPath());
+		fileSeeder.closeConnection();
+
+		ConnectionPool filePool = ConnectionPool.open("jdbc:sqlite:" + file.getPath(), 2);
+		try (PooledConnection connection = filePool.borrow()) {
+			Statement statement = connection.getConnection().createStatement();
+			assertThrows(SQLException.class, () -> statement.execute("DELETE FROM movies"));
+		} finally {
+			filePool.close();
+		}
+		assertEquals(2, filePool.getSize());
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test for the indexed copy of the database.
+ */
+class IndexDatabaseTest {
+
+	/**
+	 * A directory for the database files.
+	 */
+	@TempDir
+	Path directory;
+
+	/**
+	 * The seeded database file.
+	 */
+	File source;
+
+	/**
+	 * Where the indexed copy goes.
+	 */
+	File sidecar;
+
+	@BeforeEach
+	void setUp() {
+		source = directory.resolve("movies.db").toFile();
+		sidecar = directory.resolve("movies-index.db").toFile();
+		new Seeder("jdbc:sqlite:" + source.getPath()).closeConnection();
+	}
+
+	/**
+	 * Tests the copy has the data and the indexes, and the joins use them.
+	 */
+	@Test
+	void testPrepare() throws SQLException, IOException {
+		String url = IndexDatabase.prepare(source, sidecar);
+		assertTrue(sidecar.isFile());
+
+		try (Connection connection = DriverManager.getConnection(url); Statement statement = connection.createStatement()) {
+			try (ResultSet rs = statement.executeQuery("select count(*) from stars")) {
+				assertEquals(5, rs.getInt(1));
+			}
+			try (ResultSet rs = statement.executeQuery("select count(*) from sqlite_master where type = 'index' and name not like 'sqlite_%'")) {
+				assertEquals(IndexDatabase.INDEXES.length, rs.getInt(1));
+			}
+		}
+
+		List<String> report = IndexDatabase.report("jdbc:sqlite:" + source.getPath(), url);
+		assertEquals(IndexDatabase.QUERIES.length * 3, report.size());
+		assertTrue(report.get(1).contains("SCAN stars"), report.get(1));
+		assertTrue(report.get(2).contains("stars_movie"), report.get(2));
+	}
+
+	/**
+	 * Tests the copy is reused until the original changes.
+	 */
+	@Test
+	void testRebuiltWhenSourceChanges() throws SQLException, IOException {
+		IndexDatabase.prepare(source, sidecar);
+		assertTrue(IndexDatabase.isCurrent(source, sidecar));
+
+		assertTrue(source.setLastModified(source.lastModified() - 60000));
+		assertFalse(IndexDatabase.isCurrent(source, sidecar));
+		IndexDatabase.prepare(source, sidecar);
+		assertTrue(IndexDatabase.isCurrent(source, sidecar));
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flickfinder.model.Movie;
+
+/**
+ * Test for the query timings and the slow query log.
+ */
+class QueryTimerTest {
+
+	/**
+	 * Seeder
+	 */
+	Seeder seeder;
+
+	/**
+	 * A pool around the seeded connection.
+	 */
+	ConnectionPool pool;
+
+	@BeforeEach
+	void setUp() {
+		seeder = new Seeder("jdbc:sqlite::memory:");
+		pool = ConnectionPool.wrap(seeder.getConnection());
+	}
+
+	/**
+	 * Tests latencies go into doubling buckets and the percentiles come from
+	 * their bounds.
+	 */
+	@Test
+	void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentileMicros(0.99));
+		assertEquals(0, LatencyHistogram.bucketOf(500));
+		assertEquals(1, LatencyHistogram.bucketOf(1_500));
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1_500);
+		}
+		histogram.record(50_000_000);
+		assertEquals(100, histogram.getCount());
+		assertEquals(50_000_000, histogram.getMaxNanos());
+		assertEquals(99, histogram.getBucketCount(1));
+		assertEquals(LatencyHistogram.getBucketBoundMicros(1), histogram.getPercentileMicros(0.5));
+		assertEquals(LatencyHistogram.getBucketBoundMicros(1), histogram.getPercentileMicros(0.99));
+		assertTrue(histogram.getPercentileMicros(1.0) >= 50_000);
+	}
+
+	/**
+	 * Tests a run is recorded with its rows and bytes.
+	 */
+	@Test
+	void testRecordsRun() throws SQLException {
+		QueryStats stats = QueryStats.of("QueryTimerTest.testRecordsRun");
+		try (PooledConnection connection = pool.borrow();
+				QueryTimer timer = QueryTimer.start(stats.getName(), connection, "select 1")) {
+			timer.row(new Movie(1, "Heat", 1995));
+			timer.row(new Movie(2, "Ran", 1985));
+		}
+		assertEquals(1, stats.getLatency().getCount());
+		assertEquals(2, stats.getRowCount());
+		assertEquals(QueryTimer.sizeOf(new Movie(1, "Heat", 1995)) + QueryTimer.sizeOf(new Movie(2, "Ran", 1985)),
+				stats.getBytes());
+		assertEquals(0, stats.getSlowCount());
+		assertTrue(QueryStats.all().contains(stats));
+	}
+
+	/**
+	 * Tests a timer stopped early is only recorded once, without the rows
+	 * read after it was stopped.
+	 */
+	@Test
+	void testClosedEarly() throws SQLException {
+		QueryStats stats = QueryStats.of("QueryTimerTest.testClosedEarly");
+		try (PooledConnection connection = pool.borrow();
+				QueryTimer timer = QueryTimer.start(stats.getName(), connection, "select 1")) {
+			timer.row(new Movie(1, "Heat", 1995));
+			timer.close();
+			timer.row(new Movie(2, "Ran", 1985));
+		}
+		assertEquals(1, stats.getLatency().getCount());
+		assertEquals(1, stats.getRowCount());
+	}
+
+	/**
+	 * Tests a run over the threshold is logged with its parameters and plan.
+	 */
+	@Test
+	void testLogsSlowQuery() throws SQLException {
+		PrintStream out = System.out;
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		QueryTimer.setSlowThresholdMillis(0);
+		System.setOut(new PrintStream(log, true));
+		QueryStats stats = QueryStats.of("QueryTimerTest.testLogsSlowQuery");
+		try (PooledConnection connection = pool.borrow();
+				QueryTimer timer = QueryTimer.start(stats.getName(), connection,
+						"select * from stars where movie_id = ?", 1)) {
+			timer.row("row");
+		} finally {
+			System.setOut(out);
+			QueryTimer.setSlowThresholdMillis(100);
+		}
+		assertEquals(1, stats.getSlowCount());
+		String logged = log.toString();
+		assertTrue(logged.contains("Slow query QueryTimerTest.testLogsSlowQuery"), logged);
+		assertTrue(logged.contains("params [1]"), logged);
+		assertTrue(logged.contains("plan: SCAN stars"), logged);
+	}
+
+	/**
+	 * Tests a slow lookup answered from memory is logged without a plan.
+	 */
+	@Test
+	void testLogsSlowLookupFromMemory() {
+		PrintStream out = System.out;
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		QueryTimer.setSlowThresholdMillis(0);
+		System.setOut(new PrintStream(log, true));
+		QueryStats stats = QueryStats.of("QueryTimerTest.testLogsSlowLookupFromMemory");
+		try (QueryTimer timer = QueryTimer.start(stats.getName(), 1994, 1000)) {
+			timer.row(new Movie(1, "Heat", 1995));
+		} finally {
+			System.setOut(out);
+			QueryTimer.setSlowThresholdMillis(100);
+		}
+		assertEquals(1, stats.getRowCount());
+		assertEquals(1, stats.getSlowCount());
+		String logged = log.toString();
+		assertTrue(logged.contains("params [1994, 1000]"), logged);
+		assertTrue(logged.contains("answered from memory"), logged);
+	}
+
+	@AfterEach
+	void tearDown() {
+		seeder.closeConnection();
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the request counters and the Prometheus format they are written
+ * in.
+ */
+class RequestMetricsTest {
+
+	/**
+	 * Tests requests are counted by method, route and status code.
+	 */
+	@Test
+	void testRecord() {
+		RequestMetrics metrics = new RequestMetrics();
+		metrics.record("GET", "/movies/{id}", 200, 2_000);
+		metrics.record("GET", "/movies/{id}", 200, 3_000);
+		metrics.record("GET", "/movies/{id}", 404, 1_000);
+		metrics.record("GET", "/movies", 200, 5_000);
+		metrics.record("GET", RequestMetrics.UNMATCHED, 999, 5_000);
+
+		List<RequestMetrics.Route> routes = metrics.getRoutes();
+		assertEquals(3, routes.size());
+		RequestMetrics.Route route = routes.get(1);
+		assertEquals("/movies/{id}", route.getPath());
+		assertEquals(List.of(200, 404), route.getStatuses());
+		assertEquals(2, route.getStatusCount(200));
+		assertEquals(1, route.getStatusCount(404));
+		assertEquals(0, route.getStatusCount(500));
+		assertEquals(3, route.getLatency().getCount());
+		assertEquals(List.of(0), routes.get(2).getStatuses());
+	}
+
+	/**
+	 * Tests no request is lost when many threads record at once.
+	 */
+	@Test
+	void testConcurrentRecord() throws InterruptedException {
+		RequestMetrics metrics = new RequestMetrics();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					metrics.record("GET", "/people/" + (i % 4), 200, i);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long total = 0;
+		for (RequestMetrics.Route route : metrics.getRoutes()) {
+			total += route.getStatusCount(200);
+		}
+		assertEquals(80000, total);
+	}
+
+	/**
+	 * Tests the histogram is written with cumulative buckets, and label values
+	 * are escaped.
+	 */
+	@Test
+	void testPrometheusFormat() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1_500);
+		histogram.record(3_000_000);
+		String text = new PrometheusWriter().family("latency_seconds", "histogram", "Latency.")
+				.histogram("latency_seconds", histogram, "route", "a\"b\\c").toString();
+
+		assertTrue(text.startsWith("# HELP latency_seconds Latency.\n# TYPE latency_seconds histogram\n"), text);
+		assertTrue(text.contains("latency_seconds_bucket{route=\"a\\\"b\\\\c\",le=\"1.0E-6\"} 0\n"), text);
+		assertTrue(text.contains("latency_seconds_bucket{route=\"a\\\"b\\\\c\",le=\"2.0E-6\"} 1\n"), text);
+		assertTrue(text.contains("latency_seconds_bucket{route=\"a\\\"b\\\\c\",le=\"+Inf\"} 2\n"), text);
+		assertTrue(text.contains("latency_seconds_sum{route=\"a\\\"b\\\\c\"} 0.0030015\n"), text);
+		assertTrue(text.contains("latency_seconds_count{route=\"a\\\"b\\\\c\"} 2\n"), text);
+		assertEquals("NaN", PrometheusWriter.format(Double.NaN));
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.flickfinder.dao.MovieDAO;
+import com.flickfinder.dao.PersonDAO;
+import com.flickfinder.model.Movie;
+import com.flickfinder.model.Person;
+
+/**
+ * Test for the full-text search database and the DAO searches that use it.
+ */
+class SearchDatabaseTest {
+
+	/**
+	 * A directory for the database files.
+	 */
+	@TempDir
+	Path directory;
+
+	/**
+	 * The seeded database file.
+	 */
+	File source;
+
+	/**
+	 * Where the search database goes.
+	 */
+	File sidecar;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		source = directory.resolve("movies.db").toFile();
+		sidecar = directory.resolve("movies-search.db").toFile();
+		Seeder seeder = new Seeder("jdbc:sqlite:" + source.getPath());
+		try (Statement stmt = seeder.getConnection().createStatement()) {
+			stmt.execute("INSERT INTO movies (id, title, year) VALUES(6, 'Godfather', 2001)");
+			stmt.execute("INSERT INTO ratings (movie_id, rating, votes) VALUES (6, 5.0, 10)");
+			stmt.execute("INSERT INTO movies (id, title, year) VALUES(7, 'Am\u00e9lie', 2001)");
+		}
+		seeder.closeConnection();
+	}
+
+	/**
+	 * Tests the search database is only rebuilt when the contents of the
+	 * source change, not just its modification time.
+	 */
+	@Test
+	void testRebuiltWhenChecksumChanges() throws SQLException, IOException {
+		assertTrue(SearchDatabase.prepare(source, sidecar));
+		assertEquals(SearchDatabase.checksum(source), SearchDatabase.builtFrom(sidecar));
+		assertFalse(SearchDatabase.prepare(source, sidecar));
+
+		assertTrue(source.setLastModified(source.lastModified() - 60000));
+		assertFalse(SearchDatabase.prepare(source, sidecar));
+
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + source.getPath());
+				Statement stmt = connection.createStatement()) {
+			stmt.execute("UPDATE movies SET title = 'The Dark Knight Rises' WHERE id = 4");
+		}
+		assertTrue(SearchDatabase.prepare(source, sidecar));
+		assertFalse(SearchDatabase.prepare(source, sidecar));
+	}
+
+	/**
+	 * Tests the DAOs search the attached sidecar, ranking by bm25 and votes.
+	 */
+	@Test
+	void testSearch() throws SQLException, IOException {
+		SearchDatabase.prepare(source, sidecar);
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + source.getPath())) {
+			Database.getInstance(connection).attachSearch(sidecar);
+			MovieDAO movieDAO = new MovieDAO();
+			PersonDAO personDAO = new PersonDAO();
+
+			// the well known Godfather films come before the obscure one, even
+			// though its title is the closest match
+			assertEquals(List.of(2, 3, 6), movieIds(movieDAO.searchMovies("godfather", 10)));
+			assertEquals(List.of(2, 3), movieIds(movieDAO.searchMovies("the godf", 10)));
+			assertEquals(List.of(2), movieIds(movieDAO.searchMovies("godfather", 1)));
+			assertEquals(List.of(1), movieIds(movieDAO.searchMovies("redemption shaw", 10)));
+			assertEquals(List.of(7), movieIds(movieDAO.searchMovies("AMELIE", 10)));
+			assertNull(movieDAO.searchMovies("casablanca", 10));
+			assertNull(movieDAO.searchMovies("!!", 10));
+
+			List<Person> people = personDAO.searchPeople("al", 10);
+			assertEquals(1, people.size());
+			assertEquals("Al Pacino", people.get(0).getName());
+			assertEquals(2, personDAO.searchPeople("morgan free", 10).get(0).getId());
+		}
+	}
+
+	/**
+	 * Tests user input is turned into FTS5 phrases that cannot use the query
+	 * syntax.
+	 */
+	@Test
+	void testMatchQuery() {
+		assertEquals("\"The\" \"god\"*", SearchDatabase.matchQuery("The god"));
+		assertEquals("\"title\" \"x\" \"OR\" \"y\"*", SearchDatabase.matchQuery("title:x OR \"y"));
+		assertNull(SearchDatabase.matchQuery("  -* "));
+	}
+
+	private static List<Integer> movieIds(List<Movie> movies) {
+		return movies.stream().map(Movie::getId).collect(Collectors.toList());
+	}
+
+}
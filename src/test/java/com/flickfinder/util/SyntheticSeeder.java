@@ -0,0 +1,322 @@
+package com.flickfinder.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+/**
+ * A Seeder that fills the tables with made up rows at any scale, for load
+ * tests and benchmarks.
+ *
+ * The rows come from a seeded random, so the same scale and seed always give
+ * the same database. They are skewed the way the IMDB data is: most movies
+ * are recent and have a small cast, while a few have large ones; a few people
+ * star in many movies and most in one or two; and votes have a long tail, with
+ * most movies getting a few hundred and a handful millions. Titles and names
+ * are made from word lists, so text searches have something to match.
+ *
+ * All rows are inserted with batched prepared statements in one transaction,
+ * with the journal off, so even millions of rows only take seconds.
+ *
+ * <pre>
+ * java -cp ... com.flickfinder.util.SyntheticSeeder synthetic.db [movies] [seed]
+ * </pre>
+ */
+public class SyntheticSeeder extends Seeder {
+
+	/**
+	 * The number of rows inserted per batch.
+	 */
+	private static final int BATCH_SIZE = 10000;
+
+	/**
+	 * The latest release year.
+	 */
+	static final int LAST_YEAR = 2024;
+
+	/**
+	 * The number of release years, ending at LAST_YEAR.
+	 */
+	static final int YEARS = 120;
+
+	private static final String[] TITLE_WORDS = { "Silent", "River", "Night", "Shadow", "Last", "Empire", "Broken",
+			"Golden", "Storm", "Winter", "Dream", "City", "Stranger", "Fire", "Road", "Lost", "Heart", "Secret",
+			"King", "Island", "Blood", "Summer", "Ghost", "Dark", "Star", "Wild", "House", "Glass", "Iron", "Red",
+			"Midnight", "Ocean", "Return", "Garden", "Machine", "Hunter", "Paradise", "Edge", "Echo", "Crown" };
+
+	private static final String[] FIRST_NAMES = { "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael",
+			"Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas",
+			"Sarah", "Charles", "Karen", "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Betty", "Mark", "Margaret",
+			"Paul", "Sandra", "Akira", "Ingrid", "Federico", "Agnes", "Satyajit", "Catherine", "Pedro", "Hana" };
+
+	private static final String[] LAST_NAMES = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+			"Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas",
+			"Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Clark", "Lewis",
+			"Kurosawa", "Bergman", "Fellini", "Varda", "Ray", "Deneuve", "Almodovar", "Kim", "Nolan", "Freeman" };
+
+	/**
+	 * How big a synthetic database is.
+	 */
+	public static class Scale {
+
+		private final int movies;
+		private final int people;
+		private final long stars;
+		private final long seed;
+
+		/**
+		 * Makes a scale.
+		 *
+		 * @param movies the number of movies
+		 * @param people the number of people
+		 * @param stars  the number of rows in the stars table, roughly
+		 * @param seed   the seed of the random
+		 */
+		public Scale(int movies, int people, long stars, long seed) {
+			if (movies < 1 || people < 1 || stars < 0) {
+				throw new IllegalArgumentException("Invalid scale");
+			}
+			this.movies = movies;
+			this.people = people;
+			this.stars = stars;
+			this.seed = seed;
+		}
+
+		/**
+		 * Returns a scale with the proportions of IMDB: three people and ten
+		 * stars rows per movie.
+		 *
+		 * @param movies the number of movies
+		 * @return the scale
+		 */
+		public static Scale of(int movies) {
+			return new Scale(movies, movies * 3, movies * 10L, 42);
+		}
+
+		/**
+		 * Returns the number of movies.
+		 *
+		 * @return the number of movies
+		 */
+		public int getMovies() {
+			return movies;
+		}
+
+		/**
+		 * Returns the number of people.
+		 *
+		 * @return the number of people
+		 */
+		public int getPeople() {
+			return people;
+		}
+
+		/**
+		 * Returns the number of stars rows asked for.
+		 *
+		 * @return the number of stars rows
+		 */
+		public long getStars() {
+			return stars;
+		}
+
+		/**
+		 * Returns the seed of the random.
+		 *
+		 * @return the seed
+		 */
+		public long getSeed() {
+			return seed;
+		}
+	}
+
+	/**
+	 * Creates the tables, like Seeder, and fills them with synthetic rows
+	 * instead of the usual five.
+	 *
+	 * @param url   the url of the database
+	 * @param scale how many rows to make
+	 */
+	public SyntheticSeeder(String url, Scale scale) {
+		super(url);
+		try {
+			populate(getConnection(), scale);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Replaces the rows of the Seeder tables with synthetic ones.
+	 */
+	private static void populate(Connection conn, Scale scale) throws SQLException {
+		Random random = new Random(scale.getSeed());
+		boolean autoCommit = conn.getAutoCommit();
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute("PRAGMA journal_mode = OFF");
+			stmt.execute("PRAGMA synchronous = OFF");
+			conn.setAutoCommit(false);
+			for (String table : new String[] { "stars", "directors", "ratings", "movies", "people" }) {
+				stmt.execute("DELETE FROM " + table);
+			}
+		}
+
+		try {
+			insertMovies(conn, scale, random);
+			insertPeople(conn, scale, random);
+			insertCredits(conn, scale, random);
+			insertRatings(conn, scale, random);
+			conn.commit();
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
+	private static void insertMovies(Connection conn, Scale scale, Random random) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement("INSERT INTO movies (id, title, year) VALUES (?, ?, ?)")) {
+			for (int id = 1; id <= scale.getMovies(); id++) {
+				ps.setInt(1, id);
+				ps.setString(2, title(random));
+				ps.setInt(3, year(random));
+				add(ps, id);
+			}
+			ps.executeBatch();
+		}
+	}
+
+	private static void insertPeople(Connection conn, Scale scale, Random random) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement("INSERT INTO people (id, name, birth) VALUES (?, ?, ?)")) {
+			for (int id = 1; id <= scale.getPeople(); id++) {
+				ps.setInt(1, id);
+				ps.setString(2, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+						+ LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+				ps.setInt(3, LAST_YEAR - 18 - random.nextInt(YEARS));
+				add(ps, id);
+			}
+			ps.executeBatch();
+		}
+	}
+
+	/**
+	 * Fills the stars and directors tables. Cast sizes are log-normal around
+	 * the mean the scale asks for, and people are picked with a power law, so
+	 * the people with the lowest ids are in the most movies.
+	 */
+	private static void insertCredits(Connection conn, Scale scale, Random random) throws SQLException {
+		double mean = (double) scale.getStars() / scale.getMovies();
+		long rows = 0;
+		try (PreparedStatement stars = conn.prepareStatement("INSERT INTO stars (movie_id, person_id) VALUES (?, ?)");
+				PreparedStatement directors = conn
+						.prepareStatement("INSERT INTO directors (movie_id, person_id) VALUES (?, ?)")) {
+			for (int id = 1; id <= scale.getMovies(); id++) {
+				// exp(sigma * gaussian - sigma^2 / 2) has a mean of 1
+				int cast = mean == 0 ? 0 : (int) Math.round(mean * Math.exp(random.nextGaussian() - 0.5));
+				for (int i = 0; i < cast; i++) {
+					stars.setInt(1, id);
+					stars.setInt(2, person(scale, random));
+					add(stars, ++rows);
+				}
+				int count = random.nextInt(10) == 0 ? 2 : 1;
+				for (int i = 0; i < count; i++) {
+					directors.setInt(1, id);
+					directors.setInt(2, person(scale, random));
+					add(directors, id);
+				}
+			}
+			stars.executeBatch();
+			directors.executeBatch();
+		}
+	}
+
+	/**
+	 * Rates nine movies in ten. Ratings are normal around 6.2, and votes are
+	 * log-normal, from a handful up to a few million.
+	 */
+	private static void insertRatings(Connection conn, Scale scale, Random random) throws SQLException {
+		try (PreparedStatement ps = conn
+				.prepareStatement("INSERT INTO ratings (movie_id, rating, votes) VALUES (?, ?, ?)")) {
+			for (int id = 1; id <= scale.getMovies(); id++) {
+				if (random.nextInt(10) == 0) {
+					continue;
+				}
+				double rating = Math.max(1, Math.min(10, 6.2 + 1.2 * random.nextGaussian()));
+				ps.setInt(1, id);
+				ps.setDouble(2, Math.round(rating * 10) / 10.0);
+				ps.setInt(3, (int) Math.min(3_000_000, Math.exp(5 + 2.2 * random.nextGaussian())) + 5);
+				add(ps, id);
+			}
+			ps.executeBatch();
+		}
+	}
+
+	private static String title(Random random) {
+		StringBuilder title = new StringBuilder();
+		if (random.nextInt(3) == 0) {
+			title.append("The ");
+		}
+		int words = 1 + random.nextInt(3);
+		for (int i = 0; i < words; i++) {
+			if (i > 0) {
+				title.append(' ');
+			}
+			title.append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]);
+		}
+		if (random.nextInt(8) == 0) {
+			title.append(' ').append(2 + random.nextInt(3));
+		}
+		return title.toString();
+	}
+
+	/**
+	 * Picks a release year, more of them recent: the cube of a uniform
+	 * number leans towards zero, and so towards LAST_YEAR.
+	 */
+	private static int year(Random random) {
+		double u = random.nextDouble();
+		return LAST_YEAR - (int) (u * u * u * YEARS);
+	}
+
+	/**
+	 * Picks a person id with a power law, so low ids come up far more often.
+	 */
+	private static int person(Scale scale, Random random) {
+		double u = random.nextDouble();
+		return 1 + (int) (u * u * u * scale.getPeople());
+	}
+
+	private static void add(PreparedStatement ps, long row) throws SQLException {
+		ps.addBatch();
+		if (row % BATCH_SIZE == 0) {
+			ps.executeBatch();
+		}
+	}
+
+	/**
+	 * Builds a synthetic database file.
+	 *
+	 * @param args the file, then optionally the number of movies (100000 by
+	 *             default) and the seed
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Usage: SyntheticSeeder <file> [movies] [seed]");
+			return;
+		}
+		int movies = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		Scale scale = Scale.of(movies);
+		if (args.length > 2) {
+			scale = new Scale(scale.getMovies(), scale.getPeople(), scale.getStars(), Long.parseLong(args[2]));
+		}
+		long start = System.nanoTime();
+		SyntheticSeeder seeder = new SyntheticSeeder("jdbc:sqlite:" + args[0], scale);
+		seeder.closeConnection();
+		System.out.println("Built " + args[0] + " with " + movies + " movies in "
+				+ (System.nanoTime() - start) / 1_000_000 + "ms");
+	}
+
+}
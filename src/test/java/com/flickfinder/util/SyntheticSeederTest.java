@@ -0,0 +1,79 @@
+package com.flickfinder.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the synthetic data generator.
+ */
+class SyntheticSeederTest {
+
+	/**
+	 * Tests the tables get the rows the scale asks for, with skewed casts,
+	 * years and votes.
+	 */
+	@Test
+	void testScaleAndSkew() throws SQLException {
+		SyntheticSeeder seeder = new SyntheticSeeder("jdbc:sqlite::memory:", SyntheticSeeder.Scale.of(2000));
+		try (Statement stmt = seeder.getConnection().createStatement()) {
+			assertEquals(2000, count(stmt, "select count(*) from movies"));
+			assertEquals(6000, count(stmt, "select count(*) from people"));
+			long stars = count(stmt, "select count(*) from stars");
+			assertTrue(stars > 18000 && stars < 22000, String.valueOf(stars));
+			assertTrue(count(stmt, "select count(*) from directors") >= 2000);
+			long ratings = count(stmt, "select count(*) from ratings");
+			assertTrue(ratings > 1700 && ratings < 1900, String.valueOf(ratings));
+
+			// a few movies have casts many times the mean
+			assertTrue(count(stmt, "select max(c) from (select count(*) c from stars group by movie_id)") > 40);
+			// the busiest person is in far more movies than most
+			assertTrue(count(stmt, "select max(c) from (select count(*) c from stars group by person_id)") > 100);
+			// there are more recent movies than old ones
+			assertTrue(count(stmt, "select count(*) from movies where year > 2000")
+					> 2 * count(stmt, "select count(*) from movies where year <= 1960"));
+			// votes have a long tail
+			assertTrue(count(stmt, "select max(votes) from ratings")
+					> 100 * count(stmt, "select votes from ratings order by votes limit 1 offset (select count(*) / 2 from ratings)"));
+			assertEquals(0, count(stmt, "select count(*) from ratings where rating < 1 or rating > 10"));
+		} finally {
+			seeder.closeConnection();
+		}
+	}
+
+	/**
+	 * Tests the same scale and seed give the same rows, and another seed
+	 * different ones.
+	 */
+	@Test
+	void testDeterministic() throws SQLException {
+		String first = checksum(new SyntheticSeeder.Scale(500, 1000, 3000, 7));
+		assertEquals(first, checksum(new SyntheticSeeder.Scale(500, 1000, 3000, 7)));
+		assertTrue(!first.equals(checksum(new SyntheticSeeder.Scale(500, 1000, 3000, 8))));
+		assertThrows(IllegalArgumentException.class, () -> new SyntheticSeeder.Scale(0, 1, 1, 1));
+	}
+
+	private static String checksum(SyntheticSeeder.Scale scale) throws SQLException {
+		SyntheticSeeder seeder = new SyntheticSeeder("jdbc:sqlite::memory:", scale);
+		try (Statement stmt = seeder.getConnection().createStatement();
+				ResultSet rs = stmt.executeQuery("select (select group_concat(title) from movies), "
+						+ "(select sum(person_id * movie_id) from stars), (select sum(votes) from ratings)")) {
+			return rs.getString(1).hashCode() + "/" + rs.getLong(2) + "/" + rs.getLong(3);
+		} finally {
+			seeder.closeConnection();
+		}
+	}
+
+	private static long count(Statement stmt, String sql) throws SQLException {
+		try (ResultSet rs = stmt.executeQuery(sql)) {
+			return rs.getLong(1);
+		}
+	}
+
+}